@@ -0,0 +1,183 @@
+package biweekly.javatime;
+
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.time.zone.ZoneRulesException;
+import java.time.zone.ZoneRulesProvider;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import biweekly.component.VTimezone;
+import biweekly.io.TimezoneInfo;
+import biweekly.property.TimezoneId;
+import biweekly.property.ValuedProperty;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * <p>
+ * A {@link ZoneRulesProvider} that makes the timezone definitions in
+ * {@link VTimezone} components available to {@code java.time} through
+ * {@link ZoneId#of}.
+ * </p>
+ * <p>
+ * Because the JDK does not allow zone IDs to be registered more than once, the
+ * IDs are prefixed with a namespace (for example, "Eastern Standard Time"
+ * becomes "myapp/Eastern_Standard_Time"). Characters that are not allowed
+ * in region IDs are replaced with underscores. If an ID has already been
+ * registered, the existing definition is used.
+ * </p>
+ * <p>
+ * <b>Example:</b>
+ * </p>
+ *
+ * <pre class="brush:java">
+ * ICalReader reader = ...
+ * ICalendar ical = reader.readNext();
+ * TimezoneInfo tzinfo = reader.getTimezoneInfo();
+ *
+ * Map&lt;String, ZoneId&gt; zones = VTimezoneZoneRulesProvider.register("myapp", tzinfo);
+ * ZoneId zone = zones.get("Eastern Standard Time");
+ * ZonedDateTime start = ical.getEvents().get(0).getDateStart().getValue().toInstant().atZone(zone);
+ * </pre>
+ * @author Michael Angstadt
+ * @see ZoneRulesConverter
+ */
+public class VTimezoneZoneRulesProvider extends ZoneRulesProvider {
+	private static final String VERSION = "1";
+	private static final Set<String> registered = new HashSet<String>();
+
+	private final Map<String, ZoneRules> rules;
+
+	/**
+	 * @param rules the zone rules (key = zone ID)
+	 */
+	protected VTimezoneZoneRulesProvider(Map<String, ZoneRules> rules) {
+		this.rules = new LinkedHashMap<String, ZoneRules>(rules);
+	}
+
+	/**
+	 * Registers the timezone definitions that were parsed along with an
+	 * iCalendar object.
+	 * @param namespace the prefix to add to each zone ID (e.g. "myapp")
+	 * @param tzinfo the timezone information
+	 * @return the registered zone IDs (key = TZID property value)
+	 * @see #register(String, Collection)
+	 */
+	public static Map<String, ZoneId> register(String namespace, TimezoneInfo tzinfo) {
+		return register(namespace, tzinfo.getComponents());
+	}
+
+	/**
+	 * Converts the given timezone components to {@link ZoneRules} objects and
+	 * registers them with the JDK. Components without a TZID property are
+	 * ignored.
+	 * @param namespace the prefix to add to each zone ID (e.g. "myapp")
+	 * @param components the timezone components
+	 * @return the registered zone IDs (key = TZID property value)
+	 * @throws IllegalArgumentException if the namespace is empty
+	 */
+	public static synchronized Map<String, ZoneId> register(String namespace, Collection<VTimezone> components) {
+		if (namespace == null || namespace.isEmpty()) {
+			throw new IllegalArgumentException("Namespace must not be empty.");
+		}
+
+		Map<String, String> zoneIds = new LinkedHashMap<String, String>();
+		Map<String, ZoneRules> newRules = new LinkedHashMap<String, ZoneRules>();
+		Set<String> available = ZoneId.getAvailableZoneIds();
+		for (VTimezone component : components) {
+			String tzid = ValuedProperty.getValue(component.getTimezoneId());
+			if (tzid == null) {
+				continue;
+			}
+
+			String zoneId = toZoneId(namespace, tzid);
+			if (!available.contains(zoneId) && !registered.contains(zoneId) && !newRules.containsKey(zoneId)) {
+				newRules.put(zoneId, ZoneRulesConverter.convert(component));
+			}
+			zoneIds.put(tzid, zoneId);
+		}
+
+		if (!newRules.isEmpty()) {
+			ZoneRulesProvider.registerProvider(new VTimezoneZoneRulesProvider(newRules));
+			registered.addAll(newRules.keySet());
+		}
+
+		Map<String, ZoneId> ids = new LinkedHashMap<String, ZoneId>();
+		for (Map.Entry<String, String> entry : zoneIds.entrySet()) {
+			ids.put(entry.getKey(), ZoneId.of(entry.getValue()));
+		}
+		return ids;
+	}
+
+	/**
+	 * Builds the zone ID for a timezone component.
+	 * @param namespace the namespace
+	 * @param tzid the value of the component's {@link TimezoneId} property
+	 * @return the zone ID
+	 */
+	static String toZoneId(String namespace, String tzid) {
+		StringBuilder sb = new StringBuilder(namespace.length() + tzid.length() + 1);
+		append(namespace, sb);
+		sb.append('/');
+		append(tzid, sb);
+		return sb.toString();
+	}
+
+	private static void append(String value, StringBuilder sb) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '~' || c == '/' || c == '.' || c == '_' || c == '+' || c == '-';
+			sb.append(valid ? c : '_');
+		}
+	}
+
+	@Override
+	protected Set<String> provideZoneIds() {
+		return new HashSet<String>(rules.keySet());
+	}
+
+	@Override
+	protected ZoneRules provideRules(String zoneId, boolean forCaching) {
+		ZoneRules zoneRules = rules.get(zoneId);
+		if (zoneRules == null) {
+			throw new ZoneRulesException("Unknown zone ID: " + zoneId);
+		}
+		return zoneRules;
+	}
+
+	@Override
+	protected NavigableMap<String, ZoneRules> provideVersions(String zoneId) {
+		NavigableMap<String, ZoneRules> versions = new TreeMap<String, ZoneRules>();
+		versions.put(VERSION, provideRules(zoneId, false));
+		return versions;
+	}
+}
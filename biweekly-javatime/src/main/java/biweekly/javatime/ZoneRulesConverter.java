@@ -0,0 +1,394 @@
+package biweekly.javatime;
+
+import static biweekly.property.ValuedProperty.getValue;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Month;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneOffsetTransitionRule;
+import java.time.zone.ZoneOffsetTransitionRule.TimeDefinition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import biweekly.component.DaylightSavingsTime;
+import biweekly.component.Observance;
+import biweekly.component.VTimezone;
+import biweekly.io.ICalTimeZone;
+import biweekly.property.ExceptionDates;
+import biweekly.property.ExceptionRule;
+import biweekly.property.RecurrenceRule;
+import biweekly.util.DateTimeComponents;
+import biweekly.util.ICalDate;
+import biweekly.util.Recurrence;
+import biweekly.util.Recurrence.ByDay;
+import biweekly.util.Recurrence.Frequency;
+import biweekly.util.UtcOffset;
+import biweekly.util.com.google.ical.iter.RecurrenceIterator;
+import biweekly.util.com.google.ical.values.DateTimeValue;
+import biweekly.util.com.google.ical.values.DateValue;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * <p>
+ * Converts {@link VTimezone} components to {@code java.time}
+ * {@link ZoneRules}.
+ * </p>
+ * <p>
+ * Each STANDARD and DAYLIGHT observance onset becomes a
+ * {@link ZoneOffsetTransition}. Observances whose recurrence rules never end
+ * are converted to {@link ZoneOffsetTransitionRule ZoneOffsetTransitionRules}
+ * when possible (for example, "FREQ=YEARLY;BYMONTH=3;BYDAY=2SU"), so that
+ * transitions in future years are calculated by the JDK. Rules that cannot be
+ * expressed this way (such as those that use BYSETPOS) are expanded up until
+ * the year {@value #HORIZON_YEAR}.
+ * </p>
+ * <p>
+ * <b>Example:</b>
+ * </p>
+ *
+ * <pre class="brush:java">
+ * VTimezone component = ...
+ * ZoneRules rules = ZoneRulesConverter.convert(component);
+ * ZoneOffset offset = rules.getOffset(Instant.now());
+ * </pre>
+ * @author Michael Angstadt
+ * @see VTimezoneZoneRulesProvider
+ */
+public final class ZoneRulesConverter {
+	/**
+	 * The year up until which never-ending observances are expanded if they
+	 * cannot be converted to {@link ZoneOffsetTransitionRule} objects.
+	 */
+	public static final int HORIZON_YEAR = 2100;
+
+	/**
+	 * Converts a {@link VTimezone} component to a {@link ZoneRules} object.
+	 * Observances that lack a TZOFFSETFROM or TZOFFSETTO property are ignored.
+	 * @param component the timezone component
+	 * @return the zone rules
+	 */
+	public static ZoneRules convert(VTimezone component) {
+		ICalTimeZone timezone = new ICalTimeZone(component);
+
+		List<Observance> observances = new ArrayList<Observance>();
+		observances.addAll(component.getStandardTimes());
+		observances.addAll(component.getDaylightSavingsTime());
+
+		List<Onset> onsets = new ArrayList<Onset>();
+		List<Observance> unbounded = new ArrayList<Observance>();
+		Map<Observance, ZoneOffsetTransitionRule> rules = new IdentityHashMap<Observance, ZoneOffsetTransitionRule>();
+		boolean useRules = true;
+		int lastYear = Integer.MIN_VALUE;
+		ZoneOffset firstOffsetTo = null;
+
+		for (Observance observance : observances) {
+			ZoneOffset from = toZoneOffset(getValue(observance.getTimezoneOffsetFrom()));
+			ZoneOffset to = toZoneOffset(getValue(observance.getTimezoneOffsetTo()));
+			if (from == null || to == null) {
+				continue;
+			}
+			if (firstOffsetTo == null) {
+				firstOffsetTo = to;
+			}
+
+			if (isUnbounded(observance)) {
+				unbounded.add(observance);
+				if (from.equals(to)) {
+					//does not change the wall offset
+					continue;
+				}
+
+				ZoneOffsetTransitionRule rule = toRule(observance, from, to);
+				if (rule == null) {
+					useRules = false;
+				} else {
+					rules.put(observance, rule);
+				}
+				continue;
+			}
+
+			RecurrenceIterator it = timezone.createIterator(observance);
+			while (it.hasNext()) {
+				DateValue date = it.next();
+				onsets.add(new Onset(observance, date, from, to));
+				lastYear = Math.max(lastYear, date.year());
+			}
+		}
+
+		/*
+		 * The JDK applies the "last rules" to every year after the year of the
+		 * last explicit transition. So, the never-ending observances must be
+		 * expanded up until that year.
+		 */
+		int limitYear;
+		if (useRules) {
+			limitYear = lastYear;
+			for (Observance observance : unbounded) {
+				ICalDate dtstart = getValue(observance.getDateStart());
+				if (dtstart != null && dtstart.getRawComponents() != null) {
+					limitYear = Math.max(limitYear, dtstart.getRawComponents().getYear());
+				}
+			}
+		} else {
+			limitYear = HORIZON_YEAR;
+		}
+
+		for (Observance observance : unbounded) {
+			ZoneOffset from = toZoneOffset(getValue(observance.getTimezoneOffsetFrom()));
+			ZoneOffset to = toZoneOffset(getValue(observance.getTimezoneOffsetTo()));
+			RecurrenceIterator it = timezone.createIterator(observance);
+			while (it.hasNext()) {
+				DateValue date = it.next();
+				if (date.year() > limitYear) {
+					break;
+				}
+				onsets.add(new Onset(observance, date, from, to));
+			}
+		}
+
+		if (onsets.isEmpty()) {
+			return ZoneRules.of((firstOffsetTo == null) ? ZoneOffset.UTC : firstOffsetTo);
+		}
+
+		Collections.sort(onsets, new Comparator<Onset>() {
+			public int compare(Onset a, Onset b) {
+				return Long.compare(a.epochSecond, b.epochSecond);
+			}
+		});
+
+		ZoneOffset baseOffset = onsets.get(0).from;
+		ZoneOffset wall = baseOffset, standard = baseOffset;
+		List<ZoneOffsetTransition> transitions = new ArrayList<ZoneOffsetTransition>();
+		List<ZoneOffsetTransition> standardTransitions = new ArrayList<ZoneOffsetTransition>();
+		for (Onset onset : onsets) {
+			ZoneOffset newStandard = onset.standardOffset();
+			if (!newStandard.equals(standard)) {
+				standardTransitions.add(ZoneOffsetTransition.of(LocalDateTime.ofEpochSecond(onset.epochSecond, 0, standard), standard, newStandard));
+				standard = newStandard;
+			}
+
+			if (!onset.to.equals(wall)) {
+				transitions.add(ZoneOffsetTransition.of(LocalDateTime.ofEpochSecond(onset.epochSecond, 0, wall), wall, onset.to));
+				wall = onset.to;
+			}
+		}
+
+		List<ZoneOffsetTransitionRule> lastRules = new ArrayList<ZoneOffsetTransitionRule>();
+		if (useRules) {
+			lastRules.addAll(rules.values());
+			final int sortYear = limitYear + 1;
+			Collections.sort(lastRules, new Comparator<ZoneOffsetTransitionRule>() {
+				public int compare(ZoneOffsetTransitionRule a, ZoneOffsetTransitionRule b) {
+					return a.createTransition(sortYear).getInstant().compareTo(b.createTransition(sortYear).getInstant());
+				}
+			});
+		}
+
+		return ZoneRules.of(baseOffset, baseOffset, standardTransitions, transitions, lastRules);
+	}
+
+	/**
+	 * Determines if an observance has a recurrence rule that never ends.
+	 * @param observance the observance
+	 * @return true if it never ends, false if not
+	 */
+	private static boolean isUnbounded(Observance observance) {
+		for (RecurrenceRule rrule : observance.getProperties(RecurrenceRule.class)) {
+			Recurrence recur = rrule.getValue();
+			if (recur != null && recur.getCount() == null && recur.getUntil() == null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Converts a never-ending observance to a transition rule.
+	 * @param observance the observance
+	 * @param from the offset before the transition
+	 * @param to the offset after the transition
+	 * @return the transition rule or null if the observance cannot be
+	 * represented as a transition rule
+	 */
+	private static ZoneOffsetTransitionRule toRule(Observance observance, ZoneOffset from, ZoneOffset to) {
+		List<RecurrenceRule> rrules = observance.getProperties(RecurrenceRule.class);
+		if (rrules.size() != 1 || !observance.getRecurrenceDates().isEmpty() || !observance.getProperties(ExceptionRule.class).isEmpty() || !observance.getProperties(ExceptionDates.class).isEmpty()) {
+			return null;
+		}
+
+		ICalDate dtstart = getValue(observance.getDateStart());
+		if (dtstart == null || dtstart.getRawComponents() == null) {
+			return null;
+		}
+		DateTimeComponents start = dtstart.getRawComponents();
+
+		Recurrence recur = rrules.get(0).getValue();
+		if (recur.getFrequency() != Frequency.YEARLY) {
+			return null;
+		}
+		Integer interval = recur.getInterval();
+		if (interval != null && interval != 1) {
+			return null;
+		}
+		if (!recur.getBySecond().isEmpty() || !recur.getByMinute().isEmpty() || !recur.getByHour().isEmpty() || !recur.getByYearDay().isEmpty() || !recur.getByWeekNo().isEmpty() || !recur.getBySetPos().isEmpty()) {
+			return null;
+		}
+
+		List<Integer> byMonth = recur.getByMonth();
+		if (byMonth.size() > 1) {
+			return null;
+		}
+		int month = byMonth.isEmpty() ? start.getMonth() : byMonth.get(0);
+		if (month < 1 || month > 12) {
+			return null;
+		}
+
+		List<ByDay> byDay = recur.getByDay();
+		List<Integer> byMonthDay = recur.getByMonthDay();
+		DayOfWeek dayOfWeek;
+		Integer dayOfMonthIndicator;
+		if (byDay.isEmpty()) {
+			//fixed date (e.g. "BYMONTHDAY=15")
+			if (byMonthDay.size() > 1) {
+				return null;
+			}
+			dayOfWeek = null;
+			dayOfMonthIndicator = byMonthDay.isEmpty() ? start.getDate() : byMonthDay.get(0);
+		} else {
+			if (byDay.size() != 1) {
+				return null;
+			}
+
+			ByDay day = byDay.get(0);
+			dayOfWeek = DayOfWeek.valueOf(day.getDay().name());
+			Integer num = day.getNum();
+			if (num == null || num == 0) {
+				//e.g. "BYDAY=SU;BYMONTHDAY=8,9,10,11,12,13,14"
+				dayOfMonthIndicator = weekRangeStart(byMonthDay);
+			} else if (byMonthDay.isEmpty()) {
+				//e.g. "BYDAY=2SU" or "BYDAY=-1SU"
+				dayOfMonthIndicator = (num > 0) ? 1 + 7 * (num - 1) : -1 + 7 * (num + 1);
+			} else {
+				return null;
+			}
+		}
+
+		if (dayOfMonthIndicator == null || dayOfMonthIndicator < -28 || dayOfMonthIndicator > 31 || dayOfMonthIndicator == 0) {
+			return null;
+		}
+
+		if (start.getHour() > 23 || start.getMinute() > 59 || start.getSecond() > 59) {
+			return null;
+		}
+		LocalTime time = LocalTime.of(start.getHour(), start.getMinute(), start.getSecond());
+
+		ZoneOffset standard = (observance instanceof DaylightSavingsTime) ? from : to;
+		return ZoneOffsetTransitionRule.of(Month.of(month), dayOfMonthIndicator, dayOfWeek, time, false, TimeDefinition.WALL, standard, from, to);
+	}
+
+	/**
+	 * Determines if a BYMONTHDAY list contains exactly seven consecutive days
+	 * (as used by older timezone definitions to specify "the first Sunday on or
+	 * after the 8th").
+	 * @param byMonthDay the BYMONTHDAY values
+	 * @return the first day of the range or null if the list isn't a range of
+	 * seven consecutive days
+	 */
+	private static Integer weekRangeStart(List<Integer> byMonthDay) {
+		if (byMonthDay.size() != 7) {
+			return null;
+		}
+
+		List<Integer> sorted = new ArrayList<Integer>(byMonthDay);
+		Collections.sort(sorted);
+		for (int i = 1; i < sorted.size(); i++) {
+			if (sorted.get(i) - sorted.get(i - 1) != 1) {
+				return null;
+			}
+		}
+
+		int first = sorted.get(0);
+		int last = sorted.get(6);
+		if (first > 0) {
+			return first;
+		}
+		if (last < 0) {
+			//e.g. "-7..-1" means "the last Sunday of the month"
+			return last;
+		}
+		return null;
+	}
+
+	private static ZoneOffset toZoneOffset(UtcOffset offset) {
+		if (offset == null) {
+			return null;
+		}
+		return ZoneOffset.ofTotalSeconds((int) (offset.getMillis() / 1000));
+	}
+
+	/**
+	 * An observance onset.
+	 */
+	private static class Onset {
+		private final Observance observance;
+		private final ZoneOffset from, to;
+		private final long epochSecond;
+
+		public Onset(Observance observance, DateValue date, ZoneOffset from, ZoneOffset to) {
+			this.observance = observance;
+			this.from = from;
+			this.to = to;
+
+			LocalDateTime local;
+			if (date instanceof DateTimeValue) {
+				DateTimeValue dateTime = (DateTimeValue) date;
+				local = LocalDateTime.of(date.year(), date.month(), date.day(), dateTime.hour(), dateTime.minute(), dateTime.second());
+			} else {
+				local = LocalDateTime.of(date.year(), date.month(), date.day(), 0, 0, 0);
+			}
+
+			//the onset is expressed in the local time that is in effect before the onset
+			epochSecond = local.toEpochSecond(from);
+		}
+
+		public ZoneOffset standardOffset() {
+			return (observance instanceof DaylightSavingsTime) ? from : to;
+		}
+	}
+
+	private ZoneRulesConverter() {
+		//hide
+	}
+}
@@ -0,0 +1,101 @@
+package biweekly.javatime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import biweekly.component.VTimezone;
+import biweekly.io.text.ICalReader;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class VTimezoneZoneRulesProviderTest {
+	private VTimezone newYork;
+
+	@Before
+	public void before() throws Exception {
+		ICalReader reader = new ICalReader(getClass().getResourceAsStream("New_York.ics"));
+		try {
+			reader.readNext();
+		} finally {
+			reader.close();
+		}
+		newYork = reader.getTimezoneInfo().getComponents().iterator().next();
+	}
+
+	@Test
+	public void register() {
+		Map<String, ZoneId> ids = VTimezoneZoneRulesProvider.register("register-test", Arrays.asList(newYork));
+		ZoneId zone = ids.get("America/New_York");
+		assertEquals("register-test/America/New_York", zone.getId());
+		assertSame(zone.getRules(), ZoneId.of("register-test/America/New_York").getRules());
+
+		ZonedDateTime summer = ZonedDateTime.of(2016, 7, 1, 12, 0, 0, 0, zone);
+		assertEquals(-4 * 60 * 60, summer.getOffset().getTotalSeconds());
+		ZonedDateTime winter = ZonedDateTime.of(2016, 1, 1, 12, 0, 0, 0, zone);
+		assertEquals(-5 * 60 * 60, winter.getOffset().getTotalSeconds());
+
+		//registering again uses the existing definition
+		ids = VTimezoneZoneRulesProvider.register("register-test", Arrays.asList(newYork));
+		assertEquals(zone, ids.get("America/New_York"));
+	}
+
+	@Test
+	public void register_no_tzid() {
+		VTimezone component = new VTimezone((String) null);
+		component.setTimezoneId((String) null);
+		Map<String, ZoneId> ids = VTimezoneZoneRulesProvider.register("no-tzid-test", Arrays.asList(component));
+		assertEquals(Collections.emptyMap(), ids);
+	}
+
+	@Test
+	public void register_empty_namespace() {
+		try {
+			VTimezoneZoneRulesProvider.register("", Arrays.asList(newYork));
+			fail();
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void toZoneId() {
+		assertEquals("my_app/Eastern_Standard_Time", VTimezoneZoneRulesProvider.toZoneId("my app", "Eastern Standard Time"));
+		assertEquals("app/America/New_York", VTimezoneZoneRulesProvider.toZoneId("app", "America/New_York"));
+	}
+}
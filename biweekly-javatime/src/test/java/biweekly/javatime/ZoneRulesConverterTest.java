@@ -0,0 +1,115 @@
+package biweekly.javatime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneRules;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import biweekly.component.DaylightSavingsTime;
+import biweekly.component.StandardTime;
+import biweekly.component.VTimezone;
+import biweekly.io.text.ICalReader;
+import biweekly.util.DateTimeComponents;
+import biweekly.util.Recurrence;
+import biweekly.util.Recurrence.DayOfWeek;
+import biweekly.util.Recurrence.Frequency;
+import biweekly.util.UtcOffset;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class ZoneRulesConverterTest {
+	private VTimezone newYork;
+
+	@Before
+	public void before() throws Exception {
+		ICalReader reader = new ICalReader(getClass().getResourceAsStream("New_York.ics"));
+		try {
+			reader.readNext();
+		} finally {
+			reader.close();
+		}
+		newYork = reader.getTimezoneInfo().getComponents().iterator().next();
+	}
+
+	@Test
+	public void convert() {
+		ZoneRules rules = ZoneRulesConverter.convert(newYork);
+		assertEquals(2, rules.getTransitionRules().size());
+		assertSameRules(ZoneId.of("America/New_York").getRules(), rules, 1970, 2040);
+	}
+
+	@Test
+	public void convert_not_representable_as_rule() {
+		VTimezone component = new VTimezone("Test");
+		{
+			//"the last Sunday in March", expressed as a monthly rule
+			DaylightSavingsTime daylight = new DaylightSavingsTime();
+			daylight.setDateStart(new DateTimeComponents(2000, 3, 26, 2, 0, 0, false));
+			daylight.setTimezoneOffsetFrom(new UtcOffset(true, 1, 0));
+			daylight.setTimezoneOffsetTo(new UtcOffset(true, 2, 0));
+			daylight.setRecurrenceRule(new Recurrence.Builder(Frequency.MONTHLY).interval(12).byDay(-1, DayOfWeek.SUNDAY).build());
+			component.addDaylightSavingsTime(daylight);
+
+			StandardTime standard = new StandardTime();
+			standard.setDateStart(new DateTimeComponents(2000, 10, 29, 3, 0, 0, false));
+			standard.setTimezoneOffsetFrom(new UtcOffset(true, 2, 0));
+			standard.setTimezoneOffsetTo(new UtcOffset(true, 1, 0));
+			standard.setRecurrenceRule(new Recurrence.Builder(Frequency.YEARLY).byMonth(10).byDay(-1, DayOfWeek.SUNDAY).build());
+			component.addStandardTime(standard);
+		}
+
+		ZoneRules rules = ZoneRulesConverter.convert(component);
+		assertTrue(rules.getTransitionRules().isEmpty());
+		assertSameRules(ZoneId.of("Europe/Berlin").getRules(), rules, 2001, 2040);
+	}
+
+	@Test
+	public void convert_no_observances() {
+		ZoneRules rules = ZoneRulesConverter.convert(new VTimezone("Test"));
+		assertTrue(rules.isFixedOffset());
+		assertEquals(ZoneOffset.UTC, rules.getOffset(Instant.now()));
+	}
+
+	private static void assertSameRules(ZoneRules expected, ZoneRules actual, int startYear, int endYear) {
+		Instant instant = ZonedDateTime.of(startYear, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC).toInstant();
+		Instant end = ZonedDateTime.of(endYear, 12, 31, 0, 0, 0, 0, ZoneOffset.UTC).toInstant();
+		while (instant.isBefore(end)) {
+			assertEquals(instant.toString(), expected.getOffset(instant), actual.getOffset(instant));
+			assertEquals(instant.toString(), expected.isDaylightSavings(instant), actual.isDaylightSavings(instant));
+			instant = instant.plusSeconds(60 * 60);
+		}
+	}
+}
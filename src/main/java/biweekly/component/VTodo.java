@@ -47,6 +47,7 @@ import biweekly.property.Url;
 import biweekly.util.Duration;
 import biweekly.util.Google2445Utils;
 import biweekly.util.ICalDate;
+import biweekly.util.Occurrence;
 import biweekly.util.Period;
 import biweekly.util.Recurrence;
 import biweekly.util.com.google.ical.compat.javautil.DateIterator;
@@ -1677,6 +1678,20 @@ public class VTodo extends ICalComponent {
 		return Google2445Utils.getDateIterator(this, timezone);
 	}
 
+	/**
+	 * Calculates the occurrences of this component that overlap with the
+	 * given date range.
+	 * @param from the start of the range (inclusive)
+	 * @param to the end of the range (exclusive)
+	 * @param timezone the timezone to iterate in. This is needed in order to
+	 * adjust for when the iterator passes over a daylight savings boundary.
+	 * @return the occurrences, in chronological order
+	 * @see Google2445Utils#expand
+	 */
+	public List<Occurrence> expand(Date from, Date to, TimeZone timezone) {
+		return Google2445Utils.expand(this, from, to, timezone);
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	protected void validate(List<ICalComponent> components, ICalVersion version, List<Warning> warnings) {
@@ -0,0 +1,155 @@
+package biweekly.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URLEncoder;
+
+import biweekly.util.IOUtils;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * <p>
+ * A {@link TimezoneCache} that stores each timezone definition as a file in a
+ * local directory. Entries older than the configured time-to-live are treated
+ * as missing, which causes the generator to download them again. If they
+ * cannot be downloaded again, the generator uses the expired entries.
+ * </p>
+ * <p>
+ * <b>Example:</b>
+ * </p>
+ *
+ * <pre class="brush:java">
+ * File dir = new File("tz-cache");
+ * long ttl = 1000L * 60 * 60 * 24 * 30; //30 days
+ * TimezoneCache cache = new FileTimezoneCache(dir, ttl);
+ * TzUrlDotOrgGenerator generator = new TzUrlDotOrgGenerator(false, cache);
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class FileTimezoneCache implements TimezoneCache {
+	private final File directory;
+	private final long timeToLive;
+
+	/**
+	 * Creates a cache whose entries never expire.
+	 * @param directory the directory to store the files in (will be created if
+	 * it doesn't exist)
+	 */
+	public FileTimezoneCache(File directory) {
+		this(directory, -1);
+	}
+
+	/**
+	 * @param directory the directory to store the files in (will be created if
+	 * it doesn't exist)
+	 * @param timeToLive the number of milliseconds an entry remains valid for
+	 * after it is written, or a negative value for entries to never expire
+	 */
+	public FileTimezoneCache(File directory, long timeToLive) {
+		this.directory = directory;
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Gets the directory the files are stored in.
+	 * @return the directory
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Gets the number of milliseconds an entry remains valid for.
+	 * @return the time-to-live or a negative value if entries never expire
+	 */
+	public long getTimeToLive() {
+		return timeToLive;
+	}
+
+	public String get(URI uri, boolean ignoreTimeToLive) throws IOException {
+		File file = getFile(uri);
+		if (!file.isFile()) {
+			return null;
+		}
+
+		if (!ignoreTimeToLive && timeToLive >= 0) {
+			long age = System.currentTimeMillis() - file.lastModified();
+			if (age > timeToLive) {
+				return null;
+			}
+		}
+
+		return IOUtils.getFileContents(file, "UTF-8");
+	}
+
+	public void put(URI uri, String icalendar) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+			throw new IOException("Could not create directory: " + directory);
+		}
+
+		/*
+		 * Write to a temporary file first, so that other threads or processes
+		 * never read a partially-written file.
+		 */
+		File file = getFile(uri);
+		File temp = File.createTempFile("timezone", ".tmp", directory);
+		Writer writer = null;
+		try {
+			writer = IOUtils.utf8Writer(temp);
+			writer.write(icalendar);
+		} finally {
+			IOUtils.closeQuietly(writer);
+		}
+
+		if (!temp.renameTo(file)) {
+			file.delete();
+			if (!temp.renameTo(file)) {
+				temp.delete();
+				throw new IOException("Could not write to cache file: " + file);
+			}
+		}
+	}
+
+	/**
+	 * Gets the file that a timezone definition is stored in.
+	 * @param uri the URI the definition was downloaded from
+	 * @return the file
+	 */
+	private File getFile(URI uri) {
+		String name;
+		try {
+			name = URLEncoder.encode(uri.toString(), "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			//should never be thrown because all JVMs must support UTF-8
+			throw new RuntimeException(e);
+		}
+		return new File(directory, name + ".ics");
+	}
+}
@@ -128,7 +128,7 @@ public class ICalTimeZone extends TimeZone {
 					return 1;
 				}
 
-				return startLeft.getRawComponents().compareTo(startRight.getRawComponents());
+				return startLeft.compareRawComponents(startRight);
 			}
 		});
 
@@ -256,6 +256,25 @@ public class ICalTimeZone extends TimeZone {
 		return false;
 	}
 
+	/**
+	 * Determines if this timezone has the same rules as another timezone. Two
+	 * {@link ICalTimeZone} objects have the same rules if their VTIMEZONE
+	 * components have the same observances, regardless of the other
+	 * properties of the components (such as their IDs).
+	 * @param other the other timezone
+	 * @return true if they have the same rules, false if not
+	 */
+	@Override
+	public boolean hasSameRules(TimeZone other) {
+		if (other == this) {
+			return true;
+		}
+		if (other instanceof ICalTimeZone) {
+			return sortedObservances.equals(((ICalTimeZone) other).sortedObservances);
+		}
+		return super.hasSameRules(other);
+	}
+
 	/**
 	 * Gets the timezone information of a date.
 	 * @param date the date
@@ -479,11 +498,12 @@ public class ICalTimeZone extends TimeZone {
 
 	/**
 	 * Creates an iterator which iterates over each of the dates in an
-	 * observance.
+	 * observance. The dates are in the local time of the observance's
+	 * TZOFFSETFROM property (the iterator treats them as if they were in UTC).
 	 * @param observance the observance
 	 * @return the iterator
 	 */
-	RecurrenceIterator createIterator(Observance observance) {
+	public RecurrenceIterator createIterator(Observance observance) {
 		List<RecurrenceIterator> inclusions = new ArrayList<RecurrenceIterator>();
 		List<RecurrenceIterator> exclusions = new ArrayList<RecurrenceIterator>();
 
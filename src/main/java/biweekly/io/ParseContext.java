@@ -74,7 +74,7 @@ public class ParseContext {
 			return;
 		}
 
-		if (icalDate.getRawComponents().isUtc()) {
+		if (icalDate.isRawUtc()) {
 			//it's a UTC date, so it was already parsed under the correct timezone
 			return;
 		}
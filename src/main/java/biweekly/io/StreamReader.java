@@ -194,11 +194,12 @@ public abstract class StreamReader implements Closeable {
 		if (vcalComponent != null) {
 			//vCal: parse floating dates according to the DAYLIGHT and TZ properties (which were converted to a VTIMEZONE component)
 			TimeZone timezone = tzinfo.getTimeZoneByComponent(vcalComponent);
+			Calendar cal = Calendar.getInstance(timezone);
 			for (TimezonedDate timezonedDate : context.getFloatingDates()) {
 				ICalDate date = timezonedDate.getDate();
 
 				//parse its raw date components under its real timezone
-				Date realDate = date.getRawComponents().toDate(timezone);
+				Date realDate = date.rawComponentsToDate(cal);
 
 				//update the ICalDate object with the new timestamp
 				date.setTime(realDate.getTime());
@@ -249,7 +250,7 @@ public abstract class StreamReader implements Closeable {
 				ICalDate date = timezonedDate.getDate();
 
 				//parse its raw date components under its real timezone
-				Date realDate = date.getRawComponents().toDate(cal);
+				Date realDate = date.rawComponentsToDate(cal);
 
 				//update the Date object with the new timestamp
 				date.setTime(realDate.getTime());
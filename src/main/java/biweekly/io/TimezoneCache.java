@@ -0,0 +1,59 @@
+package biweekly.io;
+
+import java.io.IOException;
+import java.net.URI;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Stores the raw iCalendar text of downloaded timezone definitions so that
+ * they do not have to be downloaded again. Used by
+ * {@link TzUrlDotOrgGenerator}. Implementations must be thread safe.
+ * @author Michael Angstadt
+ * @see FileTimezoneCache
+ */
+public interface TimezoneCache {
+	/**
+	 * Gets a timezone definition from the cache.
+	 * @param uri the URI the definition was downloaded from
+	 * @param ignoreTimeToLive true to return the definition even if it has
+	 * expired, false not to. {@link TzUrlDotOrgGenerator} ignores the
+	 * time-to-live when an expired definition cannot be downloaded again.
+	 * Implementations that do not keep expired definitions may return null.
+	 * @return the iCalendar text of the definition or null if the definition
+	 * is not cached (or has expired)
+	 * @throws IOException if there's a problem reading from the cache
+	 */
+	String get(URI uri, boolean ignoreTimeToLive) throws IOException;
+
+	/**
+	 * Adds a timezone definition to the cache.
+	 * @param uri the URI the definition was downloaded from
+	 * @param icalendar the iCalendar text of the definition
+	 * @throws IOException if there's a problem writing to the cache
+	 */
+	void put(URI uri, String icalendar) throws IOException;
+}
@@ -3,10 +3,12 @@ package biweekly.io;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
 
 import biweekly.Messages;
@@ -145,6 +147,48 @@ public class TimezoneInfo {
 		propertyTimeZones.put(property, timezone);
 	}
 
+	/**
+	 * Instructs the writer to format the date/time values of multiple
+	 * properties in a specific timezone. This is more efficient than calling
+	 * {@link #setTimeZone(ICalProperty, TimeZone)} for each property.
+	 * @param properties the properties
+	 * @param timezone the timezone or null to format the properties according
+	 * to the default timezone (default)
+	 */
+	public void setTimeZone(Collection<? extends ICalProperty> properties, TimeZone timezone) {
+		if (properties.isEmpty()) {
+			return;
+		}
+
+		if (timezone != null) {
+			VTimezone component = assignmentsReverse.get(timezone);
+			if (component == null) {
+				component = generator.generate(timezone);
+				assign(component, timezone);
+			}
+		}
+
+		Map<ICalProperty, Boolean> lookup = new IdentityHashMap<ICalProperty, Boolean>(properties.size());
+		for (ICalProperty property : properties) {
+			lookup.put(property, true);
+		}
+
+		Iterator<ICalProperty> it = hasSolidusTimezone.iterator();
+		while (it.hasNext()) {
+			if (lookup.containsKey(it.next())) {
+				it.remove();
+			}
+		}
+
+		for (ICalProperty property : properties) {
+			if (timezone == null) {
+				propertyTimeZones.remove(property);
+			} else {
+				propertyTimeZones.put(property, timezone);
+			}
+		}
+	}
+
 	/* package */void setTimeZoneReader(ICalProperty property, TimeZone timezone, boolean solidus) {
 		if (solidus) {
 			hasSolidusTimezone.add(property);
@@ -261,6 +305,35 @@ public class TimezoneInfo {
 		return assignments.keySet();
 	}
 
+	/**
+	 * Removes the {@link VTimezone} components that are not used by any
+	 * property or by the default timezone.
+	 * @return the components that were removed
+	 */
+	public List<VTimezone> removeUnusedComponents() {
+		Set<TimeZone> used = new HashSet<TimeZone>(propertyTimeZones.values());
+		if (defaultTimezone != null) {
+			used.add(defaultTimezone);
+		}
+
+		List<VTimezone> removed = new ArrayList<VTimezone>();
+		Iterator<Map.Entry<VTimezone, TimeZone>> it = assignments.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<VTimezone, TimeZone> entry = it.next();
+			TimeZone timezone = entry.getValue();
+			if (used.contains(timezone)) {
+				continue;
+			}
+
+			VTimezone component = entry.getKey();
+			it.remove();
+			assignmentsReverse.remove(timezone);
+			timezonesById.remove(component.getTimezoneId().getValue());
+			removed.add(component);
+		}
+		return removed;
+	}
+
 	/**
 	 * Gets the timezone generator.
 	 * @return the timezone generator
@@ -0,0 +1,390 @@
+package biweekly.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.TimeZone;
+
+import biweekly.ICalendar;
+import biweekly.component.ICalComponent;
+import biweekly.component.VTimezone;
+import biweekly.parameter.Related;
+import biweekly.property.DateOrDateTimeProperty;
+import biweekly.property.ExceptionDates;
+import biweekly.property.ICalProperty;
+import biweekly.property.RecurrenceDates;
+import biweekly.property.RecurrenceProperty;
+import biweekly.property.Trigger;
+import biweekly.util.DateTimeComponents;
+import biweekly.util.ICalDate;
+import biweekly.util.Period;
+import biweekly.util.Recurrence;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * <p>
+ * Converts all of the date-time values in an iCalendar object to UTC or to a
+ * single target timezone in one pass. This includes the values of DTSTART,
+ * DTEND, DUE, RECURRENCE-ID, RDATE, EXDATE, and the UNTIL parts of recurrence
+ * rules. Absolute alarm {@link Trigger triggers} are always converted to UTC,
+ * even when there is a target timezone, because RFC 5545 requires them to be
+ * in UTC.
+ * </p>
+ * <p>
+ * The instants that the dates represent do not change. What changes are the
+ * dates' {@link ICalDate#getRawComponents raw components} (which are used when
+ * calculating recurrences) and the timezones that are assigned to the
+ * properties in the {@link TimezoneInfo} object. Date values that do not have
+ * a time component and properties that are assigned floating time are left
+ * alone.
+ * </p>
+ * <p>
+ * <b>Example:</b>
+ * </p>
+ *
+ * <pre class="brush:java">
+ * ICalReader reader = ...
+ * ICalendar ical = reader.readNext();
+ * TimezoneInfo tzinfo = reader.getTimezoneInfo();
+ *
+ * TimezoneNormalizer normalizer = new TimezoneNormalizer();
+ * normalizer.setRemoveUnusedComponents(true);
+ * normalizer.normalize(ical, tzinfo);
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class TimezoneNormalizer {
+	private static final long HOUR = 1000L * 60 * 60;
+	private static final long DAY = HOUR * 24;
+
+	private final TimeZone target;
+	private boolean removeUnusedComponents = false;
+
+	/**
+	 * Creates a normalizer that converts all date-time values to UTC.
+	 */
+	public TimezoneNormalizer() {
+		this(null);
+	}
+
+	/**
+	 * Creates a normalizer that converts all date-time values to the given
+	 * timezone.
+	 * @param target the timezone or null for UTC
+	 */
+	public TimezoneNormalizer(TimeZone target) {
+		this.target = target;
+	}
+
+	/**
+	 * Gets the timezone that the date-time values are converted to.
+	 * @return the timezone or null for UTC
+	 */
+	public TimeZone getTarget() {
+		return target;
+	}
+
+	/**
+	 * Gets whether the {@link VTimezone} components that are no longer used
+	 * will be removed from the {@link TimezoneInfo} object after normalizing.
+	 * @return true if they will be removed, false if not (default)
+	 */
+	public boolean isRemoveUnusedComponents() {
+		return removeUnusedComponents;
+	}
+
+	/**
+	 * Sets whether the {@link VTimezone} components that are no longer used
+	 * should be removed from the {@link TimezoneInfo} object after
+	 * normalizing.
+	 * @param removeUnusedComponents true to remove them, false not to
+	 * (default)
+	 */
+	public void setRemoveUnusedComponents(boolean removeUnusedComponents) {
+		this.removeUnusedComponents = removeUnusedComponents;
+	}
+
+	/**
+	 * Converts all of the date-time values in an iCalendar object. When
+	 * converting to UTC, the timezone assignments of the converted properties
+	 * are removed from the {@link TimezoneInfo} object, which means that they
+	 * will be written in the {@link TimezoneInfo#setDefaultTimeZone default
+	 * timezone} (UTC, unless a different default timezone is set).
+	 * @param ical the iCalendar object
+	 * @param tzinfo the timezone information of the iCalendar object (this
+	 * object is modified)
+	 * @return the number of properties that were converted
+	 */
+	public int normalize(ICalendar ical, TimezoneInfo tzinfo) {
+		Converter converter = new Converter(tzinfo);
+		converter.convert(ical);
+
+		tzinfo.setTimeZone(converter.converted, target);
+		tzinfo.setTimeZone(converter.convertedToUtc, null);
+		if (removeUnusedComponents) {
+			tzinfo.removeUnusedComponents();
+		}
+
+		return converter.converted.size() + converter.convertedToUtc.size();
+	}
+
+	/**
+	 * Walks the component tree, converting each date-time value it finds.
+	 */
+	private class Converter {
+		private final TimezoneInfo tzinfo;
+		private final OffsetCache offsets = new OffsetCache(target);
+		private final List<ICalProperty> converted = new ArrayList<ICalProperty>();
+		private final List<ICalProperty> convertedToUtc = new ArrayList<ICalProperty>();
+
+		public Converter(TimezoneInfo tzinfo) {
+			this.tzinfo = tzinfo;
+		}
+
+		public void convert(ICalComponent component) {
+			if (component instanceof VTimezone) {
+				//observance dates are always in local time
+				return;
+			}
+
+			for (ICalProperty property : component.getProperties().values()) {
+				if (tzinfo.isFloating(property)) {
+					continue;
+				}
+
+				TimeZone timezone = tzinfo.getTimeZone(property);
+				if (property instanceof Trigger) {
+					//absolute triggers must be in UTC
+					if (timezone != null && convert((Trigger) property)) {
+						convertedToUtc.add(property);
+					}
+					continue;
+				}
+
+				if (timezone == target) {
+					//already in the target timezone
+					continue;
+				}
+
+				if (convert(property)) {
+					converted.add(property);
+				}
+			}
+
+			for (ICalComponent subComponent : component.getComponents().values()) {
+				convert(subComponent);
+			}
+		}
+
+		private boolean convert(ICalProperty property) {
+			if (property instanceof DateOrDateTimeProperty) {
+				DateOrDateTimeProperty dateProperty = (DateOrDateTimeProperty) property;
+				ICalDate date = dateProperty.getValue();
+				if (!hasTime(date)) {
+					return false;
+				}
+
+				dateProperty.setValue(convert(date));
+				return true;
+			}
+
+			if (property instanceof ExceptionDates) {
+				return convert(((ExceptionDates) property).getValues());
+			}
+
+			if (property instanceof RecurrenceDates) {
+				RecurrenceDates rdate = (RecurrenceDates) property;
+				boolean changed = convert(rdate.getDates());
+
+				ListIterator<Period> it = rdate.getPeriods().listIterator();
+				while (it.hasNext()) {
+					Period period = it.next();
+					ICalDate start = period.getStartDate();
+					if (!hasTime(start)) {
+						continue;
+					}
+
+					ICalDate end = period.getEndDate();
+					if (end == null) {
+						it.set(new Period(convert(start), period.getDuration()));
+					} else {
+						it.set(new Period(convert(start), hasTime(end) ? convert(end) : end));
+					}
+					changed = true;
+				}
+				return changed;
+			}
+
+			if (property instanceof RecurrenceProperty) {
+				RecurrenceProperty rrule = (RecurrenceProperty) property;
+				Recurrence recur = rrule.getValue();
+				if (recur == null || !hasTime(recur.getUntil())) {
+					return false;
+				}
+
+				rrule.setValue(new Recurrence.Builder(recur).until(convert(recur.getUntil())).build());
+				return true;
+			}
+
+			return false;
+		}
+
+		private boolean convert(Trigger trigger) {
+			Date date = trigger.getDate();
+			if (date == null) {
+				return false;
+			}
+
+			ICalDate icalDate = (date instanceof ICalDate) ? (ICalDate) date : new ICalDate(date);
+			if (!icalDate.hasTime()) {
+				return false;
+			}
+
+			//setDate() removes the RELATED parameter
+			Related related = trigger.getRelated();
+			trigger.setDate(new ICalDate(icalDate, toComponents(icalDate.getTime(), true), true));
+			trigger.setRelated(related);
+			return true;
+		}
+
+		private boolean convert(List<ICalDate> dates) {
+			boolean changed = false;
+			ListIterator<ICalDate> it = dates.listIterator();
+			while (it.hasNext()) {
+				ICalDate date = it.next();
+				if (!hasTime(date)) {
+					continue;
+				}
+
+				it.set(convert(date));
+				changed = true;
+			}
+			return changed;
+		}
+
+		private ICalDate convert(ICalDate date) {
+			long time = date.getTime();
+			DateTimeComponents components = toComponents(time + offsets.getOffset(time), target == null);
+			return new ICalDate(date, components, true);
+		}
+
+		private boolean hasTime(ICalDate date) {
+			return date != null && date.hasTime();
+		}
+	}
+
+	/**
+	 * Memoizes the UTC offsets of a timezone by hour. Real-world timezone
+	 * transitions almost always fall on hour boundaries, so the offset of every
+	 * instant within an hour is usually the same. Hours that contain a
+	 * transition are detected and are not cached. The cache is direct-mapped:
+	 * each hour has one slot, which it shares with the hours that are a
+	 * multiple of {@value #SLOTS} hours away from it.
+	 */
+	private static class OffsetCache {
+		private static final int SLOTS = 1024;
+
+		private final TimeZone timezone;
+		private final long[] buckets;
+		private final int[] offsets;
+
+		public OffsetCache(TimeZone timezone) {
+			this.timezone = timezone;
+			if (timezone == null) {
+				buckets = null;
+				offsets = null;
+			} else {
+				buckets = new long[SLOTS];
+				Arrays.fill(buckets, Long.MIN_VALUE);
+				offsets = new int[SLOTS];
+			}
+		}
+
+		public int getOffset(long time) {
+			if (timezone == null) {
+				return 0;
+			}
+
+			long bucket = floorDiv(time, HOUR);
+			int slot = (int) bucket & (SLOTS - 1);
+			if (buckets[slot] == bucket) {
+				return offsets[slot];
+			}
+
+			long bucketStart = bucket * HOUR;
+			int startOffset = timezone.getOffset(bucketStart);
+			int endOffset = timezone.getOffset(bucketStart + HOUR - 1);
+			if (startOffset != endOffset) {
+				//the hour contains a transition
+				return timezone.getOffset(time);
+			}
+
+			buckets[slot] = bucket;
+			offsets[slot] = startOffset;
+			return startOffset;
+		}
+	}
+
+	/**
+	 * Calculates the date components of a timestamp using the proleptic
+	 * Gregorian calendar.
+	 * @param time the timestamp, shifted by the desired UTC offset
+	 * @param utc true if the components are in UTC, false if not
+	 * @return the date components
+	 */
+	static DateTimeComponents toComponents(long time, boolean utc) {
+		long days = floorDiv(time, DAY);
+		int millisOfDay = (int) (time - days * DAY);
+		int secondsOfDay = millisOfDay / 1000;
+
+		//see: http://howardhinnant.github.io/date_algorithms.html#civil_from_days
+		long z = days + 719468;
+		long era = floorDiv(z, 146097);
+		long dayOfEra = z - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long mp = (5 * dayOfYear + 2) / 153;
+		int date = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+		int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+		int hour = secondsOfDay / 3600;
+		int minute = (secondsOfDay / 60) % 60;
+		int second = secondsOfDay % 60;
+		return new DateTimeComponents(year, month, date, hour, minute, second, utc);
+	}
+
+	private static long floorDiv(long x, long y) {
+		long q = x / y;
+		if ((x % y != 0) && ((x < 0) != (y < 0))) {
+			q--;
+		}
+		return q;
+	}
+}
@@ -2,13 +2,22 @@ package biweekly.io;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import biweekly.component.VTimezone;
 import biweekly.io.text.ICalReader;
@@ -41,13 +50,39 @@ import biweekly.util.IOUtils;
  */
 
 /**
+ * <p>
  * Downloads {@link VTimezone} components from <a
  * href="http://www.tzurl.org">tzurl.org</a>.
+ * </p>
+ * <p>
+ * Downloaded components are kept in memory for the life of the JVM. A
+ * {@link TimezoneCache} can also be supplied to persist the downloaded data
+ * across JVM restarts (see {@link FileTimezoneCache}). Generators that have a
+ * {@link TimezoneCache} keep their components in memory for the life of the
+ * generator instead, so they do not share components with other generators.
+ * If an expired definition in the {@link TimezoneCache} cannot be downloaded
+ * again, the expired definition is used. Concurrent requests for different
+ * timezones do not block each other.
+ * </p>
+ * <p>
+ * <b>Example:</b>
+ * </p>
+ * 
+ * <pre class="brush:java">
+ * TimezoneCache cache = new FileTimezoneCache(new File("tz-cache"));
+ * TzUrlDotOrgGenerator generator = new TzUrlDotOrgGenerator(false, cache);
+ * 
+ * //download the timezones the application uses ahead of time
+ * generator.preload(Arrays.asList("America/New_York", "Europe/Paris"), 4);
+ * </pre>
  * @author Michael Angstadt
  */
 public class TzUrlDotOrgGenerator implements VTimezoneGenerator {
-	private static final Map<URI, VTimezone> cache = Collections.synchronizedMap(new HashMap<URI, VTimezone>());
+	private static final ConcurrentMap<URI, VTimezone> sharedCache = new ConcurrentHashMap<URI, VTimezone>();
+	private static final ConcurrentMap<URI, Object> locks = new ConcurrentHashMap<URI, Object>();
 	private final String baseUrl;
+	private final TimezoneCache timezoneCache;
+	private final ConcurrentMap<URI, VTimezone> cache;
 
 	/**
 	 * Creates a new tzurl.org translator.
@@ -55,13 +90,64 @@ public class TzUrlDotOrgGenerator implements VTimezoneGenerator {
 	 * components, false to use standards-based ones
 	 */
 	public TzUrlDotOrgGenerator(boolean outlook) {
-		baseUrl = "http://www.tzurl.org/zoneinfo" + (outlook ? "-outlook" : "") + "/";
+		this(outlook, null);
+	}
+
+	/**
+	 * Creates a new tzurl.org translator.
+	 * @param outlook true to generate Outlook-compatible {@link VTimezone}
+	 * components, false to use standards-based ones
+	 * @param timezoneCache the cache to store the downloaded data in or null
+	 * not to use a cache
+	 */
+	public TzUrlDotOrgGenerator(boolean outlook, TimezoneCache timezoneCache) {
+		this("http://www.tzurl.org/zoneinfo" + (outlook ? "-outlook" : "") + "/", timezoneCache);
+	}
+
+	/**
+	 * Creates a translator that downloads the timezone definitions from a
+	 * custom location, such as a mirror of tzurl.org or a local directory.
+	 * @param baseUrl the base URL (e.g. "file:/tzdata/"). The timezone ID is
+	 * appended to this URL to build the URL of each definition.
+	 * @param timezoneCache the cache to store the downloaded data in or null
+	 * not to use a cache
+	 */
+	public TzUrlDotOrgGenerator(String baseUrl, TimezoneCache timezoneCache) {
+		this.baseUrl = baseUrl;
+		this.timezoneCache = timezoneCache;
+		cache = (timezoneCache == null) ? sharedCache : new ConcurrentHashMap<URI, VTimezone>();
+	}
+
+	/**
+	 * Gets the base URL that the timezone definitions are downloaded from.
+	 * @return the base URL
+	 */
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	/**
+	 * Gets the cache that the downloaded data is stored in.
+	 * @return the cache or null if not set
+	 */
+	public TimezoneCache getTimezoneCache() {
+		return timezoneCache;
 	}
 
 	public VTimezone generate(TimeZone timezone) throws IllegalArgumentException {
+		return generate(timezone.getID());
+	}
+
+	/**
+	 * Generates a {@link VTimezone} component from a timezone ID.
+	 * @param timezoneId the timezone ID (e.g. "America/New_York")
+	 * @return the timezone component
+	 * @throws IllegalArgumentException if the timezone ID is not recognized
+	 */
+	public VTimezone generate(String timezoneId) throws IllegalArgumentException {
 		URI uri;
 		try {
-			uri = new URI(baseUrl + timezone.getID());
+			uri = new URI(baseUrl + timezoneId);
 		} catch (URISyntaxException e) {
 			throw new IllegalArgumentException(e);
 		}
@@ -71,13 +157,164 @@ public class TzUrlDotOrgGenerator implements VTimezoneGenerator {
 			return component;
 		}
 
-		ICalReader reader = null;
+		/*
+		 * Only one thread at a time may download a particular timezone, but
+		 * threads that are downloading different timezones do not have to wait
+		 * for each other.
+		 */
+		Object lock = new Object();
+		Object existing = locks.putIfAbsent(uri, lock);
+		if (existing != null) {
+			lock = existing;
+		}
+
+		try {
+			synchronized (lock) {
+				component = cache.get(uri);
+				if (component != null) {
+					return component;
+				}
+
+				component = load(uri, timezoneId);
+				cache.put(uri, component);
+				return component;
+			}
+		} finally {
+			/*
+			 * The lock is not needed once the component is in the cache.
+			 * Threads that are still waiting on it will find the component in
+			 * the cache. If the download failed, a thread that arrives later
+			 * uses a new lock, so at worst the timezone is downloaded twice at
+			 * the same time.
+			 */
+			locks.remove(uri, lock);
+		}
+	}
+
+	/**
+	 * Downloads a list of timezones ahead of time, so that they do not have to
+	 * be downloaded when the iCalendar objects are written. The timezones are
+	 * downloaded concurrently.
+	 * @param timezoneIds the timezone IDs (e.g. "America/New_York")
+	 * @param threads the number of timezones to download at once
+	 * @return the IDs of the timezones that could not be downloaded
+	 * @throws InterruptedException if the current thread is interrupted while
+	 * waiting for the downloads to complete
+	 */
+	public List<String> preload(Collection<String> timezoneIds, int threads) throws InterruptedException {
+		if (timezoneIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, timezoneIds.size())));
+		try {
+			List<String> ids = new ArrayList<String>(timezoneIds);
+			List<Future<VTimezone>> futures = new ArrayList<Future<VTimezone>>(ids.size());
+			for (final String id : ids) {
+				futures.add(executor.submit(new Callable<VTimezone>() {
+					public VTimezone call() {
+						return generate(id);
+					}
+				}));
+			}
+
+			List<String> failed = new ArrayList<String>();
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					futures.get(i).get();
+				} catch (ExecutionException e) {
+					failed.add(ids.get(i));
+				}
+			}
+			return failed;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Loads a timezone definition from the cache or, if it's not cached,
+	 * downloads it.
+	 * @param uri the URI of the timezone definition
+	 * @param timezoneId the timezone ID
+	 * @return the timezone component
+	 * @throws IllegalArgumentException if the timezone ID is not recognized
+	 */
+	private VTimezone load(URI uri, String timezoneId) {
+		String icalendar = null;
+		if (timezoneCache != null) {
+			try {
+				icalendar = timezoneCache.get(uri, false);
+			} catch (IOException e) {
+				//treat it as a cache miss
+			}
+		}
+
+		boolean downloaded = false;
+		if (icalendar == null) {
+			try {
+				icalendar = download(uri);
+				downloaded = true;
+			} catch (IOException e) {
+				//use the expired copy if there is one
+				icalendar = getExpired(uri);
+				if (icalendar == null) {
+					if (e instanceof FileNotFoundException) {
+						throw notFound(e);
+					}
+					throw new RuntimeException(e);
+				}
+			}
+		}
+
+		VTimezone component;
+		try {
+			component = parse(icalendar, timezoneId);
+		} catch (NoSuchElementException e) {
+			throw notFound(e);
+		}
+
+		if (downloaded && timezoneCache != null) {
+			try {
+				timezoneCache.put(uri, icalendar);
+			} catch (IOException e) {
+				//the component was still downloaded successfully
+			}
+		}
+
+		return component;
+	}
+
+	/**
+	 * Gets a timezone definition from the cache, even if it has expired.
+	 * @param uri the URI of the timezone definition
+	 * @return the iCalendar text of the definition or null if it is not cached
+	 */
+	private String getExpired(URI uri) {
+		if (timezoneCache == null) {
+			return null;
+		}
+
+		try {
+			return timezoneCache.get(uri, true);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private static String download(URI uri) throws IOException {
+		InputStream in = uri.toURL().openStream();
+		byte[] data = IOUtils.toByteArray(in, true);
+		return new String(data, "UTF-8");
+	}
+
+	private static VTimezone parse(String icalendar, String timezoneId) {
+		ICalReader reader = new ICalReader(icalendar);
 		try {
-			reader = new ICalReader(uri.toURL().openStream());
 			reader.readNext();
 
 			TimezoneInfo tzinfo = reader.getTimezoneInfo();
-			component = tzinfo.getComponents().iterator().next();
+			VTimezone component = tzinfo.getComponents().iterator().next();
 
 			TimezoneId componentId = component.getTimezoneId();
 			if (componentId == null) {
@@ -85,8 +322,8 @@ public class TzUrlDotOrgGenerator implements VTimezoneGenerator {
 				 * There should always be a TZID property, but just in case
 				 * there there isn't one, create one.
 				 */
-				component.setTimezoneId(timezone.getID());
-			} else if (!timezone.getID().equals(componentId.getValue())) {
+				component.setTimezoneId(timezoneId);
+			} else if (!timezoneId.equals(componentId.getValue())) {
 				/*
 				 * Ensure that the value of the TZID property is identical to
 				 * the ID of the Java TimeZone object. This is to ensure that
@@ -101,16 +338,12 @@ public class TzUrlDotOrgGenerator implements VTimezoneGenerator {
 				 * parameters and the VTIMEZONE component's TZID property will
 				 * not be the same.
 				 */
-				componentId.setValue(timezone.getID());
+				componentId.setValue(timezoneId);
 			}
 
-			cache.put(uri, component);
 			return component;
-		} catch (FileNotFoundException e) {
-			throw notFound(e);
-		} catch (NoSuchElementException e) {
-			throw notFound(e);
 		} catch (IOException e) {
+			//reading from a string
 			throw new RuntimeException(e);
 		} finally {
 			IOUtils.closeQuietly(reader);
@@ -0,0 +1,300 @@
+package biweekly.io;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import biweekly.ICalendar;
+import biweekly.component.ICalComponent;
+import biweekly.component.Observance;
+import biweekly.component.VTimezone;
+import biweekly.property.DateOrDateTimeProperty;
+import biweekly.property.DateStart;
+import biweekly.property.ExceptionDates;
+import biweekly.property.ICalProperty;
+import biweekly.property.RecurrenceDates;
+import biweekly.property.RecurrenceProperty;
+import biweekly.property.TimezoneId;
+import biweekly.property.ValuedProperty;
+import biweekly.util.Google2445Utils;
+import biweekly.util.ICalDate;
+import biweekly.util.Period;
+import biweekly.util.Recurrence;
+import biweekly.util.com.google.ical.iter.RecurrenceIterator;
+import biweekly.util.com.google.ical.values.DateTimeValueImpl;
+import biweekly.util.com.google.ical.values.DateValue;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * <p>
+ * Removes the STANDARD and DAYLIGHT observances from a {@link VTimezone}
+ * component that are not needed to cover a given date range. Timezone
+ * definitions often contain decades of historical observances that are
+ * irrelevant to the dates in a particular iCalendar object.
+ * </p>
+ * <p>
+ * An observance is kept if it has an onset within the date range, or if it is
+ * the observance that is in effect at the beginning of the date range. This
+ * ensures that the UTC offsets of all the dates within the range remain
+ * correct.
+ * </p>
+ * <p>
+ * <b>Example:</b>
+ * </p>
+ *
+ * <pre class="brush:java">
+ * ICalendar ical = ...
+ * VTimezone component = ...
+ * VTimezoneTrimmer trimmer = VTimezoneTrimmer.fromCalendar(ical);
+ * if (trimmer != null) {
+ *   VTimezone trimmed = trimmer.trim(component);
+ * }
+ * </pre>
+ * @author Michael Angstadt
+ * @see biweekly.io.text.ICalWriter#setTrimTimezones(boolean)
+ */
+public class VTimezoneTrimmer {
+	/**
+	 * The amount of padding to add to either side of the date range. This
+	 * accounts for the fact that the observance onsets are in local time,
+	 * while the date range is in UTC.
+	 */
+	private static final long PADDING = 1000L * 60 * 60 * 24;
+
+	private final Date start, end;
+	private final DateValue startValue, endValue;
+
+	/**
+	 * @param start the start of the date range
+	 * @param end the end of the date range or null if the range is unbounded
+	 */
+	public VTimezoneTrimmer(Date start, Date end) {
+		this.start = start;
+		this.end = end;
+		startValue = toDateValue(new Date(start.getTime() - PADDING));
+		endValue = (end == null) ? null : toDateValue(new Date(end.getTime() + PADDING));
+	}
+
+	/**
+	 * Creates a trimmer whose date range covers all the date values in an
+	 * iCalendar object, including the dates generated by recurrence rules.
+	 * @param ical the iCalendar object
+	 * @return the trimmer or null if the iCalendar object doesn't contain any
+	 * date values
+	 */
+	public static VTimezoneTrimmer fromCalendar(ICalendar ical) {
+		DateRange range = new DateRange();
+		range.add(ical);
+		if (range.start == null) {
+			return null;
+		}
+		return new VTimezoneTrimmer(range.start, range.unbounded ? null : range.end);
+	}
+
+	/**
+	 * Gets the start of the date range.
+	 * @return the start of the date range
+	 */
+	public Date getStart() {
+		return start;
+	}
+
+	/**
+	 * Gets the end of the date range.
+	 * @return the end of the date range or null if the range is unbounded
+	 */
+	public Date getEnd() {
+		return end;
+	}
+
+	/**
+	 * Creates a copy of a {@link VTimezone} component that only contains the
+	 * observances that are needed to cover this trimmer's date range. The
+	 * given component is not modified.
+	 * @param component the timezone component
+	 * @return the trimmed component or the given component if nothing could
+	 * be removed
+	 */
+	public VTimezone trim(VTimezone component) {
+		ICalTimeZone timezone = new ICalTimeZone(component);
+		List<Observance> observances = timezone.sortedObservances;
+
+		Map<Observance, Boolean> keep = new IdentityHashMap<Observance, Boolean>();
+		Observance inEffect = null;
+		DateValue inEffectOnset = null;
+		for (Observance observance : observances) {
+			RecurrenceIterator it = timezone.createIterator(observance);
+			DateValue lastBeforeRange = null;
+			while (it.hasNext()) {
+				DateValue onset = it.next();
+				if (onset.compareTo(startValue) < 0) {
+					lastBeforeRange = onset;
+					continue;
+				}
+
+				if (endValue == null || onset.compareTo(endValue) <= 0) {
+					keep.put(observance, true);
+				}
+				break;
+			}
+
+			if (lastBeforeRange != null && (inEffectOnset == null || lastBeforeRange.compareTo(inEffectOnset) > 0)) {
+				inEffect = observance;
+				inEffectOnset = lastBeforeRange;
+			}
+		}
+
+		if (inEffect != null) {
+			keep.put(inEffect, true);
+		}
+
+		if (keep.isEmpty() || keep.size() == observances.size()) {
+			return component;
+		}
+
+		VTimezone trimmed = new VTimezone((String) null);
+		trimmed.removeProperties(TimezoneId.class);
+		for (ICalProperty property : component.getProperties().values()) {
+			trimmed.addProperty(property);
+		}
+		for (ICalComponent subComponent : component.getComponents().values()) {
+			if (subComponent instanceof Observance && !keep.containsKey(subComponent)) {
+				continue;
+			}
+			trimmed.addComponent(subComponent);
+		}
+		return trimmed;
+	}
+
+	private static DateValue toDateValue(Date date) {
+		Calendar c = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		c.setTime(date);
+
+		//@formatter:off
+		return new DateTimeValueImpl(
+			c.get(Calendar.YEAR),
+			c.get(Calendar.MONTH) + 1,
+			c.get(Calendar.DATE),
+			c.get(Calendar.HOUR_OF_DAY),
+			c.get(Calendar.MINUTE),
+			c.get(Calendar.SECOND)
+		);
+		//@formatter:on
+	}
+
+	/**
+	 * Calculates the range of the date values in an iCalendar object.
+	 */
+	private static class DateRange {
+		private Date start, end;
+		private boolean unbounded = false;
+
+		public void add(ICalComponent component) {
+			if (component instanceof VTimezone) {
+				return;
+			}
+
+			for (ICalProperty property : component.getProperties().values()) {
+				if (property instanceof DateOrDateTimeProperty) {
+					add(((DateOrDateTimeProperty) property).getValue());
+					continue;
+				}
+
+				if (property instanceof ExceptionDates) {
+					for (ICalDate date : ((ExceptionDates) property).getValues()) {
+						add(date);
+					}
+					continue;
+				}
+
+				if (property instanceof RecurrenceDates) {
+					RecurrenceDates rdate = (RecurrenceDates) property;
+					for (ICalDate date : rdate.getDates()) {
+						add(date);
+					}
+					for (Period period : rdate.getPeriods()) {
+						add(period.getStartDate());
+						add(period.getEndDate());
+					}
+					continue;
+				}
+
+				if (property instanceof RecurrenceProperty) {
+					add(((RecurrenceProperty) property).getValue(), component);
+				}
+			}
+
+			for (ICalComponent subComponent : component.getComponents().values()) {
+				add(subComponent);
+			}
+		}
+
+		private void add(Recurrence recurrence, ICalComponent component) {
+			if (recurrence == null) {
+				return;
+			}
+
+			ICalDate until = recurrence.getUntil();
+			if (until != null) {
+				add(until);
+				return;
+			}
+
+			ICalDate dtstart = ValuedProperty.getValue(component.getProperty(DateStart.class));
+			if (recurrence.getCount() == null || dtstart == null) {
+				unbounded = true;
+				return;
+			}
+
+			TimeZone utc = TimeZone.getTimeZone("UTC");
+			RecurrenceIterator it = Google2445Utils.createRecurrenceIterator(recurrence, dtstart, utc);
+			DateValue last = null;
+			while (it.hasNext()) {
+				last = it.next();
+			}
+			if (last != null) {
+				add(Google2445Utils.convert(last, utc));
+			}
+		}
+
+		private void add(Date date) {
+			if (date == null) {
+				return;
+			}
+
+			if (start == null || date.before(start)) {
+				start = date;
+			}
+			if (end == null || date.after(end)) {
+				end = date;
+			}
+		}
+	}
+}
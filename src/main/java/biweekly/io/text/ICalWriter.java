@@ -22,6 +22,7 @@ import biweekly.component.VTimezone;
 import biweekly.io.DataModelConverter.VCalTimezoneProperties;
 import biweekly.io.SkipMeException;
 import biweekly.io.StreamWriter;
+import biweekly.io.VTimezoneTrimmer;
 import biweekly.io.scribe.component.ICalComponentScribe;
 import biweekly.io.scribe.property.ICalPropertyScribe;
 import biweekly.parameter.ICalParameters;
@@ -127,6 +128,8 @@ import biweekly.property.Version;
  */
 public class ICalWriter extends StreamWriter implements Flushable {
 	private final ICalRawWriter writer;
+	private boolean trimTimezones = false;
+	private VTimezoneTrimmer trimmer;
 
 	/**
 	 * @param out the output stream to write to
@@ -227,9 +230,44 @@ public class ICalWriter extends StreamWriter implements Flushable {
 		writer.setCaretEncodingEnabled(enable);
 	}
 
+	/**
+	 * Gets whether the writer will remove the observances from each
+	 * {@link VTimezone} component that are not needed to cover the dates in
+	 * the iCalendar object (disabled by default).
+	 * @return true if timezone trimming is enabled, false if not
+	 * @see VTimezoneTrimmer
+	 */
+	public boolean isTrimTimezones() {
+		return trimTimezones;
+	}
+
+	/**
+	 * <p>
+	 * Sets whether the writer will remove the observances from each
+	 * {@link VTimezone} component that are not needed to cover the dates in
+	 * the iCalendar object (disabled by default).
+	 * </p>
+	 * <p>
+	 * Timezone definitions, such as those that are downloaded from tzurl.org,
+	 * often contain decades of historical observances. Enabling this setting
+	 * can significantly reduce the size of the written iCalendar object. The
+	 * {@link VTimezone} components themselves are not modified.
+	 * </p>
+	 * @param enable true to trim the timezone components, false not to
+	 * @see VTimezoneTrimmer
+	 */
+	public void setTrimTimezones(boolean enable) {
+		trimTimezones = enable;
+	}
+
 	@Override
 	protected void _write(ICalendar ical) throws IOException {
-		writeComponent(ical);
+		trimmer = trimTimezones ? VTimezoneTrimmer.fromCalendar(ical) : null;
+		try {
+			writeComponent(ical);
+		} finally {
+			trimmer = null;
+		}
 	}
 
 	/**
@@ -258,6 +296,10 @@ public class ICalWriter extends StreamWriter implements Flushable {
 			break;
 		}
 
+		if (trimmer != null && component instanceof VTimezone) {
+			component = trimmer.trim((VTimezone) component);
+		}
+
 		boolean inICalendar = component instanceof ICalendar;
 		boolean inVCalRoot = inICalendar && getTargetVersion() == ICalVersion.V1_0;
 		boolean inICalRoot = inICalendar && getTargetVersion() != ICalVersion.V1_0;
@@ -0,0 +1,345 @@
+package biweekly.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import biweekly.ICalendar;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * <p>
+ * Calculates the occurrences of the components in many iCalendar objects and
+ * returns them as a single sequence, sorted by start date.
+ * </p>
+ * <p>
+ * Each iCalendar object is handled by its own {@link CalendarExpander}, so
+ * modified instances are applied to the recurring components they belong to.
+ * The date range is expanded in consecutive windows, starting with a window
+ * that is one day long and doubling the length of each window after that.
+ * This means that reading the first few occurrences of a large date range
+ * only requires the beginning of the range to be expanded.
+ * </p>
+ * <p>
+ * If an {@link ExecutorService} is provided, the components of each window are
+ * divided into batches that are expanded concurrently. The executor is not
+ * shut down by this class.
+ * </p>
+ * <p>
+ * <b>Example:</b>
+ * </p>
+ *
+ * <pre class="brush:java">
+ * ExecutorService executor = Executors.newFixedThreadPool(4);
+ * Agenda agenda = new Agenda(calendars);
+ * agenda.setExecutor(executor);
+ *
+ * //the next 50 occurrences
+ * List&lt;Occurrence&gt; next = agenda.expand(new Date(), farFuture, 50, TimeZone.getDefault());
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class Agenda {
+	private static final long DAY = 1000L * 60 * 60 * 24;
+	private static final int MIN_BATCH_SIZE = 16;
+
+	private final List<CalendarExpander> expanders;
+	private ExecutorService executor;
+
+	/**
+	 * Creates an agenda for all of the events, to-dos, and journal entries in
+	 * the given iCalendar objects.
+	 * @param icals the iCalendar objects
+	 */
+	public Agenda(Collection<ICalendar> icals) {
+		expanders = new ArrayList<CalendarExpander>(icals.size());
+		for (ICalendar ical : icals) {
+			expanders.add(new CalendarExpander(ical));
+		}
+	}
+
+	/**
+	 * Creates an agenda out of existing expanders. Each expander's
+	 * {@link RecurrenceCache} is used when its components are expanded.
+	 * @param expanders the expanders
+	 */
+	public Agenda(List<CalendarExpander> expanders) {
+		this.expanders = new ArrayList<CalendarExpander>(expanders);
+	}
+
+	/**
+	 * Gets the executor that is used to expand the components concurrently.
+	 * @return the executor or null if the components are expanded on the
+	 * calling thread (default)
+	 */
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Sets the executor that is used to expand the components concurrently.
+	 * @param executor the executor or null to expand the components on the
+	 * calling thread (default)
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Calculates the occurrences that overlap with the given date range.
+	 * @param from the start of the range (inclusive)
+	 * @param to the end of the range (exclusive)
+	 * @param timezone the timezone to iterate in
+	 * @return the occurrences, sorted by start date
+	 */
+	public List<Occurrence> expand(Date from, Date to, TimeZone timezone) {
+		return expand(from, to, Integer.MAX_VALUE, timezone);
+	}
+
+	/**
+	 * Calculates the first occurrences that overlap with the given date range.
+	 * Only as much of the range as is needed to find these occurrences is
+	 * expanded.
+	 * @param from the start of the range (inclusive)
+	 * @param to the end of the range (exclusive)
+	 * @param max the maximum number of occurrences to return
+	 * @param timezone the timezone to iterate in
+	 * @return the occurrences, sorted by start date
+	 */
+	public List<Occurrence> expand(Date from, Date to, int max, TimeZone timezone) {
+		List<Occurrence> occurrences = new ArrayList<Occurrence>();
+		Iterator<Occurrence> it = iterator(from, to, timezone);
+		while (occurrences.size() < max && it.hasNext()) {
+			occurrences.add(it.next());
+		}
+		return occurrences;
+	}
+
+	/**
+	 * Calculates the occurrences that overlap with the given date range. The
+	 * range is expanded one window at a time as the iterator is consumed.
+	 * @param from the start of the range (inclusive)
+	 * @param to the end of the range (exclusive)
+	 * @param timezone the timezone to iterate in
+	 * @return the occurrences, sorted by start date
+	 * @throws IllegalStateException if the thread is interrupted while waiting
+	 * for the executor
+	 */
+	public Iterator<Occurrence> iterator(Date from, Date to, TimeZone timezone) {
+		return new WindowIterator(from, to, timezone);
+	}
+
+	/**
+	 * Expands every series of every expander within a window.
+	 * @param from the start of the window (inclusive)
+	 * @param to the end of the window (exclusive)
+	 * @param first true if this is the first window, false if not. After the
+	 * first window, occurrences that start before the window are ignored
+	 * because they were returned by an earlier window.
+	 * @param timezone the timezone to iterate in
+	 * @return the occurrences of each series that have any
+	 */
+	private List<Iterator<Occurrence>> expandWindow(Date from, Date to, boolean first, TimeZone timezone) {
+		List<Batch> batches = batches(from, to, first, timezone);
+
+		if (executor == null || batches.size() == 1) {
+			List<Iterator<Occurrence>> iterators = new ArrayList<Iterator<Occurrence>>();
+			for (Batch batch : batches) {
+				iterators.addAll(batch.call());
+			}
+			return iterators;
+		}
+
+		List<Future<List<Iterator<Occurrence>>>> futures = new ArrayList<Future<List<Iterator<Occurrence>>>>(batches.size());
+		try {
+			for (Batch batch : batches) {
+				futures.add(executor.submit(batch));
+			}
+
+			List<Iterator<Occurrence>> iterators = new ArrayList<Iterator<Occurrence>>();
+			for (Future<List<Iterator<Occurrence>>> future : futures) {
+				iterators.addAll(future.get());
+			}
+			return iterators;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while expanding the components.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		} finally {
+			for (Future<List<Iterator<Occurrence>>> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Divides the series of all the expanders into batches.
+	 */
+	private List<Batch> batches(Date from, Date to, boolean first, TimeZone timezone) {
+		int total = 0;
+		for (CalendarExpander expander : expanders) {
+			total += expander.getSeriesCount();
+		}
+
+		int batchSize = total;
+		if (executor != null) {
+			int threads = Runtime.getRuntime().availableProcessors();
+			batchSize = Math.max(MIN_BATCH_SIZE, total / (threads * 4) + 1);
+		}
+
+		List<Batch> batches = new ArrayList<Batch>();
+		Batch batch = null;
+		for (CalendarExpander expander : expanders) {
+			int count = expander.getSeriesCount();
+			for (int i = 0; i < count; i++) {
+				if (batch == null || batch.size() == batchSize) {
+					batch = new Batch(from, to, first, timezone);
+					batches.add(batch);
+				}
+				batch.add(expander, i);
+			}
+		}
+		return batches;
+	}
+
+	/**
+	 * A group of series that are expanded together.
+	 */
+	private static class Batch implements Callable<List<Iterator<Occurrence>>> {
+		private final Date from, to;
+		private final boolean first;
+		private final TimeZone timezone;
+		private final List<CalendarExpander> expanders = new ArrayList<CalendarExpander>();
+		private final List<Integer> indexes = new ArrayList<Integer>();
+
+		public Batch(Date from, Date to, boolean first, TimeZone timezone) {
+			this.from = from;
+			this.to = to;
+			this.first = first;
+			this.timezone = timezone;
+		}
+
+		public void add(CalendarExpander expander, int index) {
+			expanders.add(expander);
+			indexes.add(index);
+		}
+
+		public int size() {
+			return indexes.size();
+		}
+
+		public List<Iterator<Occurrence>> call() {
+			List<Iterator<Occurrence>> iterators = new ArrayList<Iterator<Occurrence>>();
+			for (int i = 0; i < indexes.size(); i++) {
+				List<Occurrence> occurrences = expanders.get(i).expandSeries(indexes.get(i), from, to, timezone);
+				if (!first) {
+					occurrences = startingAtOrAfter(occurrences, from);
+				}
+				if (!occurrences.isEmpty()) {
+					iterators.add(occurrences.iterator());
+				}
+			}
+			return iterators;
+		}
+
+		/**
+		 * Removes the occurrences that start before the given date.
+		 * @param occurrences the occurrences, sorted by start date
+		 * @param date the date
+		 * @return the remaining occurrences
+		 */
+		private static List<Occurrence> startingAtOrAfter(List<Occurrence> occurrences, Date date) {
+			int i = 0;
+			while (i < occurrences.size() && occurrences.get(i).getStart().before(date)) {
+				i++;
+			}
+			return (i == 0) ? occurrences : occurrences.subList(i, occurrences.size());
+		}
+	}
+
+	/**
+	 * Expands the date range one window at a time.
+	 */
+	private class WindowIterator implements Iterator<Occurrence> {
+		private final Date to;
+		private final TimeZone timezone;
+		private Date windowStart;
+		private long windowLength = DAY;
+		private Iterator<Occurrence> window = Collections.<Occurrence> emptyList().iterator();
+
+		public WindowIterator(Date from, Date to, TimeZone timezone) {
+			this.to = to;
+			this.timezone = timezone;
+			this.windowStart = from;
+		}
+
+		public boolean hasNext() {
+			while (!window.hasNext()) {
+				if (!windowStart.before(to)) {
+					return false;
+				}
+
+				boolean first = (windowLength == DAY);
+				long end = windowStart.getTime() + windowLength;
+				Date windowEnd = (end < windowStart.getTime() || end > to.getTime()) ? to : new Date(end);
+
+				window = new CalendarExpander.MergingIterator(expandWindow(windowStart, windowEnd, first, timezone));
+				windowStart = windowEnd;
+				windowLength *= 2;
+			}
+			return true;
+		}
+
+		public Occurrence next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return window.next();
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,559 @@
+package biweekly.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TimeZone;
+
+import biweekly.ICalendar;
+import biweekly.component.ICalComponent;
+import biweekly.component.VAlarm;
+import biweekly.parameter.Related;
+import biweekly.property.DurationProperty;
+import biweekly.property.Repeat;
+import biweekly.property.Trigger;
+import biweekly.property.Uid;
+import biweekly.property.ValuedProperty;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * <p>
+ * Works out when the alarms of a large number of components go off, in the
+ * order that they go off.
+ * </p>
+ * <p>
+ * The scheduler has a position in time, which starts at the date given to
+ * the constructor. Each call to {@link #poll} returns the alarms that go off
+ * between the position and a later date, and then moves the position to that
+ * date. Each alarm is returned once.
+ * </p>
+ * <p>
+ * Components are grouped into series by UID, in the same way as
+ * {@link CalendarExpander}, so the alarms of modified instances replace the
+ * alarms of the occurrences they modify. Each series is kept in a priority
+ * queue under the next time one of its alarms goes off, so polling only
+ * calculates the occurrences of the series whose alarms are due. Removing a
+ * component does not search the queue; the series is marked as removed and is
+ * skipped when it reaches the front.
+ * </p>
+ * <p>
+ * Components can be added and removed at any time. If a component is
+ * modified after it is added, {@link #update} must be called. This class is
+ * thread-safe.
+ * </p>
+ * <p>
+ * <b>Example:</b>
+ * </p>
+ *
+ * <pre class="brush:java">
+ * AlarmScheduler scheduler = new AlarmScheduler(new Date(), TimeZone.getDefault());
+ * scheduler.add(ical);
+ *
+ * //every five minutes
+ * Date until = new Date(System.currentTimeMillis() + 5 * 60 * 1000);
+ * for (ScheduledAlarm alarm : scheduler.poll(until)) {
+ *   ...
+ * }
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class AlarmScheduler {
+	/**
+	 * The amount that the time ranges of each series are widened by, to
+	 * account for durations whose days are not 24 hours long.
+	 */
+	private static final long PADDING = 1000L * 60 * 60 * 24;
+
+	/**
+	 * How far past the position the scheduler looks for the next alarm of a
+	 * series that never ends.
+	 */
+	private static final long MAX_LOOKAHEAD = PADDING * 366 * 200;
+
+	private static final long NONE = Long.MAX_VALUE;
+
+	private static final Comparator<ScheduledAlarm> TIME_ORDER = new Comparator<ScheduledAlarm>() {
+		public int compare(ScheduledAlarm a, ScheduledAlarm b) {
+			return a.getTime().compareTo(b.getTime());
+		}
+	};
+
+	private final TimeZone timezone;
+
+	/**
+	 * The series, keyed by UID. Components without a UID are keyed by
+	 * themselves.
+	 */
+	private final Map<Object, Series> series = new HashMap<Object, Series>();
+
+	/**
+	 * The key of the series that each component belongs to.
+	 */
+	private final Map<ICalComponent, Object> keys = new IdentityHashMap<ICalComponent, Object>();
+
+	/**
+	 * The series, ordered by the next time one of their alarms goes off. The
+	 * queue may contain series that were removed.
+	 */
+	private final PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+
+	private long position;
+
+	/**
+	 * Creates an empty scheduler.
+	 * @param start the position to start at
+	 * @param timezone the timezone to calculate occurrences in
+	 */
+	public AlarmScheduler(Date start, TimeZone timezone) {
+		this.position = start.getTime();
+		this.timezone = timezone;
+	}
+
+	/**
+	 * Gets the timezone that occurrences are calculated in.
+	 * @return the timezone
+	 */
+	public TimeZone getTimezone() {
+		return timezone;
+	}
+
+	/**
+	 * Gets the position of the scheduler. Alarms that go off before this time
+	 * are not returned.
+	 * @return the position
+	 */
+	public synchronized Date getPosition() {
+		return new Date(position);
+	}
+
+	/**
+	 * Adds all of the events and to-dos in an iCalendar object to the
+	 * scheduler.
+	 * @param ical the iCalendar object
+	 */
+	public void add(ICalendar ical) {
+		for (ICalComponent component : ical.getEvents()) {
+			add(component);
+		}
+		for (ICalComponent component : ical.getTodos()) {
+			add(component);
+		}
+	}
+
+	/**
+	 * Adds a component to the scheduler. Nothing happens if the component is
+	 * already in the scheduler.
+	 * @param component the component (e.g. an event)
+	 */
+	public synchronized void add(ICalComponent component) {
+		if (keys.containsKey(component)) {
+			return;
+		}
+
+		String uid = ValuedProperty.getValue(component.getProperty(Uid.class));
+		Object key = (uid == null) ? component : uid;
+		keys.put(component, key);
+
+		Series s = series.remove(key);
+		List<ICalComponent> components = new ArrayList<ICalComponent>();
+		if (s != null) {
+			s.removed = true;
+			components.addAll(s.components);
+		}
+		components.add(component);
+		insert(key, components);
+		compact();
+	}
+
+	/**
+	 * Removes a component from the scheduler.
+	 * @param component the component
+	 * @return true if the component was removed, false if it was not in the
+	 * scheduler
+	 */
+	public synchronized boolean remove(ICalComponent component) {
+		Object key = keys.remove(component);
+		if (key == null) {
+			return false;
+		}
+
+		Series s = series.remove(key);
+		s.removed = true;
+
+		List<ICalComponent> components = new ArrayList<ICalComponent>(s.components);
+		for (Iterator<ICalComponent> it = components.iterator(); it.hasNext();) {
+			if (it.next() == component) {
+				it.remove();
+			}
+		}
+		if (!components.isEmpty()) {
+			insert(key, components);
+		}
+		compact();
+		return true;
+	}
+
+	/**
+	 * Reschedules a component's alarms after it has been modified.
+	 * @param component the component
+	 */
+	public synchronized void update(ICalComponent component) {
+		remove(component);
+		add(component);
+	}
+
+	/**
+	 * Gets the number of components in the scheduler.
+	 * @return the number of components
+	 */
+	public synchronized int size() {
+		return keys.size();
+	}
+
+	/**
+	 * Gets the time that the next alarm goes off.
+	 * @return the time or null if no more alarms go off
+	 */
+	public synchronized Date getNextTime() {
+		while (!queue.isEmpty()) {
+			Entry entry = queue.peek();
+			if (!entry.series.removed) {
+				return new Date(entry.time);
+			}
+			queue.poll();
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the alarms that go off between the scheduler's position and the
+	 * given date, and moves the position to the given date.
+	 * @param until the date (exclusive)
+	 * @return the alarms, sorted by the time they go off
+	 */
+	public synchronized List<ScheduledAlarm> poll(Date until) {
+		long to = until.getTime();
+		if (to <= position) {
+			return Collections.emptyList();
+		}
+
+		List<ScheduledAlarm> alarms = new ArrayList<ScheduledAlarm>();
+		List<Series> due = new ArrayList<Series>();
+		while (!queue.isEmpty() && queue.peek().time < to) {
+			Entry entry = queue.poll();
+			if (entry.series.removed) {
+				continue;
+			}
+
+			alarms.addAll(entry.series.alarms(entry.time, to));
+			due.add(entry.series);
+		}
+
+		position = to;
+		for (Series s : due) {
+			schedule(s);
+		}
+
+		Collections.sort(alarms, TIME_ORDER);
+		return alarms;
+	}
+
+	/**
+	 * Calculates the times that an alarm goes off for an occurrence of its
+	 * component, including repetitions.
+	 * @param alarm the alarm
+	 * @param occurrence the occurrence (ignored if the alarm has an absolute
+	 * trigger)
+	 * @return the times, in order, or an empty list if the alarm does not
+	 * have a trigger
+	 */
+	public static List<Date> getTriggerTimes(VAlarm alarm, Occurrence occurrence) {
+		Trigger trigger = alarm.getTrigger();
+		if (trigger == null) {
+			return Collections.emptyList();
+		}
+
+		Date first = trigger.getDate();
+		if (first == null) {
+			Duration offset = trigger.getDuration();
+			if (offset == null || occurrence == null) {
+				return Collections.emptyList();
+			}
+			Date anchor = (trigger.getRelated() == Related.END) ? occurrence.getEnd() : occurrence.getStart();
+			first = offset.add(anchor);
+		}
+
+		List<Date> times = new ArrayList<Date>();
+		times.add(first);
+
+		Integer repeat = ValuedProperty.getValue(alarm.getProperty(Repeat.class));
+		Duration pause = ValuedProperty.getValue(alarm.getProperty(DurationProperty.class));
+		if (repeat != null && pause != null) {
+			Date time = first;
+			for (int i = 0; i < repeat; i++) {
+				time = pause.add(time);
+				times.add(time);
+			}
+		}
+		return times;
+	}
+
+	/**
+	 * Creates a series and adds it to the queue.
+	 * @param key the series key
+	 * @param components the components that belong to the series
+	 */
+	private void insert(Object key, List<ICalComponent> components) {
+		Series s = new Series(components);
+		series.put(key, s);
+		schedule(s);
+	}
+
+	/**
+	 * Adds a series to the queue under the next time one of its alarms goes
+	 * off after the position.
+	 * @param s the series
+	 */
+	private void schedule(Series s) {
+		long next = s.next(position);
+		if (next != NONE) {
+			queue.add(new Entry(next, s));
+		}
+	}
+
+	/**
+	 * Rebuilds the queue if most of its entries belong to removed series.
+	 */
+	private void compact() {
+		if (queue.size() < 2 * series.size() + 16) {
+			return;
+		}
+
+		List<Entry> live = new ArrayList<Entry>(series.size());
+		for (Entry entry : queue) {
+			if (!entry.series.removed) {
+				live.add(entry);
+			}
+		}
+		queue.clear();
+		queue.addAll(live);
+	}
+
+	/**
+	 * A master component and its modified instances.
+	 */
+	private class Series {
+		private final List<ICalComponent> components;
+		private final CalendarExpander expander;
+
+		/**
+		 * How long before and after the start of an occurrence its relative
+		 * alarms can go off, or {@link Long#MIN_VALUE} if the series has no
+		 * relative alarms.
+		 */
+		private long before = Long.MIN_VALUE, after = Long.MIN_VALUE;
+
+		/**
+		 * The alarms with absolute triggers, and the components they belong
+		 * to.
+		 */
+		private final List<ICalComponent> absoluteParents = new ArrayList<ICalComponent>();
+		private final List<VAlarm> absoluteAlarms = new ArrayList<VAlarm>();
+
+		/**
+		 * The latest time that an alarm can go off, or {@link #NONE} if the
+		 * series never ends.
+		 */
+		private long last = Long.MIN_VALUE;
+
+		private boolean removed = false;
+
+		public Series(List<ICalComponent> components) {
+			this.components = Collections.unmodifiableList(components);
+			this.expander = new CalendarExpander(components);
+
+			long maxLength = 0;
+			for (ICalComponent component : components) {
+				maxLength = Math.max(maxLength, Google2445Utils.getMaxLength(component, timezone));
+			}
+
+			long spanEnd = Long.MIN_VALUE;
+			for (ICalComponent component : components) {
+				for (VAlarm alarm : component.getComponents(VAlarm.class)) {
+					Trigger trigger = alarm.getTrigger();
+					if (trigger == null) {
+						continue;
+					}
+
+					long repeats = repeatMillis(alarm);
+					if (trigger.getDate() != null) {
+						absoluteParents.add(component);
+						absoluteAlarms.add(alarm);
+						last = Math.max(last, trigger.getDate().getTime() + repeats + PADDING);
+						continue;
+					}
+
+					Duration duration = trigger.getDuration();
+					if (duration == null) {
+						continue;
+					}
+
+					long offset = duration.toMillis();
+					long length = (trigger.getRelated() == Related.END) ? maxLength : 0;
+					before = Math.max(before, PADDING - offset);
+					after = Math.max(after, PADDING + length + offset + repeats);
+
+					if (spanEnd == Long.MIN_VALUE) {
+						spanEnd = spanEnd();
+					}
+				}
+			}
+
+			if (before != Long.MIN_VALUE && spanEnd != Long.MIN_VALUE) {
+				last = (spanEnd == Long.MAX_VALUE) ? NONE : Math.max(last, spanEnd + Math.max(0, after));
+			}
+		}
+
+		/**
+		 * Gets the latest time that the occurrences of the series cover.
+		 * @return the time or {@link Long#MAX_VALUE} if the series never ends
+		 */
+		private long spanEnd() {
+			long end = Long.MIN_VALUE;
+			for (ICalComponent component : components) {
+				long[] span = TimeIndex.span(component, timezone);
+				if (span != null) {
+					end = Math.max(end, span[1]);
+				}
+			}
+			return end;
+		}
+
+		/**
+		 * Calculates the alarms that go off within a date range.
+		 * @param from the start of the range (inclusive)
+		 * @param to the end of the range (exclusive)
+		 * @return the alarms (unsorted)
+		 */
+		public List<ScheduledAlarm> alarms(long from, long to) {
+			List<ScheduledAlarm> alarms = new ArrayList<ScheduledAlarm>();
+
+			for (int i = 0; i < absoluteAlarms.size(); i++) {
+				add(absoluteAlarms.get(i), absoluteParents.get(i), null, from, to, alarms);
+			}
+
+			if (before != Long.MIN_VALUE) {
+				Date start = new Date(from - after);
+				Date end = new Date(to + before);
+				for (Occurrence occurrence : expander.expand(start, end, timezone)) {
+					ICalComponent component = occurrence.getComponent();
+					for (VAlarm alarm : component.getComponents(VAlarm.class)) {
+						Trigger trigger = alarm.getTrigger();
+						if (trigger != null && trigger.getDate() == null) {
+							add(alarm, component, occurrence, from, to, alarms);
+						}
+					}
+				}
+			}
+
+			return alarms;
+		}
+
+		private void add(VAlarm alarm, ICalComponent component, Occurrence occurrence, long from, long to, List<ScheduledAlarm> alarms) {
+			List<Date> times = getTriggerTimes(alarm, occurrence);
+			for (int i = 0; i < times.size(); i++) {
+				Date time = times.get(i);
+				if (time.getTime() >= from && time.getTime() < to) {
+					alarms.add(new ScheduledAlarm(alarm, component, occurrence, time, i));
+				}
+			}
+		}
+
+		/**
+		 * Finds the next time an alarm goes off. Date ranges of increasing
+		 * length are searched, so a series whose alarms go off often is only
+		 * expanded a short way ahead.
+		 * @param from the time to search from (inclusive)
+		 * @return the time or {@link #NONE} if no more alarms go off
+		 */
+		public long next(long from) {
+			long limit = (last == NONE) ? from + MAX_LOOKAHEAD : last;
+			long window = PADDING;
+			while (from <= limit) {
+				long to = from + window;
+				long next = NONE;
+				for (ScheduledAlarm alarm : alarms(from, to)) {
+					next = Math.min(next, alarm.getTime().getTime());
+				}
+				if (next != NONE) {
+					return next;
+				}
+
+				from = to;
+				window *= 2;
+			}
+			return NONE;
+		}
+
+		/**
+		 * Gets the length of time between the first and last time an alarm
+		 * goes off.
+		 */
+		private long repeatMillis(VAlarm alarm) {
+			Integer repeat = ValuedProperty.getValue(alarm.getProperty(Repeat.class));
+			Duration pause = ValuedProperty.getValue(alarm.getProperty(DurationProperty.class));
+			if (repeat == null || pause == null) {
+				return 0;
+			}
+			return Math.max(0, repeat * pause.toMillis());
+		}
+	}
+
+	/**
+	 * A series in the queue.
+	 */
+	private static class Entry implements Comparable<Entry> {
+		private final long time;
+		private final Series series;
+
+		public Entry(long time, Series series) {
+			this.time = time;
+			this.series = series;
+		}
+
+		public int compareTo(Entry other) {
+			return (time < other.time) ? -1 : ((time == other.time) ? 0 : 1);
+		}
+	}
+}
@@ -0,0 +1,541 @@
+package biweekly.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TimeZone;
+
+import biweekly.ICalendar;
+import biweekly.component.ICalComponent;
+import biweekly.parameter.Range;
+import biweekly.property.DateStart;
+import biweekly.property.RecurrenceId;
+import biweekly.property.Uid;
+import biweekly.property.ValuedProperty;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * <p>
+ * Calculates the occurrences of all the components in an iCalendar object,
+ * taking modified instances into account.
+ * </p>
+ * <p>
+ * A modified instance is a component that has the same UID as a recurring
+ * component (the "master"), and that has a {@link RecurrenceId} property. The
+ * RECURRENCE-ID property identifies the occurrence of the master that the
+ * component replaces. If the RECURRENCE-ID property has a RANGE parameter of
+ * {@link Range#THIS_AND_FUTURE THISANDFUTURE}, then all later occurrences of
+ * the master are replaced as well: they are shifted by the same amount of time
+ * that the modified instance was shifted by, and they take on the modified
+ * instance's duration.
+ * </p>
+ * <p>
+ * The components are indexed by UID when this object is created. The
+ * iCalendar object should not be modified while it is being used.
+ * </p>
+ * <p>
+ * <b>Example:</b>
+ * </p>
+ *
+ * <pre class="brush:java">
+ * ICalendar ical = ...
+ * CalendarExpander expander = new CalendarExpander(ical);
+ * Iterator&lt;Occurrence&gt; it = expander.iterator(from, to, TimeZone.getDefault());
+ * while (it.hasNext()) {
+ *   Occurrence occurrence = it.next();
+ *   ...
+ * }
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class CalendarExpander {
+	/**
+	 * Sorts occurrences by start date, then by end date.
+	 */
+	static final Comparator<Occurrence> START_ORDER = new Comparator<Occurrence>() {
+		public int compare(Occurrence a, Occurrence b) {
+			int result = a.getStart().compareTo(b.getStart());
+			if (result != 0) {
+				return result;
+			}
+			return a.getEnd().compareTo(b.getEnd());
+		}
+	};
+
+	private final List<Series> series = new ArrayList<Series>();
+	private RecurrenceCache cache;
+
+	/**
+	 * Creates an expander for all of the events, to-dos, and journal entries
+	 * in an iCalendar object.
+	 * @param ical the iCalendar object
+	 */
+	public CalendarExpander(ICalendar ical) {
+		List<ICalComponent> components = new ArrayList<ICalComponent>();
+		components.addAll(ical.getEvents());
+		components.addAll(ical.getTodos());
+		components.addAll(ical.getJournals());
+		index(components);
+	}
+
+	/**
+	 * Creates an expander for the given components.
+	 * @param components the components (e.g. the events of an iCalendar
+	 * object)
+	 */
+	public CalendarExpander(Collection<? extends ICalComponent> components) {
+		index(components);
+	}
+
+	private void index(Collection<? extends ICalComponent> components) {
+		Map<String, Series> byUid = new LinkedHashMap<String, Series>();
+		for (ICalComponent component : components) {
+			String uid = ValuedProperty.getValue(component.getProperty(Uid.class));
+			Series s = (uid == null) ? null : byUid.get(uid);
+			if (s == null) {
+				s = new Series();
+				if (uid == null) {
+					series.add(s);
+				} else {
+					byUid.put(uid, s);
+				}
+			}
+
+			RecurrenceId recurrenceId = component.getProperty(RecurrenceId.class);
+			if (recurrenceId == null || recurrenceId.getValue() == null) {
+				if (s.master == null) {
+					s.master = component;
+				} else {
+					//the UID is used by more than one master, so treat it as a separate series
+					Series other = new Series();
+					other.master = component;
+					series.add(other);
+				}
+			} else {
+				s.overrides.add(component);
+			}
+		}
+		series.addAll(byUid.values());
+
+		for (Series s : series) {
+			s.init();
+		}
+	}
+
+	/**
+	 * Gets the cache that the expansions of recurrence rules are stored in.
+	 * @return the cache or null if a cache is not being used (default)
+	 */
+	public RecurrenceCache getRecurrenceCache() {
+		return cache;
+	}
+
+	/**
+	 * Sets the cache that the expansions of recurrence rules are stored in. A
+	 * cache can be shared by multiple expanders.
+	 * @param cache the cache or null not to use a cache (default)
+	 */
+	public void setRecurrenceCache(RecurrenceCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Calculates the occurrences that overlap with the given date range.
+	 * @param from the start of the range (inclusive)
+	 * @param to the end of the range (exclusive)
+	 * @param timezone the timezone to iterate in. This is needed in order to
+	 * adjust for when the iterator passes over a daylight savings boundary.
+	 * @return the occurrences, sorted by start date
+	 */
+	public List<Occurrence> expand(Date from, Date to, TimeZone timezone) {
+		List<Occurrence> occurrences = new ArrayList<Occurrence>();
+		Iterator<Occurrence> it = iterator(from, to, timezone);
+		while (it.hasNext()) {
+			occurrences.add(it.next());
+		}
+		return occurrences;
+	}
+
+	/**
+	 * Calculates the occurrences that overlap with the given date range. Each
+	 * component is iterated over separately, and the results are merged as the
+	 * iterator is consumed. An occurrence is only calculated when the iterator
+	 * gets close to it, so it is cheap to stop iterating early.
+	 * @param from the start of the range (inclusive)
+	 * @param to the end of the range (exclusive)
+	 * @param timezone the timezone to iterate in. This is needed in order to
+	 * adjust for when the iterator passes over a daylight savings boundary.
+	 * @return the occurrences, sorted by start date
+	 */
+	public Iterator<Occurrence> iterator(Date from, Date to, TimeZone timezone) {
+		List<Iterator<Occurrence>> iterators = new ArrayList<Iterator<Occurrence>>(series.size());
+		for (Series s : series) {
+			s.iterators(from, to, timezone, cache, iterators);
+		}
+		return new MergingIterator(iterators);
+	}
+
+	/**
+	 * Gets the number of series (master components and their modified
+	 * instances) that the components were grouped into.
+	 * @return the number of series
+	 */
+	int getSeriesCount() {
+		return series.size();
+	}
+
+	/**
+	 * Calculates the occurrences of a single series that overlap with the
+	 * given date range.
+	 * @param index the index of the series
+	 * @param from the start of the range (inclusive)
+	 * @param to the end of the range (exclusive)
+	 * @param timezone the timezone to iterate in
+	 * @return the occurrences, sorted by start date
+	 */
+	List<Occurrence> expandSeries(int index, Date from, Date to, TimeZone timezone) {
+		List<Iterator<Occurrence>> iterators = new ArrayList<Iterator<Occurrence>>();
+		series.get(index).iterators(from, to, timezone, cache, iterators);
+
+		List<Occurrence> occurrences = new ArrayList<Occurrence>();
+		Iterator<Occurrence> it = new MergingIterator(iterators);
+		while (it.hasNext()) {
+			occurrences.add(it.next());
+		}
+		return occurrences;
+	}
+
+	/**
+	 * Determines if an occurrence overlaps with a date range.
+	 * @param start the start of the occurrence
+	 * @param end the end of the occurrence
+	 * @param from the start of the range (inclusive)
+	 * @param to the end of the range (exclusive)
+	 * @return true if it overlaps, false if not
+	 */
+	static boolean overlaps(Date start, Date end, Date from, Date to) {
+		if (!start.before(to)) {
+			return false;
+		}
+		return end.after(from) || (end.equals(start) && !start.before(from));
+	}
+
+	/**
+	 * A master component and its modified instances.
+	 */
+	private static class Series {
+		private ICalComponent master;
+		private final List<ICalComponent> overrides = new ArrayList<ICalComponent>();
+
+		/**
+		 * The RECURRENCE-ID values of all the modified instances.
+		 */
+		private final Set<Long> overridden = new HashSet<Long>();
+
+		/**
+		 * The modified instances that have a RANGE of THISANDFUTURE, sorted by
+		 * RECURRENCE-ID.
+		 */
+		private final List<RangeOverride> ranges = new ArrayList<RangeOverride>();
+
+		public void init() {
+			for (ICalComponent override : overrides) {
+				RecurrenceId recurrenceId = override.getProperty(RecurrenceId.class);
+				ICalDate rid = recurrenceId.getValue();
+				overridden.add(rid.getTime());
+
+				if (recurrenceId.getRange() != Range.THIS_AND_FUTURE) {
+					continue;
+				}
+
+				ICalDate start = ValuedProperty.getValue(override.getProperty(DateStart.class));
+				if (start == null) {
+					continue;
+				}
+
+				ranges.add(new RangeOverride(override, rid, start));
+			}
+
+			Collections.sort(ranges, new Comparator<RangeOverride>() {
+				public int compare(RangeOverride a, RangeOverride b) {
+					return a.recurrenceId.compareTo(b.recurrenceId);
+				}
+			});
+		}
+
+		/**
+		 * Creates the iterators that the occurrences of this series come from.
+		 * The occurrences of the master are split up at each THISANDFUTURE
+		 * instance, because each part is shifted by a different amount of
+		 * time. Each iterator is sorted by start date.
+		 * @param from the start of the range (inclusive)
+		 * @param to the end of the range (exclusive)
+		 * @param timezone the timezone to iterate in
+		 * @param cache the cache or null not to use a cache
+		 * @param iterators the list to add the iterators to
+		 */
+		public void iterators(Date from, Date to, TimeZone timezone, RecurrenceCache cache, List<Iterator<Occurrence>> iterators) {
+			if (master != null) {
+				long end = ranges.isEmpty() ? Long.MAX_VALUE : ranges.get(0).recurrenceId.getTime();
+				Iterator<Occurrence> it = Google2445Utils.occurrenceIterator(master, from, to, timezone, cache);
+				iterators.add(new MasterIterator(it, null, null, Long.MIN_VALUE, end, from, to));
+
+				for (int i = 0; i < ranges.size(); i++) {
+					RangeOverride range = ranges.get(i);
+					long start = range.recurrenceId.getTime();
+					end = (i + 1 < ranges.size()) ? ranges.get(i + 1).recurrenceId.getTime() : Long.MAX_VALUE;
+					Long length = range.getLength(timezone);
+
+					//find the occurrences that are shifted into the range
+					long masterFrom = Math.max(start, from.getTime() - range.shift - ((length == null) ? 0 : length));
+					long masterTo = to.getTime() - range.shift;
+					if (masterFrom >= masterTo) {
+						continue;
+					}
+
+					it = Google2445Utils.occurrenceIterator(master, new Date(masterFrom), new Date(masterTo), timezone, cache);
+					iterators.add(new MasterIterator(it, range, length, start, end, from, to));
+				}
+			}
+
+			for (ICalComponent override : overrides) {
+				ICalDate rid = ValuedProperty.getValue(override.getProperty(RecurrenceId.class));
+				Iterator<Occurrence> it = Google2445Utils.occurrenceIterator(override, from, to, timezone, cache);
+				iterators.add(new OverrideIterator(override, rid, it));
+			}
+		}
+
+		/**
+		 * Iterates over the master's occurrences that have recurrence IDs
+		 * within a range, skipping the ones that were modified.
+		 */
+		private class MasterIterator implements Iterator<Occurrence> {
+			private final Iterator<Occurrence> it;
+			private final RangeOverride range;
+			private final Long length;
+			private final long start, end;
+			private final Date from, to;
+			private Occurrence next;
+
+			/**
+			 * @param it the master's occurrences
+			 * @param range the THISANDFUTURE instance to apply or null for none
+			 * @param length the length of the THISANDFUTURE instance or null to
+			 * keep the length of each occurrence
+			 * @param start the first recurrence ID (inclusive)
+			 * @param end the last recurrence ID (exclusive)
+			 * @param from the start of the range (inclusive)
+			 * @param to the end of the range (exclusive)
+			 */
+			public MasterIterator(Iterator<Occurrence> it, RangeOverride range, Long length, long start, long end, Date from, Date to) {
+				this.it = it;
+				this.range = range;
+				this.length = length;
+				this.start = start;
+				this.end = end;
+				this.from = from;
+				this.to = to;
+			}
+
+			public boolean hasNext() {
+				if (next == null) {
+					next = fetch();
+				}
+				return next != null;
+			}
+
+			public Occurrence next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				Occurrence occurrence = next;
+				next = null;
+				return occurrence;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+			private Occurrence fetch() {
+				while (it.hasNext()) {
+					Occurrence occurrence = it.next();
+					long rid = occurrence.getRecurrenceId().getTime();
+					if (rid < start || overridden.contains(rid)) {
+						continue;
+					}
+					if (rid >= end) {
+						return null;
+					}
+
+					if (range != null) {
+						occurrence = range.apply(occurrence, length);
+					}
+					if (overlaps(occurrence.getStart(), occurrence.getEnd(), from, to)) {
+						return occurrence;
+					}
+				}
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Iterates over the occurrences of a modified instance.
+	 */
+	private static class OverrideIterator implements Iterator<Occurrence> {
+		private final ICalComponent override;
+		private final ICalDate recurrenceId;
+		private final Iterator<Occurrence> it;
+
+		public OverrideIterator(ICalComponent override, ICalDate recurrenceId, Iterator<Occurrence> it) {
+			this.override = override;
+			this.recurrenceId = recurrenceId;
+			this.it = it;
+		}
+
+		public boolean hasNext() {
+			return it.hasNext();
+		}
+
+		public Occurrence next() {
+			Occurrence occurrence = it.next();
+			return new Occurrence(override, occurrence.getStart(), occurrence.getEnd(), recurrenceId, occurrence.isAllDay());
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * A modified instance whose changes apply to all later occurrences.
+	 */
+	private static class RangeOverride {
+		private final ICalComponent component;
+		private final ICalDate recurrenceId;
+		private final ICalDate start;
+		private final long shift;
+
+		public RangeOverride(ICalComponent component, ICalDate recurrenceId, ICalDate start) {
+			this.component = component;
+			this.recurrenceId = recurrenceId;
+			this.start = start;
+			shift = start.getTime() - recurrenceId.getTime();
+		}
+
+		/**
+		 * Calculates the length of the modified instance.
+		 * @param timezone the timezone to calculate the length in
+		 * @return the length in milliseconds or null if the instance has no
+		 * occurrences
+		 */
+		public Long getLength(TimeZone timezone) {
+			List<Occurrence> own = Google2445Utils.expand(component, start, new Date(start.getTime() + 1), timezone);
+			return own.isEmpty() ? null : own.get(0).getDurationMillis();
+		}
+
+		/**
+		 * Applies the changes to an occurrence of the master.
+		 * @param occurrence the occurrence
+		 * @param length the length of the modified instance (see
+		 * {@link #getLength}) or null to keep the occurrence's length
+		 * @return the changed occurrence
+		 */
+		public Occurrence apply(Occurrence occurrence, Long length) {
+			long start = occurrence.getStart().getTime() + shift;
+			long millis = (length == null) ? occurrence.getDurationMillis() : length;
+			boolean hasTime = !occurrence.isAllDay();
+
+			ICalDate newStart = new ICalDate(new Date(start), hasTime);
+			ICalDate newEnd = new ICalDate(new Date(start + millis), hasTime);
+			return new Occurrence(component, newStart, newEnd, occurrence.getRecurrenceId(), occurrence.isAllDay());
+		}
+	}
+
+	/**
+	 * Merges multiple sorted iterators into a single sorted iterator.
+	 */
+	static class MergingIterator implements Iterator<Occurrence> {
+		private final PriorityQueue<Head> queue;
+
+		public MergingIterator(List<Iterator<Occurrence>> iterators) {
+			queue = new PriorityQueue<Head>(Math.max(1, iterators.size()));
+			for (Iterator<Occurrence> it : iterators) {
+				if (it.hasNext()) {
+					queue.add(new Head(it.next(), it));
+				}
+			}
+		}
+
+		public boolean hasNext() {
+			return !queue.isEmpty();
+		}
+
+		public Occurrence next() {
+			Head head = queue.poll();
+			if (head == null) {
+				throw new NoSuchElementException();
+			}
+
+			Occurrence next = head.occurrence;
+			if (head.iterator.hasNext()) {
+				head.occurrence = head.iterator.next();
+				queue.add(head);
+			}
+			return next;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private static class Head implements Comparable<Head> {
+			private Occurrence occurrence;
+			private final Iterator<Occurrence> iterator;
+
+			public Head(Occurrence occurrence, Iterator<Occurrence> iterator) {
+				this.occurrence = occurrence;
+				this.iterator = iterator;
+			}
+
+			public int compareTo(Head other) {
+				return START_ORDER.compare(occurrence, other.occurrence);
+			}
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package biweekly.util;
+
+import java.util.Date;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Two occurrences that overlap, and that involve the same person.
+ * @author Michael Angstadt
+ * @see ConflictDetector
+ */
+public final class Conflict {
+	private final String address;
+	private final Occurrence first;
+	private final Occurrence second;
+
+	/**
+	 * Creates a new conflict.
+	 * @param address the email address or URI of the person
+	 * @param first the occurrence that starts first
+	 * @param second the occurrence that starts second
+	 */
+	public Conflict(String address, Occurrence first, Occurrence second) {
+		this.address = address;
+		this.first = first;
+		this.second = second;
+	}
+
+	/**
+	 * Gets the email address or URI of the person that is double-booked.
+	 * Email addresses are in lower case.
+	 * @return the address
+	 */
+	public String getAddress() {
+		return address;
+	}
+
+	/**
+	 * Gets the occurrence that starts first.
+	 * @return the occurrence
+	 */
+	public Occurrence getFirst() {
+		return first;
+	}
+
+	/**
+	 * Gets the occurrence that starts second.
+	 * @return the occurrence
+	 */
+	public Occurrence getSecond() {
+		return second;
+	}
+
+	/**
+	 * Gets the start of the time that the occurrences overlap.
+	 * @return the start of the overlap
+	 */
+	public Date getStart() {
+		return second.getStart();
+	}
+
+	/**
+	 * Gets the end of the time that the occurrences overlap.
+	 * @return the end of the overlap
+	 */
+	public Date getEnd() {
+		return first.getEnd().before(second.getEnd()) ? first.getEnd() : second.getEnd();
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((address == null) ? 0 : address.hashCode());
+		result = prime * result + ((first == null) ? 0 : first.hashCode());
+		result = prime * result + ((second == null) ? 0 : second.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (obj == null) return false;
+		if (getClass() != obj.getClass()) return false;
+		Conflict other = (Conflict) obj;
+		if (address == null) {
+			if (other.address != null) return false;
+		} else if (!address.equals(other.address)) return false;
+		if (first == null) {
+			if (other.first != null) return false;
+		} else if (!first.equals(other.first)) return false;
+		if (second == null) {
+			if (other.second != null) return false;
+		} else if (!second.equals(other.second)) return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "Conflict [address=" + address + ", first=" + first + ", second=" + second + "]";
+	}
+}
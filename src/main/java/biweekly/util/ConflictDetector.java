@@ -0,0 +1,276 @@
+package biweekly.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import biweekly.ICalendar;
+import biweekly.component.ICalComponent;
+import biweekly.component.VEvent;
+import biweekly.parameter.ParticipationStatus;
+import biweekly.property.Attendee;
+import biweekly.property.Organizer;
+import biweekly.property.Status;
+import biweekly.property.Transparency;
+import biweekly.property.Uid;
+import biweekly.property.ValuedProperty;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * <p>
+ * Finds the people that are double-booked: the organizers and attendees
+ * whose events overlap with each other.
+ * </p>
+ * <p>
+ * The recurring events are expanded with a {@link CalendarExpander}, so
+ * modified instances are taken into account. The events of each iCalendar
+ * object are expanded separately, so an event that is in more than one
+ * calendar gets its own modified instances from each calendar. An occurrence
+ * that has the same UID and RECURRENCE-ID as an earlier occurrence is
+ * treated as a copy of it and is ignored. People are identified by the
+ * email address (or, if there is none, the URI) of the event's
+ * {@link Organizer} and {@link Attendee} properties. Email addresses are
+ * compared without regard to case.
+ * </p>
+ * <p>
+ * The following occurrences are ignored:
+ * </p>
+ * <ul>
+ * <li>Occurrences that are {@link Transparency transparent} or cancelled, or
+ * that take up no time.</li>
+ * <li>For an attendee, occurrences that the attendee has
+ * {@link ParticipationStatus#DECLINED declined}.</li>
+ * </ul>
+ * <p>
+ * The occurrences come out of the expander sorted by start date, so each
+ * person's overlaps are found with a single sweep. For each person, the
+ * occurrences that have not ended yet are kept, and each new occurrence is
+ * compared only with those. The detection takes <i>O(n log n + k)</i> time,
+ * where <i>n</i> is the number of occurrences and <i>k</i> is the number of
+ * conflicts.
+ * </p>
+ * <p>
+ * <b>Example:</b>
+ * </p>
+ *
+ * <pre class="brush:java">
+ * ConflictDetector detector = new ConflictDetector();
+ * for (ICalendar ical : tenant) {
+ *   detector.add(ical);
+ * }
+ * for (Conflict conflict : detector.detect(from, to, TimeZone.getDefault())) {
+ *   ...
+ * }
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class ConflictDetector {
+	private final List<List<VEvent>> calendars = new ArrayList<List<VEvent>>();
+	private final List<VEvent> events = new ArrayList<VEvent>();
+	private List<CalendarExpander> expanders;
+	private RecurrenceCache cache;
+
+	/**
+	 * Adds all of the events in an iCalendar object.
+	 * @param ical the iCalendar object
+	 */
+	public void add(ICalendar ical) {
+		calendars.add(new ArrayList<VEvent>(ical.getEvents()));
+		expanders = null;
+	}
+
+	/**
+	 * Adds a component. Components other than events are ignored.
+	 * @param component the component
+	 */
+	public void add(ICalComponent component) {
+		if (component instanceof VEvent) {
+			events.add((VEvent) component);
+			expanders = null;
+		}
+	}
+
+	/**
+	 * Gets the cache that the expansions of recurrence rules are stored in.
+	 * @return the cache or null if a cache is not being used (default)
+	 */
+	public RecurrenceCache getRecurrenceCache() {
+		return cache;
+	}
+
+	/**
+	 * Sets the cache that the expansions of recurrence rules are stored in.
+	 * @param cache the cache or null not to use a cache (default)
+	 */
+	public void setRecurrenceCache(RecurrenceCache cache) {
+		this.cache = cache;
+		if (expanders != null) {
+			for (CalendarExpander expander : expanders) {
+				expander.setRecurrenceCache(cache);
+			}
+		}
+	}
+
+	/**
+	 * Finds the overlapping occurrences within a date range.
+	 * @param from the start of the range (inclusive)
+	 * @param to the end of the range (exclusive)
+	 * @param timezone the timezone to iterate in. This is needed in order to
+	 * adjust for when the iterator passes over a daylight savings boundary.
+	 * @return the conflicts, sorted by the start date of the second
+	 * occurrence. Each pair of occurrences is reported once for each person
+	 * they have in common.
+	 */
+	public List<Conflict> detect(Date from, Date to, TimeZone timezone) {
+		/*
+		 * The occurrences of each person that have not ended before the start
+		 * of the current occurrence.
+		 */
+		Map<String, List<Occurrence>> active = new HashMap<String, List<Occurrence>>();
+
+		/*
+		 * The UIDs and RECURRENCE-IDs of the occurrences that have been
+		 * seen, so that copies of the same occurrence are not compared with
+		 * each other.
+		 */
+		Set<String> seen = new HashSet<String>();
+
+		List<Conflict> conflicts = new ArrayList<Conflict>();
+		Iterator<Occurrence> it = iterator(from, to, timezone);
+		while (it.hasNext()) {
+			Occurrence occurrence = it.next();
+			long start = occurrence.getStart().getTime();
+			if (occurrence.getEnd().getTime() <= start || !blocksTime(occurrence.getComponent())) {
+				continue;
+			}
+
+			String uid = ValuedProperty.getValue(occurrence.getComponent().getProperty(Uid.class));
+			if (uid != null && !seen.add(occurrence.getRecurrenceId().getTime() + " " + uid)) {
+				continue;
+			}
+
+			for (String address : addresses(occurrence.getComponent())) {
+				List<Occurrence> occurrences = active.get(address);
+				if (occurrences == null) {
+					occurrences = new ArrayList<Occurrence>();
+					active.put(address, occurrences);
+				}
+
+				for (Iterator<Occurrence> it2 = occurrences.iterator(); it2.hasNext();) {
+					Occurrence other = it2.next();
+					if (other.getEnd().getTime() <= start) {
+						it2.remove();
+						continue;
+					}
+					conflicts.add(new Conflict(address, other, occurrence));
+				}
+				occurrences.add(occurrence);
+			}
+		}
+		return conflicts;
+	}
+
+	/**
+	 * Iterates over the occurrences of all the events, sorted by start date.
+	 */
+	private Iterator<Occurrence> iterator(Date from, Date to, TimeZone timezone) {
+		if (expanders == null) {
+			expanders = new ArrayList<CalendarExpander>(calendars.size() + 1);
+			for (List<VEvent> calendar : calendars) {
+				expanders.add(new CalendarExpander(calendar));
+			}
+			if (!events.isEmpty()) {
+				expanders.add(new CalendarExpander(events));
+			}
+			for (CalendarExpander expander : expanders) {
+				expander.setRecurrenceCache(cache);
+			}
+		}
+
+		if (expanders.isEmpty()) {
+			return Collections.<Occurrence> emptyList().iterator();
+		}
+		if (expanders.size() == 1) {
+			return expanders.get(0).iterator(from, to, timezone);
+		}
+		return new Agenda(expanders).iterator(from, to, timezone);
+	}
+
+	/**
+	 * Determines if a component's occurrences take up time.
+	 * @param component the component
+	 * @return true if they take up time, false if not
+	 */
+	private static boolean blocksTime(ICalComponent component) {
+		Transparency transparency = component.getProperty(Transparency.class);
+		if (transparency != null && transparency.isTransparent()) {
+			return false;
+		}
+
+		Status status = component.getProperty(Status.class);
+		return status == null || !status.isCancelled();
+	}
+
+	/**
+	 * Gets the addresses of the people that a component involves.
+	 * @param component the component
+	 * @return the addresses of the organizer and of the attendees that have
+	 * not declined
+	 */
+	private static Set<String> addresses(ICalComponent component) {
+		Set<String> addresses = new LinkedHashSet<String>();
+
+		Organizer organizer = component.getProperty(Organizer.class);
+		if (organizer != null) {
+			add(organizer.getEmail(), organizer.getUri(), addresses);
+		}
+
+		for (Attendee attendee : component.getProperties(Attendee.class)) {
+			if (attendee.getParticipationStatus() != ParticipationStatus.DECLINED) {
+				add(attendee.getEmail(), attendee.getUri(), addresses);
+			}
+		}
+
+		return addresses;
+	}
+
+	private static void add(String email, String uri, Set<String> addresses) {
+		if (email != null) {
+			addresses.add(email.toLowerCase());
+		} else if (uri != null) {
+			addresses.add(uri);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package biweekly.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import biweekly.util.com.google.ical.iter.DateSet;
+import biweekly.util.com.google.ical.util.PackedDates;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * <p>
+ * Caches the {@link DateSet} objects that the values of RDATE and EXDATE
+ * properties are converted to, so the dates do not have to be converted and
+ * sorted every time a component is iterated over.
+ * </p>
+ * <p>
+ * The lists are compared by identity, so looking one up does not hash its
+ * contents, and a list that is modified while it is in the cache cannot
+ * corrupt the cache. Because the lists (and the dates in them) are mutable,
+ * the dates that a set was built from are recorded, and the set is built
+ * again if they have changed. An entry is discarded when its list is garbage
+ * collected.
+ * </p>
+ * <p>
+ * This class is thread-safe. Lookups do not lock, so threads that iterate
+ * over components at the same time do not wait for each other. If two
+ * threads build the set of the same list at the same time, the set is built
+ * twice and one of them is kept.
+ * </p>
+ * @author Michael Angstadt
+ */
+class DateSetCache {
+	private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+	private final ReferenceQueue<List<ICalDate>> queue = new ReferenceQueue<List<ICalDate>>();
+
+	/**
+	 * Gets the set of a list of dates, building it if it is not cached or if
+	 * the list has changed.
+	 * @param dates the dates
+	 * @return the set
+	 */
+	public DateSet get(List<ICalDate> dates) {
+		expunge();
+
+		Key key = new Key(dates, null);
+		Entry entry = entries.get(key);
+		if (entry == null || !entry.matches(dates)) {
+			entry = new Entry(dates);
+			entries.put(new Key(dates, queue), entry);
+		}
+		return entry.set;
+	}
+
+	/**
+	 * Gets the number of lists that are cached.
+	 * @return the number of lists
+	 */
+	public int size() {
+		expunge();
+		return entries.size();
+	}
+
+	/**
+	 * Removes the entries whose lists have been garbage collected.
+	 */
+	private void expunge() {
+		Object key;
+		while ((key = queue.poll()) != null) {
+			entries.remove(key);
+		}
+	}
+
+	/**
+	 * Refers to a list by identity, without keeping it from being garbage
+	 * collected.
+	 */
+	private static class Key extends WeakReference<List<ICalDate>> {
+		private final int hash;
+
+		public Key(List<ICalDate> dates, ReferenceQueue<List<ICalDate>> queue) {
+			super(dates, queue);
+			hash = System.identityHashCode(dates);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof Key)) return false;
+			List<ICalDate> dates = get();
+			return dates != null && dates == ((Key) obj).get();
+		}
+	}
+
+	/**
+	 * A set and the dates it was built from.
+	 */
+	private static class Entry {
+		private final long[] times;
+		private final boolean[] hasTimes;
+		private final DateSet set;
+
+		public Entry(List<ICalDate> dates) {
+			int size = dates.size();
+			times = new long[size];
+			hasTimes = new boolean[size];
+			long[] packed = new long[size];
+			for (int i = 0; i < size; i++) {
+				ICalDate date = dates.get(i);
+				times[i] = date.getTime();
+				hasTimes[i] = date.hasTime();
+				packed[i] = PackedDates.pack(Google2445Utils.convertUtc(date));
+			}
+			set = new DateSet(packed);
+		}
+
+		/**
+		 * Determines if the set was built from the given dates.
+		 * @param dates the dates
+		 * @return true if the dates are the same as when the set was built,
+		 * false if not
+		 */
+		public boolean matches(List<ICalDate> dates) {
+			if (dates.size() != times.length) {
+				return false;
+			}
+			for (int i = 0; i < times.length; i++) {
+				ICalDate date = dates.get(i);
+				if (date.getTime() != times[i] || date.hasTime() != hasTimes[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
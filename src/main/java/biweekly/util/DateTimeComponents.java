@@ -421,4 +421,118 @@ public final class DateTimeComponents implements Comparable<DateTimeComponents>,
 	public boolean after(DateTimeComponents that) {
 		return this.compareTo(that) > 0;
 	}
+
+	/*
+	 * Packed representation, used by ICalDate to avoid holding a separate
+	 * DateTimeComponents object for every date value. From the lowest bit:
+	 * 1 bit "is packed" flag, 1 bit hasTime, 1 bit utc, then 7 bits each for
+	 * second, minute, hour, date and month, then the year (signed) in the
+	 * remaining 26 bits. A value of 0 means "nothing packed".
+	 */
+	private static final int FIELD_BITS = 7;
+	private static final int FIELD_MAX = (1 << FIELD_BITS) - 1;
+	private static final int YEAR_SHIFT = 3 + FIELD_BITS * 5;
+	private static final int YEAR_MIN = -(1 << (63 - YEAR_SHIFT)), YEAR_MAX = (1 << (63 - YEAR_SHIFT)) - 1;
+
+	/**
+	 * Packs these components into a single long value.
+	 * @return the packed value or 0 if one or more of the components are out
+	 * of range and cannot be packed
+	 * @see #unpack(long)
+	 */
+	/* package */long pack() {
+		if (!fits(month) || !fits(date) || !fits(hour) || !fits(minute) || !fits(second) || year < YEAR_MIN || year > YEAR_MAX) {
+			return 0;
+		}
+
+		long packed = 1;
+		if (hasTime) {
+			packed |= 2;
+		}
+		if (utc) {
+			packed |= 4;
+		}
+		packed |= (long) second << 3;
+		packed |= (long) minute << (3 + FIELD_BITS);
+		packed |= (long) hour << (3 + FIELD_BITS * 2);
+		packed |= (long) date << (3 + FIELD_BITS * 3);
+		packed |= (long) month << (3 + FIELD_BITS * 4);
+		packed |= (long) year << YEAR_SHIFT;
+		return packed;
+	}
+
+	/**
+	 * Rebuilds a components object from a value that was created with
+	 * {@link #pack()}.
+	 * @param packed the packed value
+	 * @return the components object or null if the value is 0
+	 */
+	/* package */static DateTimeComponents unpack(long packed) {
+		if ((packed & 1) == 0) {
+			return null;
+		}
+
+		boolean hasTime = (packed & 2) != 0;
+		return new DateTimeComponents(year(packed), field(packed, 4), field(packed, 3), field(packed, 2), field(packed, 1), field(packed, 0), isUtc(packed), hasTime);
+	}
+
+	/**
+	 * Compares two packed values the same way as
+	 * {@link #compareTo(DateTimeComponents)}.
+	 * @param left the first value created with {@link #pack()}
+	 * @param right the second value created with {@link #pack()}
+	 * @return a negative number, zero, or a positive number
+	 */
+	/* package */static int comparePacked(long left, long right) {
+		//the fields are ordered from the year down to the second, above the flag bits
+		left >>= 3;
+		right >>= 3;
+		return (left < right) ? -1 : (left == right) ? 0 : 1;
+	}
+
+	/**
+	 * Determines if a packed value is in UTC.
+	 * @param packed the value created with {@link #pack()}
+	 * @return true if it's in UTC, false if not
+	 */
+	/* package */static boolean isUtc(long packed) {
+		return (packed & 4) != 0;
+	}
+
+	/**
+	 * Converts a packed value to a {@link Date} object, like
+	 * {@link #toDate(Calendar)}.
+	 * @param packed the value created with {@link #pack()}
+	 * @param c the calendar object to use
+	 * @return the date object
+	 */
+	/* package */static Date toDate(long packed, Calendar c) {
+		c.clear();
+		c.set(Calendar.YEAR, year(packed));
+		c.set(Calendar.MONTH, field(packed, 4) - 1);
+		c.set(Calendar.DATE, field(packed, 3));
+		c.set(Calendar.HOUR_OF_DAY, field(packed, 2));
+		c.set(Calendar.MINUTE, field(packed, 1));
+		c.set(Calendar.SECOND, field(packed, 0));
+		return c.getTime();
+	}
+
+	/**
+	 * Gets a field of a packed value.
+	 * @param packed the packed value
+	 * @param index 0 for the second, 1 for the minute, 2 for the hour, 3 for
+	 * the date, 4 for the month
+	 * @return the field
+	 */
+	private static int field(long packed, int index) {
+		return (int) (packed >>> (3 + FIELD_BITS * index)) & FIELD_MAX;
+	}
+
+	private static int year(long packed) {
+		return (int) (packed >> YEAR_SHIFT);
+	}
+
+	private static boolean fits(int field) {
+		return field >= 0 && field <= FIELD_MAX;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,420 @@
+package biweekly.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import biweekly.component.VFreeBusy;
+import biweekly.parameter.FreeBusyType;
+import biweekly.property.FreeBusy;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * <p>
+ * Records which parts of a window of time are busy, using one bit for each
+ * fixed-length slot (for example, 15 minutes). A bitmap is much smaller than
+ * a list of {@link Period periods}, and combining the bitmaps of many people
+ * is done 64 slots at a time, which makes it well suited for finding a time
+ * when everyone is free.
+ * </p>
+ * <p>
+ * A slot is busy if any part of it is busy. The type of busy time (e.g.
+ * {@link FreeBusyType#BUSY_TENTATIVE BUSY-TENTATIVE}) is not recorded.
+ * </p>
+ * <p>
+ * <b>Example:</b>
+ * </p>
+ *
+ * <pre class="brush:java">
+ * FreeBusyBitmap everyone = new FreeBusyBitmap(from, to, 15);
+ * for (VFreeBusy attendee : replies) {
+ *   everyone.add(attendee);
+ * }
+ * Duration hour = Duration.builder().hours(1).build();
+ * List&lt;Period&gt; times = everyone.findFree(hour, 3);
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class FreeBusyBitmap {
+	private final long start, end, slotMillis;
+	private final int slots;
+
+	/**
+	 * The busy slots. Bit <i>i</i> of word <i>i / 64</i> is set if slot
+	 * <i>i</i> is busy.
+	 */
+	private final long[] words;
+
+	/**
+	 * Creates a bitmap in which every slot is free.
+	 * @param start the start of the window (inclusive)
+	 * @param end the end of the window (exclusive). If the window is not a
+	 * whole number of slots long, the last slot is cut short.
+	 * @param slotMinutes the length of each slot, in minutes
+	 * @throws IllegalArgumentException if the window is empty or the slot
+	 * length is not positive
+	 */
+	public FreeBusyBitmap(Date start, Date end, int slotMinutes) {
+		if (slotMinutes <= 0) {
+			throw new IllegalArgumentException("Slot length must be positive.");
+		}
+		if (!end.after(start)) {
+			throw new IllegalArgumentException("The end of the window must come after the start.");
+		}
+
+		this.start = start.getTime();
+		this.end = end.getTime();
+		slotMillis = slotMinutes * 60 * 1000L;
+
+		long count = (this.end - this.start + slotMillis - 1) / slotMillis;
+		if (count > Integer.MAX_VALUE - 63) {
+			throw new IllegalArgumentException("Too many slots.");
+		}
+		slots = (int) count;
+		words = new long[(slots + 63) / 64];
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param original the bitmap to make a copy of
+	 */
+	public FreeBusyBitmap(FreeBusyBitmap original) {
+		start = original.start;
+		end = original.end;
+		slotMillis = original.slotMillis;
+		slots = original.slots;
+		words = original.words.clone();
+	}
+
+	/**
+	 * Gets the start of the window.
+	 * @return the start of the window
+	 */
+	public Date getStart() {
+		return new Date(start);
+	}
+
+	/**
+	 * Gets the end of the window.
+	 * @return the end of the window
+	 */
+	public Date getEnd() {
+		return new Date(end);
+	}
+
+	/**
+	 * Gets the length of each slot.
+	 * @return the length in minutes
+	 */
+	public int getSlotMinutes() {
+		return (int) (slotMillis / (60 * 1000));
+	}
+
+	/**
+	 * Gets the number of slots in the window.
+	 * @return the number of slots
+	 */
+	public int getSlotCount() {
+		return slots;
+	}
+
+	/**
+	 * Determines if a slot is busy.
+	 * @param slot the index of the slot
+	 * @return true if it is busy, false if it is free
+	 * @throws IndexOutOfBoundsException if the slot is not in the window
+	 */
+	public boolean isBusy(int slot) {
+		if (slot < 0 || slot >= slots) {
+			throw new IndexOutOfBoundsException("Slot " + slot + " is not in the window.");
+		}
+		return (words[slot >> 6] & (1L << slot)) != 0;
+	}
+
+	/**
+	 * Determines if any part of a period of time is busy.
+	 * @param from the start of the period (inclusive)
+	 * @param to the end of the period (exclusive)
+	 * @return true if any slot that overlaps with the period is busy, false if
+	 * not. The parts of the period that are outside of the window are
+	 * considered free.
+	 */
+	public boolean isBusy(Date from, Date to) {
+		int first = firstSlot(from.getTime());
+		int last = lastSlot(to.getTime());
+		return first < last && nextBusy(first) < last;
+	}
+
+	/**
+	 * Marks a period of time as busy. Every slot that overlaps with the period
+	 * is marked busy.
+	 * @param from the start of the period (inclusive)
+	 * @param to the end of the period (exclusive)
+	 */
+	public void addBusy(Date from, Date to) {
+		setRange(firstSlot(from.getTime()), lastSlot(to.getTime()));
+	}
+
+	/**
+	 * Marks the periods of a {@link FreeBusy} property as busy. Nothing
+	 * happens if the property's type is {@link FreeBusyType#FREE FREE}.
+	 * @param freeBusy the property
+	 */
+	public void add(FreeBusy freeBusy) {
+		if (freeBusy.getType() == FreeBusyType.FREE) {
+			return;
+		}
+
+		for (Period period : freeBusy.getValues()) {
+			ICalDate from = period.getStartDate();
+			if (from == null) {
+				continue;
+			}
+
+			Date to = period.getEndDate();
+			if (to == null) {
+				Duration duration = period.getDuration();
+				if (duration == null) {
+					continue;
+				}
+				to = duration.add(from);
+			}
+
+			addBusy(from, to);
+		}
+	}
+
+	/**
+	 * Marks the busy periods of a free/busy component as busy.
+	 * @param freeBusy the component
+	 */
+	public void add(VFreeBusy freeBusy) {
+		for (FreeBusy property : freeBusy.getFreeBusy()) {
+			add(property);
+		}
+	}
+
+	/**
+	 * Marks every slot that is busy in another bitmap as busy in this one. Use
+	 * this to find the times when anyone is busy.
+	 * @param other the other bitmap
+	 * @throws IllegalArgumentException if the bitmaps do not have the same
+	 * window and slot length
+	 */
+	public void or(FreeBusyBitmap other) {
+		checkSameSlots(other);
+		for (int i = 0; i < words.length; i++) {
+			words[i] |= other.words[i];
+		}
+	}
+
+	/**
+	 * Marks every slot that is free in another bitmap as free in this one. Use
+	 * this to find the times when everyone is busy.
+	 * @param other the other bitmap
+	 * @throws IllegalArgumentException if the bitmaps do not have the same
+	 * window and slot length
+	 */
+	public void and(FreeBusyBitmap other) {
+		checkSameSlots(other);
+		for (int i = 0; i < words.length; i++) {
+			words[i] &= other.words[i];
+		}
+	}
+
+	/**
+	 * Finds the earliest free periods of a given length. The periods start at
+	 * the beginning of a slot and do not overlap. Once a period is found, the
+	 * search continues from the end of that period.
+	 * @param duration the length of each period
+	 * @param max the most periods to return
+	 * @return the periods, sorted by start date
+	 * @throws IllegalArgumentException if the duration is not positive
+	 */
+	public List<Period> findFree(Duration duration, int max) {
+		long millis = duration.toMillis();
+		if (millis <= 0) {
+			throw new IllegalArgumentException("Duration must be positive.");
+		}
+
+		List<Period> found = new ArrayList<Period>();
+		int length = (int) Math.min(slots + 1L, (millis + slotMillis - 1) / slotMillis);
+		int slot = 0;
+		while (found.size() < max) {
+			slot = nextFree(slot);
+			long from = start + slot * slotMillis;
+			if (from + millis > end) {
+				break;
+			}
+
+			int busy = nextBusy(slot);
+			if (busy - slot >= length) {
+				found.add(new Period(new Date(from), new Date(from + millis)));
+				slot += length;
+			} else {
+				slot = busy;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Converts the bitmap to a free/busy component. Each run of busy slots
+	 * becomes a {@link FreeBusyType#BUSY BUSY} period.
+	 * @return the component, whose start and end dates are the window
+	 */
+	public VFreeBusy toFreeBusy() {
+		VFreeBusy freeBusy = new VFreeBusy();
+		freeBusy.setDateStart(getStart());
+		freeBusy.setDateEnd(getEnd());
+
+		int slot = nextBusy(0);
+		while (slot < slots) {
+			int free = nextFree(slot);
+			long to = Math.min(end, start + free * slotMillis);
+			freeBusy.addFreeBusy(FreeBusyType.BUSY, new Date(start + slot * slotMillis), new Date(to));
+			slot = nextBusy(free);
+		}
+		return freeBusy;
+	}
+
+	/**
+	 * Finds the first busy slot at or after a slot.
+	 * @param slot the slot to start at
+	 * @return the busy slot or the number of slots if there is none
+	 */
+	private int nextBusy(int slot) {
+		return next(slot, 0);
+	}
+
+	/**
+	 * Finds the first free slot at or after a slot.
+	 * @param slot the slot to start at
+	 * @return the free slot or the number of slots if there is none
+	 */
+	private int nextFree(int slot) {
+		return next(slot, -1);
+	}
+
+	/**
+	 * Finds the first slot at or after a slot whose bit is set, after the
+	 * words are XOR'd with a mask.
+	 * @param slot the slot to start at
+	 * @param flip 0 to find busy slots, -1 to find free slots
+	 * @return the slot or the number of slots if there is none
+	 */
+	private int next(int slot, long flip) {
+		if (slot >= slots) {
+			return slots;
+		}
+
+		int i = slot >> 6;
+		long word = (words[i] ^ flip) & (-1L << slot);
+		while (word == 0) {
+			if (++i == words.length) {
+				return slots;
+			}
+			word = words[i] ^ flip;
+		}
+		return Math.min(slots, (i << 6) + Long.numberOfTrailingZeros(word));
+	}
+
+	/**
+	 * Marks a range of slots as busy.
+	 * @param from the first slot (inclusive)
+	 * @param to the last slot (exclusive)
+	 */
+	private void setRange(int from, int to) {
+		if (from >= to) {
+			return;
+		}
+
+		int first = from >> 6, last = (to - 1) >> 6;
+		long firstMask = -1L << from;
+		long lastMask = -1L >>> -to;
+		if (first == last) {
+			words[first] |= firstMask & lastMask;
+			return;
+		}
+
+		words[first] |= firstMask;
+		Arrays.fill(words, first + 1, last, -1L);
+		words[last] |= lastMask;
+	}
+
+	/**
+	 * Gets the slot that a time is in, clamped to the window.
+	 */
+	private int firstSlot(long time) {
+		if (time <= start) {
+			return 0;
+		}
+		return (int) Math.min(slots, (time - start) / slotMillis);
+	}
+
+	/**
+	 * Gets the slot after the last slot that a time range ending at the given
+	 * time overlaps with, clamped to the window.
+	 */
+	private int lastSlot(long time) {
+		if (time <= start) {
+			return 0;
+		}
+		return (int) Math.min(slots, (time - start + slotMillis - 1) / slotMillis);
+	}
+
+	private void checkSameSlots(FreeBusyBitmap other) {
+		if (start != other.start || end != other.end || slotMillis != other.slotMillis) {
+			throw new IllegalArgumentException("Bitmaps must have the same window and slot length.");
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + (int) (start ^ (start >>> 32));
+		result = prime * result + (int) (end ^ (end >>> 32));
+		result = prime * result + (int) (slotMillis ^ (slotMillis >>> 32));
+		result = prime * result + Arrays.hashCode(words);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (obj == null) return false;
+		if (getClass() != obj.getClass()) return false;
+		FreeBusyBitmap other = (FreeBusyBitmap) obj;
+		if (start != other.start) return false;
+		if (end != other.end) return false;
+		if (slotMillis != other.slotMillis) return false;
+		if (!Arrays.equals(words, other.words)) return false;
+		return true;
+	}
+}
@@ -0,0 +1,343 @@
+package biweekly.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TimeZone;
+
+import biweekly.ICalendar;
+import biweekly.component.ICalComponent;
+import biweekly.component.VEvent;
+import biweekly.component.VFreeBusy;
+import biweekly.parameter.FreeBusyType;
+import biweekly.property.FreeBusy;
+import biweekly.property.Status;
+import biweekly.property.Transparency;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * <p>
+ * Calculates the times that a person is busy, based on the events in their
+ * calendars. The result is a {@link VFreeBusy} component, such as the one
+ * that is sent in reply to a free/busy request.
+ * </p>
+ * <p>
+ * The recurring events are expanded with a {@link CalendarExpander}, so
+ * modified instances are taken into account. Each occurrence is classified
+ * as follows (see <a href="https://tools.ietf.org/html/rfc4791#section-7.10">
+ * RFC 4791 Section 7.10</a>):
+ * </p>
+ * <ul>
+ * <li>Occurrences that are {@link Transparency transparent}, cancelled, or
+ * that take up no time are ignored.</li>
+ * <li>Tentative occurrences are {@link FreeBusyType#BUSY_TENTATIVE
+ * BUSY-TENTATIVE}.</li>
+ * <li>All other occurrences are {@link FreeBusyType#BUSY BUSY}.</li>
+ * </ul>
+ * <p>
+ * The periods of any {@link VFreeBusy} components that are added are included
+ * as well, except for the ones that are {@link FreeBusyType#FREE FREE}.
+ * Periods with an unknown type are treated as {@link FreeBusyType#BUSY BUSY}.
+ * </p>
+ * <p>
+ * The periods are merged so that they do not overlap. Where periods of
+ * different types overlap, {@link FreeBusyType#BUSY_UNAVAILABLE
+ * BUSY-UNAVAILABLE} takes precedence over {@link FreeBusyType#BUSY BUSY},
+ * which takes precedence over {@link FreeBusyType#BUSY_TENTATIVE
+ * BUSY-TENTATIVE}. The periods are sorted by start date and are cut off at
+ * the edges of the date range. The calculation takes <i>O(n log n)</i> time,
+ * where <i>n</i> is the number of occurrences and periods in the date range.
+ * </p>
+ * <p>
+ * <b>Example:</b>
+ * </p>
+ *
+ * <pre class="brush:java">
+ * FreeBusyCalculator calculator = new FreeBusyCalculator();
+ * calculator.add(work);
+ * calculator.add(home);
+ * VFreeBusy freeBusy = calculator.calculate(from, to, TimeZone.getDefault());
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class FreeBusyCalculator {
+	/**
+	 * The types of busy time, from lowest to highest precedence.
+	 */
+	private static final FreeBusyType[] TYPES = { FreeBusyType.BUSY_TENTATIVE, FreeBusyType.BUSY, FreeBusyType.BUSY_UNAVAILABLE };
+
+	private static final int TENTATIVE = 0, BUSY = 1;
+
+	private final List<List<VEvent>> calendars = new ArrayList<List<VEvent>>();
+	private final List<VEvent> events = new ArrayList<VEvent>();
+	private final List<VFreeBusy> freeBusies = new ArrayList<VFreeBusy>();
+	private List<CalendarExpander> expanders;
+	private RecurrenceCache cache;
+
+	/**
+	 * Adds all of the events and free/busy components in an iCalendar object.
+	 * The events of each iCalendar object are expanded separately, so an
+	 * event that is in more than one calendar gets its own modified instances
+	 * from each calendar.
+	 * @param ical the iCalendar object
+	 */
+	public void add(ICalendar ical) {
+		calendars.add(new ArrayList<VEvent>(ical.getEvents()));
+		expanders = null;
+		for (VFreeBusy freeBusy : ical.getFreeBusies()) {
+			add(freeBusy);
+		}
+	}
+
+	/**
+	 * Adds a component. Components other than events and free/busy components
+	 * are ignored.
+	 * @param component the component
+	 */
+	public void add(ICalComponent component) {
+		if (component instanceof VEvent) {
+			events.add((VEvent) component);
+			expanders = null;
+		} else if (component instanceof VFreeBusy) {
+			freeBusies.add((VFreeBusy) component);
+		}
+	}
+
+	/**
+	 * Gets the cache that the expansions of recurrence rules are stored in.
+	 * @return the cache or null if a cache is not being used (default)
+	 */
+	public RecurrenceCache getRecurrenceCache() {
+		return cache;
+	}
+
+	/**
+	 * Sets the cache that the expansions of recurrence rules are stored in.
+	 * @param cache the cache or null not to use a cache (default)
+	 */
+	public void setRecurrenceCache(RecurrenceCache cache) {
+		this.cache = cache;
+		if (expanders != null) {
+			for (CalendarExpander expander : expanders) {
+				expander.setRecurrenceCache(cache);
+			}
+		}
+	}
+
+	/**
+	 * Calculates the times that are busy within a date range.
+	 * @param from the start of the range (inclusive)
+	 * @param to the end of the range (exclusive)
+	 * @param timezone the timezone to iterate in. This is needed in order to
+	 * adjust for when the iterator passes over a daylight savings boundary.
+	 * @return a free/busy component whose start and end dates are the date
+	 * range, and which has one {@link FreeBusy} property for each type of busy
+	 * time
+	 * @throws IllegalArgumentException if the end of the range comes before
+	 * the start
+	 */
+	public VFreeBusy calculate(Date from, Date to, TimeZone timezone) {
+		if (to.before(from)) {
+			throw new IllegalArgumentException("The end of the range must not come before the start.");
+		}
+
+		Edges edges = new Edges(from.getTime(), to.getTime());
+		if (expanders == null) {
+			expanders = new ArrayList<CalendarExpander>(calendars.size() + 1);
+			for (List<VEvent> calendar : calendars) {
+				expanders.add(new CalendarExpander(calendar));
+			}
+			if (!events.isEmpty()) {
+				expanders.add(new CalendarExpander(events));
+			}
+			for (CalendarExpander expander : expanders) {
+				expander.setRecurrenceCache(cache);
+			}
+		}
+		for (CalendarExpander expander : expanders) {
+			Iterator<Occurrence> it = expander.iterator(from, to, timezone);
+			while (it.hasNext()) {
+				Occurrence occurrence = it.next();
+				int type = typeOf(occurrence.getComponent());
+				if (type >= 0) {
+					edges.add(occurrence.getStart().getTime(), occurrence.getEnd().getTime(), type);
+				}
+			}
+		}
+
+		for (VFreeBusy freeBusy : freeBusies) {
+			for (FreeBusy property : freeBusy.getFreeBusy()) {
+				int type = typeOf(property.getType());
+				if (type < 0) {
+					continue;
+				}
+
+				for (Period period : property.getValues()) {
+					ICalDate start = period.getStartDate();
+					if (start == null) {
+						continue;
+					}
+
+					Date end = period.getEndDate();
+					if (end == null) {
+						Duration duration = period.getDuration();
+						if (duration == null) {
+							continue;
+						}
+						end = duration.add(start);
+					}
+
+					edges.add(start.getTime(), end.getTime(), type);
+				}
+			}
+		}
+
+		VFreeBusy result = new VFreeBusy();
+		result.setDateStart(from);
+		result.setDateEnd(to);
+		edges.sweep(result);
+		return result;
+	}
+
+	/**
+	 * Determines the type of busy time that an occurrence takes up.
+	 * @param component the component the occurrence belongs to
+	 * @return the index of the type in {@link #TYPES} or -1 if the occurrence
+	 * does not take up any time
+	 */
+	private static int typeOf(ICalComponent component) {
+		Transparency transparency = component.getProperty(Transparency.class);
+		if (transparency != null && transparency.isTransparent()) {
+			return -1;
+		}
+
+		Status status = component.getProperty(Status.class);
+		if (status == null) {
+			return BUSY;
+		}
+		if (status.isCancelled()) {
+			return -1;
+		}
+		return status.isTentative() ? TENTATIVE : BUSY;
+	}
+
+	/**
+	 * Determines the type of busy time that a {@link FreeBusy} property
+	 * describes.
+	 * @param type the property's type
+	 * @return the index of the type in {@link #TYPES} or -1 if the time is
+	 * free
+	 */
+	private static int typeOf(FreeBusyType type) {
+		if (type == FreeBusyType.FREE) {
+			return -1;
+		}
+		for (int i = 0; i < TYPES.length; i++) {
+			if (TYPES[i] == type) {
+				return i;
+			}
+		}
+		return BUSY;
+	}
+
+	/**
+	 * The starts and ends of the busy periods. Each edge is packed into a long
+	 * so that the edges can be sorted without creating an object for each
+	 * one: the time is in the high bits, the type in the next two bits, and
+	 * whether the edge is a start in the lowest bit.
+	 */
+	private static class Edges {
+		private final long from, to;
+		private long[] edges = new long[32];
+		private int size = 0;
+
+		public Edges(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Adds a busy period. The period is cut off at the edges of the range.
+		 * @param start the start of the period
+		 * @param end the end of the period
+		 * @param type the index of the type in {@link #TYPES}
+		 */
+		public void add(long start, long end, int type) {
+			start = Math.max(start, from);
+			end = Math.min(end, to);
+			if (start >= end) {
+				return;
+			}
+
+			if (size + 2 > edges.length) {
+				edges = Arrays.copyOf(edges, edges.length * 2);
+			}
+			edges[size++] = (start << 3) | (type << 1) | 1;
+			edges[size++] = (end << 3) | (type << 1);
+		}
+
+		/**
+		 * Merges the periods and adds them to a free/busy component.
+		 * @param freeBusy the component
+		 */
+		public void sweep(VFreeBusy freeBusy) {
+			Arrays.sort(edges, 0, size);
+
+			int[] active = new int[TYPES.length];
+			int current = -1;
+			long currentStart = 0;
+			for (int i = 0; i < size;) {
+				long time = edges[i] >> 3;
+
+				//apply all of the edges at this time before deciding which type is busy
+				for (; i < size && (edges[i] >> 3) == time; i++) {
+					int type = (int) (edges[i] >> 1) & 3;
+					active[type] += ((edges[i] & 1) == 1) ? 1 : -1;
+				}
+
+				int top = -1;
+				for (int type = active.length - 1; type >= 0; type--) {
+					if (active[type] > 0) {
+						top = type;
+						break;
+					}
+				}
+				if (top == current) {
+					continue;
+				}
+
+				if (current >= 0) {
+					freeBusy.addFreeBusy(TYPES[current], new Date(currentStart), new Date(time));
+				}
+				current = top;
+				currentStart = time;
+			}
+		}
+	}
+}
@@ -5,12 +5,17 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.TimeZone;
 
 import biweekly.component.ICalComponent;
+import biweekly.property.DateDue;
+import biweekly.property.DateEnd;
 import biweekly.property.DateStart;
+import biweekly.property.DurationProperty;
 import biweekly.property.ExceptionDates;
 import biweekly.property.ExceptionRule;
 import biweekly.property.RecurrenceDates;
@@ -21,6 +26,9 @@ import biweekly.util.Recurrence.DayOfWeek;
 import biweekly.util.Recurrence.Frequency;
 import biweekly.util.com.google.ical.compat.javautil.DateIterator;
 import biweekly.util.com.google.ical.compat.javautil.DateIteratorFactory;
+import biweekly.util.com.google.ical.iter.CountCheckpoints;
+import biweekly.util.com.google.ical.iter.DateSet;
+import biweekly.util.com.google.ical.iter.RecurrenceAnalysis;
 import biweekly.util.com.google.ical.iter.RecurrenceIterator;
 import biweekly.util.com.google.ical.iter.RecurrenceIteratorFactory;
 import biweekly.util.com.google.ical.values.DateTimeValue;
@@ -62,6 +70,19 @@ import biweekly.util.com.google.ical.values.WeekdayNum;
  * @see <a href="https://code.google.com/p/google-rfc-2445/">google-rfc-2445</a>
  */
 public final class Google2445Utils {
+	/**
+	 * The number of start date and timezone combinations to keep the
+	 * {@link CountCheckpoints} of for each recurrence rule.
+	 */
+	private static final int MAX_CHECKPOINTS = 4;
+
+	/**
+	 * The RDATE and EXDATE values that have been converted to {@link DateSet}
+	 * objects.
+	 * @see #toDateSet
+	 */
+	private static final DateSetCache dateSets = new DateSetCache();
+
 	/**
 	 * Converts a {@link Recurrence} object to a google-rfc-2445 {@link RRule}
 	 * object.
@@ -121,6 +142,27 @@ public final class Google2445Utils {
 		return rrule;
 	}
 
+	/**
+	 * Gets the google-rfc-2445 form of a {@link Recurrence} object. Unlike
+	 * {@link #convert(Recurrence, TimeZone)}, the converted object is cached
+	 * on the recurrence object and reused by later calls, so it must not be
+	 * modified.
+	 * @param recurrence the recurrence object
+	 * @param timezone the timezone that the UNTIL component should be in
+	 * @return the google-rfc-2445 object
+	 */
+	static RRule compile(Recurrence recurrence, TimeZone timezone) {
+		CompiledRecurrence compiled = recurrence.getCompiled();
+		if (compiled != null && compiled.appliesTo(timezone)) {
+			return compiled.rrule;
+		}
+
+		RRule rrule = convert(recurrence, timezone);
+		TimeZone untilTimezone = (recurrence.getUntil() == null) ? null : timezone;
+		recurrence.setCompiled(new CompiledRecurrence(rrule, untilTimezone));
+		return rrule;
+	}
+
 	/**
 	 * Converts a {@link DayOfWeek} object to a google-rfc-2445 {@link Weekday}
 	 * object.
@@ -315,10 +357,59 @@ public final class Google2445Utils {
 	 */
 	public static RecurrenceIterator createRecurrenceIterator(Recurrence recurrence, ICalDate start, TimeZone timezone) {
 		DateValue startValue = convert(start, timezone);
-		RRule googleRecurrence = convert(recurrence, timezone);
+		CountCheckpoints checkpoints = checkpoints(recurrence, startValue, timezone);
+		if (checkpoints != null) {
+			return checkpoints.iterator();
+		}
+
+		RRule googleRecurrence = compile(recurrence, timezone);
 		return RecurrenceIteratorFactory.createRecurrenceIterator(googleRecurrence, startValue, timezone);
 	}
 
+	/**
+	 * Gets the checkpoints of a recurrence rule that has a COUNT. They are
+	 * cached along with the compiled rule for each start date and timezone
+	 * the rule is used with, so later calls can skip over the dates that come
+	 * before a given date instead of counting every one of them. The
+	 * checkpoints are only computed as far as the calls need them.
+	 * @param recurrence the recurrence rule
+	 * @param start the start date
+	 * @param timezone the timezone to iterate in
+	 * @return the checkpoints or null if the rule does not need them
+	 * @see CountCheckpoints#create
+	 */
+	private static CountCheckpoints checkpoints(Recurrence recurrence, DateValue start, TimeZone timezone) {
+		if (recurrence.getCount() == null) {
+			return null;
+		}
+
+		RRule rrule = compile(recurrence, timezone);
+		CompiledRecurrence compiled = recurrence.getCompiled();
+		synchronized (compiled.checkpoints) {
+			for (CountCheckpoints checkpoints : compiled.checkpoints) {
+				if (checkpoints.appliesTo(start, timezone)) {
+					return checkpoints;
+				}
+			}
+
+			CountCheckpoints checkpoints = CountCheckpoints.create(rrule, start, timezone);
+			if (checkpoints != null) {
+				if (compiled.checkpoints.size() == MAX_CHECKPOINTS) {
+					compiled.checkpoints.removeFirst();
+				}
+				compiled.checkpoints.add(checkpoints);
+			}
+			return checkpoints;
+		}
+	}
+
+	private static RecurrenceIterator createRecurrenceIterator(Recurrence recurrence, ICalDate start, TimeZone timezone, RecurrenceCache cache, Date from, Date to) {
+		if (cache == null) {
+			return createRecurrenceIterator(recurrence, start, timezone);
+		}
+		return cache.createRecurrenceIterator(recurrence, start, timezone, from, to);
+	}
+
 	/**
 	 * <p>
 	 * Creates an iterator that computes the dates defined by the
@@ -341,6 +432,23 @@ public final class Google2445Utils {
 	 * @return the iterator
 	 */
 	public static DateIterator getDateIterator(ICalComponent component, TimeZone timezone) {
+		return getDateIterator(component, timezone, null, null, null);
+	}
+
+	/**
+	 * Creates an iterator that computes the dates of a component.
+	 * @param component the component
+	 * @param timezone the timezone to iterate in
+	 * @param cache the cache to get the expansions of the recurrence rules
+	 * from or null not to use a cache
+	 * @param from the start of the range the recurrence rules are expanded
+	 * over (ignored if the cache is null)
+	 * @param to the end of the range the recurrence rules are expanded over
+	 * (ignored if the cache is null)
+	 * @return the iterator
+	 * @see #getDateIterator(ICalComponent, TimeZone)
+	 */
+	private static DateIterator getDateIterator(ICalComponent component, TimeZone timezone, RecurrenceCache cache, Date from, Date to) {
 		DateStart dtstart = component.getProperty(DateStart.class);
 		ICalDate start = ValuedProperty.getValue(dtstart);
 
@@ -352,17 +460,16 @@ public final class Google2445Utils {
 			for (RecurrenceRule rrule : component.getProperties(RecurrenceRule.class)) {
 				Recurrence recurrence = ValuedProperty.getValue(rrule);
 				if (recurrence != null) {
-					include.add(createRecurrenceIterator(recurrence, start, timezone));
+					include.add(createRecurrenceIterator(recurrence, start, timezone, cache, from, to));
 				}
 			}
 		}
 
-		List<ICalDate> allDates = new ArrayList<ICalDate>();
 		for (RecurrenceDates rdate : component.getProperties(RecurrenceDates.class)) {
-			allDates.addAll(rdate.getDates());
-		}
-		if (!allDates.isEmpty()) {
-			include.add(new ICalDateRecurrenceIterator(allDates));
+			List<ICalDate> dates = rdate.getDates();
+			if (!dates.isEmpty()) {
+				include.add(toDateSet(dates).iterator());
+			}
 		}
 
 		if (include.isEmpty()) {
@@ -380,29 +487,552 @@ public final class Google2445Utils {
 			for (ExceptionRule exrule : component.getProperties(ExceptionRule.class)) {
 				Recurrence recurrence = ValuedProperty.getValue(exrule);
 				if (recurrence != null) {
-					exclude.add(createRecurrenceIterator(recurrence, start, timezone));
+					exclude.add(createRecurrenceIterator(recurrence, start, timezone, cache, from, to));
 				}
 			}
 		}
 
-		allDates = new ArrayList<ICalDate>();
+		/////////////JOIN/////////////
+
+		RecurrenceIterator iterator = join(include);
+		if (!exclude.isEmpty()) {
+			iterator = RecurrenceIteratorFactory.except(iterator, join(exclude));
+		}
+
+		//EXDATEs are checked directly instead of being merged in like EXRULEs
 		for (ExceptionDates exdate : component.getProperties(ExceptionDates.class)) {
-			allDates.addAll(exdate.getValues());
+			List<ICalDate> dates = exdate.getValues();
+			if (!dates.isEmpty()) {
+				iterator = RecurrenceIteratorFactory.except(iterator, toDateSet(dates));
+			}
+		}
+
+		return DateIteratorFactory.createDateIterator(iterator);
+	}
+
+	/**
+	 * Converts the values of an RDATE or EXDATE property to a {@link DateSet}.
+	 * The converted sets are cached (see {@link DateSetCache}), so the dates
+	 * do not have to be converted and sorted every time a component is
+	 * iterated over.
+	 * @param dates the dates
+	 * @return the set
+	 */
+	private static DateSet toDateSet(List<ICalDate> dates) {
+		return dateSets.get(dates);
+	}
+
+	/**
+	 * <p>
+	 * Calculates the occurrences of a component that overlap with the given
+	 * date range. The occurrences are calculated using the same rules as
+	 * {@link #getDateIterator}. The iterator is advanced directly to the start
+	 * of the range, and iteration stops as soon as an occurrence starts after
+	 * the end of the range, so nothing outside of the range is calculated.
+	 * </p>
+	 * <p>
+	 * The end date of each occurrence is calculated from the component's
+	 * {@link DateEnd}, {@link DateDue}, or {@link DurationProperty} property.
+	 * If none of these properties are present, all-day occurrences last for
+	 * one day and all other occurrences end when they start.
+	 * </p>
+	 * <p>
+	 * The dates of all-day occurrences are set to midnight in the local
+	 * timezone (like all other {@link ICalDate} objects that do not have a
+	 * time component).
+	 * </p>
+	 * @param component the component
+	 * @param from the start of the range (inclusive)
+	 * @param to the end of the range (exclusive)
+	 * @param timezone the timezone to iterate in. This is needed in order to
+	 * adjust for when the iterator passes over a daylight savings boundary.
+	 * @return the occurrences, in chronological order (empty if the component
+	 * does not have a {@link DateStart} property)
+	 */
+	public static List<Occurrence> expand(ICalComponent component, Date from, Date to, TimeZone timezone) {
+		return expand(component, from, to, timezone, null);
+	}
+
+	/**
+	 * Calculates the occurrences of a component that overlap with the given
+	 * date range, reusing the expansions of its recurrence rules from the
+	 * given cache when possible.
+	 * @param component the component
+	 * @param from the start of the range (inclusive)
+	 * @param to the end of the range (exclusive)
+	 * @param timezone the timezone to iterate in. This is needed in order to
+	 * adjust for when the iterator passes over a daylight savings boundary.
+	 * @param cache the cache or null not to use a cache
+	 * @return the occurrences, in chronological order (empty if the component
+	 * does not have a {@link DateStart} property)
+	 * @see #expand(ICalComponent, Date, Date, TimeZone)
+	 */
+	public static List<Occurrence> expand(ICalComponent component, Date from, Date to, TimeZone timezone, RecurrenceCache cache) {
+		List<Occurrence> occurrences = new ArrayList<Occurrence>();
+		Iterator<Occurrence> it = occurrenceIterator(component, from, to, timezone, cache);
+		while (it.hasNext()) {
+			occurrences.add(it.next());
 		}
-		if (!allDates.isEmpty()) {
-			exclude.add(new ICalDateRecurrenceIterator(allDates));
+		return occurrences;
+	}
+
+	/**
+	 * Creates an iterator over the occurrences of a component that overlap
+	 * with the given date range. This is the same as
+	 * {@link #expand(ICalComponent, Date, Date, TimeZone, RecurrenceCache)},
+	 * except that each occurrence is only calculated when the iterator gets to
+	 * it.
+	 * @param component the component
+	 * @param from the start of the range (inclusive)
+	 * @param to the end of the range (exclusive)
+	 * @param timezone the timezone to iterate in
+	 * @param cache the cache or null not to use a cache
+	 * @return the occurrences, in chronological order (empty if the component
+	 * does not have a {@link DateStart} property)
+	 */
+	static Iterator<Occurrence> occurrenceIterator(ICalComponent component, Date from, Date to, TimeZone timezone, RecurrenceCache cache) {
+		ICalDate start = ValuedProperty.getValue(component.getProperty(DateStart.class));
+		if (start == null) {
+			return Collections.<Occurrence> emptyList().iterator();
 		}
+		return new OccurrenceIterator(component, start, from, to, timezone, cache);
+	}
 
-		/////////////JOIN/////////////
+	/**
+	 * Determines if a recurrence rule has a finite number of occurrences (in
+	 * other words, if it has a COUNT or an UNTIL).
+	 * @param recurrence the recurrence rule
+	 * @return true if it's finite, false if not
+	 */
+	public static boolean isFinite(Recurrence recurrence) {
+		return recurrence.getCount() != null || recurrence.getUntil() != null;
+	}
 
-		RecurrenceIterator includeJoined = join(include);
-		if (exclude.isEmpty()) {
-			return DateIteratorFactory.createDateIterator(includeJoined);
+	/**
+	 * Determines if a component has a finite number of occurrences. This is
+	 * the case if all of its {@link RecurrenceRule} properties are
+	 * {@link #isFinite(Recurrence) finite}.
+	 * @param component the component
+	 * @return true if it's finite, false if not
+	 */
+	public static boolean isFinite(ICalComponent component) {
+		for (RecurrenceRule rrule : component.getProperties(RecurrenceRule.class)) {
+			Recurrence recurrence = ValuedProperty.getValue(rrule);
+			if (recurrence != null && !isFinite(recurrence)) {
+				return false;
+			}
 		}
+		return true;
+	}
 
-		RecurrenceIterator excludeJoined = join(exclude);
-		RecurrenceIterator iterator = RecurrenceIteratorFactory.except(includeJoined, excludeJoined);
-		return DateIteratorFactory.createDateIterator(iterator);
+	/**
+	 * Counts the dates of a recurrence rule that fall within a date range.
+	 * Rules whose dates are a fixed number of days apart are counted without
+	 * calculating each date. For all other rules, only the dates within the
+	 * range are calculated.
+	 * @param recurrence the recurrence rule
+	 * @param start the start date
+	 * @param from the start of the range (inclusive) or null to count from the
+	 * start date
+	 * @param to the end of the range (exclusive) or null to count up to the
+	 * last date
+	 * @param timezone the timezone to iterate in
+	 * @return the number of dates
+	 * @throws IllegalArgumentException if the end of the range is null and the
+	 * rule is not {@link #isFinite(Recurrence) finite}
+	 */
+	public static long countOccurrences(Recurrence recurrence, ICalDate start, Date from, Date to, TimeZone timezone) {
+		boolean allDay = !start.hasTime();
+		DateValue startValue = convert(start, timezone);
+		CountCheckpoints checkpoints = checkpoints(recurrence, startValue, timezone);
+		if (checkpoints != null) {
+			return checkpoints.count(toBound(from, allDay), toBound(to, allDay));
+		}
+
+		RRule rrule = compile(recurrence, timezone);
+		return RecurrenceAnalysis.count(rrule, startValue, timezone, toBound(from, allDay), toBound(to, allDay));
+	}
+
+	/**
+	 * Calculates the last date of a recurrence rule.
+	 * @param recurrence the recurrence rule
+	 * @param start the start date
+	 * @param timezone the timezone to iterate in
+	 * @return the last date or null if the rule is not
+	 * {@link #isFinite(Recurrence) finite} or does not have any dates
+	 */
+	public static ICalDate getLastOccurrence(Recurrence recurrence, ICalDate start, TimeZone timezone) {
+		DateValue startValue = convert(start, timezone);
+		CountCheckpoints checkpoints = checkpoints(recurrence, startValue, timezone);
+		DateValue last;
+		if (checkpoints == null) {
+			RRule rrule = compile(recurrence, timezone);
+			last = RecurrenceAnalysis.last(rrule, startValue, timezone);
+		} else {
+			last = checkpoints.last();
+		}
+		return (last == null) ? null : toOccurrenceStart(last, !start.hasTime());
+	}
+
+	/**
+	 * Counts the occurrences of a component that start within a date range.
+	 * The occurrences are calculated using the same rules as
+	 * {@link #getDateIterator}. If the component's only source of dates is a
+	 * single {@link RecurrenceRule} property, the occurrences are counted
+	 * using {@link #countOccurrences(Recurrence, ICalDate, Date, Date, TimeZone)}.
+	 * @param component the component
+	 * @param from the start of the range (inclusive) or null to count from the
+	 * first occurrence
+	 * @param to the end of the range (exclusive) or null to count up to the
+	 * last occurrence
+	 * @param timezone the timezone to iterate in
+	 * @return the number of occurrences (zero if the component does not have a
+	 * {@link DateStart} property)
+	 * @throws IllegalArgumentException if the end of the range is null and the
+	 * component is not {@link #isFinite(ICalComponent) finite}
+	 */
+	public static long countOccurrences(ICalComponent component, Date from, Date to, TimeZone timezone) {
+		if (to == null && !isFinite(component)) {
+			throw new IllegalArgumentException("Cannot count the occurrences of a component that recurs forever.");
+		}
+
+		ICalDate start = ValuedProperty.getValue(component.getProperty(DateStart.class));
+		if (start == null) {
+			return 0;
+		}
+
+		Recurrence recurrence = getOnlyRecurrence(component);
+		if (recurrence != null) {
+			return countOccurrences(recurrence, start, from, to, timezone);
+		}
+
+		boolean allDay = !start.hasTime();
+		DateIterator it = getDateIterator(component, timezone);
+		if (from != null) {
+			//all-day dates are returned as midnight UTC
+			it.advanceTo(allDay ? new Date(from.getTime() - OccurrenceLength.DAY) : from);
+		}
+
+		long count = 0;
+		while (it.hasNext()) {
+			Date next = it.next();
+			ICalDate occurrenceStart = allDay ? toLocalDate(next) : new ICalDate(next, true);
+			if (to != null && !occurrenceStart.before(to)) {
+				break;
+			}
+			if (from == null || !occurrenceStart.before(from)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Calculates the start date of a component's last occurrence. The
+	 * occurrences are calculated using the same rules as
+	 * {@link #getDateIterator}. Only the occurrences near the end of the
+	 * component's recurrence rules are calculated.
+	 * @param component the component
+	 * @param timezone the timezone to iterate in
+	 * @return the start date of the last occurrence or null if the component
+	 * is not {@link #isFinite(ICalComponent) finite}, does not have any
+	 * occurrences, or does not have a {@link DateStart} property
+	 */
+	public static ICalDate getLastOccurrence(ICalComponent component, TimeZone timezone) {
+		ICalDate start = ValuedProperty.getValue(component.getProperty(DateStart.class));
+		if (start == null || !isFinite(component)) {
+			return null;
+		}
+
+		Recurrence recurrence = getOnlyRecurrence(component);
+		if (recurrence != null) {
+			return getLastOccurrence(recurrence, start, timezone);
+		}
+
+		//find the latest date that any of the rules or RDATEs produce
+		long first = start.getTime(), last = start.getTime();
+		for (RecurrenceRule rrule : component.getProperties(RecurrenceRule.class)) {
+			Recurrence value = ValuedProperty.getValue(rrule);
+			if (value == null) {
+				continue;
+			}
+			ICalDate ruleLast = getLastOccurrence(value, start, timezone);
+			if (ruleLast != null) {
+				last = Math.max(last, ruleLast.getTime());
+			}
+		}
+		for (RecurrenceDates rdate : component.getProperties(RecurrenceDates.class)) {
+			for (ICalDate date : rdate.getDates()) {
+				first = Math.min(first, date.getTime());
+				last = Math.max(last, date.getTime());
+			}
+		}
+
+		return lookBack(component, timezone, first, last + OccurrenceLength.DAY, null);
+	}
+
+	/**
+	 * Calculates the start date of the latest occurrence of a component that
+	 * starts before the given date. The occurrences are calculated starting
+	 * from a point shortly before the given date, and that point is moved back
+	 * by a growing amount of time until an occurrence is found. This means
+	 * that the occurrences near the component's start date do not have to be
+	 * calculated.
+	 * @param component the component
+	 * @param date the date (exclusive)
+	 * @param timezone the timezone to iterate in
+	 * @return the start date of the occurrence or null if no occurrences start
+	 * before the date or the component does not have a {@link DateStart}
+	 * property
+	 */
+	public static ICalDate getPreviousOccurrence(ICalComponent component, Date date, TimeZone timezone) {
+		ICalDate start = ValuedProperty.getValue(component.getProperty(DateStart.class));
+		if (start == null) {
+			return null;
+		}
+
+		Recurrence recurrence = getOnlyRecurrence(component);
+		if (recurrence != null) {
+			boolean allDay = !start.hasTime();
+			DateValue startValue = convert(start, timezone);
+			CountCheckpoints checkpoints = checkpoints(recurrence, startValue, timezone);
+			DateValue previous;
+			if (checkpoints == null) {
+				RRule rrule = compile(recurrence, timezone);
+				previous = RecurrenceAnalysis.previousBefore(rrule, startValue, timezone, toBound(date, allDay));
+			} else {
+				previous = checkpoints.previousBefore(toBound(date, allDay));
+			}
+			return (previous == null) ? null : toOccurrenceStart(previous, allDay);
+		}
+
+		long first = start.getTime();
+		for (RecurrenceDates rdate : component.getProperties(RecurrenceDates.class)) {
+			for (ICalDate rdateValue : rdate.getDates()) {
+				first = Math.min(first, rdateValue.getTime());
+			}
+		}
+		return lookBack(component, timezone, first, date.getTime() + OccurrenceLength.DAY, date);
+	}
+
+	/**
+	 * Finds the start date of the latest occurrence of a component by
+	 * calculating its occurrences starting from a point before an anchor date.
+	 * The point is moved back by a growing amount of time until an occurrence
+	 * is found.
+	 * @param component the component
+	 * @param timezone the timezone to iterate in
+	 * @param first the earliest date that any occurrence can start on
+	 * @param anchor the date to look back from
+	 * @param before the date the occurrence must start before, or null for no
+	 * limit
+	 * @return the start date of the occurrence or null if there are none
+	 */
+	private static ICalDate lookBack(ICalComponent component, TimeZone timezone, long first, long anchor, Date before) {
+		ICalDate start = ValuedProperty.getValue(component.getProperty(DateStart.class));
+		boolean allDay = !start.hasTime();
+		for (long lookback = 2 * OccurrenceLength.DAY;; lookback *= 2) {
+			boolean all = (anchor - lookback < first - OccurrenceLength.DAY);
+			DateIterator it = getDateIterator(component, timezone);
+			if (!all) {
+				it.advanceTo(new Date(anchor - lookback));
+			}
+
+			ICalDate last = null;
+			while (it.hasNext()) {
+				Date next = it.next();
+				ICalDate occurrenceStart = allDay ? toLocalDate(next) : new ICalDate(next, true);
+				if (before != null && !occurrenceStart.before(before)) {
+					break;
+				}
+				last = occurrenceStart;
+			}
+			if (last != null || all) {
+				return last;
+			}
+		}
+	}
+
+	/**
+	 * Gets a component's recurrence rule if it is the only thing that defines
+	 * the component's dates.
+	 * @param component the component
+	 * @return the recurrence rule or null if the component has no rule, more
+	 * than one rule, or any RDATE, EXDATE, or EXRULE properties
+	 */
+	private static Recurrence getOnlyRecurrence(ICalComponent component) {
+		List<RecurrenceRule> rrules = component.getProperties(RecurrenceRule.class);
+		if (rrules.size() != 1 || !component.getProperties(RecurrenceDates.class).isEmpty() || !component.getProperties(ExceptionDates.class).isEmpty() || !component.getProperties(ExceptionRule.class).isEmpty()) {
+			return null;
+		}
+		return ValuedProperty.getValue(rrules.get(0));
+	}
+
+	/**
+	 * Converts the boundary of a date range to a value that can be compared
+	 * against the dates that a {@link RecurrenceIterator} returns.
+	 * @param date the boundary or null
+	 * @param allDay true if the iterator returns dates without times
+	 * @return the converted boundary (in UTC) or null if the boundary is null
+	 */
+	private static DateValue toBound(Date date, boolean allDay) {
+		if (date == null) {
+			return null;
+		}
+		if (!allDay) {
+			return convertUtc(new ICalDate(date, true));
+		}
+
+		//all-day dates start at midnight in the local timezone
+		Calendar c = Calendar.getInstance();
+		c.setTime(date);
+		boolean midnight = c.get(Calendar.HOUR_OF_DAY) == 0 && c.get(Calendar.MINUTE) == 0 && c.get(Calendar.SECOND) == 0 && c.get(Calendar.MILLISECOND) == 0;
+		if (!midnight) {
+			c.add(Calendar.DATE, 1);
+		}
+		return new DateValueImpl(c.get(Calendar.YEAR), c.get(Calendar.MONTH) + 1, c.get(Calendar.DATE));
+	}
+
+	/**
+	 * Converts a date that was returned by a {@link RecurrenceIterator} to the
+	 * start date of an occurrence, in the same way as {@link #expand}.
+	 * @param date the date (in UTC)
+	 * @param allDay true if the occurrence does not have a time
+	 * @return the start date
+	 */
+	private static ICalDate toOccurrenceStart(DateValue date, boolean allDay) {
+		if (allDay) {
+			return new ICalDate(new DateTimeComponents(date.year(), date.month(), date.day()), false);
+		}
+		return convertUtc(date);
+	}
+
+	/**
+	 * Gets the maximum length of a component's occurrences.
+	 * @param component the component
+	 * @param timezone the timezone the occurrences are calculated in
+	 * @return the maximum length in milliseconds (zero if the component does
+	 * not have a {@link DateStart} property)
+	 */
+	static long getMaxLength(ICalComponent component, TimeZone timezone) {
+		ICalDate start = ValuedProperty.getValue(component.getProperty(DateStart.class));
+		if (start == null) {
+			return 0;
+		}
+		return new OccurrenceLength(component, start, !start.hasTime(), timezone).getMaxMillis();
+	}
+
+	/**
+	 * Converts a date value that was returned by a {@link DateIterator} (which
+	 * returns date values as midnight UTC) to a date in the local timezone.
+	 * @param date the date from the iterator
+	 * @return the date
+	 */
+	private static ICalDate toLocalDate(Date date) {
+		Calendar c = Calendar.getInstance(utc());
+		c.setTime(date);
+		DateTimeComponents components = new DateTimeComponents(c.get(Calendar.YEAR), c.get(Calendar.MONTH) + 1, c.get(Calendar.DATE));
+		return new ICalDate(components, false);
+	}
+
+	/**
+	 * Calculates the end dates of a component's occurrences.
+	 */
+	private static class OccurrenceLength {
+		private static final long HOUR = 1000L * 60 * 60;
+		private static final long DAY = HOUR * 24;
+
+		private final boolean allDay;
+		private final Calendar calendar;
+
+		/**
+		 * The exact length of each occurrence in milliseconds or -1 if the
+		 * nominal duration should be used.
+		 */
+		private final long exactMillis;
+
+		/**
+		 * The nominal length of each occurrence (days are added in local time,
+		 * so they can be 23 or 25 hours long).
+		 */
+		private final Duration nominal;
+
+		public OccurrenceLength(ICalComponent component, ICalDate start, boolean allDay, TimeZone timezone) {
+			this.allDay = allDay;
+			calendar = allDay ? Calendar.getInstance() : Calendar.getInstance(timezone);
+
+			ICalDate end = ValuedProperty.getValue(component.getProperty(DateEnd.class));
+			if (end == null) {
+				end = ValuedProperty.getValue(component.getProperty(DateDue.class));
+			}
+			Duration duration = ValuedProperty.getValue(component.getProperty(DurationProperty.class));
+
+			if (end != null) {
+				long millis = Math.max(0, end.getTime() - start.getTime());
+				if (allDay) {
+					int days = (int) Math.round(millis / (double) DAY);
+					exactMillis = -1;
+					nominal = Duration.builder().days(days).build();
+				} else {
+					exactMillis = millis;
+					nominal = null;
+				}
+			} else if (duration != null && !duration.isPrior()) {
+				exactMillis = -1;
+				nominal = duration;
+			} else if (allDay) {
+				exactMillis = -1;
+				nominal = Duration.builder().days(1).build();
+			} else {
+				exactMillis = 0;
+				nominal = null;
+			}
+		}
+
+		/**
+		 * Gets the maximum length of an occurrence. This is used to determine
+		 * how far the iterator can be advanced without skipping occurrences
+		 * that start before the date range, but end within it.
+		 * @return the maximum length in milliseconds
+		 */
+		public long getMaxMillis() {
+			if (exactMillis >= 0) {
+				return exactMillis;
+			}
+
+			//account for daylight savings time and the timezones of all-day dates
+			long padding = allDay ? DAY : HOUR;
+			return nominal.toMillis() + padding;
+		}
+
+		/**
+		 * Calculates the end date of an occurrence.
+		 * @param start the start date of the occurrence
+		 * @return the end date
+		 */
+		public ICalDate getEnd(ICalDate start) {
+			if (exactMillis >= 0) {
+				return new ICalDate(new Date(start.getTime() + exactMillis), !allDay);
+			}
+
+			calendar.setTime(start);
+			if (nominal.getWeeks() != null) {
+				calendar.add(Calendar.DATE, nominal.getWeeks() * 7);
+			}
+			if (nominal.getDays() != null) {
+				calendar.add(Calendar.DATE, nominal.getDays());
+			}
+			if (nominal.getHours() != null) {
+				calendar.add(Calendar.HOUR_OF_DAY, nominal.getHours());
+			}
+			if (nominal.getMinutes() != null) {
+				calendar.add(Calendar.MINUTE, nominal.getMinutes());
+			}
+			if (nominal.getSeconds() != null) {
+				calendar.add(Calendar.SECOND, nominal.getSeconds());
+			}
+			return new ICalDate(calendar.getTime(), !allDay);
+		}
 	}
 
 	/**
@@ -444,6 +1074,107 @@ public final class Google2445Utils {
 		return TimeZone.getTimeZone("UTC");
 	}
 
+	/**
+	 * The google-rfc-2445 form of a {@link Recurrence} object.
+	 * @see Google2445Utils#compile
+	 */
+	static final class CompiledRecurrence {
+		private final RRule rrule;
+		private final TimeZone timezone;
+
+		/**
+		 * The checkpoints of a rule that has a COUNT, one for each start date
+		 * and timezone the rule has been used with (at most
+		 * {@link Google2445Utils#MAX_CHECKPOINTS}, the oldest are dropped first).
+		 * @see Google2445Utils#checkpoints
+		 */
+		private final LinkedList<CountCheckpoints> checkpoints = new LinkedList<CountCheckpoints>();
+
+		/**
+		 * @param rrule the converted rule
+		 * @param timezone the timezone that the rule's UNTIL was converted to,
+		 * or null if the rule does not have an UNTIL (which means that the
+		 * converted rule is the same in all timezones)
+		 */
+		CompiledRecurrence(RRule rrule, TimeZone timezone) {
+			this.rrule = rrule;
+			this.timezone = timezone;
+		}
+
+		boolean appliesTo(TimeZone timezone) {
+			return this.timezone == null || this.timezone.equals(timezone);
+		}
+	}
+
+	/**
+	 * Iterates over the occurrences of a component that overlap with a date
+	 * range.
+	 * @see Google2445Utils#occurrenceIterator
+	 */
+	private static class OccurrenceIterator implements Iterator<Occurrence> {
+		private final ICalComponent component;
+		private final boolean allDay;
+		private final OccurrenceLength length;
+		private final Date from, to;
+		private final DateIterator it;
+		private Occurrence next;
+		private boolean done = false;
+
+		public OccurrenceIterator(ICalComponent component, ICalDate start, Date from, Date to, TimeZone timezone, RecurrenceCache cache) {
+			this.component = component;
+			this.from = from;
+			this.to = to;
+			allDay = !start.hasTime();
+			length = new OccurrenceLength(component, start, allDay, timezone);
+
+			Date iteratorFrom = new Date(from.getTime() - length.getMaxMillis());
+			it = getDateIterator(component, timezone, cache, iteratorFrom, to);
+			it.advanceTo(iteratorFrom);
+		}
+
+		public boolean hasNext() {
+			if (next == null && !done) {
+				next = fetch();
+				done = (next == null);
+			}
+			return next != null;
+		}
+
+		public Occurrence next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Occurrence occurrence = next;
+			next = null;
+			return occurrence;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Calculates the next occurrence that overlaps with the range.
+		 * @return the occurrence or null if there are no more
+		 */
+		private Occurrence fetch() {
+			while (it.hasNext()) {
+				Date date = it.next();
+				ICalDate occurrenceStart = allDay ? toLocalDate(date) : new ICalDate(date, true);
+				if (!occurrenceStart.before(to)) {
+					return null;
+				}
+
+				ICalDate occurrenceEnd = length.getEnd(occurrenceStart);
+				boolean overlaps = occurrenceEnd.after(from) || (occurrenceEnd.equals(occurrenceStart) && !occurrenceStart.before(from));
+				if (overlaps) {
+					return new Occurrence(component, occurrenceStart, occurrenceEnd, new ICalDate(occurrenceStart), allDay);
+				}
+			}
+			return null;
+		}
+	}
+
 	/**
 	 * A {@link DateIterator} with nothing in it.
 	 */
@@ -1,5 +1,9 @@
 package biweekly.util;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.util.Calendar;
 import java.util.Date;
 
@@ -36,8 +40,21 @@ import java.util.Date;
 public class ICalDate extends Date {
 	private static final long serialVersionUID = -8172624513821588097L;
 
-	private final DateTimeComponents rawComponents;
-	private final boolean hasTime;
+	/*
+	 * Keep the serialized form the same as when the raw components were stored
+	 * as a DateTimeComponents object.
+	 */
+	private static final ObjectStreamField[] serialPersistentFields = { new ObjectStreamField("rawComponents", DateTimeComponents.class), new ObjectStreamField("hasTime", boolean.class) };
+
+	/*
+	 * Parsed iCalendar objects can contain a very large number of dates, so the
+	 * raw components are packed into a primitive instead of being stored as a
+	 * separate object. The object is only stored if the components cannot be
+	 * packed.
+	 */
+	private long packedComponents;
+	private DateTimeComponents unpackableComponents;
+	private boolean hasTime;
 
 	/**
 	 * Creates a new date-time value set to the current date and time.
@@ -85,7 +102,7 @@ public class ICalDate extends Date {
 	 * @param date the date-time value
 	 */
 	public ICalDate(ICalDate date) {
-		this(date, (date.rawComponents == null) ? null : new DateTimeComponents(date.rawComponents), date.hasTime);
+		this(date, date.getRawComponents(), date.hasTime);
 	}
 
 	/**
@@ -108,17 +125,67 @@ public class ICalDate extends Date {
 		}
 
 		setTime(date.getTime());
-		this.rawComponents = rawComponents;
+		setRawComponents(rawComponents);
 		this.hasTime = hasTime;
 	}
 
+	private void setRawComponents(DateTimeComponents rawComponents) {
+		packedComponents = (rawComponents == null) ? 0 : rawComponents.pack();
+		unpackableComponents = (packedComponents == 0) ? rawComponents : null;
+	}
+
 	/**
 	 * Gets the raw date-time components of the value as read from the input
 	 * stream.
 	 * @return the raw date-time components or null if not set
 	 */
 	public DateTimeComponents getRawComponents() {
-		return rawComponents;
+		return (packedComponents == 0) ? unpackableComponents : DateTimeComponents.unpack(packedComponents);
+	}
+
+	/**
+	 * Gets whether the raw date-time components of the value are in UTC. This
+	 * is cheaper than calling {@link #getRawComponents()}, which creates a new
+	 * object.
+	 * @return true if they are in UTC, false if not or if they are not set
+	 */
+	public boolean isRawUtc() {
+		if (packedComponents == 0) {
+			return unpackableComponents != null && unpackableComponents.isUtc();
+		}
+		return DateTimeComponents.isUtc(packedComponents);
+	}
+
+	/**
+	 * Compares the raw date-time components of this value with those of
+	 * another value, as {@link DateTimeComponents#compareTo} does. This is
+	 * cheaper than comparing the objects returned by
+	 * {@link #getRawComponents()}.
+	 * @param date the other value (both values must have raw date-time
+	 * components)
+	 * @return a negative number, zero, or a positive number
+	 */
+	public int compareRawComponents(ICalDate date) {
+		if (packedComponents == 0 || date.packedComponents == 0) {
+			return getRawComponents().compareTo(date.getRawComponents());
+		}
+		return DateTimeComponents.comparePacked(packedComponents, date.packedComponents);
+	}
+
+	/**
+	 * Converts the raw date-time components of the value to a {@link Date}
+	 * object, as {@link DateTimeComponents#toDate(Calendar)} does. This is
+	 * cheaper than calling {@link #getRawComponents()}, which creates a new
+	 * object.
+	 * @param c the calendar object to use (the value must have raw date-time
+	 * components)
+	 * @return the date object
+	 */
+	public Date rawComponentsToDate(Calendar c) {
+		if (packedComponents == 0) {
+			return unpackableComponents.toDate(c);
+		}
+		return DateTimeComponents.toDate(packedComponents, c);
 	}
 
 	/**
@@ -138,4 +205,17 @@ public class ICalDate extends Date {
 		}
 		return super.equals(obj);
 	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("rawComponents", getRawComponents());
+		fields.put("hasTime", hasTime);
+		out.writeFields();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		setRawComponents((DateTimeComponents) fields.get("rawComponents", null));
+		hasTime = fields.get("hasTime", false);
+	}
 }
@@ -0,0 +1,149 @@
+package biweekly.util;
+
+import biweekly.component.ICalComponent;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * A single instance of a (possibly recurring) component, as calculated by
+ * {@link Google2445Utils#expand}.
+ * @author Michael Angstadt
+ */
+public final class Occurrence {
+	private final ICalComponent component;
+	private final ICalDate start;
+	private final ICalDate end;
+	private final ICalDate recurrenceId;
+	private final boolean allDay;
+
+	/**
+	 * Creates a new occurrence.
+	 * @param component the component that defines the occurrence
+	 * @param start the start date
+	 * @param end the end date
+	 * @param recurrenceId the original start date of the occurrence, as
+	 * defined by the recurrence set (this identifies the occurrence within the
+	 * recurrence set)
+	 * @param allDay true if the occurrence's dates do not have a time
+	 * component, false if they do
+	 */
+	public Occurrence(ICalComponent component, ICalDate start, ICalDate end, ICalDate recurrenceId, boolean allDay) {
+		this.component = component;
+		this.start = start;
+		this.end = end;
+		this.recurrenceId = recurrenceId;
+		this.allDay = allDay;
+	}
+
+	/**
+	 * Gets the component that defines the occurrence.
+	 * @return the component
+	 */
+	public ICalComponent getComponent() {
+		return component;
+	}
+
+	/**
+	 * Gets the start date.
+	 * @return the start date
+	 */
+	public ICalDate getStart() {
+		return start;
+	}
+
+	/**
+	 * Gets the end date. If the component does not define an end date or
+	 * duration, then this will be the same as the start date (or the day after
+	 * the start date, if the occurrence is all-day).
+	 * @return the end date (exclusive)
+	 */
+	public ICalDate getEnd() {
+		return end;
+	}
+
+	/**
+	 * Gets the original start date of the occurrence, as defined by the
+	 * recurrence set. This is the value that a RECURRENCE-ID property would use
+	 * to refer to this occurrence.
+	 * @return the recurrence ID
+	 */
+	public ICalDate getRecurrenceId() {
+		return recurrenceId;
+	}
+
+	/**
+	 * Gets whether the occurrence lasts all day (in other words, its dates do
+	 * not have time components).
+	 * @return true if it's all-day, false if not
+	 */
+	public boolean isAllDay() {
+		return allDay;
+	}
+
+	/**
+	 * Gets the length of the occurrence.
+	 * @return the length in milliseconds
+	 */
+	public long getDurationMillis() {
+		return end.getTime() - start.getTime();
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + (allDay ? 1231 : 1237);
+		result = prime * result + ((end == null) ? 0 : end.hashCode());
+		result = prime * result + ((recurrenceId == null) ? 0 : recurrenceId.hashCode());
+		result = prime * result + ((start == null) ? 0 : start.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (obj == null) return false;
+		if (getClass() != obj.getClass()) return false;
+		Occurrence other = (Occurrence) obj;
+		if (component != other.component) return false;
+		if (allDay != other.allDay) return false;
+		if (end == null) {
+			if (other.end != null) return false;
+		} else if (!end.equals(other.end)) return false;
+		if (recurrenceId == null) {
+			if (other.recurrenceId != null) return false;
+		} else if (!recurrenceId.equals(other.recurrenceId)) return false;
+		if (start == null) {
+			if (other.start != null) return false;
+		} else if (!start.equals(other.start)) return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "Occurrence [start=" + start + ", end=" + end + ", recurrenceId=" + recurrenceId + ", allDay=" + allDay + "]";
+	}
+}
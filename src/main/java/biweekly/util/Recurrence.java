@@ -71,6 +71,12 @@ public final class Recurrence {
 	private final DayOfWeek workweekStarts;
 	private final Map<String, List<String>> xrules;
 
+	/**
+	 * The google-rfc-2445 form of this rule. Recurrence objects are immutable,
+	 * so it only has to be built once.
+	 */
+	private volatile Google2445Utils.CompiledRecurrence compiled;
+
 	private Recurrence(Builder builder) {
 		frequency = builder.frequency;
 		interval = builder.interval;
@@ -210,6 +216,14 @@ public final class Recurrence {
 		return xrules;
 	}
 
+	Google2445Utils.CompiledRecurrence getCompiled() {
+		return compiled;
+	}
+
+	void setCompiled(Google2445Utils.CompiledRecurrence compiled) {
+		this.compiled = compiled;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -0,0 +1,362 @@
+package biweekly.util;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import biweekly.util.com.google.ical.iter.RecurrenceIterator;
+import biweekly.util.com.google.ical.util.PackedDates;
+import biweekly.util.com.google.ical.values.DateValue;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * <p>
+ * A bounded, thread-safe cache of expanded recurrence rules. Many components
+ * share the same recurrence rule, start date, and timezone (for example, a
+ * weekly meeting that was copied into the calendars of everyone who attends
+ * it). When the same rule is expanded more than once, the cached dates are
+ * reused instead of being calculated again.
+ * </p>
+ * <p>
+ * Cached expansions are keyed by the recurrence rule, the start date, and the
+ * timezone. Timezones are the same if they have the same ID and the same
+ * rules, so the copies of a VTIMEZONE that are parsed from different
+ * calendars share their expansions. Each expansion covers a date range, and
+ * a request for part of that range is served from it. A request that
+ * overlaps the range extends the expansion, so a window that slides forward
+ * only has to calculate the dates that it has not seen yet. The least
+ * recently used expansion is evicted when the cache is full. The cached dates
+ * are never modified, so they are shared by all of the iterators that this
+ * class creates.
+ * </p>
+ * <p>
+ * <b>Example:</b>
+ * </p>
+ *
+ * <pre class="brush:java">
+ * RecurrenceCache cache = new RecurrenceCache(1000);
+ * for (VEvent event : events) {
+ *   List&lt;Occurrence&gt; occurrences = Google2445Utils.expand(event, from, to, timezone, cache);
+ * }
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class RecurrenceCache {
+	private static final long DAY = 1000L * 60 * 60 * 24;
+
+	/**
+	 * The most dates an expansion can hold before it is cut back to the range
+	 * that was most recently requested.
+	 */
+	private static final int MAX_DATES = 10000;
+
+	private final int maxSize;
+	private final Map<Key, Expansion> cache;
+	private long hits, misses;
+
+	/**
+	 * Creates a new cache.
+	 * @param maxSize the maximum number of expansions to store
+	 * @throws IllegalArgumentException if the max size is less than one
+	 */
+	public RecurrenceCache(final int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Max size must be at least 1.");
+		}
+
+		this.maxSize = maxSize;
+		cache = new LinkedHashMap<Key, Expansion>(16, 0.75f, true) {
+			private static final long serialVersionUID = 2887693787395286391L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Expansion> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Gets the maximum number of expansions the cache will store.
+	 * @return the max size
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Gets the number of expansions that are stored in the cache.
+	 * @return the number of expansions
+	 */
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	/**
+	 * Gets the number of times a cached expansion was reused.
+	 * @return the number of hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of times a recurrence rule had to be expanded because it
+	 * was not in the cache, or because the cached expansion did not cover the
+	 * requested date range.
+	 * @return the number of misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Removes all expansions from the cache.
+	 */
+	public synchronized void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * Creates an iterator over the dates of a recurrence rule that fall within
+	 * the given date range. The rule is only expanded if the cache does not
+	 * already contain an expansion with the same parameters that covers the
+	 * range.
+	 * @param recurrence the recurrence rule
+	 * @param start the start date
+	 * @param timezone the timezone to iterate in
+	 * @param from the start of the range (inclusive)
+	 * @param to the end of the range (exclusive)
+	 * @return the iterator (its dates are in UTC)
+	 * @see Google2445Utils#createRecurrenceIterator
+	 */
+	public RecurrenceIterator createRecurrenceIterator(Recurrence recurrence, ICalDate start, TimeZone timezone, Date from, Date to) {
+		DateValue startValue = Google2445Utils.convert(start, timezone);
+		Key key = new Key(recurrence, PackedDates.pack(startValue), timezone);
+
+		/*
+		 * Dates without times are compared as if they were in UTC, so extend
+		 * the end of the range by a day to make sure that the dates which fall
+		 * before the end of the range in the local timezone are included. The
+		 * caller discards anything that is outside of the range.
+		 */
+		long lo = PackedDates.pack(Google2445Utils.convertUtc(new ICalDate(from, true)));
+		long hi = PackedDates.pack(Google2445Utils.convertUtc(new ICalDate(new Date(to.getTime() + DAY), true)));
+
+		Expansion cached;
+		synchronized (this) {
+			cached = cache.get(key);
+			if (cached != null && cached.covers(lo, hi)) {
+				hits++;
+				return cached.iterator(lo, hi);
+			}
+			misses++;
+		}
+
+		/*
+		 * Expand the rule outside of the lock so that other threads are not
+		 * blocked. If two threads miss on the same key, they will both
+		 * calculate the same dates.
+		 */
+		Expansion expansion;
+		if (cached != null && lo <= cached.hi && cached.lo <= hi) {
+			//the ranges overlap, so only calculate the dates on either side
+			long[] before = (lo < cached.lo) ? expand(recurrence, start, timezone, lo, cached.lo) : new long[0];
+			long[] after = (hi > cached.hi) ? expand(recurrence, start, timezone, cached.hi, hi) : new long[0];
+			expansion = new Expansion(Math.min(lo, cached.lo), Math.max(hi, cached.hi), concat(before, cached.dates, after));
+			if (expansion.dates.length > MAX_DATES) {
+				expansion = expansion.slice(lo, hi);
+			}
+		} else {
+			expansion = new Expansion(lo, hi, expand(recurrence, start, timezone, lo, hi));
+		}
+
+		synchronized (this) {
+			cache.put(key, expansion);
+		}
+		return expansion.iterator(lo, hi);
+	}
+
+	/**
+	 * Calculates the dates of a recurrence rule that fall within a range.
+	 * @param lo the start of the range (inclusive, packed and in UTC)
+	 * @param hi the end of the range (exclusive, packed and in UTC)
+	 * @return the dates (packed and in UTC)
+	 */
+	private static long[] expand(Recurrence recurrence, ICalDate start, TimeZone timezone, long lo, long hi) {
+		RecurrenceIterator it = Google2445Utils.createRecurrenceIterator(recurrence, start, timezone);
+		it.advanceTo(PackedDates.toDateValue(lo));
+		long[] dates = new long[16];
+		int size = 0;
+		while (it.hasNext()) {
+			long date = PackedDates.pack(it.next());
+			if (date >= hi) {
+				break;
+			}
+
+			if (size == dates.length) {
+				dates = Arrays.copyOf(dates, size * 2);
+			}
+			dates[size++] = date;
+		}
+		return Arrays.copyOf(dates, size);
+	}
+
+	private static long[] concat(long[] before, long[] dates, long[] after) {
+		long[] result = new long[before.length + dates.length + after.length];
+		System.arraycopy(before, 0, result, 0, before.length);
+		System.arraycopy(dates, 0, result, before.length, dates.length);
+		System.arraycopy(after, 0, result, before.length + dates.length, after.length);
+		return result;
+	}
+
+	/**
+	 * Identifies an expansion.
+	 */
+	private static class Key {
+		private final Recurrence recurrence;
+		private final long start;
+		private final TimeZone timezone;
+
+		public Key(Recurrence recurrence, long start, TimeZone timezone) {
+			this.recurrence = recurrence;
+			this.start = start;
+			this.timezone = timezone;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + ((recurrence == null) ? 0 : recurrence.hashCode());
+			result = prime * result + (int) (start ^ (start >>> 32));
+			result = prime * result + ((timezone == null) ? 0 : timezone.getID().hashCode());
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (obj == null) return false;
+			if (getClass() != obj.getClass()) return false;
+			Key other = (Key) obj;
+			if (start != other.start) return false;
+			if (recurrence == null) {
+				if (other.recurrence != null) return false;
+			} else if (!recurrence.equals(other.recurrence)) return false;
+			if (timezone == null) {
+				if (other.timezone != null) return false;
+			} else if (other.timezone == null) {
+				return false;
+			} else if (timezone != other.timezone) {
+				//TimeZone.equals() only compares the identity of ICalTimeZone objects
+				if (!timezone.getID().equals(other.timezone.getID())) return false;
+				if (!timezone.hasSameRules(other.timezone)) return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * The dates of a recurrence rule that fall within a range.
+	 */
+	private static class Expansion {
+		/**
+		 * The range that the expansion covers (packed and in UTC, "lo" is
+		 * inclusive, "hi" is exclusive).
+		 */
+		private final long lo, hi;
+
+		/**
+		 * The dates (packed and in UTC), in ascending order.
+		 */
+		private final long[] dates;
+
+		public Expansion(long lo, long hi, long[] dates) {
+			this.lo = lo;
+			this.hi = hi;
+			this.dates = dates;
+		}
+
+		public boolean covers(long lo, long hi) {
+			return this.lo <= lo && hi <= this.hi;
+		}
+
+		public Expansion slice(long lo, long hi) {
+			return new Expansion(lo, hi, Arrays.copyOfRange(dates, indexOf(lo), indexOf(hi)));
+		}
+
+		public RecurrenceIterator iterator(long lo, long hi) {
+			return new CachedRecurrenceIterator(dates, indexOf(lo), indexOf(hi));
+		}
+
+		/**
+		 * Finds the index of the first date that is on or after a date.
+		 * @param date the date (packed and in UTC)
+		 * @return the index
+		 */
+		private int indexOf(long date) {
+			int index = Arrays.binarySearch(dates, date);
+			return (index < 0) ? -index - 1 : index;
+		}
+	}
+
+	/**
+	 * Iterates over the cached dates of an expansion.
+	 */
+	private static class CachedRecurrenceIterator implements RecurrenceIterator {
+		private final long[] dates;
+		private final int end;
+		private int index;
+
+		public CachedRecurrenceIterator(long[] dates, int start, int end) {
+			this.dates = dates;
+			this.index = start;
+			this.end = end;
+		}
+
+		public boolean hasNext() {
+			return index < end;
+		}
+
+		public DateValue next() {
+			return PackedDates.toDateValue(dates[index++]);
+		}
+
+		public void advanceTo(DateValue newStartUtc) {
+			long newStart = PackedDates.pack(newStartUtc);
+			while (index < end && dates[index] < newStart) {
+				index++;
+			}
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
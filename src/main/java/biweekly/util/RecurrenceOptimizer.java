@@ -0,0 +1,658 @@
+package biweekly.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+import biweekly.ICalendar;
+import biweekly.component.ICalComponent;
+import biweekly.property.DateStart;
+import biweekly.property.ExceptionDates;
+import biweekly.property.ICalProperty;
+import biweekly.property.RecurrenceDates;
+import biweekly.property.RecurrenceRule;
+import biweekly.property.ValuedProperty;
+import biweekly.util.Recurrence.DayOfWeek;
+import biweekly.util.Recurrence.Frequency;
+import biweekly.util.com.google.ical.compat.javautil.DateIterator;
+import biweekly.util.com.google.ical.compat.javautil.DateIteratorFactory;
+import biweekly.util.com.google.ical.iter.RecurrenceIterator;
+import biweekly.util.com.google.ical.iter.RecurrenceIteratorFactory;
+import biweekly.util.com.google.ical.util.PackedDates;
+import biweekly.util.com.google.ical.util.TimeUtils;
+import biweekly.util.com.google.ical.values.Weekday;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * <p>
+ * Rewrites the recurrence properties of components so that they define the
+ * same occurrences with less data. Calendars that are exported by some
+ * clients list every occurrence of a series as an explicit RDATE, or contain
+ * recurrence rules that repeat each other. Smaller components are smaller to
+ * store and faster to expand.
+ * </p>
+ * <p>
+ * The following changes are made:
+ * </p>
+ * <ul>
+ * <li>RRULEs whose occurrences are all produced by the other RRULEs are
+ * removed.</li>
+ * <li>RDATEs that an RRULE already produces, or that are listed more than
+ * once, are removed.</li>
+ * <li>If a component has no RRULE and its DTSTART is also an RDATE, the
+ * RDATEs that start at the DTSTART and repeat every few days, weeks, months,
+ * or years are replaced with an RRULE. At least {@value #MIN_RUN} dates have
+ * to follow the pattern.</li>
+ * <li>EXDATEs that do not match any occurrence are removed.</li>
+ * </ul>
+ * <p>
+ * The occurrences of each component are expanded before and after it is
+ * rewritten with
+ * {@link Google2445Utils#getDateIterator(ICalComponent, TimeZone)}, from its
+ * start date up to a horizon (50 years after the start date by default). If
+ * they are not the same, the component is left alone.
+ * Removing an RRULE is the only change that is not checked against every
+ * occurrence. An unbounded RRULE may be removed if the other RRULEs produce
+ * all of its occurrences before the horizon, so the horizon should cover
+ * every date that matters.
+ * </p>
+ * <p>
+ * {@link Period} values in RDATE properties are left alone.
+ * </p>
+ * <p>
+ * <b>Example:</b>
+ * </p>
+ *
+ * <pre class="brush:java">
+ * RecurrenceOptimizer optimizer = new RecurrenceOptimizer(TimeZone.getDefault());
+ * optimizer.setHorizonYears(20);
+ * int changed = optimizer.optimize(ical);
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class RecurrenceOptimizer {
+	/**
+	 * The fewest RDATEs that are replaced with an RRULE.
+	 */
+	public static final int MIN_RUN = 3;
+
+	/**
+	 * The most occurrences of a component that are compared. Components with
+	 * more occurrences before the horizon are left alone.
+	 */
+	private static final int MAX_OCCURRENCES = 100000;
+
+	private static final long NONE = Long.MIN_VALUE;
+
+	private final TimeZone timezone;
+	private int horizonYears = 50;
+
+	/**
+	 * Creates an optimizer.
+	 * @param timezone the timezone to iterate in (see
+	 * {@link Google2445Utils#getDateIterator(ICalComponent, TimeZone)})
+	 */
+	public RecurrenceOptimizer(TimeZone timezone) {
+		this.timezone = timezone;
+	}
+
+	/**
+	 * Gets how far past a component's start date its occurrences are compared.
+	 * @return the number of years (defaults to 50)
+	 */
+	public int getHorizonYears() {
+		return horizonYears;
+	}
+
+	/**
+	 * Sets how far past a component's start date its occurrences are compared.
+	 * @param horizonYears the number of years
+	 * @throws IllegalArgumentException if the number of years is not positive
+	 */
+	public void setHorizonYears(int horizonYears) {
+		if (horizonYears <= 0) {
+			throw new IllegalArgumentException("Horizon must be positive.");
+		}
+		this.horizonYears = horizonYears;
+	}
+
+	/**
+	 * Rewrites the recurrence properties of every component in an iCalendar
+	 * object.
+	 * @param ical the iCalendar object
+	 * @return the number of components that were changed
+	 */
+	public int optimize(ICalendar ical) {
+		int changed = 0;
+		for (ICalComponent component : ical.getComponents().values()) {
+			if (optimize(component)) {
+				changed++;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Rewrites the recurrence properties of a component.
+	 * @param component the component
+	 * @return true if the component was changed, false if not
+	 */
+	public boolean optimize(ICalComponent component) {
+		ICalDate start = ValuedProperty.getValue(component.getProperty(DateStart.class));
+		if (start == null) {
+			return false;
+		}
+
+		List<RecurrenceRule> rrules = component.getProperties(RecurrenceRule.class);
+		List<RecurrenceDates> rdates = component.getProperties(RecurrenceDates.class);
+		List<ExceptionDates> exdates = component.getProperties(ExceptionDates.class);
+		if (rrules.size() < 2 && rdates.isEmpty() && exdates.isEmpty()) {
+			return false;
+		}
+
+		long horizon = horizon(start);
+		long[] before = expand(component, horizon);
+		if (before == null) {
+			return false;
+		}
+
+		ICalComponent copy = component.copy();
+		boolean changed = removeRedundantRules(copy, before, horizon);
+		changed |= removeGeneratedDates(copy, start, horizon);
+		changed |= compressDates(copy, start);
+		changed |= removeUnmatchedExceptions(copy, start);
+		if (!changed || !Arrays.equals(before, expand(copy, horizon))) {
+			return false;
+		}
+
+		replaceProperties(component, copy, RecurrenceRule.class);
+		replaceProperties(component, copy, RecurrenceDates.class);
+		replaceProperties(component, copy, ExceptionDates.class);
+		return true;
+	}
+
+	/**
+	 * Removes the RRULEs that do not contribute any occurrences before the
+	 * horizon.
+	 * @param component the component
+	 * @param expected the occurrences of the component
+	 * @param horizon the horizon
+	 * @return true if any were removed
+	 */
+	private boolean removeRedundantRules(ICalComponent component, long[] expected, long horizon) {
+		List<RecurrenceRule> rrules = component.getProperties(RecurrenceRule.class);
+		if (rrules.size() < 2) {
+			return false;
+		}
+
+		boolean changed = false;
+		for (int i = rrules.size() - 1; i >= 0 && rrules.size() > 1; i--) {
+			RecurrenceRule rrule = rrules.remove(i);
+			if (!hasEqualValue(rrules, rrule) && !Arrays.equals(expected, expand(component, horizon))) {
+				rrules.add(i, rrule);
+				continue;
+			}
+			changed = true;
+		}
+		return changed;
+	}
+
+	/**
+	 * Removes the RDATE values that an RRULE produces or that are listed more
+	 * than once. Values on or after the horizon are only removed if they are
+	 * listed more than once, because the occurrences are not compared there.
+	 * @param component the component
+	 * @param start the component's start date
+	 * @param horizon the horizon
+	 * @return true if any were removed
+	 */
+	private boolean removeGeneratedDates(ICalComponent component, ICalDate start, long horizon) {
+		List<Matcher> matchers = new ArrayList<Matcher>();
+		for (RecurrenceRule rrule : component.getProperties(RecurrenceRule.class)) {
+			Recurrence recurrence = rrule.getValue();
+			if (recurrence != null) {
+				matchers.add(new Matcher(Google2445Utils.createRecurrenceIterator(recurrence, start, timezone)));
+			}
+		}
+
+		Set<Long> seen = new HashSet<Long>();
+		long[] keys = rdateKeys(component);
+		long horizonKey = key(new ICalDate(new Date(horizon)));
+		Set<Long> generated = new HashSet<Long>();
+		for (long key : keys) {
+			if (key >= horizonKey) {
+				break;
+			}
+			for (Matcher matcher : matchers) {
+				if (matcher.matches(key)) {
+					generated.add(key);
+					break;
+				}
+			}
+		}
+
+		boolean changed = false;
+		for (Iterator<RecurrenceDates> it = component.getProperties(RecurrenceDates.class).iterator(); it.hasNext();) {
+			RecurrenceDates rdate = it.next();
+			for (Iterator<ICalDate> dates = rdate.getDates().iterator(); dates.hasNext();) {
+				long key = key(dates.next());
+				if (generated.contains(key) || !seen.add(key)) {
+					dates.remove();
+					changed = true;
+				}
+			}
+			if (rdate.getDates().isEmpty() && rdate.getPeriods().isEmpty()) {
+				it.remove();
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Replaces the RDATE values that follow the start date in a pattern with
+	 * an RRULE. This is only done if the component does not have an RRULE
+	 * and the start date is one of the RDATE values, because an RRULE always
+	 * produces the start date.
+	 * @param component the component
+	 * @param start the component's start date
+	 * @return true if the values were replaced
+	 */
+	private boolean compressDates(ICalComponent component, ICalDate start) {
+		if (!component.getProperties(RecurrenceRule.class).isEmpty()) {
+			return false;
+		}
+
+		long[] keys = rdateKeys(component);
+		if (keys.length < MIN_RUN) {
+			return false;
+		}
+
+		Recurrence best = null;
+		int bestRun = 0;
+		for (Recurrence candidate : candidates(keys, start)) {
+			int run = run(candidate, start, keys);
+			if (run > bestRun) {
+				best = candidate;
+				bestRun = run;
+			}
+		}
+		if (bestRun < MIN_RUN) {
+			return false;
+		}
+
+		//the run starts with the first occurrence of the rule
+		Set<Long> replaced = new HashSet<Long>();
+		RecurrenceIterator it = Google2445Utils.createRecurrenceIterator(best, start, timezone);
+		for (int i = 0; i < bestRun; i++) {
+			replaced.add(RecurrenceIteratorFactory.nextPacked(it));
+		}
+
+		for (Iterator<RecurrenceDates> rdates = component.getProperties(RecurrenceDates.class).iterator(); rdates.hasNext();) {
+			RecurrenceDates rdate = rdates.next();
+			for (Iterator<ICalDate> dates = rdate.getDates().iterator(); dates.hasNext();) {
+				if (replaced.contains(key(dates.next()))) {
+					dates.remove();
+				}
+			}
+			if (rdate.getDates().isEmpty() && rdate.getPeriods().isEmpty()) {
+				rdates.remove();
+			}
+		}
+
+		component.addProperty(new RecurrenceRule(new Recurrence.Builder(best).count(bestRun).build()));
+		return true;
+	}
+
+	/**
+	 * Guesses the rules that a list of dates might follow, based on the
+	 * difference between the first few dates.
+	 * @param keys the dates (in UTC), sorted
+	 * @param start the component's start date
+	 * @return the rules
+	 */
+	private List<Recurrence> candidates(long[] keys, ICalDate start) {
+		int first = Arrays.binarySearch(keys, startKey(start));
+		if (first < 0 || keys.length - first < MIN_RUN) {
+			return new ArrayList<Recurrence>(0);
+		}
+
+		long local0 = local(keys[first]);
+		long local1 = local(keys[first + 1]);
+		int day0 = fixed(local0);
+		Set<Recurrence> candidates = new LinkedHashSet<Recurrence>();
+
+		//every few days
+		candidates.add(rule(Frequency.DAILY, fixed(local1) - day0));
+
+		//every few months or years, on the same day of the month
+		if (PackedDates.day(local0) == PackedDates.day(local1)) {
+			int months = (PackedDates.year(local1) - PackedDates.year(local0)) * 12 + PackedDates.month(local1) - PackedDates.month(local0);
+			candidates.add(rule(Frequency.MONTHLY, months));
+			if (months % 12 == 0) {
+				candidates.add(rule(Frequency.YEARLY, months / 12));
+			}
+		}
+
+		/*
+		 * On some days of every few weeks. The interval is the number of weeks
+		 * between the first week and the next week that has a date in it, and
+		 * the days are the days of the week that are used in those two weeks.
+		 */
+		int weekStart = day0 - (Weekday.valueOf(PackedDates.year(local0), PackedDates.month(local0), PackedDates.day(local0)).javaDayNum - Calendar.MONDAY + 7) % 7;
+		int interval = 0;
+		Set<DayOfWeek> days = new LinkedHashSet<DayOfWeek>();
+		for (int i = first; i < keys.length; i++) {
+			long local = local(keys[i]);
+			int week = (fixed(local) - weekStart) / 7;
+			if (week > 0 && interval == 0) {
+				interval = week;
+			}
+			if (week != 0 && week != interval) {
+				break;
+			}
+			days.add(dayOfWeek(local));
+		}
+		if (interval > 0) {
+			Recurrence.Builder builder = new Recurrence.Builder(Frequency.WEEKLY).byDay(days);
+			if (interval > 1) {
+				builder.interval(interval);
+			}
+			candidates.add(builder.build());
+		}
+
+		candidates.remove(null);
+		return new ArrayList<Recurrence>(candidates);
+	}
+
+	/**
+	 * Creates a rule with the given frequency and interval.
+	 * @return the rule or null if the interval is not positive
+	 */
+	private static Recurrence rule(Frequency frequency, int interval) {
+		if (interval <= 0) {
+			return null;
+		}
+		Recurrence.Builder builder = new Recurrence.Builder(frequency);
+		if (interval > 1) {
+			builder.interval(interval);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Counts how many of a rule's first occurrences are in a list of dates.
+	 * @param rule the rule
+	 * @param start the component's start date
+	 * @param keys the dates (in UTC), sorted
+	 * @return the number of occurrences that match the dates, starting with
+	 * the rule's first occurrence
+	 */
+	private int run(Recurrence rule, ICalDate start, long[] keys) {
+		RecurrenceIterator it = Google2445Utils.createRecurrenceIterator(rule, start, timezone);
+		if (!it.hasNext()) {
+			return 0;
+		}
+
+		long next = RecurrenceIteratorFactory.nextPacked(it);
+		int i = Arrays.binarySearch(keys, next);
+		if (i < 0) {
+			return 0;
+		}
+
+		int run = 0;
+		while (true) {
+			run++;
+			i++;
+			if (i == keys.length || !it.hasNext() || RecurrenceIteratorFactory.nextPacked(it) != keys[i]) {
+				return run;
+			}
+		}
+	}
+
+	/**
+	 * Removes the EXDATE values that do not match an occurrence of the
+	 * component.
+	 * @param component the component
+	 * @param start the component's start date
+	 * @return true if any were removed
+	 */
+	private boolean removeUnmatchedExceptions(ICalComponent component, ICalDate start) {
+		List<ExceptionDates> exdates = component.getProperties(ExceptionDates.class);
+		if (exdates.isEmpty()) {
+			return false;
+		}
+
+		List<Matcher> matchers = new ArrayList<Matcher>();
+		for (RecurrenceRule rrule : component.getProperties(RecurrenceRule.class)) {
+			Recurrence recurrence = rrule.getValue();
+			if (recurrence != null) {
+				matchers.add(new Matcher(Google2445Utils.createRecurrenceIterator(recurrence, start, timezone)));
+			}
+		}
+		Set<Long> dates = new HashSet<Long>();
+		for (long key : rdateKeys(component)) {
+			dates.add(key);
+		}
+		if (matchers.isEmpty() && dates.isEmpty()) {
+			//the start date is the only occurrence
+			dates.add(key(start));
+		}
+
+		long[] keys = exdateKeys(component);
+		Set<Long> matched = new HashSet<Long>();
+		for (long key : keys) {
+			if (dates.contains(key)) {
+				matched.add(key);
+				continue;
+			}
+			for (Matcher matcher : matchers) {
+				if (matcher.matches(key)) {
+					matched.add(key);
+					break;
+				}
+			}
+		}
+
+		boolean changed = false;
+		for (Iterator<ExceptionDates> it = exdates.iterator(); it.hasNext();) {
+			ExceptionDates exdate = it.next();
+			for (Iterator<ICalDate> values = exdate.getValues().iterator(); values.hasNext();) {
+				if (!matched.contains(key(values.next()))) {
+					values.remove();
+					changed = true;
+				}
+			}
+			if (exdate.getValues().isEmpty()) {
+				it.remove();
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Expands the occurrences of a component up to a date.
+	 * @param component the component
+	 * @param horizon the date (exclusive)
+	 * @return the start dates of the occurrences, or null if there are more
+	 * than {@link #MAX_OCCURRENCES}
+	 */
+	private long[] expand(ICalComponent component, long horizon) {
+		long[] occurrences = new long[16];
+		int size = 0;
+
+		DateIterator it = Google2445Utils.getDateIterator(component, timezone);
+		while (it.hasNext()) {
+			long next = DateIteratorFactory.nextMillis(it);
+			if (next >= horizon) {
+				break;
+			}
+			if (size == MAX_OCCURRENCES) {
+				return null;
+			}
+			if (size == occurrences.length) {
+				occurrences = Arrays.copyOf(occurrences, size * 2);
+			}
+			occurrences[size++] = next;
+		}
+		return Arrays.copyOf(occurrences, size);
+	}
+
+	private long horizon(ICalDate start) {
+		Calendar c = Calendar.getInstance(timezone);
+		c.setTime(start);
+		c.add(Calendar.YEAR, horizonYears);
+		return c.getTimeInMillis();
+	}
+
+	/**
+	 * Gets the first date that a recurrence iterator produces for a start
+	 * date.
+	 */
+	private long startKey(ICalDate start) {
+		return TimeUtils.toUtc(PackedDates.pack(Google2445Utils.convert(start, timezone)), timezone);
+	}
+
+	/**
+	 * Converts a date that is used as an RDATE or EXDATE value to the same
+	 * form as the dates that the recurrence iterators produce.
+	 */
+	private static long key(ICalDate date) {
+		return PackedDates.pack(Google2445Utils.convertUtc(date));
+	}
+
+	/**
+	 * Gets the local date of a date produced by a recurrence iterator.
+	 */
+	private long local(long key) {
+		return TimeUtils.fromUtc(key, timezone);
+	}
+
+	private static int fixed(long packed) {
+		return TimeUtils.fixedFromGregorian(PackedDates.year(packed), PackedDates.month(packed), PackedDates.day(packed));
+	}
+
+	private static DayOfWeek dayOfWeek(long packed) {
+		Weekday weekday = Weekday.valueOf(PackedDates.year(packed), PackedDates.month(packed), PackedDates.day(packed));
+		return DayOfWeek.valueOfAbbr(weekday.name());
+	}
+
+	/**
+	 * Gets the RDATE values of a component.
+	 * @return the values (in UTC), sorted, without duplicates
+	 */
+	private static long[] rdateKeys(ICalComponent component) {
+		List<ICalDate> dates = new ArrayList<ICalDate>();
+		for (RecurrenceDates rdate : component.getProperties(RecurrenceDates.class)) {
+			dates.addAll(rdate.getDates());
+		}
+		return keys(dates);
+	}
+
+	/**
+	 * Gets the EXDATE values of a component.
+	 * @return the values (in UTC), sorted, without duplicates
+	 */
+	private static long[] exdateKeys(ICalComponent component) {
+		List<ICalDate> dates = new ArrayList<ICalDate>();
+		for (ExceptionDates exdate : component.getProperties(ExceptionDates.class)) {
+			dates.addAll(exdate.getValues());
+		}
+		return keys(dates);
+	}
+
+	private static long[] keys(List<ICalDate> dates) {
+		long[] keys = new long[dates.size()];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = key(dates.get(i));
+		}
+		Arrays.sort(keys);
+
+		int size = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (size == 0 || keys[size - 1] != keys[i]) {
+				keys[size++] = keys[i];
+			}
+		}
+		return Arrays.copyOf(keys, size);
+	}
+
+	private static boolean hasEqualValue(List<RecurrenceRule> rrules, RecurrenceRule rrule) {
+		for (RecurrenceRule other : rrules) {
+			Recurrence value = other.getValue();
+			if (value == null ? rrule.getValue() == null : value.equals(rrule.getValue())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static <T extends ICalProperty> void replaceProperties(ICalComponent component, ICalComponent copy, Class<T> clazz) {
+		component.removeProperties(clazz);
+		for (T property : copy.getProperties(clazz)) {
+			component.addProperty(property);
+		}
+	}
+
+	/**
+	 * Checks whether dates are occurrences of a recurrence rule. The dates
+	 * must be checked in ascending order.
+	 */
+	private static class Matcher {
+		private final RecurrenceIterator it;
+		private long pending = NONE;
+
+		public Matcher(RecurrenceIterator it) {
+			this.it = it;
+		}
+
+		/**
+		 * Determines if a date is an occurrence.
+		 * @param key the date (in UTC)
+		 * @return true if it is an occurrence, false if not
+		 */
+		public boolean matches(long key) {
+			if (pending != NONE && pending >= key) {
+				return pending == key;
+			}
+
+			it.advanceTo(PackedDates.toDateValue(key));
+			if (!it.hasNext()) {
+				pending = Long.MAX_VALUE;
+				return false;
+			}
+			pending = RecurrenceIteratorFactory.nextPacked(it);
+			return pending == key;
+		}
+	}
+}
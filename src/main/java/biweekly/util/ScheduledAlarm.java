@@ -0,0 +1,140 @@
+package biweekly.util;
+
+import java.util.Date;
+
+import biweekly.component.ICalComponent;
+import biweekly.component.VAlarm;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * A time at which an alarm goes off.
+ * @author Michael Angstadt
+ * @see AlarmScheduler
+ */
+public final class ScheduledAlarm {
+	private final VAlarm alarm;
+	private final ICalComponent component;
+	private final Occurrence occurrence;
+	private final Date time;
+	private final int repetition;
+
+	/**
+	 * Creates a new scheduled alarm.
+	 * @param alarm the alarm
+	 * @param component the component that the alarm belongs to
+	 * @param occurrence the occurrence that the alarm is for, or null if the
+	 * alarm has an absolute trigger
+	 * @param time the time the alarm goes off
+	 * @param repetition 0 for the first time the alarm goes off, 1 for the
+	 * first repetition, and so on
+	 */
+	public ScheduledAlarm(VAlarm alarm, ICalComponent component, Occurrence occurrence, Date time, int repetition) {
+		this.alarm = alarm;
+		this.component = component;
+		this.occurrence = occurrence;
+		this.time = time;
+		this.repetition = repetition;
+	}
+
+	/**
+	 * Gets the alarm.
+	 * @return the alarm
+	 */
+	public VAlarm getAlarm() {
+		return alarm;
+	}
+
+	/**
+	 * Gets the component that the alarm belongs to. This is the modified
+	 * instance if the occurrence was modified.
+	 * @return the component (e.g. an event)
+	 */
+	public ICalComponent getComponent() {
+		return component;
+	}
+
+	/**
+	 * Gets the occurrence that the alarm is for.
+	 * @return the occurrence, or null if the alarm has an absolute trigger
+	 * (such alarms go off once, no matter how many times the component
+	 * recurs)
+	 */
+	public Occurrence getOccurrence() {
+		return occurrence;
+	}
+
+	/**
+	 * Gets the time the alarm goes off.
+	 * @return the time
+	 */
+	public Date getTime() {
+		return time;
+	}
+
+	/**
+	 * Gets which repetition of the alarm this is (see {@link VAlarm#setRepeat(int, Duration)}).
+	 * @return 0 for the first time the alarm goes off, 1 for the first
+	 * repetition, and so on
+	 */
+	public int getRepetition() {
+		return repetition;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + System.identityHashCode(alarm);
+		result = prime * result + ((occurrence == null) ? 0 : occurrence.hashCode());
+		result = prime * result + repetition;
+		result = prime * result + ((time == null) ? 0 : time.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (obj == null) return false;
+		if (getClass() != obj.getClass()) return false;
+		ScheduledAlarm other = (ScheduledAlarm) obj;
+		if (alarm != other.alarm) return false;
+		if (component != other.component) return false;
+		if (occurrence == null) {
+			if (other.occurrence != null) return false;
+		} else if (!occurrence.equals(other.occurrence)) return false;
+		if (repetition != other.repetition) return false;
+		if (time == null) {
+			if (other.time != null) return false;
+		} else if (!time.equals(other.time)) return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "ScheduledAlarm [time=" + time + ", repetition=" + repetition + ", occurrence=" + occurrence + "]";
+	}
+}
@@ -0,0 +1,508 @@
+package biweekly.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import biweekly.ICalendar;
+import biweekly.component.ICalComponent;
+import biweekly.parameter.Range;
+import biweekly.property.DateStart;
+import biweekly.property.RecurrenceDates;
+import biweekly.property.RecurrenceId;
+import biweekly.property.RecurrenceRule;
+import biweekly.property.Uid;
+import biweekly.property.ValuedProperty;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * <p>
+ * Indexes components by the span of time that their occurrences cover, so
+ * that the occurrences which overlap with a date range can be found without
+ * looking at every component.
+ * </p>
+ * <p>
+ * Components are grouped into series by UID, in the same way as
+ * {@link CalendarExpander}, so modified instances replace the occurrences of
+ * the components they modify. Each series is stored in an interval tree under
+ * the earliest and latest time that any of its occurrences can cover. A
+ * recurring component that never ends is stored with a span that never ends.
+ * Queries find the overlapping series in logarithmic time and then calculate
+ * the occurrences of only those series.
+ * </p>
+ * <p>
+ * Components can be added and removed at any time. If a component is
+ * modified after it is added, {@link #update} must be called. This class is
+ * thread-safe.
+ * </p>
+ * <p>
+ * <b>Example:</b>
+ * </p>
+ *
+ * <pre class="brush:java">
+ * TimeIndex index = new TimeIndex(TimeZone.getDefault());
+ * index.add(ical);
+ *
+ * List&lt;Occurrence&gt; now = index.at(new Date());
+ * List&lt;Occurrence&gt; today = index.query(startOfDay, endOfDay);
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class TimeIndex {
+	/**
+	 * The amount that the span of each series is widened by, to account for
+	 * all-day dates, which are stored as midnight in the local timezone.
+	 */
+	private static final long PADDING = 1000L * 60 * 60 * 24;
+
+	private final TimeZone timezone;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Random random = new Random();
+
+	/**
+	 * The series, keyed by UID. Components without a UID are keyed by
+	 * themselves.
+	 */
+	private final Map<Object, Series> series = new HashMap<Object, Series>();
+
+	/**
+	 * The key of the series that each component belongs to.
+	 */
+	private final Map<ICalComponent, Object> keys = new IdentityHashMap<ICalComponent, Object>();
+
+	private Node root;
+	private long nextId = 0;
+
+	/**
+	 * Creates an empty index.
+	 * @param timezone the timezone to calculate occurrences in
+	 */
+	public TimeIndex(TimeZone timezone) {
+		this.timezone = timezone;
+	}
+
+	/**
+	 * Gets the timezone that occurrences are calculated in.
+	 * @return the timezone
+	 */
+	public TimeZone getTimezone() {
+		return timezone;
+	}
+
+	/**
+	 * Adds all of the events, to-dos, and journal entries in an iCalendar
+	 * object to the index.
+	 * @param ical the iCalendar object
+	 */
+	public void add(ICalendar ical) {
+		for (ICalComponent component : ical.getEvents()) {
+			add(component);
+		}
+		for (ICalComponent component : ical.getTodos()) {
+			add(component);
+		}
+		for (ICalComponent component : ical.getJournals()) {
+			add(component);
+		}
+	}
+
+	/**
+	 * Adds a component to the index. Nothing happens if the component is
+	 * already in the index.
+	 * @param component the component (e.g. an event)
+	 */
+	public void add(ICalComponent component) {
+		lock.writeLock().lock();
+		try {
+			if (keys.containsKey(component)) {
+				return;
+			}
+
+			String uid = ValuedProperty.getValue(component.getProperty(Uid.class));
+			Object key = (uid == null) ? component : uid;
+			keys.put(component, key);
+
+			Series s = series.remove(key);
+			List<ICalComponent> components = new ArrayList<ICalComponent>();
+			if (s != null) {
+				root = delete(root, s);
+				components.addAll(s.components);
+			}
+			components.add(component);
+			insert(key, components);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes a component from the index.
+	 * @param component the component
+	 * @return true if the component was removed, false if it was not in the
+	 * index
+	 */
+	public boolean remove(ICalComponent component) {
+		lock.writeLock().lock();
+		try {
+			Object key = keys.remove(component);
+			if (key == null) {
+				return false;
+			}
+
+			Series s = series.remove(key);
+			root = delete(root, s);
+
+			List<ICalComponent> components = new ArrayList<ICalComponent>(s.components);
+			for (Iterator<ICalComponent> it = components.iterator(); it.hasNext();) {
+				if (it.next() == component) {
+					it.remove();
+				}
+			}
+			if (!components.isEmpty()) {
+				insert(key, components);
+			}
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Re-indexes a component after it has been modified.
+	 * @param component the component
+	 */
+	public void update(ICalComponent component) {
+		lock.writeLock().lock();
+		try {
+			remove(component);
+			add(component);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of components in the index.
+	 * @return the number of components
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return keys.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Calculates the occurrences that overlap with the given date range.
+	 * @param from the start of the range (inclusive)
+	 * @param to the end of the range (exclusive)
+	 * @return the occurrences, sorted by start date
+	 */
+	public List<Occurrence> query(Date from, Date to) {
+		List<Series> matches = new ArrayList<Series>();
+		lock.readLock().lock();
+		try {
+			search(root, from.getTime(), to.getTime(), matches);
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		/*
+		 * The series are expanded outside of the lock so that queries do not
+		 * block writers while they calculate occurrences.
+		 */
+		List<Iterator<Occurrence>> iterators = new ArrayList<Iterator<Occurrence>>(matches.size());
+		for (Series s : matches) {
+			List<Occurrence> occurrences = s.expander.expand(from, to, timezone);
+			if (!occurrences.isEmpty()) {
+				iterators.add(occurrences.iterator());
+			}
+		}
+
+		List<Occurrence> occurrences = new ArrayList<Occurrence>();
+		Iterator<Occurrence> it = new CalendarExpander.MergingIterator(iterators);
+		while (it.hasNext()) {
+			occurrences.add(it.next());
+		}
+		return occurrences;
+	}
+
+	/**
+	 * Calculates the occurrences that are happening at the given time.
+	 * @param date the time
+	 * @return the occurrences, sorted by start date
+	 */
+	public List<Occurrence> at(Date date) {
+		return query(date, new Date(date.getTime() + 1));
+	}
+
+	/**
+	 * Creates a series and adds it to the tree.
+	 * @param key the series key
+	 * @param components the components that belong to the series
+	 */
+	private void insert(Object key, List<ICalComponent> components) {
+		long start = Long.MAX_VALUE, end = Long.MIN_VALUE;
+		for (ICalComponent component : components) {
+			long[] span = span(component, timezone);
+			if (span == null) {
+				continue;
+			}
+			start = Math.min(start, span[0]);
+			end = Math.max(end, span[1]);
+		}
+
+		Series s = new Series(components, start, end, nextId++);
+		series.put(key, s);
+		if (start <= end) {
+			root = insert(root, s, random.nextInt());
+		}
+	}
+
+	/**
+	 * Calculates the earliest and latest time that a component's occurrences
+	 * can cover.
+	 * @param component the component
+	 * @param timezone the timezone to calculate occurrences in
+	 * @return the span (index 0 is the start, index 1 is the end) or null if
+	 * the component has no occurrences
+	 */
+	static long[] span(ICalComponent component, TimeZone timezone) {
+		ICalDate start = ValuedProperty.getValue(component.getProperty(DateStart.class));
+		if (start == null) {
+			return null;
+		}
+
+		RecurrenceId recurrenceId = component.getProperty(RecurrenceId.class);
+		if (recurrenceId != null && recurrenceId.getRange() == Range.THIS_AND_FUTURE) {
+			//the occurrences that it shifts could end up anywhere
+			return new long[] { Long.MIN_VALUE, Long.MAX_VALUE };
+		}
+
+		long first = start.getTime(), last = start.getTime();
+		for (RecurrenceDates rdate : component.getProperties(RecurrenceDates.class)) {
+			for (ICalDate date : rdate.getDates()) {
+				first = Math.min(first, date.getTime());
+				last = Math.max(last, date.getTime());
+			}
+		}
+
+		for (RecurrenceRule rrule : component.getProperties(RecurrenceRule.class)) {
+			Recurrence recurrence = ValuedProperty.getValue(rrule);
+			if (recurrence == null) {
+				continue;
+			}
+
+			if (recurrence.getUntil() != null) {
+				last = Math.max(last, recurrence.getUntil().getTime());
+			} else if (recurrence.getCount() != null) {
+				ICalDate lastDate = Google2445Utils.getLastOccurrence(recurrence, start, timezone);
+				if (lastDate != null) {
+					last = Math.max(last, lastDate.getTime());
+				}
+			} else {
+				last = Long.MAX_VALUE;
+			}
+		}
+
+		long maxLength = Google2445Utils.getMaxLength(component, timezone);
+		long end = (last > Long.MAX_VALUE - maxLength - PADDING) ? Long.MAX_VALUE : last + maxLength + PADDING;
+		return new long[] { first - PADDING, end };
+	}
+
+	/**
+	 * Finds the series whose spans overlap with a range.
+	 * @param node the subtree to search
+	 * @param from the start of the range
+	 * @param to the end of the range
+	 * @param matches the list to add the series to
+	 */
+	private static void search(Node node, long from, long to, List<Series> matches) {
+		while (node != null && node.maxEnd >= from) {
+			search(node.left, from, to, matches);
+
+			Series s = node.series;
+			if (s.start > to) {
+				//the right subtree only contains series that start even later
+				return;
+			}
+			if (s.end >= from) {
+				matches.add(s);
+			}
+			node = node.right;
+		}
+	}
+
+	/**
+	 * Inserts a series into a subtree.
+	 * @param node the subtree
+	 * @param s the series
+	 * @param priority the priority of the new node
+	 * @return the new root of the subtree
+	 */
+	private static Node insert(Node node, Series s, int priority) {
+		if (node == null) {
+			return new Node(s, priority);
+		}
+
+		if (s.compareTo(node.series) < 0) {
+			node.left = insert(node.left, s, priority);
+			if (node.left.priority > node.priority) {
+				node = rotateRight(node);
+			}
+		} else {
+			node.right = insert(node.right, s, priority);
+			if (node.right.priority > node.priority) {
+				node = rotateLeft(node);
+			}
+		}
+		node.update();
+		return node;
+	}
+
+	/**
+	 * Deletes a series from a subtree.
+	 * @param node the subtree
+	 * @param s the series
+	 * @return the new root of the subtree
+	 */
+	private static Node delete(Node node, Series s) {
+		if (node == null) {
+			return null;
+		}
+
+		int c = s.compareTo(node.series);
+		if (c < 0) {
+			node.left = delete(node.left, s);
+		} else if (c > 0) {
+			node.right = delete(node.right, s);
+		} else {
+			if (node.left == null) {
+				return node.right;
+			}
+			if (node.right == null) {
+				return node.left;
+			}
+
+			//rotate the node down until it has at most one child
+			if (node.left.priority > node.right.priority) {
+				node = rotateRight(node);
+				node.right = delete(node.right, s);
+			} else {
+				node = rotateLeft(node);
+				node.left = delete(node.left, s);
+			}
+		}
+		node.update();
+		return node;
+	}
+
+	private static Node rotateRight(Node node) {
+		Node left = node.left;
+		node.left = left.right;
+		left.right = node;
+		node.update();
+		left.update();
+		return left;
+	}
+
+	private static Node rotateLeft(Node node) {
+		Node right = node.right;
+		node.right = right.left;
+		right.left = node;
+		node.update();
+		right.update();
+		return right;
+	}
+
+	/**
+	 * A master component and its modified instances.
+	 */
+	private static class Series implements Comparable<Series> {
+		private final List<ICalComponent> components;
+		private final CalendarExpander expander;
+		private final long start, end, id;
+
+		public Series(List<ICalComponent> components, long start, long end, long id) {
+			this.components = Collections.unmodifiableList(components);
+			this.expander = new CalendarExpander(components);
+			this.start = start;
+			this.end = end;
+			this.id = id;
+		}
+
+		public int compareTo(Series other) {
+			if (start != other.start) {
+				return (start < other.start) ? -1 : 1;
+			}
+			if (id != other.id) {
+				return (id < other.id) ? -1 : 1;
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * A node in the interval tree. The tree is a treap that is ordered by the
+	 * start of each series' span. Each node also stores the latest end of all
+	 * the spans in its subtree, so that subtrees which end before a query's
+	 * range can be skipped.
+	 */
+	private static class Node {
+		private final Series series;
+		private final int priority;
+		private Node left, right;
+		private long maxEnd;
+
+		public Node(Series series, int priority) {
+			this.series = series;
+			this.priority = priority;
+			maxEnd = series.end;
+		}
+
+		public void update() {
+			maxEnd = series.end;
+			if (left != null && left.maxEnd > maxEnd) {
+				maxEnd = left.maxEnd;
+			}
+			if (right != null && right.maxEnd > maxEnd) {
+				maxEnd = right.maxEnd;
+			}
+		}
+	}
+}
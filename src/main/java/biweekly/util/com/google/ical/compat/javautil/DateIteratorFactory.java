@@ -17,6 +17,7 @@ package biweekly.util.com.google.ical.compat.javautil;
 import biweekly.util.com.google.ical.iter.RecurrenceIterable;
 import biweekly.util.com.google.ical.iter.RecurrenceIterator;
 import biweekly.util.com.google.ical.iter.RecurrenceIteratorFactory;
+import biweekly.util.com.google.ical.util.PackedDates;
 import biweekly.util.com.google.ical.util.TimeUtils;
 import biweekly.util.com.google.ical.values.DateTimeValueImpl;
 import biweekly.util.com.google.ical.values.DateValue;
@@ -27,6 +28,7 @@ import java.text.ParseException;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.NoSuchElementException;
 import java.util.TimeZone;
 
 /**
@@ -85,6 +87,20 @@ public class DateIteratorFactory {
     return new RecurrenceIteratorWrapper(rit);
   }
 
+  /**
+   * like {@link DateIterator#next}, but yields the date as milliseconds since
+   * 1970.  Iterators created by this factory produce the milliseconds
+   * directly, so no {@link Date} is allocated for them.
+   * @param it non null.
+   * @return the milliseconds since 1970 of the next date.
+   * @throws java.util.NoSuchElementException if there are no more dates.
+   */
+  public static long nextMillis(DateIterator it) {
+    return (it instanceof RecurrenceIteratorWrapper)
+        ? ((RecurrenceIteratorWrapper) it).nextMillis()
+        : it.next().getTime();
+  }
+
   private static final class RecurrenceIterableWrapper
       implements DateIterable {
     private final RecurrenceIterable it;
@@ -101,7 +117,16 @@ public class DateIteratorFactory {
     private final RecurrenceIterator it;
     RecurrenceIteratorWrapper(RecurrenceIterator it) { this.it = it; }
     public boolean hasNext() { return it.hasNext(); }
-    public Date next() { return dateValueToDate(it.next()); }
+    public Date next() { return new Date(nextMillis()); }
+    public long nextMillis() {
+      if (!it.hasNext()) { throw new NoSuchElementException(); }
+      long packed = RecurrenceIteratorFactory.nextPacked(it);
+      if (PackedDates.year(packed) < GREGORIAN_CUTOVER_YEAR) {
+        // java.util's dates use the Julian calendar before the cutover
+        return dateValueToDate(PackedDates.toDateValue(packed)).getTime();
+      }
+      return TimeUtils.millisFromPacked(packed);
+    }
     public void remove() { throw new UnsupportedOperationException(); }
     public void advanceTo(Date d) {
       // we need to treat midnight as a date value so that passing in
@@ -111,6 +136,12 @@ public class DateIteratorFactory {
     }
   }
 
+  /**
+   * the first year that is entirely in the Gregorian calendar, as far as
+   * {@link GregorianCalendar} is concerned.
+   */
+  private static final int GREGORIAN_CUTOVER_YEAR = 1583;
+
   static Date dateValueToDate(DateValue dvUtc) {
     GregorianCalendar c = new GregorianCalendar(TimeUtils.utcTimezone());
     c.clear();
@@ -0,0 +1,273 @@
+package biweekly.util.com.google.ical.iter;
+
+import java.util.List;
+import java.util.TimeZone;
+
+import biweekly.util.com.google.ical.util.PackedDates;
+import biweekly.util.com.google.ical.util.TimeUtils;
+import biweekly.util.com.google.ical.util.ZoneOffsets;
+import biweekly.util.com.google.ical.values.DateValue;
+import biweekly.util.com.google.ical.values.Frequency;
+import biweekly.util.com.google.ical.values.RRule;
+import biweekly.util.com.google.ical.values.TimeValue;
+import biweekly.util.com.google.ical.values.Weekday;
+import biweekly.util.com.google.ical.values.WeekdayNum;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * an iterator over a recurrence rule whose instances are a fixed number of
+ * days apart, such as <code>FREQ=DAILY;INTERVAL=3</code> or
+ * <code>FREQ=WEEKLY;BYDAY=MO</code> (where dtStart is a Monday).
+ *
+ * <p>Instead of running the generator cascade, the n-th instance is computed
+ * directly from dtStart, so finding the instance at or after a date, the
+ * instance at a given index, and the number of instances allowed by COUNT or
+ * UNTIL are all constant time operations.  The instances are the same as the
+ * ones that {@link RRuleIteratorImpl} would generate for the rule.</p>
+ *
+ * @author Michael Angstadt
+ */
+final class ArithmeticIteratorImpl implements PackedRecurrenceIterator {
+  /** a packed value that no date can have */
+  private static final long NONE = Long.MIN_VALUE;
+  private static final long SECS_PER_DAY = 60L * 60 * 24;
+  /** keeps the day arithmetic well inside the range of an int */
+  private static final long MAX_DAY = Integer.MAX_VALUE / 2;
+
+  /** the {@link TimeUtils#fixedFromGregorian fixed} day of dtStart */
+  private final int startDay_;
+  /** the seconds since midnight of dtStart's time of day */
+  private final int startSecs_;
+  /** true iff dtStart has a time */
+  private final boolean timed_;
+  /** the number of days between instances */
+  private final int step_;
+  /** the timezone the instances are generated in */
+  private final ZoneOffsets zone_;
+  /** one past the index of the last instance */
+  private final long limit_;
+  /** the index of the next instance to yield */
+  private long index_;
+  /**
+   * true iff the instance at index_ has already been looked at, the way
+   * {@link RRuleIteratorImpl} generates its pending instance ahead of
+   * {@link #next}.
+   */
+  private boolean pending_;
+
+  private ArithmeticIteratorImpl(
+      DateValue dtStart, TimeZone tzid, int step, int count,
+      DateValue untilUtc) {
+    this.startDay_ = TimeUtils.fixedFromGregorian(
+        dtStart.year(), dtStart.month(), dtStart.day());
+    this.timed_ = dtStart instanceof TimeValue;
+    if (this.timed_) {
+      TimeValue tv = (TimeValue) dtStart;
+      this.startSecs_ = tv.second() + 60 * (tv.minute() + 60 * tv.hour());
+    } else {
+      this.startSecs_ = 0;
+    }
+    this.step_ = step;
+    this.zone_ = ZoneOffsets.forZone(tzid);
+
+    long limit = (MAX_DAY - this.startDay_) / step + 1;
+    if (0 != count) {
+      limit = Math.min(limit, count);
+    } else if (null != untilUtc) {
+      // apply UNTIL the same way as Conditions.untilCondition
+      long until = PackedDates.pack(untilUtc);
+      if (PackedDates.hasTime(until) != this.timed_) {
+        until = this.timed_
+            ? PackedDates.dayStart(until) : PackedDates.toDate(until);
+      }
+      limit = Math.min(limit, this.indexAfter(until, 0, limit));
+    }
+    this.limit_ = limit;
+    this.pending_ = 0 != limit;
+  }
+
+  /**
+   * creates an iterator for the given rule if its instances are a fixed
+   * number of days apart.
+   * @return null if the rule has to be handled by the generator cascade
+   */
+  static ArithmeticIteratorImpl create(
+      RRule rrule, DateValue dtStart, TimeZone tzid) {
+    if (0 != rrule.getByMonth().length
+        || 0 != rrule.getByMonthDay().length
+        || 0 != rrule.getByWeekNo().length
+        || 0 != rrule.getByYearDay().length
+        || 0 != rrule.getBySetPos().length
+        || 0 != rrule.getByHour().length
+        || 0 != rrule.getByMinute().length
+        || 0 != rrule.getBySecond().length) {
+      return null;
+    }
+
+    int interval = rrule.getInterval();
+    if (interval <= 0) { interval = 1; }
+
+    List<WeekdayNum> byDay = rrule.getByDay();
+    boolean onStartDay;
+    switch (byDay.size()) {
+      case 0:
+        onStartDay = false;
+        break;
+      case 1:
+        // only a BYDAY that always matches dtStart's day of the week is simple
+        WeekdayNum day = byDay.get(0);
+        if (0 != day.num || day.wday != Weekday.valueOf(dtStart)) {
+          return null;
+        }
+        onStartDay = true;
+        break;
+      default:
+        return null;
+    }
+
+    int step;
+    Frequency freq = rrule.getFreq();
+    if (Frequency.DAILY == freq) {
+      // the cascade generates a DAILY rule's BYDAY days with a byDayGenerator,
+      // which doesn't take the interval into account
+      step = onStartDay ? 7 : interval;
+    } else if (Frequency.WEEKLY == freq) {
+      step = 7 * interval;
+    } else {
+      return null;
+    }
+    if (step <= 0 || step > MAX_DAY) { return null; }  // overflow
+
+    return new ArithmeticIteratorImpl(
+        dtStart, tzid, step, rrule.getCount(), rrule.getUntil());
+  }
+
+  public boolean hasNext() {
+    if (this.index_ < this.limit_) { this.pending_ = true; }
+    return this.index_ < this.limit_;
+  }
+
+  public DateValue next() {
+    long next = this.nextPacked();
+    return NONE == next ? null : PackedDates.toDateValue(next);
+  }
+
+  public long nextPacked() {
+    if (this.index_ >= this.limit_) { return NONE; }
+    this.pending_ = false;
+    return this.get(this.index_++);
+  }
+
+  public void remove() { throw new UnsupportedOperationException(); }
+
+  public void advanceTo(DateValue dateUtc) {
+    long target = PackedDates.pack(dateUtc);
+    if (this.pending_ && this.get(this.index_) >= target) {
+      return;
+    }
+
+    // Short-circuit the same way RRuleIteratorImpl does: if the target's
+    // local date is not after the day of the last instance looked at, keep
+    // the next instance.
+    long last = this.pending_ ? this.index_ : this.index_ - 1;
+    if (last >= 0 && last < this.limit_
+        && this.zone_.fromUtc(target) <= this.localDate(last)) {
+      return;
+    }
+
+    this.index_ = this.indexAfter(target - 1, this.index_, this.limit_);
+    this.pending_ = this.index_ < this.limit_;
+  }
+
+  /** the number of instances in the recurrence. */
+  long size() {
+    return this.limit_;
+  }
+
+  /**
+   * finds the index of the first instance on or after a date.
+   * @param dateUtc a date in UTC
+   * @return the index, or {@link #size} if there is no such instance
+   */
+  long indexOf(DateValue dateUtc) {
+    return this.indexAfter(PackedDates.pack(dateUtc) - 1, 0, this.limit_);
+  }
+
+  /**
+   * computes an instance of the recurrence.
+   * @param index the zero-based index of the instance (the instance at index
+   *   zero is dtStart)
+   * @return the instance, packed and in UTC, or NONE if there is no such
+   *   instance
+   */
+  long get(long index) {
+    if (index < 0 || index >= this.limit_) { return NONE; }
+    return this.instance(index);
+  }
+
+  private long instance(long index) {
+    long day = this.startDay_ + index * this.step_;
+    long local = TimeUtils.packedTimeFromSecsSinceEpoch(
+        day * SECS_PER_DAY + this.startSecs_);
+    return this.timed_
+        ? this.zone_.toUtc(local) : PackedDates.toDate(local);
+  }
+
+  /** the local date of an instance, without its time. */
+  private long localDate(long index) {
+    long day = this.startDay_ + index * this.step_;
+    return PackedDates.toDate(
+        TimeUtils.packedTimeFromSecsSinceEpoch(day * SECS_PER_DAY));
+  }
+
+  /**
+   * finds the index of the first instance after a date.
+   * @param dateUtc a packed date in UTC
+   * @param min the smallest index to return
+   * @param max the largest index to return
+   */
+  private long indexAfter(long dateUtc, long min, long max) {
+    // Estimate the index from the date's local day, then correct for any
+    // difference introduced by the conversion to UTC.
+    long local = this.timed_ ? this.zone_.fromUtc(dateUtc) : dateUtc;
+    long days = TimeUtils.fixedFromGregorian(
+        PackedDates.year(local), PackedDates.month(local),
+        PackedDates.day(local)) - (long) this.startDay_;
+    long index = days < 0 ? 0 : days / this.step_;
+    if (index < min) { index = min; }
+    if (index > max) { index = max; }
+
+    while (index > min && this.instance(index - 1) > dateUtc) {
+      --index;
+    }
+    while (index < max && this.instance(index) <= dateUtc) {
+      ++index;
+    }
+    return index;
+  }
+
+}
@@ -14,6 +14,7 @@
 
 package biweekly.util.com.google.ical.iter;
 
+import biweekly.util.com.google.ical.util.PackedDates;
 import biweekly.util.com.google.ical.values.DateValue;
 
 import java.util.Collection;
@@ -27,7 +28,7 @@ import java.util.PriorityQueue;
  *
  * @author mikesamuel+svn@gmail.com (Mike Samuel)
  */
-final class CompoundIteratorImpl implements RecurrenceIterator {
+final class CompoundIteratorImpl implements PackedRecurrenceIterator {
 
   /** a queue that keeps the earliest dates at the head */
   private PriorityQueue<HeapElement> queue;
@@ -80,6 +81,15 @@ final class CompoundIteratorImpl implements RecurrenceIterator {
     return head;
   }
 
+  public long nextPacked() {
+    requirePending();
+    if (null == pending) { throw new NoSuchElementException(); }
+    long head = pending.comparable();
+    reattach(pending);
+    pending = null;
+    return head;
+  }
+
   public void remove() { throw new UnsupportedOperationException(); }
 
   public void advanceTo(DateValue newStart) {
@@ -175,17 +185,28 @@ final class HeapElement {
   final boolean inclusion;
   /** the {@link DateValueComparison#comparable} for {@link #head}. */
   private long comparable;
-  /** the last value removed from it.  In utc. */
+  /**
+   * the last value removed from it.  In utc.  Null if it was removed in
+   * packed form and has not been materialized yet.
+   */
   private DateValue head;
   private RecurrenceIterator it;
+  /** non null iff it can produce packed values */
+  private PackedRecurrenceIterator packedIt;
 
   HeapElement(boolean inclusion, RecurrenceIterator it) {
     this.inclusion = inclusion;
     this.it = it;
+    if (it instanceof PackedRecurrenceIterator) {
+      this.packedIt = (PackedRecurrenceIterator) it;
+    }
   }
 
   /** the last value removed from the iterator. */
-  DateValue head() { return head; }
+  DateValue head() {
+    if (null == head) { head = PackedDates.toDateValue(comparable); }
+    return head;
+  }
   /**
    * A given HeapElement may be compared to many others as it bubbles towards
    * the heap's root, so we cache this for each HeapElement.
@@ -197,8 +218,13 @@ final class HeapElement {
    */
   boolean shift() {
     if (!it.hasNext()) { return false; }
-    head = it.next();
-    comparable = DateValueComparison.comparable(head);
+    if (null != packedIt) {
+      comparable = packedIt.nextPacked();
+      head = null;
+    } else {
+      head = it.next();
+      comparable = DateValueComparison.comparable(head);
+    }
     return true;
   }
 
@@ -213,7 +239,7 @@ final class HeapElement {
   @Override
   public String toString() {
     return
-      "[" + head.toString() + (inclusion ? ", inclusion]" : ", exclusion]");
+      "[" + head().toString() + (inclusion ? ", inclusion]" : ", exclusion]");
   }
 
   /** compares to heap elements by comparing their heads. */
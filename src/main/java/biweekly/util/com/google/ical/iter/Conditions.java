@@ -14,7 +14,7 @@
 
 package biweekly.util.com.google.ical.iter;
 
-import biweekly.util.com.google.ical.util.Predicate;
+import biweekly.util.com.google.ical.util.PackedDates;
 import biweekly.util.com.google.ical.values.DateValue;
 
 /**
@@ -25,11 +25,11 @@ import biweekly.util.com.google.ical.values.DateValue;
 final class Conditions {
 
   /** constructs a condition that fails after passing count dates. */
-  static Predicate<DateValue> countCondition(final int count) {
-    return new Predicate<DateValue>() {
+  static PackedDatePredicate countCondition(final int count) {
+    return new PackedDatePredicate() {
 	  private static final long serialVersionUID = -3770774958208833665L;
 	  int count_ = count;
-      public boolean apply(DateValue value) {
+      public boolean apply(long value) {
         return --count_ >= 0;
       }
       @Override
@@ -43,11 +43,12 @@ final class Conditions {
    * constructs a condition that passes for every date on or before until.
    * @param until non null.
    */
-  static Predicate<DateValue> untilCondition(final DateValue until) {
-    return new Predicate<DateValue>() {
+  static PackedDatePredicate untilCondition(final DateValue until) {
+    final long packedUntil = PackedDates.pack(until);
+    return new PackedDatePredicate() {
       private static final long serialVersionUID = -130394842437801858L;
-      public boolean apply(DateValue date) {
-        return date.compareTo(until) <= 0;
+      public boolean apply(long date) {
+        return date <= packedUntil;
       }
       @Override
       public String toString() {
@@ -0,0 +1,350 @@
+package biweekly.util.com.google.ical.iter;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+import biweekly.util.com.google.ical.util.PackedDates;
+import biweekly.util.com.google.ical.values.DateValue;
+import biweekly.util.com.google.ical.values.RRule;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * an index over the instances of a rule that has a COUNT, so that the rule
+ * can be advanced and counted without generating every instance from
+ * dtStart.
+ *
+ * <p>A COUNT condition has to see every instance, so the generators can't
+ * skip ahead (see {@link RRuleIteratorImpl#advanceTo}).  The index remembers
+ * every {@link #SPACING}-th instance.  The same rule without its COUNT
+ * generates the same instances and can skip ahead, so an iterator can jump
+ * to the checkpoint before a date and only has to count the instances that
+ * follow it.</p>
+ *
+ * <p>The index is built lazily.  The instances are only generated once
+ * something needs to know about the instances up to a date, and only up to
+ * that date.  Plain iteration never builds it.</p>
+ *
+ * <p>Instances of this class are thread safe, so they can be cached and
+ * shared between threads.</p>
+ *
+ * @author Michael Angstadt
+ */
+public final class CountCheckpoints {
+  /** the number of instances between checkpoints */
+  static final int SPACING = 64;
+  /** a packed value that no date can have */
+  private static final long NONE = Long.MIN_VALUE;
+
+  /** the rule that the index was built from */
+  private final RRule rrule_;
+  /** the rule with its COUNT removed */
+  private final RRule openRule_;
+  private final long dtStart_;
+  private final TimeZone tzid_;
+  /** the COUNT of the rule */
+  private final long count_;
+
+  /**
+   * the instance at every multiple of SPACING, packed and in UTC, starting
+   * with the first instance.  Guarded by this.
+   */
+  private long[] checkpoints_ = new long[16];
+  /** the number of elements in checkpoints_.  Guarded by this. */
+  private int nCheckpoints_;
+  /**
+   * generates the instances that the checkpoints are taken from, or null once
+   * all of the instances have been generated.  Guarded by this.
+   */
+  private PackedRecurrenceIterator scan_;
+  /** the number of instances that scan_ has generated.  Guarded by this. */
+  private long scanned_;
+  /** the last instance that scan_ has generated, or NONE.  Guarded by this. */
+  private long lastScanned_ = NONE;
+
+  private CountCheckpoints(
+      RRule rrule, RRule openRule, DateValue dtStart, TimeZone tzid) {
+    this.rrule_ = rrule;
+    this.openRule_ = openRule;
+    this.dtStart_ = PackedDates.pack(dtStart);
+    this.tzid_ = tzid;
+    this.count_ = rrule.getCount();
+    this.scan_ = (PackedRecurrenceIterator)
+      RecurrenceIteratorFactory.createRecurrenceIterator(rrule, dtStart, tzid);
+  }
+
+  /**
+   * creates an index for a rule.  No instances are generated until the index
+   * is used.
+   * @param rrule the rule.  It must not be modified afterwards.
+   * @param dtStart the start of the recurrence in tzid
+   * @param tzid the timezone that the instances are generated in
+   * @return the index, or null if the rule doesn't need one because it has no
+   *   COUNT, has too few instances, or its instances can already be found
+   *   without generating the ones before them, or if the rule can't skip
+   *   ahead even without its COUNT
+   */
+  public static CountCheckpoints create(
+      RRule rrule, DateValue dtStart, TimeZone tzid) {
+    if (rrule.getCount() <= SPACING
+        || null != ArithmeticIteratorImpl.create(rrule, dtStart, tzid)) {
+      return null;
+    }
+    RRule openRule = withoutCount(rrule);
+    if (!RecurrenceIteratorFactory.canShortcutAdvance(openRule)) {
+      return null;
+    }
+    return new CountCheckpoints(rrule, openRule, dtStart, tzid);
+  }
+
+  /**
+   * true iff this index was built for the given start date and timezone.
+   */
+  public boolean appliesTo(DateValue dtStart, TimeZone tzid) {
+    return this.dtStart_ == PackedDates.pack(dtStart)
+        && this.tzid_.equals(tzid);
+  }
+
+  /** the number of instances of the rule. */
+  public synchronized long size() {
+    this.scanTo(Long.MAX_VALUE);
+    return this.scanned_;
+  }
+
+  /** the last instance in UTC, or null if the rule has no instances. */
+  public synchronized DateValue last() {
+    this.scanTo(Long.MAX_VALUE);
+    return NONE == this.lastScanned_
+        ? null : PackedDates.toDateValue(this.lastScanned_);
+  }
+
+  /**
+   * creates an iterator over the instances of the rule whose
+   * {@link RecurrenceIterator#advanceTo advanceTo} skips ahead instead of
+   * generating every instance before the date.
+   */
+  public RecurrenceIterator iterator() {
+    return new CheckpointIterator();
+  }
+
+  /**
+   * counts the instances that fall within a range.
+   * @param fromUtc the start of the range (inclusive) or null to count from
+   *   the first instance
+   * @param toUtc the end of the range (exclusive) or null to count up to the
+   *   last instance
+   */
+  public long count(DateValue fromUtc, DateValue toUtc) {
+    long lo = null == fromUtc ? 0 : this.indexOf(PackedDates.pack(fromUtc));
+    long hi = null == toUtc
+        ? this.size() : this.indexOf(PackedDates.pack(toUtc));
+    return Math.max(0, hi - lo);
+  }
+
+  /**
+   * finds the latest instance that comes before a date.
+   * @param dateUtc the date (exclusive)
+   * @return the instance in UTC, or null if there are no instances before the
+   *   date
+   */
+  public DateValue previousBefore(DateValue dateUtc) {
+    long index = this.indexOf(PackedDates.pack(dateUtc));
+    if (0 == index) { return null; }
+
+    --index;
+    PackedRecurrenceIterator it = this.iteratorAt((int) (index / SPACING));
+    long instance = it.nextPacked();
+    for (long i = index % SPACING; i > 0; --i) {
+      instance = it.nextPacked();
+    }
+    return PackedDates.toDateValue(instance);
+  }
+
+  /**
+   * finds the number of instances that come before a date.
+   * @param dateUtc a packed date in UTC
+   */
+  long indexOf(long dateUtc) {
+    int checkpoint;
+    synchronized (this) {
+      this.scanTo(dateUtc);
+      if (this.lastScanned_ < dateUtc) {
+        // every instance comes before the date
+        return this.scanned_;
+      }
+      checkpoint = this.checkpointBefore(dateUtc);
+    }
+    if (checkpoint < 0) { return 0; }
+    if (this.checkpoint(checkpoint) == dateUtc) {
+      return (long) checkpoint * SPACING;
+    }
+
+    PackedRecurrenceIterator it = this.iteratorAt(checkpoint);
+    long index = (long) checkpoint * SPACING;
+    while (it.hasNext() && it.nextPacked() < dateUtc) {
+      ++index;
+    }
+    return index;
+  }
+
+  /**
+   * generates instances until all of the instances before a date have been
+   * seen, taking a checkpoint every SPACING instances.
+   * @param dateUtc a packed date in UTC
+   */
+  private synchronized void scanTo(long dateUtc) {
+    while (null != this.scan_ && this.lastScanned_ < dateUtc) {
+      if (!this.scan_.hasNext()) {
+        this.scan_ = null;
+        break;
+      }
+      long instance = this.scan_.nextPacked();
+      if (0 == this.scanned_ % SPACING) {
+        if (this.nCheckpoints_ == this.checkpoints_.length) {
+          this.checkpoints_ =
+            Arrays.copyOf(this.checkpoints_, this.nCheckpoints_ * 2);
+        }
+        this.checkpoints_[this.nCheckpoints_++] = instance;
+      }
+      ++this.scanned_;
+      this.lastScanned_ = instance;
+    }
+  }
+
+  /**
+   * finds the latest checkpoint that is on or before a date.
+   * {@link #scanTo} must have been called with the date first.
+   * @param dateUtc a packed date in UTC
+   * @return the index of the checkpoint or -1 if there is none
+   */
+  private synchronized int checkpointBefore(long dateUtc) {
+    int checkpoint = Arrays.binarySearch(
+        this.checkpoints_, 0, this.nCheckpoints_, dateUtc);
+    return checkpoint < 0 ? -checkpoint - 2 : checkpoint;
+  }
+
+  private synchronized long checkpoint(int checkpoint) {
+    return this.checkpoints_[checkpoint];
+  }
+
+  /**
+   * creates an iterator over the rule without its COUNT whose next instance
+   * is the given checkpoint.
+   */
+  private PackedRecurrenceIterator iteratorAt(int checkpoint) {
+    PackedRecurrenceIterator it = (PackedRecurrenceIterator)
+      RecurrenceIteratorFactory.createRecurrenceIterator(
+          this.openRule_, PackedDates.toDateValue(this.dtStart_), this.tzid_);
+    it.advanceTo(PackedDates.toDateValue(this.checkpoint(checkpoint)));
+    return it;
+  }
+
+  /**
+   * copies a rule, removing its COUNT.
+   */
+  private static RRule withoutCount(RRule rrule) {
+    RRule copy = new RRule();
+    copy.setName(rrule.getName());
+    copy.setFreq(rrule.getFreq());
+    copy.setWkSt(rrule.getWkSt());
+    copy.setInterval(rrule.getInterval());
+    copy.setByDay(rrule.getByDay());
+    copy.setByMonth(rrule.getByMonth());
+    copy.setByMonthDay(rrule.getByMonthDay());
+    copy.setByWeekNo(rrule.getByWeekNo());
+    copy.setByYearDay(rrule.getByYearDay());
+    copy.setByHour(rrule.getByHour());
+    copy.setByMinute(rrule.getByMinute());
+    copy.setBySecond(rrule.getBySecond());
+    copy.setBySetPos(rrule.getBySetPos());
+    return copy;
+  }
+
+  /**
+   * iterates over the instances of the rule without its COUNT, and stops
+   * after COUNT instances.  Until advanceTo is called, this is no different
+   * from iterating over the rule itself.  advanceTo jumps to the checkpoint
+   * before the date when that is ahead of the iterator.
+   */
+  private final class CheckpointIterator implements PackedRecurrenceIterator {
+    /** the iterator that the instances come from */
+    private PackedRecurrenceIterator it_;
+    /** the number of instances that it_ has produced */
+    private long index_;
+    /** an instance that has been fetched but not returned, or NONE */
+    private long pending_ = NONE;
+
+    CheckpointIterator() {
+      this.it_ = (PackedRecurrenceIterator)
+        RecurrenceIteratorFactory.createRecurrenceIterator(
+            rrule_, PackedDates.toDateValue(dtStart_), tzid_);
+    }
+
+    public boolean hasNext() {
+      if (NONE == this.pending_ && this.index_ < count_
+          && this.it_.hasNext()) {
+        this.pending_ = this.it_.nextPacked();
+        ++this.index_;
+      }
+      return NONE != this.pending_;
+    }
+
+    public DateValue next() {
+      long next = this.nextPacked();
+      return NONE == next ? null : PackedDates.toDateValue(next);
+    }
+
+    public long nextPacked() {
+      this.hasNext();
+      long next = this.pending_;
+      this.pending_ = NONE;
+      return next;
+    }
+
+    public void advanceTo(DateValue dateUtc) {
+      long packedUtc = PackedDates.pack(dateUtc);
+      if (NONE != this.pending_ && packedUtc <= this.pending_) { return; }
+
+      int checkpoint;
+      synchronized (CountCheckpoints.this) {
+        scanTo(packedUtc);
+        checkpoint = checkpointBefore(packedUtc);
+      }
+      if (checkpoint >= 0 && (long) checkpoint * SPACING > this.index_) {
+        this.it_ = iteratorAt(checkpoint);
+        this.index_ = (long) checkpoint * SPACING;
+        this.pending_ = NONE;
+      }
+
+      while (this.hasNext() && this.pending_ < packedUtc) {
+        this.pending_ = NONE;
+      }
+    }
+
+    public void remove() { throw new UnsupportedOperationException(); }
+  }
+
+}
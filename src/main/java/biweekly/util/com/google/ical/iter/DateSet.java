@@ -0,0 +1,152 @@
+package biweekly.util.com.google.ical.iter;
+
+import java.util.Arrays;
+
+import biweekly.util.com.google.ical.util.PackedDates;
+import biweekly.util.com.google.ical.values.DateValue;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * an immutable set of dates, such as the values of a component's RDATE or
+ * EXDATE properties.
+ *
+ * <p>The dates are stored as a sorted array of {@link PackedDates packed}
+ * UTC values, so an iterator over them can binary search its way to a
+ * date, and in an open-addressed hash table, so checking whether a date is
+ * in the set takes constant time.  Since the set is immutable, it can be
+ * built once and shared by every iterator that needs it.</p>
+ *
+ * <p>As with {@link RecurrenceIteratorFactory#except}, dates and date-times
+ * never match one another.</p>
+ *
+ * @author Michael Angstadt
+ */
+public final class DateSet {
+  /** a packed value that no date can have, which marks an empty slot */
+  private static final long NONE = Long.MIN_VALUE;
+
+  /** the dates, packed, in UTC, sorted and without duplicates */
+  private final long[] dates_;
+  /** the dates, hashed.  The length is a power of two. */
+  private final long[] table_;
+
+  /**
+   * @param datesUtc the {@link PackedDates packed} dates in UTC, in any order.
+   *   Duplicates are ignored.
+   */
+  public DateSet(long[] datesUtc) {
+    long[] dates = datesUtc.clone();
+    Arrays.sort(dates);
+    int k = 0;
+    for (int i = 0; i < dates.length; ++i) {
+      if (0 == k || dates[i] != dates[k - 1]) { dates[k++] = dates[i]; }
+    }
+    this.dates_ = k == dates.length ? dates : Arrays.copyOf(dates, k);
+
+    // keep the table at most half full so probe sequences stay short
+    int capacity = 2;
+    while (capacity < 2 * k) { capacity <<= 1; }
+    long[] table = new long[capacity];
+    Arrays.fill(table, NONE);
+    for (long date : this.dates_) {
+      int slot = slot(date, capacity);
+      while (NONE != table[slot]) { slot = (slot + 1) & (capacity - 1); }
+      table[slot] = date;
+    }
+    this.table_ = table;
+  }
+
+  /** the number of dates in the set. */
+  public int size() {
+    return this.dates_.length;
+  }
+
+  /**
+   * true iff the set contains a date.
+   * @param dateUtc a {@link PackedDates packed} date in UTC
+   */
+  public boolean contains(long dateUtc) {
+    int mask = this.table_.length - 1;
+    for (int slot = slot(dateUtc, this.table_.length); ;
+         slot = (slot + 1) & mask) {
+      long date = this.table_[slot];
+      if (date == dateUtc) { return true; }
+      if (NONE == date) { return false; }
+    }
+  }
+
+  /** true iff the set contains a date in UTC. */
+  public boolean contains(DateValue dateUtc) {
+    return this.contains(PackedDates.pack(dateUtc));
+  }
+
+  /** an iterator over the dates in the set, in order. */
+  public RecurrenceIterator iterator() {
+    return new DateSetIteratorImpl(this.dates_);
+  }
+
+  private static int slot(long date, int capacity) {
+    // Packed dates differ mostly in their middle bits, so mix all of the bits
+    // into the low ones that select the slot.
+    long h = date * 0x9E3779B97F4A7C15L;
+    return (int) (h >>> 32) & (capacity - 1);
+  }
+
+  /**
+   * an iterator over a sorted array of packed dates.
+   */
+  private static final class DateSetIteratorImpl
+      implements PackedRecurrenceIterator {
+    private final long[] dates_;
+    private int i_;
+
+    DateSetIteratorImpl(long[] dates) {
+      this.dates_ = dates;
+    }
+
+    public boolean hasNext() { return this.i_ < this.dates_.length; }
+
+    public DateValue next() {
+      return PackedDates.toDateValue(this.nextPacked());
+    }
+
+    public long nextPacked() { return this.dates_[this.i_++]; }
+
+    public void remove() { throw new UnsupportedOperationException(); }
+
+    public void advanceTo(DateValue newStartUtc) {
+      long newStart = PackedDates.pack(newStartUtc);
+      if (this.i_ >= this.dates_.length || this.dates_[this.i_] >= newStart) {
+        return;
+      }
+      int i = Arrays.binarySearch(
+          this.dates_, this.i_, this.dates_.length, newStart);
+      this.i_ = i < 0 ? -i - 1 : i;
+    }
+  }
+
+}
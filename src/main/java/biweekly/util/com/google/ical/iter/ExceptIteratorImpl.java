@@ -0,0 +1,97 @@
+package biweekly.util.com.google.ical.iter;
+
+import java.util.NoSuchElementException;
+
+import biweekly.util.com.google.ical.util.PackedDates;
+import biweekly.util.com.google.ical.values.DateValue;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * an iterator over the dates of another iterator that are not in a
+ * {@link DateSet}.
+ *
+ * <p>Unlike an exclusion that is merged in by {@link CompoundIteratorImpl},
+ * the excluded dates are never iterated over, so it doesn't matter how many
+ * of them there are, or how far away from the included dates they are.</p>
+ *
+ * @author Michael Angstadt
+ */
+final class ExceptIteratorImpl implements PackedRecurrenceIterator {
+  /** a packed value that no date can have */
+  private static final long NONE = Long.MIN_VALUE;
+
+  private final RecurrenceIterator included_;
+  /** non null iff included_ can produce packed values */
+  private final PackedRecurrenceIterator packedIncluded_;
+  private final DateSet excluded_;
+  /** the next date that isn't excluded, or NONE */
+  private long pending_ = NONE;
+
+  ExceptIteratorImpl(RecurrenceIterator included, DateSet excluded) {
+    this.included_ = included;
+    this.packedIncluded_ = included instanceof PackedRecurrenceIterator
+        ? (PackedRecurrenceIterator) included : null;
+    this.excluded_ = excluded;
+  }
+
+  public boolean hasNext() {
+    this.requirePending();
+    return NONE != this.pending_;
+  }
+
+  public DateValue next() {
+    return PackedDates.toDateValue(this.nextPacked());
+  }
+
+  public long nextPacked() {
+    this.requirePending();
+    if (NONE == this.pending_) { throw new NoSuchElementException(); }
+    long next = this.pending_;
+    this.pending_ = NONE;
+    return next;
+  }
+
+  public void remove() { throw new UnsupportedOperationException(); }
+
+  public void advanceTo(DateValue newStartUtc) {
+    if (NONE != this.pending_) {
+      if (this.pending_ >= PackedDates.pack(newStartUtc)) { return; }
+      this.pending_ = NONE;
+    }
+    this.included_.advanceTo(newStartUtc);
+  }
+
+  private void requirePending() {
+    while (NONE == this.pending_ && this.included_.hasNext()) {
+      long next = null != this.packedIncluded_
+          ? this.packedIncluded_.nextPacked()
+          : DateValueComparison.comparable(this.included_.next());
+      if (!this.excluded_.contains(next)) { this.pending_ = next; }
+    }
+  }
+
+}
@@ -14,12 +14,12 @@
 
 package biweekly.util.com.google.ical.iter;
 
+import java.util.List;
+
 import biweekly.util.com.google.ical.util.DTBuilder;
-import biweekly.util.com.google.ical.util.Predicate;
-import biweekly.util.com.google.ical.util.Predicates;
+import biweekly.util.com.google.ical.util.PackedDates;
 import biweekly.util.com.google.ical.util.TimeUtils;
 import biweekly.util.com.google.ical.values.DateValue;
-import biweekly.util.com.google.ical.values.TimeValue;
 import biweekly.util.com.google.ical.values.Weekday;
 import biweekly.util.com.google.ical.values.WeekdayNum;
 
@@ -45,12 +45,15 @@ class Filters {
    * @param weeksInYear are the week numbers meant to be weeks in the
    *   current year, or weeks in the current month.
    */
-  static Predicate<DateValue> byDayFilter(
+  static PackedDatePredicate byDayFilter(
       final WeekdayNum[] days, final boolean weeksInYear, final Weekday wkst) {
-    return new Predicate<DateValue>() {
+    return new PackedDatePredicate() {
 		private static final long serialVersionUID = 1636822853835207274L;
-		public boolean apply(DateValue date) {
-          Weekday dow = Weekday.valueOf(date);
+		public boolean apply(long date) {
+          int year = PackedDates.year(date);
+          int month = PackedDates.month(date);
+          int dayOfMonth = PackedDates.day(date);
+          Weekday dow = Weekday.valueOf(year, month, dayOfMonth);
 
           int nDays;
           // first day of the week in the given year or month
@@ -59,14 +62,13 @@ class Filters {
           // in [0, lengthOfMonthOrYear - 1]
           int instance;
           if (weeksInYear) {
-            nDays = TimeUtils.yearLength(date.year());
-            dow0 = Weekday.firstDayOfWeekInMonth(date.year(), 1);
-            instance = TimeUtils.dayOfYear(
-                date.year(), date.month(), date.day());
+            nDays = TimeUtils.yearLength(year);
+            dow0 = Weekday.firstDayOfWeekInMonth(year, 1);
+            instance = TimeUtils.dayOfYear(year, month, dayOfMonth);
           } else {
-            nDays = TimeUtils.monthLength(date.year(), date.month());
-            dow0 = Weekday.firstDayOfWeekInMonth(date.year(), date.month());
-            instance = date.day() - 1;
+            nDays = TimeUtils.monthLength(year, month);
+            dow0 = Weekday.firstDayOfWeekInMonth(year, month);
+            instance = dayOfMonth - 1;
           }
 
           // which week of the year or month does this date fall on?
@@ -110,15 +112,17 @@ class Filters {
    * constructs a day filter based on a BYDAY rule.
    * @param monthDays days of the month in [-31, 31] != 0
    */
-  static Predicate<DateValue> byMonthDayFilter(final int[] monthDays) {
-    return new Predicate<DateValue>() {
+  static PackedDatePredicate byMonthDayFilter(final int[] monthDays) {
+    return new PackedDatePredicate() {
 	  private static final long serialVersionUID = -1618039447294490037L;
-	  public boolean apply(DateValue date) {
-        int nDays = TimeUtils.monthLength(date.year(), date.month());
+	  public boolean apply(long date) {
+        int nDays = TimeUtils.monthLength(
+            PackedDates.year(date), PackedDates.month(date));
+        int dateDay = PackedDates.day(date);
         for (int i = monthDays.length; --i >= 0;) {
           int day = monthDays[i];
           if (day < 0) { day += nDays + 1; }
-          if (day == date.day()) { return true; }
+          if (day == dateDay) { return true; }
         }
         return false;
       }
@@ -132,21 +136,25 @@ class Filters {
    * @param wkst day of the week that the week starts on.
    * @param dtStart non null
    */
-  static Predicate<DateValue> weekIntervalFilter(
+  static PackedDatePredicate weekIntervalFilter(
       final int interval, final Weekday wkst, final DateValue dtStart) {
-    return new Predicate<DateValue>() {
+    return new PackedDatePredicate() {
 	  private static final long serialVersionUID = 7059994888520369846L;
-	  DateValue wkStart;
+	  int wkStart;
       {
         // the latest day with day of week wkst on or before dtStart
         DTBuilder wkStartB = new DTBuilder(dtStart);
         wkStartB.day -=
           (7 + Weekday.valueOf(dtStart).javaDayNum - wkst.javaDayNum) % 7;
-        wkStart = wkStartB.toDate();
+        wkStartB.normalize();
+        wkStart = TimeUtils.fixedFromGregorian(
+            wkStartB.year, wkStartB.month, wkStartB.day);
       }
 
-      public boolean apply(DateValue date) {
-        int daysBetween = TimeUtils.daysBetween(date, wkStart);
+      public boolean apply(long date) {
+        int daysBetween = TimeUtils.fixedFromGregorian(
+            PackedDates.year(date), PackedDates.month(date),
+            PackedDates.day(date)) - wkStart;
         if (daysBetween < 0) {
           // date must be before dtStart.  Shouldn't occur in practice.
           daysBetween += (interval * 7 * (1 + daysBetween / (-7 * interval)));
@@ -164,19 +172,18 @@ class Filters {
    * constructs an hour filter based on a BYHOUR rule.
    * @param hours hours of the day in [0, 23]
    */
-  static Predicate<DateValue> byHourFilter(int[] hours) {
+  static PackedDatePredicate byHourFilter(int[] hours) {
     int hoursByBit = 0;
     for (int hour : hours) { hoursByBit |= 1 << hour; }
     if ((hoursByBit & LOW_24_BITS) == LOW_24_BITS) {
-      return Predicates.alwaysTrue();
+      return PackedDatePredicate.ALWAYS_TRUE;
     }
     final int bitField = hoursByBit;
-    return new Predicate<DateValue>() {
+    return new PackedDatePredicate() {
 	  private static final long serialVersionUID = -6284974028385246889L;
-	  public boolean apply(DateValue date) {
-        if (!(date instanceof TimeValue)) { return false; }
-        TimeValue tv = (TimeValue) date;
-        return (bitField & (1 << tv.hour())) != 0;
+	  public boolean apply(long date) {
+        if (!PackedDates.hasTime(date)) { return false; }
+        return (bitField & (1 << PackedDates.hour(date))) != 0;
       }
     };
   }
@@ -185,19 +192,18 @@ class Filters {
    * constructs a minute filter based on a BYMINUTE rule.
    * @param minutes minutes of the hour in [0, 59]
    */
-  static Predicate<DateValue> byMinuteFilter(int[] minutes) {
+  static PackedDatePredicate byMinuteFilter(int[] minutes) {
     long minutesByBit = 0;
     for (int minute : minutes) { minutesByBit |= 1L << minute; }
     if ((minutesByBit & LOW_60_BITS) == LOW_60_BITS) {
-      return Predicates.alwaysTrue();
+      return PackedDatePredicate.ALWAYS_TRUE;
     }
     final long bitField = minutesByBit;
-    return new Predicate<DateValue>() {
+    return new PackedDatePredicate() {
 	  private static final long serialVersionUID = 5028303473420393470L;
-	  public boolean apply(DateValue date) {
-        if (!(date instanceof TimeValue)) { return false; }
-        TimeValue tv = (TimeValue) date;
-        return (bitField & (1L << tv.minute())) != 0;
+	  public boolean apply(long date) {
+        if (!PackedDates.hasTime(date)) { return false; }
+        return (bitField & (1L << PackedDates.minute(date))) != 0;
       }
     };
   }
@@ -207,19 +213,44 @@ class Filters {
    * constructs a second filter based on a BYMINUTE rule.
    * @param seconds seconds of the minute in [0, 59]
    */
-  static Predicate<DateValue> bySecondFilter(int[] seconds) {
+  static PackedDatePredicate bySecondFilter(int[] seconds) {
     long secondsByBit = 0;
     for (int second : seconds) { secondsByBit |= 1L << second; }
     if ((secondsByBit & LOW_60_BITS) == LOW_60_BITS) {
-      return Predicates.alwaysTrue();
+      return PackedDatePredicate.ALWAYS_TRUE;
     }
     final long bitField = secondsByBit;
-    return new Predicate<DateValue>() {
+    return new PackedDatePredicate() {
 	  private static final long serialVersionUID = 4109739845053177924L;
-	  public boolean apply(DateValue date) {
-        if (!(date instanceof TimeValue)) { return false; }
-        TimeValue tv = (TimeValue) date;
-        return (bitField & (1L << tv.second())) != 0;
+	  public boolean apply(long date) {
+        if (!PackedDates.hasTime(date)) { return false; }
+        return (bitField & (1L << PackedDates.second(date))) != 0;
+      }
+    };
+  }
+
+  /**
+   * constructs a filter that passes iff all of the given filters pass.
+   * @param filters non null
+   */
+  static PackedDatePredicate and(List<PackedDatePredicate> filters) {
+    switch (filters.size()) {
+      case 0:
+        return PackedDatePredicate.ALWAYS_TRUE;
+      case 1:
+        return filters.get(0);
+      default:
+        break;
+    }
+    final PackedDatePredicate[] components =
+      filters.toArray(new PackedDatePredicate[filters.size()]);
+    return new PackedDatePredicate() {
+      private static final long serialVersionUID = 3164720578367361728L;
+      public boolean apply(long date) {
+        for (PackedDatePredicate filter : components) {
+          if (!filter.apply(date)) { return false; }
+        }
+        return true;
       }
     };
   }
@@ -44,6 +44,24 @@ abstract class Generator {
   abstract boolean generate(DTBuilder bldr)
       throws IteratorShortCircuitingException;
 
+  /**
+   * moves the builder to the last date that the field generators produced.
+   * This is only different from the builder's current position for
+   * generators that buffer a set of dates and emit them one at a time.
+   */
+  void sync(DTBuilder bldr) {
+    // the builder is already where the field generators left it
+  }
+
+  /**
+   * called when the builder has been moved forward by something other than
+   * this generator, so that any dates it has buffered from the builder's old
+   * position are discarded.
+   */
+  void reset() {
+    // most generators take their cue from the builder and keep no buffer
+  }
+
   /**
    * thrown when an iteration process should be ended completely due to an
    * artificial system limit.  This allows us to make a distinction between
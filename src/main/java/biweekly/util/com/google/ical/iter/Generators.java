@@ -75,6 +75,15 @@ final class Generators {
         @Override
         void workDone() { this.throttle = MAX_YEARS_BETWEEN_INSTANCES; }
 
+        @Override
+        void skipTo(int target) {
+          if (year + interval >= target) { return; }
+          // land on the interval-aligned year just before the target so the
+          // next call yields the first aligned year on or after it
+          year += ((target - year - 1) / interval) * interval;
+          this.throttle = MAX_YEARS_BETWEEN_INSTANCES;
+        }
+
         @Override
         public String toString() { return "serialYearGenerator:" + interval; }
       };
@@ -964,6 +973,58 @@ final class Generators {
       };
   }
 
+  /**
+   * constructs a day generator that yields the days in the current month that
+   * a table allows.  Days before dtStart in dtStart's month are skipped.
+   * @param table the days allowed in each year
+   * @param dtStart non null
+   */
+  static Generator byYearDayTableGenerator(
+      final YearDayTable table, final DateValue dtStart) {
+    return new Generator() {
+        int year = dtStart.year();
+        int month = dtStart.month();
+        /** day of the year of the 1st day in the month */
+        int doyOfMonth1;
+        /** day of the year after the last day in the month */
+        int end;
+        /** day of the year to look for the next date from */
+        int doy;
+
+        {
+          checkMonth();
+          doy += dtStart.day() - 1;
+        }
+
+        void checkMonth() {
+          doyOfMonth1 = TimeUtils.dayOfYear(year, month, 1);
+          end = doyOfMonth1 + TimeUtils.monthLength(year, month);
+          doy = doyOfMonth1;
+        }
+
+        @Override
+        boolean generate(DTBuilder builder) {
+          if (year != builder.year || month != builder.month) {
+            year = builder.year;
+            month = builder.month;
+
+            checkMonth();
+          }
+          int next = table.next(year, doy, end);
+          if (next < 0) {
+            doy = end;
+            return false;
+          }
+          builder.day = next - doyOfMonth1 + 1;
+          doy = next + 1;
+          return true;
+        }
+
+        @Override
+        public String toString() { return "byYearDayTableGenerator:" + table; }
+      };
+  }
+
   private static int daysBetween(
       DTBuilder builder, int year, int month, int day) {
     if (year == builder.year && month == builder.month) {
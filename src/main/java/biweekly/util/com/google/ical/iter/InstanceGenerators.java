@@ -15,15 +15,13 @@
 package biweekly.util.com.google.ical.iter;
 
 import biweekly.util.com.google.ical.util.DTBuilder;
-import biweekly.util.com.google.ical.util.Predicate;
+import biweekly.util.com.google.ical.util.PackedDates;
 import biweekly.util.com.google.ical.util.TimeUtils;
 import biweekly.util.com.google.ical.values.DateValue;
 import biweekly.util.com.google.ical.values.Frequency;
-import biweekly.util.com.google.ical.values.TimeValue;
 import biweekly.util.com.google.ical.values.Weekday;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * factory for generators that operate on groups of generators to generate full
@@ -38,7 +36,7 @@ class InstanceGenerators {
    * collecting.
    */
   static Generator serialInstanceGenerator(
-      final Predicate<? super DateValue> filter,
+      final PackedDatePredicate filter,
       final Generator yearGenerator, final Generator monthGenerator,
       final Generator dayGenerator, final Generator hourGenerator,
       final Generator minuteGenerator, final Generator secondGenerator) {
@@ -62,7 +60,7 @@ class InstanceGenerators {
               }
             }
             // apply filters to generated dates
-          } while (!filter.apply(builder.toDateTime()));
+          } while (!filter.apply(builder.toPackedDateTime()));
 
           return true;
         }
@@ -95,7 +93,7 @@ class InstanceGenerators {
               }
             }
             // apply filters to generated dates
-          } while (!filter.apply(builder.toDateTime()));
+          } while (!filter.apply(builder.toPackedDateTime()));
           // TODO: maybe group the filters into different kinds so we don't
           // apply filters that only affect days to every second.
 
@@ -107,7 +105,7 @@ class InstanceGenerators {
 
   static Generator bySetPosInstanceGenerator(
       int[] setPos, final Frequency freq, final Weekday wkst,
-      final Predicate<? super DateValue> filter,
+      final PackedDatePredicate filter,
       final Generator yearGenerator, final Generator monthGenerator,
       final Generator dayGenerator, final Generator hourGenerator,
       final Generator minuteGenerator, final Generator secondGenerator) {
@@ -124,7 +122,14 @@ class InstanceGenerators {
     allPositive = uSetPos[0] > 0;
 
     return new Generator() {
-        DateValue pushback = null;
+        /** the first date of the next set, or NONE */
+        long pushback = NONE;
+        /**
+         * the last date produced by the field generators, or NONE.
+         * The builder is moved back to the dates in the set as they are
+         * emitted, so this is where the field generators actually are.
+         */
+        long generated = NONE;
         /**
          * Is this the first instance we generate?
          * We need to know so that we don't clobber dtStart.
@@ -133,8 +138,12 @@ class InstanceGenerators {
         /** Do we need to halt iteration once the current set has been used? */
         boolean done = false;
 
+        /** The elements in the current set, packed. */
+        long[] dates = new long[16];
         /** The elements in the current set, filtered by set pos */
-        List<DateValue> candidates;
+        long[] candidates = new long[uSetPos.length];
+        /** The number of elements in candidates. */
+        int nCandidates;
         /**
          * index into candidates.  The number of elements in candidates already
          * consumed.
@@ -144,19 +153,19 @@ class InstanceGenerators {
         @Override
         public boolean generate(DTBuilder builder)
             throws IteratorShortCircuitingException {
-          while (null == candidates || i >= candidates.size()) {
+          while (i >= nCandidates) {
             if (done) { return false; }
 
             // (1) Make sure that builder is appropriately initialized so that
             // we only generate instances in the next set
 
-            DateValue d0 = null;
-            if (null != pushback) {
+            long d0 = NONE;
+            if (NONE != pushback) {
               d0 = pushback;
-              builder.year = d0.year();
-              builder.month = d0.month();
-              builder.day = d0.day();
-              pushback = null;
+              builder.year = PackedDates.year(d0);
+              builder.month = PackedDates.month(d0);
+              builder.day = PackedDates.day(d0);
+              pushback = NONE;
             } else if (!first) {
               // we need to skip ahead to the next item since we didn't exhaust
               // the last period
@@ -178,7 +187,7 @@ class InstanceGenerators {
                       return false;
                     }
                   } while (builder.compareTo(nextWeek) < 0);
-                  d0 = builder.toDateTime();
+                  d0 = generated = builder.toPackedDateTime();
                   break;
                 default:
                   break;
@@ -189,8 +198,8 @@ class InstanceGenerators {
 
             // (2) Build a set of the dates in the year/month/week that match
             // the other rule.
-            List<DateValue> dates = new ArrayList<DateValue>();
-            if (null != d0) { dates.add(d0); }
+            int nDates = 0;
+            if (NONE != d0) { dates[nDates++] = d0; }
 
             // Optimization: if min(bySetPos) > 0 then we already have absolute
             // positions, so we don't need to generate all of the instances for
@@ -203,7 +212,7 @@ class InstanceGenerators {
             // distribution of set positions within the year.
             int limit = allPositive ? maxPos : Integer.MAX_VALUE;
 
-            while (limit > dates.size()) {
+            while (limit > nDates) {
               if (!serialInstanceGenerator.generate(builder)) {
                 // If we can't generate any, then make sure we return false
                 // once the instances we have generated are exhausted.
@@ -214,31 +223,37 @@ class InstanceGenerators {
                 done = true;
                 break;
               }
-              DateValue d = builder.toDateTime();
+              long d = generated = builder.toPackedDateTime();
               boolean contained;
-              if (null == d0) {
+              if (NONE == d0) {
                 d0 = d;
                 contained = true;
               } else {
                 switch (freq) {
                   case WEEKLY:
-                    int nb = TimeUtils.daysBetween(d, d0);
+                    int nb = TimeUtils.daysBetween(
+                        builder.year, builder.month, builder.day,
+                        PackedDates.year(d0), PackedDates.month(d0),
+                        PackedDates.day(d0));
                     // Two dates (d, d0) are in the same week
                     // if there isn't a whole week in between them and the
                     // later day is later in the week than the earlier day.
                     contained =
                       nb < 7
-                      && ((7 + Weekday.valueOf(d).javaDayNum
-                           - wkst.javaDayNum) % 7)
-                      > ((7 + Weekday.valueOf(d0).javaDayNum
-                          - wkst.javaDayNum) % 7);
+                      && ((7 + Weekday.valueOf(
+                              builder.year, builder.month, builder.day)
+                           .javaDayNum - wkst.javaDayNum) % 7)
+                      > ((7 + Weekday.valueOf(
+                              PackedDates.year(d0), PackedDates.month(d0),
+                              PackedDates.day(d0))
+                          .javaDayNum - wkst.javaDayNum) % 7);
                     break;
                   case MONTHLY:
-                    contained =
-                      d0.month() == d.month() && d0.year() == d.year();
+                    contained = builder.month == PackedDates.month(d0)
+                      && builder.year == PackedDates.year(d0);
                     break;
                   case YEARLY:
-                    contained = d0.year() == d.year();
+                    contained = builder.year == PackedDates.year(d0);
                     break;
                   default:
                     done = true;
@@ -246,7 +261,10 @@ class InstanceGenerators {
                 }
               }
               if (contained) {
-                dates.add(d);
+                if (nDates == dates.length) {
+                  dates = Arrays.copyOf(dates, nDates * 2);
+                }
+                dates[nDates++] = d;
               } else {
                 // reached end of the set
                 pushback = d;  // save d so we can use it later
@@ -262,39 +280,38 @@ class InstanceGenerators {
               IntSet uAbsSetPos = new IntSet();
               for (int j = 0; j < uSetPos.length; ++j) {
                 int p = uSetPos[j];
-                if (p < 0) { p = dates.size() + p + 1; }
+                if (p < 0) { p = nDates + p + 1; }
                 uAbsSetPos.add(p);
               }
               absSetPos = uAbsSetPos.toIntArray();
             }
 
-            candidates = new ArrayList<DateValue>();
+            nCandidates = 0;
             for (int p : absSetPos) {
-              if (p >= 1 && p <= dates.size()) {  // p is 1-indexed
-                candidates.add(dates.get(p - 1));
+              if (p >= 1 && p <= nDates) {  // p is 1-indexed
+                candidates[nCandidates++] = dates[p - 1];
               }
             }
             i = 0;
-            if (candidates.isEmpty()) {
-              // none in this region, so keep looking
-              candidates = null;
-              continue;
-            }
+            // if there are none in this region, then keep looking
           }
           // (5) Emit a date.  It will be checked against the end condition and
           // dtStart elsewhere
-          DateValue d = candidates.get(i++);
-          builder.year = d.year();
-          builder.month = d.month();
-          builder.day = d.day();
-          if (d instanceof TimeValue) {
-            TimeValue t = (TimeValue) d;
-            builder.hour = t.hour();
-            builder.minute = t.minute();
-            builder.second = t.second();
-          }
+          builder.setPacked(candidates[i++]);
           return true;
         }
+
+        @Override
+        void sync(DTBuilder builder) {
+          if (NONE != generated) { builder.setPacked(generated); }
+        }
+
+        @Override
+        void reset() {
+          pushback = generated = NONE;
+          nCandidates = i = 0;
+          first = true;
+        }
       };
   }
 
@@ -306,6 +323,9 @@ class InstanceGenerators {
         && hourGenerator instanceof SingleValueGenerator;
   }
 
+  /** a packed value that no date can have */
+  private static final long NONE = Long.MIN_VALUE;
+
   private InstanceGenerators() {
     // uninstantiable
   }
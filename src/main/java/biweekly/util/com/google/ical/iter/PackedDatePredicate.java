@@ -0,0 +1,56 @@
+package biweekly.util.com.google.ical.iter;
+
+import java.io.Serializable;
+
+import biweekly.util.com.google.ical.util.PackedDates;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * a predicate over {@link PackedDates packed} date values.  The recurrence
+ * iterators use these for their filters and end conditions so that candidate
+ * dates don't have to be materialized as objects in order to be tested.
+ *
+ * @author Michael Angstadt
+ */
+interface PackedDatePredicate extends Serializable {
+
+  /** a predicate that accepts every date. */
+  PackedDatePredicate ALWAYS_TRUE = new PackedDatePredicate() {
+    private static final long serialVersionUID = -1254385394727262366L;
+    public boolean apply(long date) {
+      return true;
+    }
+    @Override
+    public String toString() { return "true"; }
+  };
+
+  /**
+   * applies this predicate to the given date.
+   * @param date a packed date or date-time
+   */
+  boolean apply(long date);
+}
@@ -15,10 +15,10 @@
 package biweekly.util.com.google.ical.iter;
 
 import biweekly.util.com.google.ical.util.DTBuilder;
-import biweekly.util.com.google.ical.util.Predicate;
-import biweekly.util.com.google.ical.util.TimeUtils;
+import biweekly.util.com.google.ical.util.PackedDates;
+import biweekly.util.com.google.ical.util.ZoneOffsets;
 import biweekly.util.com.google.ical.values.DateValue;
-import biweekly.util.com.google.ical.values.DateValueImpl;
+import biweekly.util.com.google.ical.values.Frequency;
 import biweekly.util.com.google.ical.values.TimeValue;
 
 import java.util.TimeZone;
@@ -26,15 +26,19 @@ import java.util.TimeZone;
 /**
  * an iterator over dates in an RRULE or EXRULE series.
  *
+ * <p>Dates are generated, filtered, and converted to UTC in
+ * {@link PackedDates packed} form, and are only materialized as
+ * {@link DateValue}s when they are returned from {@link #next}.</p>
+ *
  * @author mikesamuel+svn@gmail.com (Mike Samuel)
  */
-final class RRuleIteratorImpl implements RecurrenceIterator {
+final class RRuleIteratorImpl implements PackedRecurrenceIterator {
   /**
    * a function that determines when the recurrence ends.
    * Takes a date builder and yields shouldContinue:boolean.
    * The condition is applied <b>after</b> the date is converted to utc.
    */
-  private final Predicate<? super DateValue> condition_;
+  private final PackedDatePredicate condition_;
   /**
    * a function that applies the various period generators to generate an entire
    * date.
@@ -53,9 +57,15 @@ final class RRuleIteratorImpl implements RecurrenceIterator {
    */
   private final Generator monthGenerator_;
   /**
-   * a date that has been computed but not yet yielded to the user.
+   * the field generators, from the year generator down, that have to be run
+   * to position the builder at the start of a month.
+   */
+  private final Generator[] fieldGenerators_;
+  /**
+   * a packed date that has been computed but not yet yielded to the user, or
+   * NONE.
    */
-  private DateValue pendingUtc_;
+  private long pendingUtc_ = NONE;
   /**
    * used to build successive dates.
    * At the start of the building process, contains the last date generated.
@@ -64,8 +74,8 @@ final class RRuleIteratorImpl implements RecurrenceIterator {
   private DTBuilder builder_;
   /** true iff the recurrence has been exhausted. */
   private boolean done_;
-  /** the start date of the recurrence */
-  private final DateValue dtStart_;
+  /** true iff the start date of the recurrence has a time. */
+  private final boolean timed_;
   /**
    * false iff shorcutting advance would break the semantics of the iteration.
    * This may happen when, for example, the end condition requires that it see
@@ -73,28 +83,46 @@ final class RRuleIteratorImpl implements RecurrenceIterator {
    */
   private final boolean canShortcutAdvance_;
   /**
-   * the timezone that result dates should be converted <b>from</b>.
+   * true iff BYSETPOS picks instances out of a whole year, so advancing can
+   * only skip whole years.
+   */
+  private final boolean yearlySets_;
+  /**
+   * true iff BYSETPOS picks instances out of a week, so advancing has to start
+   * at the month containing the first day of the target's week.
+   */
+  private final boolean weeklySets_;
+  /**
+   * converts result dates <b>from</b> the iterator's timezone.
    * All date fields, parameters, and local variables in this class are in
-   * the tzid_ timezone, unless they carry the Utc suffix.
+   * that timezone, unless they carry the Utc suffix.
    */
-  private final TimeZone tzid_;
+  private final ZoneOffsets zone_;
 
   /** An iterator that generates dates from an RFC2445 Recurrence Rule */
   RRuleIteratorImpl(
-    DateValue dtStart, TimeZone tzid, Predicate<? super DateValue> condition,
+    DateValue dtStart, TimeZone tzid, PackedDatePredicate condition,
     Generator instanceGenerator, ThrottledGenerator yearGenerator,
     Generator monthGenerator, Generator dayGenerator,
     Generator hourGenerator, Generator minuteGenerator,
     Generator secondGenerator,
-    boolean canShortcutAdvance) {
+    boolean canShortcutAdvance, Frequency freq, boolean bySetPos) {
 
     this.condition_ = condition;
     this.instanceGenerator_ = instanceGenerator;
     this.yearGenerator_ = yearGenerator;
     this.monthGenerator_ = monthGenerator;
-    this.dtStart_ = dtStart;
-    this.tzid_ = tzid;
-    this.canShortcutAdvance_ = canShortcutAdvance;
+    this.timed_ = dtStart instanceof TimeValue;
+    this.zone_ = ZoneOffsets.forZone(tzid);
+    // The BYSETPOS generator leaves the sub-day generators wherever the last
+    // set ended, so which time of day a set starts with depends on every set
+    // before it. A jump can't recreate that state, so such rules have to be
+    // advanced one instance at a time.
+    this.canShortcutAdvance_ = canShortcutAdvance
+        && !(bySetPos && !InstanceGenerators.skipSubDayGenerators(
+            hourGenerator, minuteGenerator, secondGenerator));
+    this.yearlySets_ = bySetPos && Frequency.YEARLY == freq;
+    this.weeklySets_ = bySetPos && Frequency.WEEKLY == freq;
 
     int initWorkLimit = 1000;
 
@@ -103,20 +131,21 @@ final class RRuleIteratorImpl implements RecurrenceIterator {
     this.builder_ = builder;
     // Apply the generators from largest field to smallest so we can start by
     // applying the smallest field iterator when asked to generate a date.
+    Generator[] toInitialize;
+    if (InstanceGenerators.skipSubDayGenerators(
+            hourGenerator, minuteGenerator, secondGenerator)) {
+      toInitialize = new Generator[] { yearGenerator, monthGenerator };
+      builder.hour = ((SingleValueGenerator) hourGenerator).getValue();
+      builder.minute = ((SingleValueGenerator) minuteGenerator).getValue();
+      builder.second = ((SingleValueGenerator) secondGenerator).getValue();
+    } else {
+      toInitialize = new Generator[] {
+          yearGenerator, monthGenerator, dayGenerator,
+          hourGenerator, minuteGenerator,
+      };
+    }
+    this.fieldGenerators_ = toInitialize;
     try {
-      Generator[] toInitialize;
-      if (InstanceGenerators.skipSubDayGenerators(
-              hourGenerator, minuteGenerator, secondGenerator)) {
-        toInitialize = new Generator[] { yearGenerator, monthGenerator };
-        builder.hour = ((SingleValueGenerator) hourGenerator).getValue();
-        builder.minute = ((SingleValueGenerator) minuteGenerator).getValue();
-        builder.second = ((SingleValueGenerator) secondGenerator).getValue();
-      } else {
-        toInitialize = new Generator[] {
-            yearGenerator, monthGenerator, dayGenerator,
-            hourGenerator, minuteGenerator,
-        };
-      }
       for (int i = 0; i != toInitialize.length;) {
         if (toInitialize[i].generate(builder)) {
           ++i;
@@ -135,18 +164,18 @@ final class RRuleIteratorImpl implements RecurrenceIterator {
       this.done_ = true;
     }
 
+    long dtStartUtc = this.zone_.toUtc(PackedDates.pack(dtStart));
     while (!this.done_) {
       this.pendingUtc_ = this.generateInstance();
-      if (null == this.pendingUtc_) {
+      if (NONE == this.pendingUtc_) {
         this.done_ = true;
         break;
-      } else if (this.pendingUtc_.compareTo(
-                     TimeUtils.toUtc(dtStart, tzid)) >= 0) {
+      } else if (this.pendingUtc_ >= dtStartUtc) {
         // We only apply the condition to the ones past dtStart to avoid
         // counting useless instances
         if (!this.condition_.apply(this.pendingUtc_)) {
           this.done_ = true;
-          this.pendingUtc_ = null;
+          this.pendingUtc_ = NONE;
         }
         break;
       }
@@ -159,17 +188,23 @@ final class RRuleIteratorImpl implements RecurrenceIterator {
 
   /** are there more dates in this recurrence? */
   public boolean hasNext() {
-    if (null == this.pendingUtc_) { this.fetchNext(); }
-    return null != this.pendingUtc_;
+    if (NONE == this.pendingUtc_) { this.fetchNext(); }
+    return NONE != this.pendingUtc_;
   }
 
   /** fetch and return the next date in this recurrence. */
   public DateValue next() {
-    if (null == this.pendingUtc_) {
+    long next = this.nextPacked();
+    return NONE == next ? null : PackedDates.toDateValue(next);
+  }
+
+  /** fetch and return the next date in this recurrence, packed. */
+  public long nextPacked() {
+    if (NONE == this.pendingUtc_) {
       this.fetchNext();
     }
-    DateValue next = this.pendingUtc_;
-    this.pendingUtc_ = null;
+    long next = this.pendingUtc_;
+    this.pendingUtc_ = NONE;
     return next;
   }
 
@@ -183,55 +218,47 @@ final class RRuleIteratorImpl implements RecurrenceIterator {
   public void advanceTo(DateValue dateUtc) {
     // Don't throw away a future pending date since the iterators will not
     // generate it again.
-    if (this.pendingUtc_ !=  null && dateUtc.compareTo(this.pendingUtc_) <= 0) {
+    long packedUtc = PackedDates.pack(dateUtc);
+    if (this.pendingUtc_ != NONE && packedUtc <= this.pendingUtc_) {
       return;
     }
 
-    DateValue dateLocal = TimeUtils.fromUtc(dateUtc, tzid_);
+    long dateLocal = this.zone_.fromUtc(packedUtc);
     // Short-circuit if we're already past dateUtc.
-    if (dateLocal.compareTo(this.builder_.toDate()) <= 0) { return; }
-    this.pendingUtc_ = null;
+    if (dateLocal <= this.builder_.toPackedDate()) { return; }
+    this.pendingUtc_ = NONE;
 
     try {
       if (this.canShortcutAdvance_) {
-        // skip years before date.year
-        if (this.builder_.year < dateLocal.year()) {
-          do {
-            if (!this.yearGenerator_.generate(this.builder_)) {
-              this.done_ = true;
-              return;
-            }
-          } while (this.builder_.year < dateLocal.year());
-          while (!this.monthGenerator_.generate(this.builder_)) {
-            if (!this.yearGenerator_.generate(this.builder_)) {
-              this.done_ = true;
-              return;
-            }
-          }
+        // Jump the generators straight to the month that the target's period
+        // starts in, instead of generating every instance in between.
+        if (this.weeklySets_) {
+          DTBuilder weekStart = new DTBuilder(PackedDates.year(dateLocal),
+              PackedDates.month(dateLocal), PackedDates.day(dateLocal) - 6);
+          dateLocal = weekStart.toPackedDate();
         }
-        // skip months before date.year/date.month
-        while (this.builder_.year == dateLocal.year()
-               && this.builder_.month < dateLocal.month()) {
-          while (!this.monthGenerator_.generate(this.builder_)) {
-            // if there are more years available fetch one
-            if (!this.yearGenerator_.generate(this.builder_)) {
-              // otherwise the recurrence is exhausted
-              this.done_ = true;
-              return;
-            }
+        int yearLocal = PackedDates.year(dateLocal);
+        int monthLocal = this.yearlySets_ ? 1 : PackedDates.month(dateLocal);
+        this.instanceGenerator_.sync(this.builder_);
+        if (this.builder_.year < yearLocal
+            || (this.builder_.year == yearLocal
+                && this.builder_.month < monthLocal)) {
+          if (!this.skipTo(yearLocal, monthLocal)) {
+            this.done_ = true;
+            return;
           }
         }
       }
 
       // consume any remaining instances
       while (!this.done_) {
-        DateValue dUtc = this.generateInstance();
-        if (null == dUtc) {
+        long dUtc = this.generateInstance();
+        if (NONE == dUtc) {
           this.done_ = true;
         } else {
           if (!this.condition_.apply(dUtc)) {
             this.done_ = true;
-          } else if (dUtc.compareTo(dateUtc) >= 0) {
+          } else if (dUtc >= packedUtc) {
             this.pendingUtc_ = dUtc;
             break;
           }
@@ -242,14 +269,45 @@ final class RRuleIteratorImpl implements RecurrenceIterator {
     }
   }
 
+  /**
+   * positions the builder at the first month on or after the given one that
+   * the generators produce, and runs the smaller field generators the same
+   * way the constructor does, so that the instance generator starts over at
+   * the beginning of that month.
+   * The year generator is jumped directly to the target year, so skipping
+   * many years neither costs a step per year nor trips its throttle.
+   * @return false if the generators are exhausted.
+   */
+  private boolean skipTo(int year, int month)
+      throws Generator.IteratorShortCircuitingException {
+    int i = 1;
+    if (this.builder_.year < year) {
+      this.yearGenerator_.skipTo(year);
+      i = 0;
+    }
+    while (i != this.fieldGenerators_.length) {
+      if (this.fieldGenerators_[i].generate(this.builder_)) {
+        // don't descend into the months before the target month
+        if (1 != i || this.builder_.year != year
+            || this.builder_.month >= month) {
+          ++i;
+        }
+      } else if (--i < 0) {
+        return false;
+      }
+    }
+    this.instanceGenerator_.reset();
+    return true;
+  }
+
   /** calculates and stored the next date in this recurrence. */
   private void fetchNext() {
-    if (null != this.pendingUtc_ || this.done_) { return; }
+    if (NONE != this.pendingUtc_ || this.done_) { return; }
 
-    DateValue dUtc = this.generateInstance();
+    long dUtc = this.generateInstance();
 
     // check the exit condition
-    if (null != dUtc && this.condition_.apply(dUtc)) {
+    if (NONE != dUtc && this.condition_.apply(dUtc)) {
       this.pendingUtc_ = dUtc;
       this.yearGenerator_.workDone();
     } else {
@@ -257,30 +315,32 @@ final class RRuleIteratorImpl implements RecurrenceIterator {
     }
   }
 
-  private static final DateValue MIN_DATE =
-    new DateValueImpl(Integer.MIN_VALUE, 1, 1);
+  /** a packed value that no date can have */
+  private static final long NONE = Long.MIN_VALUE;
+  private static final long MIN_DATE =
+    PackedDates.pack(Integer.MIN_VALUE, 1, 1);
   /**
    * make sure the iterator is monotonically increasing.
    * The local time is guaranteed to be monotonic, but because of daylight
    * savings shifts, the time in UTC may not be.
    */
-  private DateValue lastUtc_ = MIN_DATE;
+  private long lastUtc_ = MIN_DATE;
   /**
-   * @return a date value in UTC.
+   * @return a packed date value in UTC, or NONE.
    */
-  private DateValue generateInstance() {
+  private long generateInstance() {
     try {
       do {
-        if (!this.instanceGenerator_.generate(this.builder_)) { return null; }
-        DateValue dUtc = this.dtStart_ instanceof TimeValue
-            ? TimeUtils.toUtc(this.builder_.toDateTime(), this.tzid_)
-            : this.builder_.toDate();
-        if (dUtc.compareTo(this.lastUtc_) > 0) {
+        if (!this.instanceGenerator_.generate(this.builder_)) { return NONE; }
+        long dUtc = this.timed_
+            ? this.zone_.toUtc(this.builder_.toPackedDateTime())
+            : this.builder_.toPackedDate();
+        if (dUtc > this.lastUtc_) {
           return dUtc;
         }
       } while (true);
     } catch (Generator.IteratorShortCircuitingException ex) {
-      return null;
+      return NONE;
     }
   }
 
@@ -0,0 +1,228 @@
+package biweekly.util.com.google.ical.iter;
+
+import java.util.TimeZone;
+
+import biweekly.util.com.google.ical.util.DTBuilder;
+import biweekly.util.com.google.ical.util.PackedDates;
+import biweekly.util.com.google.ical.util.TimeUtils;
+import biweekly.util.com.google.ical.values.DateValue;
+import biweekly.util.com.google.ical.values.Frequency;
+import biweekly.util.com.google.ical.values.RRule;
+import biweekly.util.com.google.ical.values.TimeValue;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * answers questions about the instances of a recurrence rule without
+ * iterating over all of them.
+ *
+ * <p>Rules whose instances are a fixed number of days apart are answered in
+ * constant time (see {@link ArithmeticIteratorImpl}).  Other rules are
+ * answered by advancing the generator cascade directly to the part of the
+ * recurrence that matters, and by working with packed dates, so no objects
+ * are allocated for the instances that are skipped over.</p>
+ *
+ * @author Michael Angstadt
+ */
+public final class RecurrenceAnalysis {
+
+  /**
+   * true iff the rule has a finite number of instances, which is the case
+   * when it has a COUNT or an UNTIL.
+   */
+  public static boolean isFinite(RRule rrule) {
+    return 0 != rrule.getCount() || null != rrule.getUntil();
+  }
+
+  /**
+   * counts the instances of a rule that fall within a range.
+   * @param rrule the rule
+   * @param dtStart the start of the recurrence in tzid
+   * @param tzid the timezone that the instances are generated in
+   * @param fromUtc the start of the range (inclusive) or null to count from
+   *   the first instance
+   * @param toUtc the end of the range (exclusive) or null to count up to the
+   *   last instance
+   * @return the number of instances
+   * @throws IllegalArgumentException if toUtc is null and the rule is not
+   *   {@link #isFinite finite}
+   */
+  public static long count(RRule rrule, DateValue dtStart, TimeZone tzid,
+                           DateValue fromUtc, DateValue toUtc) {
+    if (null == toUtc && !isFinite(rrule)) {
+      throw new IllegalArgumentException(
+          "Cannot count the instances of an unbounded rule.");
+    }
+
+    ArithmeticIteratorImpl simple =
+      ArithmeticIteratorImpl.create(rrule, dtStart, tzid);
+    if (null != simple) {
+      long lo = null == fromUtc ? 0 : simple.indexOf(fromUtc);
+      long hi = null == toUtc ? simple.size() : simple.indexOf(toUtc);
+      return Math.max(0, hi - lo);
+    }
+
+    PackedRecurrenceIterator it = (PackedRecurrenceIterator)
+      RecurrenceIteratorFactory.createRecurrenceIterator(rrule, dtStart, tzid);
+    if (null != fromUtc) { it.advanceTo(fromUtc); }
+    long end = null == toUtc ? Long.MAX_VALUE : PackedDates.pack(toUtc);
+    long count = 0;
+    while (it.hasNext() && it.nextPacked() < end) {
+      ++count;
+    }
+    return count;
+  }
+
+  /**
+   * finds the last instance of a rule.
+   * @param rrule the rule
+   * @param dtStart the start of the recurrence in tzid
+   * @param tzid the timezone that the instances are generated in
+   * @return the last instance in UTC, or null if the rule is not
+   *   {@link #isFinite finite} or has no instances
+   */
+  public static DateValue last(RRule rrule, DateValue dtStart, TimeZone tzid) {
+    if (!isFinite(rrule)) { return null; }
+
+    ArithmeticIteratorImpl simple =
+      ArithmeticIteratorImpl.create(rrule, dtStart, tzid);
+    if (null != simple) {
+      long size = simple.size();
+      return 0 == size ? null : PackedDates.toDateValue(simple.get(size - 1));
+    }
+
+    if (!RecurrenceIteratorFactory.canShortcutAdvance(rrule)) {
+      // COUNT puts a limit on the number of instances, so they can be
+      // skipped over one at a time.
+      return lastFrom(rrule, dtStart, tzid, null, Long.MAX_VALUE);
+    }
+    return lookBack(rrule, dtStart, tzid, rrule.getUntil(), Long.MAX_VALUE);
+  }
+
+  /**
+   * finds the latest instance of a rule that comes before a date.
+   * @param rrule the rule
+   * @param dtStart the start of the recurrence in tzid
+   * @param tzid the timezone that the instances are generated in
+   * @param dateUtc the date (exclusive)
+   * @return the instance in UTC, or null if there are no instances before
+   *   the date
+   */
+  public static DateValue previousBefore(
+      RRule rrule, DateValue dtStart, TimeZone tzid, DateValue dateUtc) {
+    ArithmeticIteratorImpl simple =
+      ArithmeticIteratorImpl.create(rrule, dtStart, tzid);
+    if (null != simple) {
+      long index = simple.indexOf(dateUtc);
+      return 0 == index ? null : PackedDates.toDateValue(simple.get(index - 1));
+    }
+    if (!RecurrenceIteratorFactory.canShortcutAdvance(rrule)) {
+      // advanceTo can't skip ahead, so looking back would generate the
+      // instances from the start over and over again
+      return lastFrom(rrule, dtStart, tzid, null, PackedDates.pack(dateUtc));
+    }
+    return lookBack(
+        rrule, dtStart, tzid, dateUtc, PackedDates.pack(dateUtc));
+  }
+
+  /**
+   * finds the latest instance before a limit by generating the instances
+   * that follow a point a growing number of periods before an anchor date.
+   * advanceTo lets the generators skip over the periods before that point,
+   * so only the periods near the anchor are generated.
+   * @param anchor the date to look back from
+   * @param limit the packed date that the instance must come before
+   * @return the instance or null if there are none
+   */
+  private static DateValue lookBack(RRule rrule, DateValue dtStart,
+                                    TimeZone tzid, DateValue anchor,
+                                    long limit) {
+    long days = TimeUtils.fixedFromGregorian(
+        anchor.year(), anchor.month(), anchor.day())
+      - TimeUtils.fixedFromGregorian(
+          dtStart.year(), dtStart.month(), dtStart.day())
+      + 2;
+    for (long lookback = daysPerPeriod(rrule); ; lookback *= 2) {
+      if (lookback >= days) {
+        return lastFrom(rrule, dtStart, tzid, null, limit);
+      }
+      DateValue last = lastFrom(
+          rrule, dtStart, tzid, minusDays(anchor, (int) lookback), limit);
+      if (null != last) { return last; }
+    }
+  }
+
+  /**
+   * finds the last instance of a rule that is on or after one date and
+   * before another.
+   * @param fromUtc the date or null to look at all of the instances
+   * @param limit the packed date that the instance must come before
+   * @return the last instance or null if there are none
+   */
+  private static DateValue lastFrom(RRule rrule, DateValue dtStart,
+                                    TimeZone tzid, DateValue fromUtc,
+                                    long limit) {
+    PackedRecurrenceIterator it = (PackedRecurrenceIterator)
+      RecurrenceIteratorFactory.createRecurrenceIterator(rrule, dtStart, tzid);
+    if (null != fromUtc) { it.advanceTo(fromUtc); }
+    boolean found = false;
+    long last = 0;
+    while (it.hasNext()) {
+      long next = it.nextPacked();
+      if (next >= limit) { break; }
+      last = next;
+      found = true;
+    }
+    return found ? PackedDates.toDateValue(last) : null;
+  }
+
+  /** the number of days in one interval of the rule, rounded up. */
+  private static long daysPerPeriod(RRule rrule) {
+    long days;
+    Frequency freq = rrule.getFreq();
+    if (Frequency.YEARLY == freq) {
+      days = 366;
+    } else if (Frequency.MONTHLY == freq) {
+      days = 31;
+    } else if (Frequency.WEEKLY == freq) {
+      days = 7;
+    } else {
+      days = 1;
+    }
+    return days * Math.max(1, rrule.getInterval());
+  }
+
+  private static DateValue minusDays(DateValue date, int days) {
+    DTBuilder b = new DTBuilder(date);
+    b.day -= days;
+    return date instanceof TimeValue ? b.toDateTime() : b.toDate();
+  }
+
+  private RecurrenceAnalysis() {
+    // uninstantiable
+  }
+
+}
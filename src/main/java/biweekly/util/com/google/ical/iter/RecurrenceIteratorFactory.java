@@ -14,8 +14,7 @@
 
 package biweekly.util.com.google.ical.iter;
 
-import biweekly.util.com.google.ical.util.Predicate;
-import biweekly.util.com.google.ical.util.Predicates;
+import biweekly.util.com.google.ical.util.PackedDates;
 import biweekly.util.com.google.ical.util.TimeUtils;
 import biweekly.util.com.google.ical.values.DateTimeValue;
 import biweekly.util.com.google.ical.values.DateTimeValueImpl;
@@ -172,6 +171,12 @@ public class RecurrenceIteratorFactory {
     assert null != tzid;
     assert null != dtStart;
 
+    // Rules whose instances are a fixed number of days apart don't need the
+    // generator cascade.
+    RecurrenceIterator simple =
+      ArithmeticIteratorImpl.create(rrule, dtStart, tzid);
+    if (null != simple) { return simple; }
+
     Frequency freq = rrule.getFreq();
     Weekday wkst = rrule.getWkSt();
     DateValue untilUtc = rrule.getUntil();
@@ -278,8 +283,14 @@ public class RecurrenceIteratorFactory {
     // 1 for RRULE:FREQ=YEARLY;BYDAY=TU;BYWEEKNO=1, we reimplement some of the
     // more prolific generators as filters.
     // TODO(msamuel): don't need a list here
-    List<Predicate<? super DateValue>> filters =
-      new ArrayList<Predicate<? super DateValue>>();
+    List<PackedDatePredicate> filters = new ArrayList<PackedDatePredicate>();
+    // The days of YEARLY and MONTHLY rules only depend on the BYxxx parts that
+    // deal with days, so instead of a day generator and day filters, those
+    // parts are compiled into a table of the days that they allow in each
+    // year.
+    List<YearDayTable.Part> dayParts =
+      Frequency.YEARLY == freq || Frequency.MONTHLY == freq
+      ? new ArrayList<YearDayTable.Part>() : null;
 
     switch (freq) {
       case SECONDLY:
@@ -329,7 +340,7 @@ public class RecurrenceIteratorFactory {
           // the year. Valid values are 1 to 366 or -366 to -1. For example, -1
           // represents the last day of the year (December 31st) and -306
           // represents the 306th to the last day of the year (March 1st).
-          dayGenerator = Generators.byYearDayGenerator(byYearDay, start);
+          dayParts.add(YearDayTable.byYearDay(byYearDay));
           break;
         }
         // $FALL-THROUGH$
@@ -338,13 +349,13 @@ public class RecurrenceIteratorFactory {
           // The BYMONTHDAY rule part specifies a COMMA separated list of days
           // of the month. Valid values are 1 to 31 or -31 to -1. For example,
           // -10 represents the tenth to the last day of the month.
-          dayGenerator = Generators.byMonthDayGenerator(byMonthDay, start);
+          dayParts.add(YearDayTable.byMonthDay(byMonthDay));
           byMonthDay = NO_INTS;
         } else if (0 != byWeekNo.length && Frequency.YEARLY == freq) {
           // The BYWEEKNO rule part specifies a COMMA separated list of ordinals
           // specifying weeks of the year.  This rule part is only valid for
           // YEARLY rules.
-          dayGenerator = Generators.byWeekNoGenerator(byWeekNo, wkst, start);
+          dayParts.add(YearDayTable.byWeekNo(byWeekNo, wkst));
           byWeekNo = NO_INTS;
         } else if (0 != byDay.length) {
           // Each BYDAY value can also be preceded by a positive (n) or negative
@@ -355,16 +366,16 @@ public class RecurrenceIteratorFactory {
           // the month. If an integer modifier is not present, it means all days
           // of this type within the specified frequency. For example, within a
           // MONTHLY rule, MO represents all Mondays within the month.
-          dayGenerator = Generators.byDayGenerator(
-              byDay, Frequency.YEARLY == freq && 0 == byMonth.length, start);
+          dayParts.add(YearDayTable.byDay(
+              byDay, Frequency.YEARLY == freq && 0 == byMonth.length));
           byDay = NO_DAYS;
         } else {
           if (Frequency.YEARLY == freq) {
             monthGenerator = Generators.byMonthGenerator(
                 new int[] { dtStart.month() }, start);
           }
-          dayGenerator = Generators.byMonthDayGenerator(
-              new int[] { dtStart.day() }, start);
+          dayParts.add(
+              YearDayTable.byMonthDay(new int[] { dtStart.day() }));
         }
         break;
     }
@@ -387,7 +398,7 @@ public class RecurrenceIteratorFactory {
       }
     }
 
-    if (dayGenerator == null) {
+    if (dayGenerator == null && dayParts == null) {
       boolean dailyOrMoreOften = freq.compareTo(Frequency.DAILY) <= 0;
       if (byMonthDay.length != 0) {
         dayGenerator = Generators.byMonthDayGenerator(byMonthDay, start);
@@ -406,12 +417,27 @@ public class RecurrenceIteratorFactory {
     }
 
     if (0 != byDay.length) {
-      filters.add(Filters.byDayFilter(byDay, Frequency.YEARLY == freq, wkst));
+      if (dayParts != null) {
+        dayParts.add(YearDayTable.byDayFilter(
+            byDay, Frequency.YEARLY == freq, wkst));
+      } else {
+        filters.add(
+            Filters.byDayFilter(byDay, Frequency.YEARLY == freq, wkst));
+      }
       byDay = NO_DAYS;
     }
 
     if (0 != byMonthDay.length) {
-      filters.add(Filters.byMonthDayFilter(byMonthDay));
+      if (dayParts != null) {
+        dayParts.add(YearDayTable.byMonthDay(byMonthDay));
+      } else {
+        filters.add(Filters.byMonthDayFilter(byMonthDay));
+      }
+    }
+
+    if (dayParts != null) {
+      dayGenerator = Generators.byYearDayTableGenerator(
+          new YearDayTable(dayParts), start);
     }
 
     // generator inference common to all periods
@@ -425,7 +451,7 @@ public class RecurrenceIteratorFactory {
     // the condition tells the iterator when to halt.
     // The condition is exclusive, so the date that triggers it will not be
     // included.
-    Predicate<DateValue> condition;
+    PackedDatePredicate condition;
     boolean canShortcutAdvance = true;
     if (0 != count) {
       condition = Conditions.countCondition(count);
@@ -445,22 +471,11 @@ public class RecurrenceIteratorFactory {
       }
       condition = Conditions.untilCondition(untilUtc);
     } else {
-      condition = Predicates.<DateValue>alwaysTrue();
+      condition = PackedDatePredicate.ALWAYS_TRUE;
     }
 
     // combine filters into a single function
-    Predicate<? super DateValue> filter;
-    switch (filters.size()) {
-      case 0:
-        filter = Predicates.<DateValue>alwaysTrue();
-        break;
-      case 1:
-        filter = filters.get(0);
-        break;
-      default:
-        filter = Predicates.and(filters);
-        break;
-    }
+    PackedDatePredicate filter = Filters.and(filters);
 
     Generator instanceGenerator;
     if (0 != bySetPos.length) {
@@ -478,7 +493,31 @@ public class RecurrenceIteratorFactory {
         dtStart, tzid, condition, instanceGenerator,
         yearGenerator, monthGenerator, dayGenerator,
         hourGenerator, minuteGenerator, secondGenerator,
-        canShortcutAdvance);
+        canShortcutAdvance, freq, 0 != bySetPos.length);
+  }
+
+  /**
+   * determines whether the iterators of a rule can jump straight to the date
+   * passed to {@link RecurrenceIterator#advanceTo}, instead of generating
+   * every instance before it.
+   * This isn't the case when a COUNT has to see every instance, or when a
+   * BYSETPOS rule has more than one time of day, since the time of day that
+   * each set starts with then depends on the sets before it.
+   */
+  static boolean canShortcutAdvance(RRule rrule) {
+    if (0 != rrule.getCount()) { return false; }
+    if (0 == rrule.getBySetPos().length) { return true; }
+    switch (rrule.getFreq()) {
+      case HOURLY:
+      case MINUTELY:
+      case SECONDLY:
+        // BYSETPOS is ignored
+        return true;
+      default:
+        return rrule.getByHour().length <= 1
+            && rrule.getByMinute().length <= 1
+            && rrule.getBySecond().length <= 1;
+    }
   }
 
   /**
@@ -510,6 +549,35 @@ public class RecurrenceIteratorFactory {
         Collections.<RecurrenceIterator>singleton(excluded));
   }
 
+  /**
+   * an iterator over all the dates included except those in a set.
+   * This is equivalent to calling {@link #except(RecurrenceIterator,
+   * RecurrenceIterator)} with the set's {@link DateSet#iterator iterator},
+   * but each date is checked against the set directly instead of merging the
+   * two series, so large sets of exclusions are cheap.
+   * @param included non null.
+   * @param excluded non null.
+   * @return non null.
+   */
+  public static RecurrenceIterator except(
+      RecurrenceIterator included, DateSet excluded) {
+    return new ExceptIteratorImpl(included, excluded);
+  }
+
+  /**
+   * yields the next date of a recurrence iterator in
+   * {@link PackedDates packed} form.  Iterators created by this factory produce
+   * packed dates directly, so no {@link DateValue} is allocated for them.
+   * Behavior is undefined unless {@link RecurrenceIterator#hasNext} is true.
+   * @param it non null.
+   * @return a packed date value in UTC
+   */
+  public static long nextPacked(RecurrenceIterator it) {
+    return (it instanceof PackedRecurrenceIterator)
+        ? ((PackedRecurrenceIterator) it).nextPacked()
+        : PackedDates.pack(it.next());
+  }
+
   private static final Pattern FOLD = Pattern.compile("(?:\\r\\n?|\\n)[ \t]");
   private static final Pattern NEWLINE = Pattern.compile("[\\r\\n]+");
   private static final Pattern RULE = Pattern.compile(
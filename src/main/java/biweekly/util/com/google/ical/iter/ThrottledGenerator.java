@@ -35,4 +35,12 @@ abstract class ThrottledGenerator extends Generator {
    */
   abstract void workDone();
 
+  /**
+   * moves the generator forward so that the next call to generate yields the
+   * first year on or after the given year that it would have yielded anyway,
+   * without counting the years in between against any throttle.
+   * This does nothing if the generator is already there.
+   */
+  abstract void skipTo(int year);
+
 }
@@ -0,0 +1,328 @@
+package biweekly.util.com.google.ical.iter;
+
+import java.util.Arrays;
+import java.util.List;
+
+import biweekly.util.com.google.ical.util.TimeUtils;
+import biweekly.util.com.google.ical.values.Weekday;
+import biweekly.util.com.google.ical.values.WeekdayNum;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * the days of a year that the BYDAY, BYMONTHDAY, BYYEARDAY and BYWEEKNO parts
+ * of a rule allow.
+ *
+ * <p>Each part is compiled into a bit set that has one bit for each day of the
+ * year, and the table of a year is the intersection of its parts' bit sets.
+ * The table of the most recent year is kept, so generating the days of a month
+ * is a scan over the month's bits.  The parts allow exactly the days that the
+ * day generators in {@link Generators} would generate and that the day filters
+ * in {@link Filters} would accept.</p>
+ *
+ * @author Michael Angstadt
+ */
+final class YearDayTable {
+  /** the number of longs needed to hold a bit for each day of a year */
+  private static final int WORDS = (366 + 63) / 64;
+
+  /** a part of a rule that allows some of the days of a year. */
+  abstract static class Part {
+    /**
+     * sets the bits of the days that the part allows.
+     * @param year the year
+     * @param days the bits, indexed by zero-based day of the year, all clear
+     */
+    abstract void mark(int year, long[] days);
+  }
+
+  private final Part[] parts_;
+  private final long[] days_ = new long[WORDS];
+  private final long[] scratch_ = new long[WORDS];
+  private int year_ = Integer.MIN_VALUE;
+
+  /**
+   * @param parts the parts that a day has to be allowed by, at least one
+   */
+  YearDayTable(List<Part> parts) {
+    this.parts_ = parts.toArray(new Part[parts.size()]);
+  }
+
+  /**
+   * finds the first day in a range of days that is allowed by every part.
+   * @param year the year
+   * @param from the zero-based day of the year to start at (inclusive)
+   * @param to the zero-based day of the year to stop at (exclusive)
+   * @return the zero-based day of the year, or -1 if there is none
+   */
+  int next(int year, int from, int to) {
+    long[] days = this.forYear(year);
+    for (int i = from; i < to;) {
+      long word = days[i >> 6] >>> (i & 63);
+      if (0 != word) {
+        int day = i + Long.numberOfTrailingZeros(word);
+        return day < to ? day : -1;
+      }
+      i = ((i >> 6) + 1) << 6;
+    }
+    return -1;
+  }
+
+  private long[] forYear(int year) {
+    if (year == this.year_) { return this.days_; }
+
+    this.parts_[0].mark(year, clear(this.days_));
+    for (int i = 1; i < this.parts_.length; ++i) {
+      this.parts_[i].mark(year, clear(this.scratch_));
+      for (int w = 0; w < WORDS; ++w) {
+        this.days_[w] &= this.scratch_[w];
+      }
+    }
+    this.year_ = year;
+    return this.days_;
+  }
+
+  /**
+   * a part that allows days of the month, as in BYMONTHDAY.
+   * @param monthDays elements in [-31,31] != 0
+   */
+  static Part byMonthDay(final int[] monthDays) {
+    return new Part() {
+      @Override
+      void mark(int year, long[] days) {
+        for (int month = 1; month <= 12; ++month) {
+          int doy0 = TimeUtils.dayOfYear(year, month, 1);
+          int nDays = TimeUtils.monthLength(year, month);
+          for (int date : monthDays) {
+            if (date < 0) { date += nDays + 1; }
+            if (date >= 1 && date <= nDays) { set(days, doy0 + date - 1); }
+          }
+        }
+      }
+
+      @Override
+      public String toString() {
+        return "byMonthDay:" + Arrays.toString(monthDays);
+      }
+    };
+  }
+
+  /**
+   * a part that allows days of the year, as in BYYEARDAY.
+   * @param yearDays elements in [-366,366] != 0
+   */
+  static Part byYearDay(final int[] yearDays) {
+    return new Part() {
+      @Override
+      void mark(int year, long[] days) {
+        int nDays = TimeUtils.yearLength(year);
+        for (int yearDay : yearDays) {
+          if (yearDay < 0) { yearDay += nDays + 1; }
+          if (yearDay >= 1 && yearDay <= nDays) { set(days, yearDay - 1); }
+        }
+      }
+
+      @Override
+      public String toString() {
+        return "byYearDay:" + Arrays.toString(yearDays);
+      }
+    };
+  }
+
+  /**
+   * a part that allows the days in weeks of the year, as in BYWEEKNO.
+   * @param weekNos elements in [-53,53] != 0
+   * @param wkst the day of the week that the week starts on
+   */
+  static Part byWeekNo(final int[] weekNos, final Weekday wkst) {
+    return new Part() {
+      @Override
+      void mark(int year, long[] days) {
+        // see Generators.byWeekNoGenerator
+        Weekday dowJan1 = Weekday.firstDayOfWeekInMonth(year, 1);
+        int nDaysInFirstWeek =
+          7 - ((7 + dowJan1.javaDayNum - wkst.javaDayNum) % 7);
+        int nOrphanedDays = 0;
+        if (nDaysInFirstWeek < 4) {
+          nOrphanedDays = nDaysInFirstWeek;
+          nDaysInFirstWeek = 7;
+        }
+        int doyOfStartOfWeek1 = nDaysInFirstWeek - 7 + nOrphanedDays;
+        int nDays = TimeUtils.yearLength(year);
+        int weeksInYear = (nDays - nOrphanedDays + 6) / 7;
+
+        for (int weekNo : weekNos) {
+          if (weekNo < 0) { weekNo += weeksInYear + 1; }
+          int doy0 = (weekNo - 1) * 7 + doyOfStartOfWeek1;
+          for (int doy = Math.max(0, doy0),
+                   end = Math.min(nDays, doy0 + 7); doy < end; ++doy) {
+            set(days, doy);
+          }
+        }
+      }
+
+      @Override
+      public String toString() {
+        return "byWeekNo:" + Arrays.toString(weekNos) + " from " + wkst;
+      }
+    };
+  }
+
+  /**
+   * a part that allows the days that a BYDAY rule generates.
+   * @param weekdays the days of the week and optional week numbers
+   * @param weeksInYear are the week numbers meant to be weeks in the
+   *   current year, or weeks in the current month.
+   * @see Generators#byDayGenerator
+   */
+  static Part byDay(final WeekdayNum[] weekdays, final boolean weeksInYear) {
+    return new Part() {
+      @Override
+      void mark(int year, long[] days) {
+        int nDays = TimeUtils.yearLength(year);
+        Weekday dowJan1 = Weekday.firstDayOfWeekInMonth(year, 1);
+        for (WeekdayNum day : weekdays) {
+          if (0 == day.num) {
+            // every one of them
+            for (int doy = firstIndexOf(day.wday, dowJan1); doy < nDays;
+                 doy += 7) {
+              set(days, doy);
+            }
+          } else if (weeksInYear) {
+            int date = Util.dayNumToDate(
+                dowJan1, nDays, day.num, day.wday, 0, nDays);
+            if (0 != date) { set(days, date - 1); }
+          } else {
+            for (int month = 1; month <= 12; ++month) {
+              int nDaysInMonth = TimeUtils.monthLength(year, month);
+              int date = Util.dayNumToDate(
+                  Weekday.firstDayOfWeekInMonth(year, month), nDaysInMonth,
+                  day.num, day.wday, 0, nDaysInMonth);
+              if (0 != date) {
+                set(days, TimeUtils.dayOfYear(year, month, date));
+              }
+            }
+          }
+        }
+      }
+
+      @Override
+      public String toString() {
+        return "byDay:" + Arrays.toString(weekdays)
+            + " by " + (weeksInYear ? "year" : "month");
+      }
+    };
+  }
+
+  /**
+   * a part that allows the days that a BYDAY filter accepts.  This differs
+   * from {@link #byDay} in how negative week numbers and the week start are
+   * treated.
+   * @param weekdays the days of the week and optional week numbers
+   * @param weeksInYear are the week numbers meant to be weeks in the
+   *   current year, or weeks in the current month.
+   * @param wkst the day of the week that the week starts on
+   * @see Filters#byDayFilter
+   */
+  static Part byDayFilter(final WeekdayNum[] weekdays,
+                          final boolean weeksInYear, final Weekday wkst) {
+    return new Part() {
+      @Override
+      void mark(int year, long[] days) {
+        int nDays = TimeUtils.yearLength(year);
+        Weekday dowJan1 = Weekday.firstDayOfWeekInMonth(year, 1);
+        for (WeekdayNum day : weekdays) {
+          if (weeksInYear || 0 == day.num) {
+            int weekNo = weekNo(day, dowJan1, nDays);
+            for (int doy = firstIndexOf(day.wday, dowJan1); doy < nDays;
+                 doy += 7) {
+              if (0 == day.num || weekNo == dateWeekNo(day.wday, doy)) {
+                set(days, doy);
+              }
+            }
+          } else {
+            for (int month = 1; month <= 12; ++month) {
+              Weekday dow0 = Weekday.firstDayOfWeekInMonth(year, month);
+              int nDaysInMonth = TimeUtils.monthLength(year, month);
+              int doy0 = TimeUtils.dayOfYear(year, month, 1);
+              int weekNo = weekNo(day, dow0, nDaysInMonth);
+              for (int date = firstIndexOf(day.wday, dow0);
+                   date < nDaysInMonth; date += 7) {
+                if (weekNo == dateWeekNo(day.wday, date)) {
+                  set(days, doy0 + date);
+                }
+              }
+            }
+          }
+        }
+      }
+
+      /** the week number that the filter compares against */
+      private int weekNo(WeekdayNum day, Weekday dow0, int nDays) {
+        return day.num < 0 ? Util.invertWeekdayNum(day, dow0, nDays) : day.num;
+      }
+
+      /**
+       * the week number that the filter computes for a day.
+       * @param instance the zero-based index of the day in the year or month
+       */
+      private int dateWeekNo(Weekday dow, int instance) {
+        return wkst.javaDayNum <= dow.javaDayNum
+            ? 1 + (instance / 7) : (instance / 7);
+      }
+
+      @Override
+      public String toString() {
+        return "byDayFilter:" + Arrays.toString(weekdays)
+            + " by " + (weeksInYear ? "year" : "month") + " from " + wkst;
+      }
+    };
+  }
+
+  /**
+   * the zero-based index of the first occurrence of a day of the week in a
+   * year or month.
+   * @param dow0 the day of the week of the first day of the year or month
+   */
+  private static int firstIndexOf(Weekday dow, Weekday dow0) {
+    return (7 + dow.ordinal() - dow0.ordinal()) % 7;
+  }
+
+  private static void set(long[] days, int doy) {
+    days[doy >> 6] |= 1L << (doy & 63);
+  }
+
+  private static long[] clear(long[] days) {
+    Arrays.fill(days, 0);
+    return days;
+  }
+
+  @Override
+  public String toString() {
+    return "YearDayTable:" + Arrays.toString(this.parts_);
+  }
+
+}
@@ -89,6 +89,38 @@ public class DTBuilder {
     return new DateValueImpl(year, month, day);
   }
 
+  /**
+   * produces a normalized, {@link PackedDates packed} date time, using zero
+   * for the time fields if none were provided.
+   */
+  public long toPackedDateTime() {
+    normalize();
+    return PackedDates.pack(year, month, day, hour, minute, second);
+  }
+
+  /**
+   * produces a normalized, {@link PackedDates packed} date.
+   */
+  public long toPackedDate() {
+    normalize();
+    return PackedDates.pack(year, month, day);
+  }
+
+  /**
+   * sets the fields from a {@link PackedDates packed} date value.  The time
+   * fields are only set if the value has a time.
+   */
+  public void setPacked(long packed) {
+    year = PackedDates.year(packed);
+    month = PackedDates.month(packed);
+    day = PackedDates.day(packed);
+    if (PackedDates.hasTime(packed)) {
+      hour = PackedDates.hour(packed);
+      minute = PackedDates.minute(packed);
+      second = PackedDates.second(packed);
+    }
+  }
+
   /**
    * behavior undefined unless normalized.
    * If you're not sure whether it's appropriate to use this method, use
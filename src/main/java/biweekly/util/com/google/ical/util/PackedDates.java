@@ -0,0 +1,142 @@
+package biweekly.util.com.google.ical.util;
+
+import biweekly.util.com.google.ical.values.DateTimeValue;
+import biweekly.util.com.google.ical.values.DateTimeValueImpl;
+import biweekly.util.com.google.ical.values.DateValue;
+import biweekly.util.com.google.ical.values.DateValueImpl;
+import biweekly.util.com.google.ical.values.TimeValue;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * encodes date values as primitive longs so that the recurrence iterators can
+ * generate, filter, and compare candidate dates without allocating an object
+ * for each one.
+ *
+ * <p>The fields are packed into bit fields from most significant to least
+ * significant: year, month (4 bits), day (5 bits), and then, for date-times,
+ * hour (5 bits), minute (6 bits) and second (6 bits).  Dates have their low 17
+ * bits cleared, and date-times have 1 added to them, so a packed date sorts
+ * before any date-time on the same day, consistent with
+ * {@link DateValue#compareTo}.  Packed values can be compared with the
+ * primitive comparison operators.</p>
+ *
+ * @author Michael Angstadt
+ */
+public final class PackedDates {
+
+  private static final int TIME_BITS = 17;
+  private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+
+  /** packs a date. */
+  public static long pack(int year, int month, int day) {
+    return ((((((long) year) << 4) + month) << 5) + day) << TIME_BITS;
+  }
+
+  /** packs a date-time. */
+  public static long pack(int year, int month, int day,
+                          int hour, int minute, int second) {
+    long date = (((((long) year) << 4) + month) << 5) + day;
+    return (((((date << 5) + hour) << 6) + minute) << 6) + second + 1;
+  }
+
+  /** packs a date or date-time value. */
+  public static long pack(DateValue dv) {
+    if (dv instanceof TimeValue) {
+      TimeValue tv = (TimeValue) dv;
+      return pack(dv.year(), dv.month(), dv.day(),
+                  tv.hour(), tv.minute(), tv.second());
+    }
+    return pack(dv.year(), dv.month(), dv.day());
+  }
+
+  /** true iff the packed value is a date-time. */
+  public static boolean hasTime(long packed) {
+    return (packed & TIME_MASK) != 0;
+  }
+
+  public static int year(long packed) {
+    return (int) (fields(packed) >> (TIME_BITS + 9));
+  }
+
+  public static int month(long packed) {
+    return (int) (fields(packed) >> (TIME_BITS + 5)) & 0xf;
+  }
+
+  public static int day(long packed) {
+    return (int) (fields(packed) >> TIME_BITS) & 0x1f;
+  }
+
+  /** the hour of a packed date-time, or zero for a packed date. */
+  public static int hour(long packed) {
+    return (int) (fields(packed) >> 12) & 0x1f;
+  }
+
+  /** the minute of a packed date-time, or zero for a packed date. */
+  public static int minute(long packed) {
+    return (int) (fields(packed) >> 6) & 0x3f;
+  }
+
+  /** the second of a packed date-time, or zero for a packed date. */
+  public static int second(long packed) {
+    return (int) fields(packed) & 0x3f;
+  }
+
+  /** the date part of a packed date or date-time. */
+  public static long toDate(long packed) {
+    return packed & ~TIME_MASK;
+  }
+
+  /** midnight of the day of a packed date or date-time. */
+  public static long dayStart(long packed) {
+    return toDate(packed) + 1;
+  }
+
+  /**
+   * materializes a packed value.
+   * @return a {@link DateTimeValue} if the packed value has a time, or a
+   *   {@link DateValue} if it doesn't.
+   */
+  public static DateValue toDateValue(long packed) {
+    int year = year(packed), month = month(packed), day = day(packed);
+    if (hasTime(packed)) {
+      return new DateTimeValueImpl(year, month, day,
+                                   hour(packed), minute(packed),
+                                   second(packed));
+    }
+    return new DateValueImpl(year, month, day);
+  }
+
+  /** removes the marker bit that distinguishes date-times from dates. */
+  private static long fields(long packed) {
+    return hasTime(packed) ? packed - 1 : packed;
+  }
+
+  private PackedDates() {
+    // uninstantiable
+  }
+
+}
@@ -24,6 +24,7 @@ import biweekly.util.com.google.ical.values.DateValueImpl;
 import biweekly.util.com.google.ical.values.TimeValue;
 
 import java.util.Calendar;
+import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.SimpleTimeZone;
 import java.util.TimeZone;
@@ -42,51 +43,11 @@ public class TimeUtils {
     return ZULU;
   }
 
-  /**
-   * Get a "time_t" in millis given a number of seconds since
-   * Dershowitz/Reingold epoch relative to a given timezone.
-   * @param epochSecs Number of seconds since Dershowitz/Reingold
-   * epoch, relatve to zone.
-   * @param zone Timezone against which epochSecs applies
-   * @return Number of milliseconds since 00:00:00 Jan 1, 1970 GMT
-   */
-  private static long timetMillisFromEpochSecs(long epochSecs,
-                                               TimeZone zone) {
-    DateTimeValue date = timeFromSecsSinceEpoch(epochSecs);
-    Calendar cal = new GregorianCalendar(zone);
-    cal.clear(); // clear millis
-    cal.setTimeZone(zone);
-    cal.set(date.year(), date.month() - 1, date.day(),
-            date.hour(), date.minute(), date.second());
-    return cal.getTimeInMillis();
-  }
-
-  private static DateTimeValue convert(DateTimeValue time,
-                                       TimeZone zone,
-                                       int sense) {
-    if (zone == null ||
-        zone.hasSameRules(ZULU) ||
-        time.year() == 0) {
-      return time;
-    }
-
-    long timetMillis;
+  /** the {@link #fixedFromGregorian fixed} day of 1 January 1970. */
+  private static final int UNIX_EPOCH_FIXED = 719163;
 
-    if (sense > 0) {
-      // time is in UTC
-      timetMillis = timetMillisFromEpochSecs(secsSinceEpoch(time), ZULU);
-    } else {
-      // time is in local time; since zone.getOffset() expects millis
-      // in UTC, need to convert before we can get the offset (ironic)
-      timetMillis = timetMillisFromEpochSecs(secsSinceEpoch(time), zone);
-    }
-
-    int millisecondOffset = zone.getOffset(timetMillis);
-    int millisecondRound = millisecondOffset < 0 ? -500 : 500;
-    int secondOffset = (millisecondOffset + millisecondRound) / 1000;
-
-    DateTimeValue dtv = toDateTimeValue(timetMillis, zone);
-    return addSeconds(dtv, sense * secondOffset);
+  private static boolean isUtc(TimeZone zone) {
+    return zone == null || zone.hasSameRules(ZULU);
   }
 
   public static DateValue fromUtc(DateValue date, TimeZone zone) {
@@ -96,20 +57,92 @@ public class TimeUtils {
   }
 
   public static DateTimeValue fromUtc(DateTimeValue date, TimeZone zone) {
-    return convert(date, zone, +1);
+    if (isUtc(zone) || date.year() == 0) { return date; }
+    return (DateTimeValue) PackedDates.toDateValue(
+        fromUtc(PackedDates.pack(date), zone));
   }
 
   public static DateValue toUtc(DateValue date, TimeZone zone) {
-    return (date instanceof TimeValue)
-      ? convert((DateTimeValue) date, zone, -1)
-      : date;
+    if (!(date instanceof TimeValue) || isUtc(zone) || date.year() == 0) {
+      return date;
+    }
+    return PackedDates.toDateValue(toUtc(PackedDates.pack(date), zone));
+  }
+
+  /**
+   * converts a {@link PackedDates packed} date-time from UTC to the given
+   * timezone.  Packed dates are returned unchanged.
+   * @param zone the timezone or null for UTC
+   */
+  public static long fromUtc(long packedUtc, TimeZone zone) {
+    if (!PackedDates.hasTime(packedUtc) || isUtc(zone)
+        || PackedDates.year(packedUtc) == 0) {
+      return packedUtc;
+    }
+    long utcMillis = millisFromPacked(packedUtc);
+    return packedFromMillis(utcMillis + zone.getOffset(utcMillis));
+  }
+
+  /**
+   * converts a {@link PackedDates packed} date-time from the given timezone to
+   * UTC.  Packed dates are returned unchanged.  Local times that fall in a
+   * daylight savings gap or overlap are resolved the same way as
+   * {@link GregorianCalendar}.
+   * @param zone the timezone or null for UTC
+   */
+  public static long toUtc(long packedLocal, TimeZone zone) {
+    if (!PackedDates.hasTime(packedLocal) || isUtc(zone)
+        || PackedDates.year(packedLocal) == 0) {
+      return packedLocal;
+    }
+    long localMillis = millisFromPacked(packedLocal);
+    return packedFromMillis(
+        localMillis - offsetOfLocal(packedLocal, localMillis, zone));
   }
 
-  private static DateTimeValue addSeconds(DateTimeValue dtime, int seconds) {
-    return new DTBuilder(dtime.year(), dtime.month(),
-                         dtime.day(), dtime.hour(),
-                         dtime.minute(),
-                         dtime.second() + seconds).toDateTime();
+  /**
+   * the offset of the given zone at a time given in local millis.
+   * Since zone.getOffset() expects millis in UTC, check the offsets a day
+   * either side of the local time.  If they're the same, then there's no
+   * transition nearby and the offset is unambiguous.  Otherwise, the local
+   * time may fall in a gap or overlap, so let {@link GregorianCalendar}
+   * resolve it.
+   */
+  private static int offsetOfLocal(
+      long packedLocal, long localMillis, TimeZone zone) {
+    int offset = zone.getOffset(localMillis - MILLIS_PER_DAY);
+    if (offset == zone.getOffset(localMillis + MILLIS_PER_DAY)
+        && offset == zone.getOffset(localMillis - offset)) {
+      return offset;
+    }
+
+    GregorianCalendar cal = new GregorianCalendar(zone);
+    cal.setGregorianChange(new Date(Long.MIN_VALUE));  // proleptic
+    cal.clear();
+    cal.set(PackedDates.year(packedLocal), PackedDates.month(packedLocal) - 1,
+            PackedDates.day(packedLocal), PackedDates.hour(packedLocal),
+            PackedDates.minute(packedLocal), PackedDates.second(packedLocal));
+    return (int) (localMillis - cal.getTimeInMillis());
+  }
+
+  /**
+   * millis since 1970 of a {@link PackedDates packed} value, treating its
+   * fields as UTC.  Dates are treated as midnight.
+   */
+  public static long millisFromPacked(long packed) {
+    return millisFromSecs(secsSinceEpoch(packed));
+  }
+
+  /** millis since 1970 of the given {@link #secsSinceEpoch} value. */
+  static long millisFromSecs(long secsSinceEpoch) {
+    return (secsSinceEpoch - UNIX_EPOCH_FIXED * SECS_PER_DAY) * 1000;
+  }
+
+  /** the packed date-time of the given millis since 1970, in UTC. */
+  static long packedFromMillis(long millis) {
+    long secs = millis / 1000;
+    if (secs * 1000 > millis) { --secs; }  // round towards negative infinity
+    return packedTimeFromSecsSinceEpoch(secs + UNIX_EPOCH_FIXED * SECS_PER_DAY);
   }
 
   public static DateValue add(DateValue d, DateValue dur) {
@@ -225,6 +258,15 @@ public class TimeUtils {
    * See "Calendrical Calculations", Reingold and Dershowitz.
    */
   public static DateTimeValue timeFromSecsSinceEpoch(long secsSinceEpoch) {
+    return (DateTimeValue) PackedDates.toDateValue(
+        packedTimeFromSecsSinceEpoch(secsSinceEpoch));
+  }
+
+  /**
+   * like {@link #timeFromSecsSinceEpoch}, but produces a
+   * {@link PackedDates packed} date-time.
+   */
+  public static long packedTimeFromSecsSinceEpoch(long secsSinceEpoch) {
     // TODO: should we handle -ve years?
     int secsInDay = (int) (secsSinceEpoch % SECS_PER_DAY);
     int daysSinceEpoch = (int) (secsSinceEpoch / SECS_PER_DAY);
@@ -245,14 +287,11 @@ public class TimeUtils {
     int hour = minutesInDay / 60;
     if (!(hour >= 0 && hour < 24)) throw new AssertionError(
         "Input was: " + secsSinceEpoch + "to make hour: " + hour);
-    DateTimeValue result =
-      new DateTimeValueImpl(year, month, day, hour, minute, second);
-    // assert result.equals(normalize(result));
-    // assert secsSinceEpoch(result) == secsSinceEpoch;
-    return result;
+    return PackedDates.pack(year, month, day, hour, minute, second);
   }
 
   private static final long SECS_PER_DAY = 60L * 60 * 24;
+  private static final long MILLIS_PER_DAY = SECS_PER_DAY * 1000;
 
   /**
    * Compute the number of seconds from the Proleptic Gregorian epoch
@@ -271,6 +310,18 @@ public class TimeUtils {
     return result;
   }
 
+  /**
+   * like {@link #secsSinceEpoch(DateValue)}, but for a
+   * {@link PackedDates packed} date value.
+   */
+  public static long secsSinceEpoch(long packed) {
+    return fixedFromGregorian(PackedDates.year(packed),
+                              PackedDates.month(packed),
+                              PackedDates.day(packed)) * SECS_PER_DAY
+      + PackedDates.second(packed)
+      + 60 * (PackedDates.minute(packed) + 60 * PackedDates.hour(packed));
+  }
+
   public static DateTimeValue dayStart(DateValue dv) {
     return new DateTimeValueImpl(dv.year(), dv.month(), dv.day(), 0, 0, 0);
   }
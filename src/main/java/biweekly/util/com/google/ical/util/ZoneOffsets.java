@@ -0,0 +1,154 @@
+package biweekly.util.com.google.ical.util;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * converts {@link PackedDates packed} date-times between UTC and a timezone,
+ * remembering the timezone's offset for each day it has seen.
+ *
+ * <p>The offset of a day is looked up once, and only remembered if no
+ * transition falls near it, so every other conversion on that day is integer
+ * arithmetic.  Days near a transition are converted by
+ * {@link TimeUtils#toUtc(long, TimeZone)} and
+ * {@link TimeUtils#fromUtc(long, TimeZone)}, so the results are always the
+ * same as theirs.</p>
+ *
+ * <p>Instances are not thread safe, so each iterator should have its own.</p>
+ *
+ * @author Michael Angstadt
+ */
+public final class ZoneOffsets {
+  /** the number of days remembered for each direction; a power of two. */
+  private static final int SLOTS = 64;
+  /** marks a day whose offset is not constant. */
+  private static final int UNKNOWN = Integer.MIN_VALUE;
+  private static final long SECS_PER_DAY = 60L * 60 * 24;
+  private static final long MILLIS_PER_DAY = SECS_PER_DAY * 1000;
+  /** the {@link TimeUtils#fixedFromGregorian fixed} day of 1 January 1970. */
+  private static final long UNIX_EPOCH_FIXED = 719163;
+
+  private static final ZoneOffsets UTC = new ZoneOffsets(null);
+
+  /** the timezone, or null for UTC. */
+  private final TimeZone zone_;
+  /** the UTC days whose offsets are in utcOffsets_, indexed by slot. */
+  private final int[] utcDays_;
+  private final int[] utcOffsets_;
+  /** the local days whose offsets are in localOffsets_, indexed by slot. */
+  private final int[] localDays_;
+  private final int[] localOffsets_;
+
+  private ZoneOffsets(TimeZone zone) {
+    this.zone_ = zone;
+    if (null == zone) {
+      this.utcDays_ = this.utcOffsets_ = null;
+      this.localDays_ = this.localOffsets_ = null;
+      return;
+    }
+    this.utcDays_ = new int[SLOTS];
+    this.utcOffsets_ = new int[SLOTS];
+    this.localDays_ = new int[SLOTS];
+    this.localOffsets_ = new int[SLOTS];
+    // no packed date-time falls on fixed day Integer.MIN_VALUE
+    Arrays.fill(this.utcDays_, Integer.MIN_VALUE);
+    Arrays.fill(this.localDays_, Integer.MIN_VALUE);
+  }
+
+  /**
+   * creates a converter for a timezone.
+   * @param zone the timezone or null for UTC
+   */
+  public static ZoneOffsets forZone(TimeZone zone) {
+    return (null == zone || zone.hasSameRules(TimeUtils.utcTimezone()))
+        ? UTC : new ZoneOffsets(zone);
+  }
+
+  /** the timezone, or null if it is UTC. */
+  public TimeZone getZone() {
+    return this.zone_;
+  }
+
+  /**
+   * converts a packed date-time from UTC to the timezone.
+   * @see TimeUtils#fromUtc(long, TimeZone)
+   */
+  public long fromUtc(long packedUtc) {
+    if (null == this.zone_ || !PackedDates.hasTime(packedUtc)
+        || PackedDates.year(packedUtc) == 0) {
+      return packedUtc;
+    }
+    long secs = TimeUtils.secsSinceEpoch(packedUtc);
+    int day = (int) (secs / SECS_PER_DAY);
+    int slot = day & (SLOTS - 1);
+    if (this.utcDays_[slot] != day) {
+      long start = (day - UNIX_EPOCH_FIXED) * MILLIS_PER_DAY;
+      int offset = this.zone_.getOffset(start);
+      this.utcOffsets_[slot] =
+          offset == this.zone_.getOffset(start + MILLIS_PER_DAY - 1)
+          ? offset : UNKNOWN;
+      this.utcDays_[slot] = day;
+    }
+
+    int offset = this.utcOffsets_[slot];
+    if (UNKNOWN == offset) { return TimeUtils.fromUtc(packedUtc, this.zone_); }
+    return TimeUtils.packedFromMillis(
+        TimeUtils.millisFromSecs(secs) + offset);
+  }
+
+  /**
+   * converts a packed date-time from the timezone to UTC.
+   * @see TimeUtils#toUtc(long, TimeZone)
+   */
+  public long toUtc(long packedLocal) {
+    if (null == this.zone_ || !PackedDates.hasTime(packedLocal)
+        || PackedDates.year(packedLocal) == 0) {
+      return packedLocal;
+    }
+    long secs = TimeUtils.secsSinceEpoch(packedLocal);
+    int day = (int) (secs / SECS_PER_DAY);
+    int slot = day & (SLOTS - 1);
+    if (this.localDays_[slot] != day) {
+      // The UTC time of any local time on the day is less than a day away
+      // from it, so if the offset is the same a day either side of the local
+      // day, it doesn't change in between.
+      long start = (day - UNIX_EPOCH_FIXED) * MILLIS_PER_DAY;
+      int offset = this.zone_.getOffset(start - MILLIS_PER_DAY);
+      this.localOffsets_[slot] =
+          offset == this.zone_.getOffset(start + 2 * MILLIS_PER_DAY)
+          ? offset : UNKNOWN;
+      this.localDays_[slot] = day;
+    }
+
+    int offset = this.localOffsets_[slot];
+    if (UNKNOWN == offset) { return TimeUtils.toUtc(packedLocal, this.zone_); }
+    return TimeUtils.packedFromMillis(
+        TimeUtils.millisFromSecs(secs) - offset);
+  }
+
+}
@@ -54,8 +54,11 @@ public enum Weekday {
   }
 
   public static Weekday valueOf(DateValue dv) {
-    int dayIndex =
-      TimeUtils.fixedFromGregorian(dv.year(), dv.month(), dv.day()) % 7;
+    return valueOf(dv.year(), dv.month(), dv.day());
+  }
+
+  public static Weekday valueOf(int year, int month, int day) {
+    int dayIndex = TimeUtils.fixedFromGregorian(year, month, day) % 7;
     if (dayIndex < 0) { dayIndex += 7; }
     return VALUES[dayIndex];
   }
@@ -340,6 +340,32 @@ public class ICalTimeZoneTest {
 		assertOffset(-4, 0, true, tz, 2014, 3, 10);
 	}
 
+	@Test
+	public void hasSameRules() throws Exception {
+		VTimezone component = readNewYork();
+		ICalTimeZone tz = new ICalTimeZone(component);
+		ICalTimeZone copy = new ICalTimeZone(readNewYork());
+		assertTrue(tz.hasSameRules(tz));
+		assertTrue(tz.hasSameRules(copy));
+
+		component = readNewYork();
+		component.getStandardTimes().get(0).setTimezoneOffsetTo(minus4);
+		assertFalse(tz.hasSameRules(new ICalTimeZone(component)));
+
+		assertFalse(tz.hasSameRules(null));
+		assertFalse(tz.hasSameRules(TimeZone.getTimeZone("UTC")));
+	}
+
+	private VTimezone readNewYork() throws Exception {
+		ICalReader reader = new ICalReader(getClass().getResourceAsStream("New_York.ics"));
+		try {
+			reader.readNext();
+		} finally {
+			reader.close();
+		}
+		return reader.getTimezoneInfo().getComponents().iterator().next();
+	}
+
 	@Test
 	public void createIterator() throws Exception {
 		VTimezone component;
@@ -7,6 +7,7 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.TimeZone;
 
@@ -177,6 +178,56 @@ public class TimezoneInfoTest {
 		assertFalse(tzinfo.isFloating(property));
 	}
 
+	@Test
+	public void setTimeZone_multiple() {
+		ICalProperty property1 = new ICalPropertyImpl();
+		ICalProperty property2 = new ICalPropertyImpl();
+
+		TimeZone timezone1 = TestUtils.buildTimezone(1, 0);
+		VTimezone component1 = new VTimezone("custom");
+		tzinfo.assign(component1, timezone1);
+
+		tzinfo.setTimeZone(property2, TestUtils.buildTimezone(2, 0), false);
+		tzinfo.setTimeZone(Arrays.asList(property1, property2), timezone1);
+
+		assertEquals(timezone1, tzinfo.getTimeZone(property1));
+		assertEquals(timezone1, tzinfo.getTimeZone(property2));
+		assertEquals(component1, tzinfo.getComponent(property2));
+		assertFalse(tzinfo.hasSolidusTimezone(property2));
+
+		tzinfo.setTimeZone(Arrays.asList(property1, property2), null);
+		assertEquals(null, tzinfo.getTimeZone(property1));
+		assertEquals(null, tzinfo.getTimeZone(property2));
+	}
+
+	@Test
+	public void removeUnusedComponents() {
+		ICalProperty property = new ICalPropertyImpl();
+
+		TimeZone timezone1 = TestUtils.buildTimezone(1, 0);
+		VTimezone component1 = new VTimezone("one");
+		tzinfo.assign(component1, timezone1);
+
+		TimeZone timezone2 = TestUtils.buildTimezone(2, 0);
+		VTimezone component2 = new VTimezone("two");
+		tzinfo.assign(component2, timezone2);
+
+		TimeZone timezone3 = TestUtils.buildTimezone(3, 0);
+		VTimezone component3 = new VTimezone("three");
+		tzinfo.assign(component3, timezone3);
+
+		tzinfo.setTimeZone(property, timezone1);
+		tzinfo.setDefaultTimeZone(timezone2);
+
+		assertEquals(Arrays.asList(component3), tzinfo.removeUnusedComponents());
+
+		Collection<VTimezone> components = tzinfo.getComponents();
+		assertEquals(2, components.size());
+		assertTrue(components.contains(component1));
+		assertTrue(components.contains(component2));
+		assertEquals(null, tzinfo.getTimeZoneById("three"));
+	}
+
 	private class ICalPropertyImpl extends ICalProperty {
 		//empty
 	}
@@ -0,0 +1,188 @@
+package biweekly.io;
+
+import static biweekly.util.TestUtils.utc;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import biweekly.ICalendar;
+import biweekly.component.VEvent;
+import biweekly.component.VTimezone;
+import biweekly.io.text.ICalReader;
+import biweekly.property.DateDue;
+import biweekly.property.DateStart;
+import biweekly.property.Trigger;
+import biweekly.util.DateTimeComponents;
+import biweekly.util.ICalDate;
+import biweekly.util.IOUtils;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class TimezoneNormalizerTest {
+	private ICalendar ical;
+	private TimezoneInfo tzinfo;
+
+	@Before
+	public void before() throws Exception {
+		InputStream in = getClass().getResourceAsStream("New_York.ics");
+		String newYork = new String(IOUtils.toByteArray(in, true), "UTF-8");
+
+		//@formatter:off
+		String event =
+		"BEGIN:VEVENT\r\n" +
+			"DTSTART;TZID=America/New_York:20160701T120000\r\n" +
+			"DTEND;TZID=America/New_York:20160701T130000\r\n" +
+			"RDATE;TZID=America/New_York:20161225T120000\r\n" +
+			"EXDATE;TZID=America/New_York:20160708T120000,20160715T120000\r\n" +
+			"RECURRENCE-ID;TZID=America/New_York:20160722T120000\r\n" +
+			"DTSTAMP:20160601T000000Z\r\n" +
+			"BEGIN:VALARM\r\n" +
+				"TRIGGER;TZID=America/New_York;VALUE=DATE-TIME:20160701T113000\r\n" +
+			"END:VALARM\r\n" +
+		"END:VEVENT\r\n" +
+		"BEGIN:VEVENT\r\n" +
+			"DTSTART;VALUE=DATE:20160704\r\n" +
+			"DUE:20160705T120000\r\n" +
+		"END:VEVENT\r\n";
+		//@formatter:on
+
+		String text = newYork.replace("END:VCALENDAR", event + "END:VCALENDAR");
+		ICalReader reader = new ICalReader(text);
+		try {
+			ical = reader.readNext();
+		} finally {
+			reader.close();
+		}
+		tzinfo = reader.getTimezoneInfo();
+	}
+
+	@Test
+	public void normalize_utc() {
+		VEvent event = ical.getEvents().get(0);
+		int count = new TimezoneNormalizer().normalize(ical, tzinfo);
+		assertEquals(6, count);
+
+		DateStart dtstart = event.getDateStart();
+		assertEquals(utc("2016-07-01 16:00:00"), dtstart.getValue());
+		assertEquals(new DateTimeComponents(2016, 7, 1, 16, 0, 0, true), dtstart.getValue().getRawComponents());
+		assertNull(tzinfo.getTimeZone(dtstart));
+
+		assertEquals(new DateTimeComponents(2016, 7, 1, 17, 0, 0, true), event.getDateEnd().getValue().getRawComponents());
+		assertEquals(new DateTimeComponents(2016, 12, 25, 17, 0, 0, true), event.getRecurrenceDates().get(0).getDates().get(0).getRawComponents());
+		assertEquals(new DateTimeComponents(2016, 7, 8, 16, 0, 0, true), event.getExceptionDates().get(0).getValues().get(0).getRawComponents());
+		assertEquals(new DateTimeComponents(2016, 7, 15, 16, 0, 0, true), event.getExceptionDates().get(0).getValues().get(1).getRawComponents());
+		assertEquals(new DateTimeComponents(2016, 7, 22, 16, 0, 0, true), event.getRecurrenceId().getValue().getRawComponents());
+
+		Trigger trigger = event.getAlarms().get(0).getTrigger();
+		assertEquals(utc("2016-07-01 15:30:00"), trigger.getDate());
+		assertEquals(new DateTimeComponents(2016, 7, 1, 15, 30, 0, true), ((ICalDate) trigger.getDate()).getRawComponents());
+		assertNull(tzinfo.getTimeZone(trigger));
+
+		//components are kept by default
+		assertEquals(1, tzinfo.getComponents().size());
+
+		//floating and date values are not touched
+		VEvent event2 = ical.getEvents().get(1);
+		assertEquals(new DateTimeComponents(2016, 7, 4), event2.getDateStart().getValue().getRawComponents());
+		assertEquals(new DateTimeComponents(2016, 7, 5, 12, 0, 0, false), event2.getProperty(DateDue.class).getValue().getRawComponents());
+	}
+
+	@Test
+	public void normalize_remove_unused_components() {
+		TimezoneNormalizer normalizer = new TimezoneNormalizer();
+		normalizer.setRemoveUnusedComponents(true);
+		normalizer.normalize(ical, tzinfo);
+
+		assertTrue(tzinfo.getComponents().isEmpty());
+		assertNull(tzinfo.getTimeZoneById("America/New_York"));
+	}
+
+	@Test
+	public void normalize_target() {
+		//convert everything to UTC first
+		new TimezoneNormalizer().normalize(ical, tzinfo);
+		VEvent event = ical.getEvents().get(0);
+
+		//then back to New York
+		VTimezone component = tzinfo.getComponents().iterator().next();
+		TimeZone newYork = tzinfo.getTimeZoneByComponent(component);
+		TimezoneNormalizer normalizer = new TimezoneNormalizer(newYork);
+		normalizer.setRemoveUnusedComponents(true);
+		normalizer.normalize(ical, tzinfo);
+
+		DateStart dtstart = event.getDateStart();
+		assertEquals(utc("2016-07-01 16:00:00"), dtstart.getValue());
+		assertEquals(new DateTimeComponents(2016, 7, 1, 12, 0, 0, false), dtstart.getValue().getRawComponents());
+		assertSame(newYork, tzinfo.getTimeZone(dtstart));
+		assertEquals(new DateTimeComponents(2016, 12, 25, 12, 0, 0, false), event.getRecurrenceDates().get(0).getDates().get(0).getRawComponents());
+		assertSame(component, tzinfo.getComponents().iterator().next());
+
+		//DTSTAMP is always in UTC
+		assertEquals(utc("2016-06-01 00:00:00"), event.getDateTimeStamp().getValue());
+	}
+
+	@Test
+	public void normalize_target_trigger() {
+		VEvent event = ical.getEvents().get(0);
+		Trigger trigger = event.getAlarms().get(0).getTrigger();
+		TimeZone newYork = tzinfo.getTimeZone(trigger);
+
+		new TimezoneNormalizer(newYork).normalize(ical, tzinfo);
+
+		//absolute triggers must be in UTC
+		assertEquals(utc("2016-07-01 15:30:00"), trigger.getDate());
+		assertEquals(new DateTimeComponents(2016, 7, 1, 15, 30, 0, true), ((ICalDate) trigger.getDate()).getRawComponents());
+		assertNull(tzinfo.getTimeZone(trigger));
+
+		assertSame(newYork, tzinfo.getTimeZone(event.getDateStart()));
+	}
+
+	@Test
+	public void toComponents() {
+		Calendar c = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		Random random = new Random(0);
+		for (int i = 0; i < 10000; i++) {
+			//between 1900 and 2100
+			long time = -2208988800000L + (long) (random.nextDouble() * 6311390400000L);
+			c.setTimeInMillis(time);
+
+			DateTimeComponents expected = new DateTimeComponents(c.get(Calendar.YEAR), c.get(Calendar.MONTH) + 1, c.get(Calendar.DATE), c.get(Calendar.HOUR_OF_DAY), c.get(Calendar.MINUTE), c.get(Calendar.SECOND), true);
+			assertEquals(expected, TimezoneNormalizer.toComponents(time, true));
+		}
+	}
+}
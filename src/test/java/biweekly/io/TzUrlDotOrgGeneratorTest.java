@@ -0,0 +1,214 @@
+package biweekly.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import biweekly.component.VTimezone;
+import biweekly.util.IOUtils;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class TzUrlDotOrgGeneratorTest {
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private String newYork;
+	private File server;
+	private String baseUrl;
+	private File cacheDir;
+
+	@Before
+	public void before() throws Exception {
+		InputStream in = getClass().getResourceAsStream("New_York.ics");
+		newYork = new String(IOUtils.toByteArray(in, true), "UTF-8");
+
+		server = temp.newFolder("server");
+		baseUrl = server.toURI().toString();
+		cacheDir = new File(temp.getRoot(), "cache");
+	}
+
+	@Test
+	public void generate() throws Exception {
+		writeZone("America/New_York");
+		TzUrlDotOrgGenerator generator = new TzUrlDotOrgGenerator(baseUrl, null);
+
+		VTimezone component = generator.generate(TimeZone.getTimeZone("America/New_York"));
+		assertEquals("America/New_York", component.getTimezoneId().getValue());
+
+		//served from memory
+		assertSame(component, generator.generate("America/New_York"));
+	}
+
+	@Test
+	public void generate_tzid_mismatch() throws Exception {
+		writeZone("US/Eastern");
+		TzUrlDotOrgGenerator generator = new TzUrlDotOrgGenerator(baseUrl, null);
+
+		VTimezone component = generator.generate("US/Eastern");
+		assertEquals("US/Eastern", component.getTimezoneId().getValue());
+	}
+
+	@Test
+	public void generate_not_found() {
+		TzUrlDotOrgGenerator generator = new TzUrlDotOrgGenerator(baseUrl, null);
+		try {
+			generator.generate("America/New_York");
+			fail();
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void generate_writes_to_cache() throws Exception {
+		writeZone("America/New_York");
+		FileTimezoneCache cache = new FileTimezoneCache(cacheDir);
+		TzUrlDotOrgGenerator generator = new TzUrlDotOrgGenerator(baseUrl, cache);
+
+		generator.generate("America/New_York");
+		assertEquals(newYork, cache.get(new URI(baseUrl + "America/New_York"), false));
+	}
+
+	@Test
+	public void generate_reads_from_cache() throws Exception {
+		//the file does not exist on the "server"
+		FileTimezoneCache cache = new FileTimezoneCache(cacheDir);
+		cache.put(new URI(baseUrl + "America/New_York"), newYork);
+		TzUrlDotOrgGenerator generator = new TzUrlDotOrgGenerator(baseUrl, cache);
+
+		VTimezone component = generator.generate("America/New_York");
+		assertEquals("America/New_York", component.getTimezoneId().getValue());
+	}
+
+	@Test
+	public void generate_components_not_shared_between_caches() throws Exception {
+		writeZone("America/New_York");
+		URI uri = new URI(baseUrl + "America/New_York");
+		FileTimezoneCache cache1 = new FileTimezoneCache(new File(cacheDir, "1"));
+		FileTimezoneCache cache2 = new FileTimezoneCache(new File(cacheDir, "2"));
+
+		new TzUrlDotOrgGenerator(baseUrl, cache1).generate("America/New_York");
+		new TzUrlDotOrgGenerator(baseUrl, cache2).generate("America/New_York");
+		assertEquals(newYork, cache1.get(uri, false));
+		assertEquals(newYork, cache2.get(uri, false));
+	}
+
+	@Test
+	public void generate_cache_expired() throws Exception {
+		writeZone("America/New_York");
+		URI uri = new URI(baseUrl + "America/New_York");
+		FileTimezoneCache cache = new FileTimezoneCache(cacheDir, 60000);
+		cache.put(uri, newYork.replace("America/New_York", "expired"));
+		File file = cacheDir.listFiles()[0];
+		file.setLastModified(System.currentTimeMillis() - 120000);
+		TzUrlDotOrgGenerator generator = new TzUrlDotOrgGenerator(baseUrl, cache);
+
+		generator.generate("America/New_York");
+		assertEquals(newYork, cache.get(uri, false));
+	}
+
+	@Test
+	public void generate_cache_expired_download_fails() throws Exception {
+		//the file does not exist on the "server"
+		URI uri = new URI(baseUrl + "America/New_York");
+		FileTimezoneCache cache = new FileTimezoneCache(cacheDir, 60000);
+		cache.put(uri, newYork);
+		File file = cacheDir.listFiles()[0];
+		file.setLastModified(System.currentTimeMillis() - 120000);
+		TzUrlDotOrgGenerator generator = new TzUrlDotOrgGenerator(baseUrl, cache);
+
+		VTimezone component = generator.generate("America/New_York");
+		assertEquals("America/New_York", component.getTimezoneId().getValue());
+
+		//the expired entry is not refreshed
+		assertNull(cache.get(uri, false));
+		assertEquals(newYork, cache.get(uri, true));
+	}
+
+	@Test
+	public void cache_expired() throws Exception {
+		URI uri = new URI(baseUrl + "America/New_York");
+		FileTimezoneCache cache = new FileTimezoneCache(cacheDir, 60000);
+		cache.put(uri, newYork);
+		assertEquals(newYork, cache.get(uri, false));
+
+		File file = cacheDir.listFiles()[0];
+		file.setLastModified(System.currentTimeMillis() - 120000);
+		assertNull(cache.get(uri, false));
+		assertEquals(newYork, cache.get(uri, true));
+	}
+
+	@Test
+	public void cache_missing() throws Exception {
+		FileTimezoneCache cache = new FileTimezoneCache(cacheDir);
+		assertNull(cache.get(new URI(baseUrl + "America/New_York"), false));
+	}
+
+	@Test
+	public void preload() throws Exception {
+		writeZone("America/New_York");
+		writeZone("America/Detroit");
+		FileTimezoneCache cache = new FileTimezoneCache(cacheDir);
+		TzUrlDotOrgGenerator generator = new TzUrlDotOrgGenerator(baseUrl, cache);
+
+		List<String> failed = generator.preload(Arrays.asList("America/New_York", "America/Detroit", "Mars/Olympus_Mons"), 2);
+		assertEquals(Arrays.asList("Mars/Olympus_Mons"), failed);
+
+		assertNotNull(cache.get(new URI(baseUrl + "America/New_York"), false));
+		assertNotNull(cache.get(new URI(baseUrl + "America/Detroit"), false));
+	}
+
+	private void writeZone(String id) throws Exception {
+		File file = new File(server, id);
+		file.getParentFile().mkdirs();
+
+		Writer writer = IOUtils.utf8Writer(file);
+		try {
+			writer.write(newYork);
+		} finally {
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package biweekly.io;
+
+import static biweekly.util.TestUtils.utc;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import biweekly.ICalendar;
+import biweekly.component.VEvent;
+import biweekly.component.VTimezone;
+import biweekly.io.text.ICalReader;
+import biweekly.util.Recurrence;
+import biweekly.util.Recurrence.Frequency;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class VTimezoneTrimmerTest {
+	private VTimezone newYork;
+
+	@Before
+	public void before() throws Exception {
+		ICalReader reader = new ICalReader(getClass().getResourceAsStream("New_York.ics"));
+		try {
+			reader.readNext();
+		} finally {
+			reader.close();
+		}
+		TimezoneInfo tzinfo = reader.getTimezoneInfo();
+		newYork = tzinfo.getComponents().iterator().next();
+	}
+
+	@Test
+	public void trim() {
+		VTimezoneTrimmer trimmer = new VTimezoneTrimmer(utc("2016-01-01 00:00:00"), utc("2016-12-31 00:00:00"));
+		VTimezone trimmed = trimmer.trim(newYork);
+
+		assertEquals(1, trimmed.getStandardTimes().size());
+		assertEquals(1, trimmed.getDaylightSavingsTime().size());
+		assertEquals(newYork.getTimezoneId().getValue(), trimmed.getTimezoneId().getValue());
+		assertEquals(newYork.getTimezoneUrl().getValue(), trimmed.getTimezoneUrl().getValue());
+		assertSameOffsets(newYork, trimmed, utc("2016-01-01 00:00:00"), utc("2016-12-31 00:00:00"));
+
+		//original is not modified
+		assertEquals(8, newYork.getStandardTimes().size() + newYork.getDaylightSavingsTime().size());
+	}
+
+	@Test
+	public void trim_in_effect_observance_only() {
+		VTimezoneTrimmer trimmer = new VTimezoneTrimmer(utc("2016-06-01 00:00:00"), utc("2016-06-30 00:00:00"));
+		VTimezone trimmed = trimmer.trim(newYork);
+
+		assertEquals(0, trimmed.getStandardTimes().size());
+		assertEquals(1, trimmed.getDaylightSavingsTime().size());
+		assertSameOffsets(newYork, trimmed, utc("2016-06-01 00:00:00"), utc("2016-06-30 00:00:00"));
+	}
+
+	@Test
+	public void trim_unbounded() {
+		VTimezoneTrimmer trimmer = new VTimezoneTrimmer(utc("2016-06-01 00:00:00"), null);
+		VTimezone trimmed = trimmer.trim(newYork);
+
+		assertEquals(1, trimmed.getStandardTimes().size());
+		assertEquals(1, trimmed.getDaylightSavingsTime().size());
+	}
+
+	@Test
+	public void trim_nothing_to_remove() {
+		VTimezoneTrimmer trimmer = new VTimezoneTrimmer(utc("1900-01-01 00:00:00"), null);
+		assertSame(newYork, trimmer.trim(newYork));
+	}
+
+	@Test
+	public void trim_historical() {
+		VTimezoneTrimmer trimmer = new VTimezoneTrimmer(utc("1980-01-01 00:00:00"), utc("1980-12-31 00:00:00"));
+		VTimezone trimmed = trimmer.trim(newYork);
+
+		assertSameOffsets(newYork, trimmed, utc("1980-01-01 00:00:00"), utc("1980-12-31 00:00:00"));
+	}
+
+	@Test
+	public void fromCalendar() {
+		ICalendar ical = new ICalendar();
+		VEvent event = new VEvent();
+		event.setDateStart(utc("2016-06-01 12:00:00"));
+		event.setDateEnd(utc("2016-06-01 13:00:00"));
+		ical.addEvent(event);
+		event = new VEvent();
+		event.setDateStart(utc("2016-03-01 12:00:00"));
+		ical.addEvent(event);
+
+		VTimezoneTrimmer trimmer = VTimezoneTrimmer.fromCalendar(ical);
+		assertEquals(utc("2016-03-01 12:00:00"), trimmer.getStart());
+		assertEquals(utc("2016-06-01 13:00:00"), trimmer.getEnd());
+	}
+
+	@Test
+	public void fromCalendar_count() {
+		ICalendar ical = new ICalendar();
+		VEvent event = new VEvent();
+		event.setDateStart(utc("2016-06-01 12:00:00"));
+		event.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).count(10).build());
+		ical.addEvent(event);
+
+		VTimezoneTrimmer trimmer = VTimezoneTrimmer.fromCalendar(ical);
+		assertEquals(utc("2016-06-01 12:00:00"), trimmer.getStart());
+		assertEquals(utc("2016-06-10 12:00:00"), trimmer.getEnd());
+	}
+
+	@Test
+	public void fromCalendar_unbounded() {
+		ICalendar ical = new ICalendar();
+		VEvent event = new VEvent();
+		event.setDateStart(utc("2016-06-01 12:00:00"));
+		event.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).build());
+		ical.addEvent(event);
+
+		VTimezoneTrimmer trimmer = VTimezoneTrimmer.fromCalendar(ical);
+		assertEquals(utc("2016-06-01 12:00:00"), trimmer.getStart());
+		assertNull(trimmer.getEnd());
+	}
+
+	@Test
+	public void fromCalendar_ignores_timezones() {
+		ICalendar ical = new ICalendar();
+		ical.addComponent(newYork);
+		assertNull(VTimezoneTrimmer.fromCalendar(ical));
+	}
+
+	private static void assertSameOffsets(VTimezone expected, VTimezone actual, Date start, Date end) {
+		ICalTimeZone expectedTz = new ICalTimeZone(expected);
+		ICalTimeZone actualTz = new ICalTimeZone(actual);
+
+		long sixHours = 1000L * 60 * 60 * 6;
+		for (long time = start.getTime(); time <= end.getTime(); time += sixHours) {
+			Date date = new Date(time);
+			assertEquals(date.toString(), expectedTz.getOffset(time), actualTz.getOffset(time));
+			assertEquals(date.toString(), expectedTz.inDaylightTime(date), actualTz.inDaylightTime(date));
+		}
+	}
+}
@@ -9,6 +9,8 @@ import static biweekly.util.TestUtils.date;
 import static biweekly.util.TestUtils.each;
 import static biweekly.util.TestUtils.utc;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
@@ -442,6 +444,34 @@ public class ICalWriterTest {
 		assertEquals(expected, actual);
 	}
 
+	@Test
+	public void trim_timezones() throws Throwable {
+		ICalendar ical = new ICalendar();
+		ical.getProperties().clear();
+		VEvent event = new VEvent();
+		event.getProperties().clear();
+		event.setDateStart(utc("2016-06-01 12:00:00"));
+		ical.addEvent(event);
+
+		StringWriter sw = new StringWriter();
+		ICalWriter writer = new ICalWriter(sw, V2_0);
+		writer.setTimezoneInfo(americaNewYork());
+		writer.write(ical);
+		String untrimmed = sw.toString();
+		assertTrue(untrimmed.contains("BEGIN:STANDARD\r\n"));
+		assertTrue(untrimmed.contains("BEGIN:DAYLIGHT\r\n"));
+
+		sw.getBuffer().setLength(0);
+		writer.setTrimTimezones(true);
+		writer.write(ical);
+		writer.close();
+
+		String trimmed = sw.toString();
+		assertFalse(trimmed.contains("BEGIN:STANDARD\r\n"));
+		assertTrue(trimmed.contains("BEGIN:DAYLIGHT\r\n"));
+		assertTrue(trimmed.contains("DTSTART;TZID=id:20160601T080000\r\n"));
+	}
+
 	@Test
 	public void vcal_timezone_no_dates() throws Throwable {
 		ICalendar ical = new ICalendar();
@@ -0,0 +1,142 @@
+package biweekly.util;
+
+import static biweekly.util.TestUtils.date;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import biweekly.ICalendar;
+import biweekly.component.VEvent;
+import biweekly.util.Recurrence.Frequency;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class AgendaTest {
+	private final TimeZone utc = TimeZone.getTimeZone("UTC");
+
+	@Test
+	public void expand() {
+		List<ICalendar> icals = calendars();
+		Date from = date("2016-03-01 00:00:00");
+		Date to = date("2017-03-01 00:00:00");
+
+		List<Occurrence> expected = new ArrayList<Occurrence>();
+		for (ICalendar ical : icals) {
+			expected.addAll(new CalendarExpander(ical).expand(from, to, utc));
+		}
+
+		Agenda agenda = new Agenda(icals);
+		assertSameOccurrences(expected, agenda.expand(from, to, utc));
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			agenda.setExecutor(executor);
+			assertSameOccurrences(expected, agenda.expand(from, to, utc));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void expand_max() {
+		Agenda agenda = new Agenda(calendars());
+		List<Occurrence> occurrences = agenda.expand(date("2016-03-01 00:00:00"), date("3000-01-01 00:00:00"), 3, utc);
+
+		assertEquals(3, occurrences.size());
+		assertEquals(new ICalDate(date("2016-02-28 08:00:00")), occurrences.get(0).getStart());
+		assertEquals(new ICalDate(date("2016-03-01 09:00:00")), occurrences.get(1).getStart());
+		assertEquals(new ICalDate(date("2016-03-01 10:00:00")), occurrences.get(2).getStart());
+	}
+
+	@Test
+	public void occurrence_spans_windows() {
+		VEvent event = new VEvent();
+		event.setDateStart(date("2016-03-01 12:00:00"));
+		event.setDateEnd(date("2016-03-05 12:00:00"));
+		ICalendar ical = new ICalendar();
+		ical.addEvent(event);
+
+		Agenda agenda = new Agenda(Arrays.asList(ical));
+		List<Occurrence> occurrences = agenda.expand(date("2016-03-01 00:00:00"), date("2016-04-01 00:00:00"), utc);
+		assertEquals(1, occurrences.size());
+	}
+
+	@Test
+	public void empty() {
+		Agenda agenda = new Agenda(new ArrayList<ICalendar>());
+		Iterator<Occurrence> it = agenda.iterator(date("2016-03-01 00:00:00"), date("2017-03-01 00:00:00"), utc);
+		assertFalse(it.hasNext());
+	}
+
+	private static void assertSameOccurrences(List<Occurrence> expected, List<Occurrence> actual) {
+		assertEquals(expected.size(), actual.size());
+		assertEquals(new HashSet<Occurrence>(expected), new HashSet<Occurrence>(actual));
+		for (int i = 1; i < actual.size(); i++) {
+			assertTrue(CalendarExpander.START_ORDER.compare(actual.get(i - 1), actual.get(i)) <= 0);
+		}
+	}
+
+	private static List<ICalendar> calendars() {
+		List<ICalendar> icals = new ArrayList<ICalendar>();
+		for (int i = 0; i < 5; i++) {
+			ICalendar ical = new ICalendar();
+			for (int j = 0; j < 20; j++) {
+				VEvent event = new VEvent();
+				event.setUid("event-" + j);
+				event.setDateStart(new Date(date("2016-03-01 09:00:00").getTime() + (i * 20 + j) * 60L * 60 * 1000));
+				event.setDuration(new Duration.Builder().hours(1 + j % 3).build());
+
+				Frequency frequency = Frequency.values()[3 + j % 4];
+				event.setRecurrenceRule(new Recurrence.Builder(frequency).interval(1 + i % 2).build());
+				ical.addEvent(event);
+			}
+			icals.add(ical);
+		}
+
+		//starts before the range and ends after it begins
+		VEvent event = new VEvent();
+		event.setDateStart(date("2016-02-28 08:00:00"));
+		event.setDateEnd(date("2016-03-02 08:00:00"));
+		icals.get(0).addEvent(event);
+
+		return icals;
+	}
+}
@@ -0,0 +1,234 @@
+package biweekly.util;
+
+import static biweekly.util.TestUtils.date;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import biweekly.ICalendar;
+import biweekly.component.VAlarm;
+import biweekly.component.VEvent;
+import biweekly.parameter.Related;
+import biweekly.property.Trigger;
+import biweekly.util.Recurrence.Frequency;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class AlarmSchedulerTest {
+	private final TimeZone timezone = TimeZone.getDefault();
+	private final Duration tenMinutesBefore = Duration.builder().prior(true).minutes(10).build();
+
+	@Test
+	public void getTriggerTimes() {
+		VEvent event = new VEvent();
+		Occurrence occurrence = new Occurrence(event, new ICalDate(date("2016-03-01 09:00:00")), new ICalDate(date("2016-03-01 10:00:00")), new ICalDate(date("2016-03-01 09:00:00")), false);
+
+		VAlarm alarm = VAlarm.display(new Trigger(tenMinutesBefore, Related.START), "");
+		assertEquals(Arrays.asList(date("2016-03-01 08:50:00")), AlarmScheduler.getTriggerTimes(alarm, occurrence));
+
+		alarm.setRepeat(2, Duration.builder().minutes(5).build());
+		//@formatter:off
+		assertEquals(Arrays.asList(
+			date("2016-03-01 08:50:00"),
+			date("2016-03-01 08:55:00"),
+			date("2016-03-01 09:00:00")
+		), AlarmScheduler.getTriggerTimes(alarm, occurrence));
+		//@formatter:on
+
+		alarm = VAlarm.display(new Trigger(tenMinutesBefore, Related.END), "");
+		assertEquals(Arrays.asList(date("2016-03-01 09:50:00")), AlarmScheduler.getTriggerTimes(alarm, occurrence));
+
+		alarm = VAlarm.display(new Trigger(date("2016-02-28 12:00:00")), "");
+		assertEquals(Arrays.asList(date("2016-02-28 12:00:00")), AlarmScheduler.getTriggerTimes(alarm, occurrence));
+		assertEquals(Arrays.asList(date("2016-02-28 12:00:00")), AlarmScheduler.getTriggerTimes(alarm, null));
+
+		alarm = new VAlarm(null, null);
+		assertTrue(AlarmScheduler.getTriggerTimes(alarm, occurrence).isEmpty());
+	}
+
+	@Test
+	public void poll() {
+		VEvent event = event("2016-03-01 09:00:00", new Recurrence.Builder(Frequency.DAILY).count(3).build());
+		VAlarm alarm = VAlarm.display(new Trigger(tenMinutesBefore, Related.START), "");
+		event.addAlarm(alarm);
+
+		AlarmScheduler scheduler = new AlarmScheduler(date("2016-03-01 00:00:00"), timezone);
+		scheduler.add(event);
+		assertEquals(1, scheduler.size());
+		assertEquals(date("2016-03-01 08:50:00"), scheduler.getNextTime());
+
+		assertTrue(scheduler.poll(date("2016-03-01 08:50:00")).isEmpty());
+		assertEquals(date("2016-03-01 08:50:00"), scheduler.getPosition());
+
+		List<ScheduledAlarm> alarms = scheduler.poll(date("2016-03-01 08:51:00"));
+		assertEquals(1, alarms.size());
+		ScheduledAlarm scheduled = alarms.get(0);
+		assertSame(alarm, scheduled.getAlarm());
+		assertSame(event, scheduled.getComponent());
+		assertEquals(date("2016-03-01 09:00:00"), scheduled.getOccurrence().getStart());
+		assertEquals(date("2016-03-01 08:50:00"), scheduled.getTime());
+		assertEquals(0, scheduled.getRepetition());
+
+		//each alarm is only returned once
+		assertTrue(scheduler.poll(date("2016-03-01 08:52:00")).isEmpty());
+
+		assertEquals(date("2016-03-02 08:50:00"), scheduler.getNextTime());
+		assertTimes(scheduler.poll(date("2016-03-10 00:00:00")), "2016-03-02 08:50:00", "2016-03-03 08:50:00");
+		assertNull(scheduler.getNextTime());
+	}
+
+	@Test
+	public void alarms_sorted_across_components() {
+		ICalendar ical = new ICalendar();
+
+		VEvent event = event("2016-03-01 09:00:00", null);
+		event.addAlarm(VAlarm.display(new Trigger(tenMinutesBefore, Related.START), ""));
+		VAlarm repeating = VAlarm.display(new Trigger(Duration.builder().prior(true).hours(1).build(), Related.START), "");
+		repeating.setRepeat(3, Duration.builder().minutes(15).build());
+		event.addAlarm(repeating);
+		ical.addEvent(event);
+
+		event = event("2016-03-01 08:30:00", null);
+		event.addAlarm(VAlarm.display(new Trigger(date("2016-03-01 08:20:00")), ""));
+		ical.addEvent(event);
+
+		//no alarms
+		ical.addEvent(event("2016-03-01 08:00:00", null));
+
+		AlarmScheduler scheduler = new AlarmScheduler(date("2016-03-01 00:00:00"), timezone);
+		scheduler.add(ical);
+		assertEquals(3, scheduler.size());
+
+		List<ScheduledAlarm> alarms = scheduler.poll(date("2016-03-02 00:00:00"));
+		//@formatter:off
+		assertTimes(alarms,
+			"2016-03-01 08:00:00",
+			"2016-03-01 08:15:00",
+			"2016-03-01 08:20:00",
+			"2016-03-01 08:30:00",
+			"2016-03-01 08:45:00",
+			"2016-03-01 08:50:00"
+		);
+		//@formatter:on
+		assertEquals(3, alarms.get(4).getRepetition());
+		assertNull(alarms.get(2).getOccurrence());
+	}
+
+	@Test
+	public void modified_instance() {
+		VEvent master = event("2016-03-01 09:00:00", new Recurrence.Builder(Frequency.DAILY).count(3).build());
+		master.setUid("1");
+		master.addAlarm(VAlarm.display(new Trigger(tenMinutesBefore, Related.START), ""));
+
+		VEvent modified = event("2016-03-02 15:00:00", null);
+		modified.setUid("1");
+		modified.setRecurrenceId(date("2016-03-02 09:00:00"));
+		VAlarm alarm = VAlarm.display(new Trigger(Duration.builder().prior(true).minutes(30).build(), Related.START), "");
+		modified.addAlarm(alarm);
+
+		AlarmScheduler scheduler = new AlarmScheduler(date("2016-03-01 00:00:00"), timezone);
+		scheduler.add(master);
+		scheduler.add(modified);
+
+		List<ScheduledAlarm> alarms = scheduler.poll(date("2016-03-10 00:00:00"));
+		assertTimes(alarms, "2016-03-01 08:50:00", "2016-03-02 14:30:00", "2016-03-03 08:50:00");
+		assertSame(alarm, alarms.get(1).getAlarm());
+		assertSame(modified, alarms.get(1).getComponent());
+	}
+
+	@Test
+	public void remove_and_update() {
+		VEvent event1 = event("2016-03-01 09:00:00", new Recurrence.Builder(Frequency.DAILY).build());
+		event1.addAlarm(VAlarm.display(new Trigger(tenMinutesBefore, Related.START), ""));
+		VEvent event2 = event("2016-03-01 12:00:00", null);
+		VAlarm alarm = VAlarm.display(new Trigger(tenMinutesBefore, Related.START), "");
+		event2.addAlarm(alarm);
+
+		AlarmScheduler scheduler = new AlarmScheduler(date("2016-03-01 00:00:00"), timezone);
+		scheduler.add(event1);
+		scheduler.add(event2);
+
+		assertTrue(scheduler.remove(event1));
+		assertEquals(1, scheduler.size());
+		assertEquals(date("2016-03-01 11:50:00"), scheduler.getNextTime());
+
+		alarm.setTrigger(new Trigger(Duration.builder().prior(true).hours(1).build(), Related.START));
+		scheduler.update(event2);
+		assertEquals(date("2016-03-01 11:00:00"), scheduler.getNextTime());
+		assertTimes(scheduler.poll(date("2016-03-02 00:00:00")), "2016-03-01 11:00:00");
+
+		assertTrue(scheduler.remove(event2));
+		assertEquals(0, scheduler.size());
+		assertNull(scheduler.getNextTime());
+		assertTrue(!scheduler.remove(event2));
+	}
+
+	@Test
+	public void sparse_series() {
+		VEvent event = event("2016-03-01 09:00:00", new Recurrence.Builder(Frequency.YEARLY).interval(4).build());
+		event.addAlarm(VAlarm.display(new Trigger(Duration.builder().prior(true).days(1).build(), Related.START), ""));
+
+		AlarmScheduler scheduler = new AlarmScheduler(date("2016-03-01 00:00:00"), timezone);
+		scheduler.add(event);
+		assertEquals(date("2020-02-29 09:00:00"), scheduler.getNextTime());
+		assertTimes(scheduler.poll(date("2025-01-01 00:00:00")), "2020-02-29 09:00:00", "2024-02-29 09:00:00");
+		assertEquals(date("2028-02-29 09:00:00"), scheduler.getNextTime());
+	}
+
+	private static VEvent event(String start, Recurrence rrule) {
+		VEvent event = new VEvent();
+		event.setDateStart(date(start));
+		if (rrule != null) {
+			event.setRecurrenceRule(rrule);
+		}
+		return event;
+	}
+
+	private static void assertTimes(List<ScheduledAlarm> alarms, String... expected) {
+		List<Date> expectedList = new ArrayList<Date>();
+		for (String date : expected) {
+			expectedList.add(date(date));
+		}
+
+		List<Date> actual = new ArrayList<Date>();
+		for (ScheduledAlarm alarm : alarms) {
+			actual.add(alarm.getTime());
+		}
+		assertEquals(expectedList, actual);
+	}
+}
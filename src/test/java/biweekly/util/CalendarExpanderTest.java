@@ -0,0 +1,211 @@
+package biweekly.util;
+
+import static biweekly.util.TestUtils.date;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import biweekly.ICalendar;
+import biweekly.component.VEvent;
+import biweekly.parameter.Range;
+import biweekly.property.RecurrenceId;
+import biweekly.util.Recurrence.Frequency;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class CalendarExpanderTest {
+	@ClassRule
+	public static final DefaultTimezoneRule tzRule = new DefaultTimezoneRule(0, 0);
+
+	private final TimeZone utc = TimeZone.getTimeZone("UTC");
+
+	@Test
+	public void override() {
+		VEvent master = master("uid");
+		VEvent override = override("uid", "2016-03-03 10:00:00", "2016-03-03 15:00:00", "2016-03-03 16:00:00");
+
+		CalendarExpander expander = new CalendarExpander(Arrays.asList(master, override));
+		List<Occurrence> occurrences = expander.expand(date("2016-03-02 00:00:00"), date("2016-03-04 00:00:00"), utc);
+
+		//@formatter:off
+		List<Occurrence> expected = Arrays.asList(
+			occurrence(master, "2016-03-02 10:00:00", "2016-03-02 11:00:00", "2016-03-02 10:00:00"),
+			occurrence(override, "2016-03-03 15:00:00", "2016-03-03 16:00:00", "2016-03-03 10:00:00")
+		);
+		//@formatter:on
+		assertEquals(expected, occurrences);
+	}
+
+	@Test
+	public void override_moved_out_of_range() {
+		VEvent master = master("uid");
+		VEvent override = override("uid", "2016-03-03 10:00:00", "2016-03-10 10:00:00", "2016-03-10 11:00:00");
+
+		CalendarExpander expander = new CalendarExpander(Arrays.asList(master, override));
+		List<Occurrence> occurrences = expander.expand(date("2016-03-03 00:00:00"), date("2016-03-04 00:00:00"), utc);
+		assertTrue(occurrences.isEmpty());
+
+		occurrences = expander.expand(date("2016-03-10 00:00:00"), date("2016-03-11 00:00:00"), utc);
+		assertEquals(Arrays.asList(occurrence(override, "2016-03-10 10:00:00", "2016-03-10 11:00:00", "2016-03-03 10:00:00")), occurrences);
+	}
+
+	@Test
+	public void override_this_and_future() {
+		VEvent master = master("uid");
+		VEvent override = override("uid", "2016-03-04 10:00:00", "2016-03-04 12:00:00", "2016-03-04 12:30:00");
+		override.getRecurrenceId().setRange(Range.THIS_AND_FUTURE);
+
+		CalendarExpander expander = new CalendarExpander(Arrays.asList(master, override));
+		List<Occurrence> occurrences = expander.expand(date("2016-03-03 00:00:00"), date("2016-03-10 00:00:00"), utc);
+
+		//@formatter:off
+		List<Occurrence> expected = Arrays.asList(
+			occurrence(master, "2016-03-03 10:00:00", "2016-03-03 11:00:00", "2016-03-03 10:00:00"),
+			occurrence(override, "2016-03-04 12:00:00", "2016-03-04 12:30:00", "2016-03-04 10:00:00"),
+			occurrence(override, "2016-03-05 12:00:00", "2016-03-05 12:30:00", "2016-03-05 10:00:00")
+		);
+		//@formatter:on
+		assertEquals(expected, occurrences);
+
+		//shifted into the range
+		occurrences = expander.expand(date("2016-03-05 11:30:00"), date("2016-03-05 13:00:00"), utc);
+		assertEquals(Arrays.asList(occurrence(override, "2016-03-05 12:00:00", "2016-03-05 12:30:00", "2016-03-05 10:00:00")), occurrences);
+	}
+
+	@Test
+	public void override_this_and_future_length_in_timezone() {
+		TimeZone newYork = TimeZone.getTimeZone("America/New_York");
+		VEvent master = master("uid");
+		master.setDateStart(date("2016-03-10 12:00:00", newYork));
+		master.setDateEnd(date("2016-03-10 13:00:00", newYork));
+
+		//one day long, which is 23 hours in New York because of the switch to daylight savings time
+		VEvent override = new VEvent();
+		override.setUid("uid");
+		override.setRecurrenceId(new RecurrenceId(date("2016-03-12 12:00:00", newYork)));
+		override.getRecurrenceId().setRange(Range.THIS_AND_FUTURE);
+		override.setDateStart(date("2016-03-12 12:00:00", newYork));
+		override.setDuration(Duration.builder().days(1).build());
+
+		CalendarExpander expander = new CalendarExpander(Arrays.asList(master, override));
+		List<Occurrence> occurrences = expander.expand(date("2016-03-14 00:00:00", newYork), date("2016-03-15 00:00:00", newYork), newYork);
+		assertEquals(2, occurrences.size()); //the occurrence on the 13th ends on the 14th
+		for (Occurrence occurrence : occurrences) {
+			assertEquals(23 * 60 * 60 * 1000L, occurrence.getDurationMillis());
+		}
+	}
+
+	@Test
+	public void iterator_is_lazy() {
+		List<VEvent> events = new ArrayList<VEvent>();
+		for (int i = 0; i < 50; i++) {
+			VEvent event = new VEvent();
+			event.setDateStart(date("2016-03-01 10:00:00"));
+			event.setRecurrenceRule(new Recurrence.Builder(Frequency.MINUTELY).build());
+			events.add(event);
+		}
+
+		//a thousand years of minutes would not fit in memory if each series was expanded up front
+		CalendarExpander expander = new CalendarExpander(events);
+		Iterator<Occurrence> it = expander.iterator(date("2016-03-01 00:00:00"), date("3016-03-01 00:00:00"), utc);
+		for (int i = 0; i < 50; i++) {
+			assertEquals(date("2016-03-01 10:00:00"), it.next().getStart());
+		}
+		assertEquals(date("2016-03-01 10:01:00"), it.next().getStart());
+	}
+
+	@Test
+	public void merge() {
+		VEvent master1 = master("one");
+		VEvent master2 = master("two");
+		master2.setDateStart(date("2016-03-01 09:00:00"));
+		master2.setDateEnd(date("2016-03-01 09:30:00"));
+		VEvent noUid = new VEvent();
+		noUid.setUid((String) null);
+		noUid.setDateStart(date("2016-03-01 10:30:00"));
+
+		ICalendar ical = new ICalendar();
+		ical.addEvent(master1);
+		ical.addEvent(master2);
+		ical.addEvent(noUid);
+
+		CalendarExpander expander = new CalendarExpander(ical);
+		List<Occurrence> occurrences = expander.expand(date("2016-03-01 00:00:00"), date("2016-03-02 00:00:00"), utc);
+		assertEquals(3, occurrences.size());
+		assertSame(master2, occurrences.get(0).getComponent());
+		assertSame(master1, occurrences.get(1).getComponent());
+		assertSame(noUid, occurrences.get(2).getComponent());
+	}
+
+	@Test
+	public void override_without_master() {
+		VEvent override = override("uid", "2016-03-03 10:00:00", "2016-03-03 15:00:00", "2016-03-03 16:00:00");
+
+		CalendarExpander expander = new CalendarExpander(Arrays.asList(override));
+		List<Occurrence> occurrences = expander.expand(date("2016-03-01 00:00:00"), date("2016-03-10 00:00:00"), utc);
+		assertEquals(Arrays.asList(occurrence(override, "2016-03-03 15:00:00", "2016-03-03 16:00:00", "2016-03-03 10:00:00")), occurrences);
+	}
+
+	private static VEvent master(String uid) {
+		VEvent event = new VEvent();
+		event.setUid(uid);
+		event.setDateStart(date("2016-03-01 10:00:00"));
+		event.setDateEnd(date("2016-03-01 11:00:00"));
+		event.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).count(5).build());
+		return event;
+	}
+
+	private static VEvent override(String uid, String recurrenceId, String start, String end) {
+		VEvent event = new VEvent();
+		event.setUid(uid);
+		event.setRecurrenceId(new RecurrenceId(date(recurrenceId)));
+		event.setDateStart(date(start));
+		event.setDateEnd(date(end));
+		return event;
+	}
+
+	private static Occurrence occurrence(VEvent component, String start, String end, String recurrenceId) {
+		return new Occurrence(component, icalDate(start), icalDate(end), icalDate(recurrenceId), false);
+	}
+
+	private static ICalDate icalDate(String text) {
+		Date date = date(text);
+		return new ICalDate(date);
+	}
+}
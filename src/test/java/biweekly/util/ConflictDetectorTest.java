@@ -0,0 +1,223 @@
+package biweekly.util;
+
+import static biweekly.util.TestUtils.date;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import biweekly.ICalendar;
+import biweekly.component.VEvent;
+import biweekly.parameter.ParticipationStatus;
+import biweekly.property.Attendee;
+import biweekly.property.Organizer;
+import biweekly.property.Status;
+import biweekly.property.Transparency;
+import biweekly.util.Recurrence.Frequency;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class ConflictDetectorTest {
+	private final Date from = date("2016-03-01 00:00:00");
+	private final Date to = date("2016-03-08 00:00:00");
+	private final TimeZone timezone = TimeZone.getDefault();
+
+	@Test
+	public void detect() {
+		VEvent a = event("2016-03-01 09:00:00", "2016-03-01 10:00:00");
+		a.setOrganizer(new Organizer(null, "alice@example.com"));
+
+		VEvent b = event("2016-03-01 09:30:00", "2016-03-01 10:30:00");
+		b.setOrganizer(new Organizer(null, "bob@example.com"));
+		b.addAttendee(new Attendee(null, "Alice@Example.com"));
+
+		//starts when "a" ends
+		VEvent c = event("2016-03-01 10:00:00", "2016-03-01 11:00:00");
+		c.addAttendee(new Attendee(null, "alice@example.com"));
+		c.addAttendee(new Attendee(null, "carol@example.com"));
+
+		ICalendar ical = new ICalendar();
+		ical.addEvent(a);
+		ical.addEvent(b);
+		ical.addEvent(c);
+
+		ConflictDetector detector = new ConflictDetector();
+		detector.add(ical);
+		List<Conflict> conflicts = detector.detect(from, to, timezone);
+
+		assertEquals(2, conflicts.size());
+
+		Conflict conflict = conflicts.get(0);
+		assertEquals("alice@example.com", conflict.getAddress());
+		assertSame(a, conflict.getFirst().getComponent());
+		assertSame(b, conflict.getSecond().getComponent());
+		assertEquals(date("2016-03-01 09:30:00"), conflict.getStart());
+		assertEquals(date("2016-03-01 10:00:00"), conflict.getEnd());
+
+		conflict = conflicts.get(1);
+		assertEquals("alice@example.com", conflict.getAddress());
+		assertSame(b, conflict.getFirst().getComponent());
+		assertSame(c, conflict.getSecond().getComponent());
+		assertEquals(date("2016-03-01 10:00:00"), conflict.getStart());
+		assertEquals(date("2016-03-01 10:30:00"), conflict.getEnd());
+	}
+
+	@Test
+	public void ignored() {
+		ConflictDetector detector = new ConflictDetector();
+
+		VEvent event = event("2016-03-01 09:00:00", "2016-03-01 12:00:00");
+		event.setOrganizer(new Organizer(null, "alice@example.com"));
+		Attendee bob = new Attendee(null, "bob@example.com");
+		bob.setParticipationStatus(ParticipationStatus.DECLINED);
+		event.addAttendee(bob);
+		detector.add(event);
+
+		event = event("2016-03-01 09:00:00", "2016-03-01 10:00:00");
+		event.setOrganizer(new Organizer(null, "alice@example.com"));
+		event.setTransparency(Transparency.transparent());
+		detector.add(event);
+
+		event = event("2016-03-01 10:00:00", "2016-03-01 11:00:00");
+		event.setOrganizer(new Organizer(null, "alice@example.com"));
+		event.setStatus(Status.cancelled());
+		detector.add(event);
+
+		//takes up no time
+		event = event("2016-03-01 11:00:00", "2016-03-01 11:00:00");
+		event.setOrganizer(new Organizer(null, "alice@example.com"));
+		detector.add(event);
+
+		event = event("2016-03-01 11:00:00", "2016-03-01 13:00:00");
+		event.setOrganizer(new Organizer(null, "bob@example.com"));
+		detector.add(event);
+
+		//no people
+		detector.add(event("2016-03-01 09:00:00", "2016-03-01 12:00:00"));
+
+		assertTrue(detector.detect(from, to, timezone).isEmpty());
+	}
+
+	@Test
+	public void recurring() {
+		ICalendar ical = new ICalendar();
+
+		//Tuesday to Monday
+		VEvent daily = event("2016-03-01 09:00:00", "2016-03-01 10:00:00");
+		daily.setUid("daily");
+		daily.setOrganizer(new Organizer(null, "alice@example.com"));
+		daily.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).build());
+		ical.addEvent(daily);
+
+		//moved out of the way of the weekly event
+		VEvent moved = event("2016-03-02 14:00:00", "2016-03-02 15:00:00");
+		moved.setUid("daily");
+		moved.setOrganizer(new Organizer(null, "alice@example.com"));
+		moved.setRecurrenceId(date("2016-03-02 09:00:00"));
+		ical.addEvent(moved);
+
+		//Wednesdays and Fridays
+		VEvent weekly = event("2016-03-02 09:30:00", "2016-03-02 10:30:00");
+		weekly.setUid("weekly");
+		weekly.addAttendee(new Attendee(null, "alice@example.com"));
+		weekly.setRecurrenceRule(new Recurrence.Builder(Frequency.WEEKLY).byDay(Recurrence.DayOfWeek.WEDNESDAY, Recurrence.DayOfWeek.FRIDAY).build());
+		ical.addEvent(weekly);
+
+		ConflictDetector detector = new ConflictDetector();
+		detector.add(ical);
+		List<Conflict> conflicts = detector.detect(from, to, timezone);
+
+		assertEquals(1, conflicts.size());
+		Conflict conflict = conflicts.get(0);
+		assertSame(daily, conflict.getFirst().getComponent());
+		assertSame(weekly, conflict.getSecond().getComponent());
+		assertEquals(date("2016-03-04 09:30:00"), conflict.getStart());
+		assertEquals(date("2016-03-04 10:00:00"), conflict.getEnd());
+	}
+
+	@Test
+	public void same_event_in_two_calendars() {
+		VEvent meeting = event("2016-03-01 13:00:00", "2016-03-01 14:00:00");
+		meeting.setUid("meeting");
+		meeting.setOrganizer(new Organizer(null, "alice@example.com"));
+		meeting.addAttendee(new Attendee(null, "bob@example.com"));
+
+		VEvent daily = event("2016-03-01 09:00:00", "2016-03-01 10:00:00");
+		daily.setUid("daily");
+		daily.setOrganizer(new Organizer(null, "alice@example.com"));
+		daily.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).build());
+
+		//moved out of the way of the weekly event
+		VEvent moved = event("2016-03-02 14:00:00", "2016-03-02 15:00:00");
+		moved.setUid("daily");
+		moved.setOrganizer(new Organizer(null, "alice@example.com"));
+		moved.setRecurrenceId(date("2016-03-02 09:00:00"));
+
+		//Wednesdays and Fridays
+		VEvent weekly = event("2016-03-02 09:30:00", "2016-03-02 10:30:00");
+		weekly.setUid("weekly");
+		weekly.addAttendee(new Attendee(null, "alice@example.com"));
+		weekly.setRecurrenceRule(new Recurrence.Builder(Frequency.WEEKLY).byDay(Recurrence.DayOfWeek.WEDNESDAY, Recurrence.DayOfWeek.FRIDAY).build());
+
+		ICalendar alice = new ICalendar();
+		alice.addEvent(meeting);
+		alice.addEvent(daily);
+		alice.addEvent(moved);
+		alice.addEvent(weekly);
+
+		ICalendar bob = new ICalendar();
+		bob.addEvent(meeting);
+		bob.addEvent(daily);
+		bob.addEvent(moved);
+
+		ConflictDetector detector = new ConflictDetector();
+		detector.add(alice);
+		detector.add(bob);
+		List<Conflict> conflicts = detector.detect(from, to, timezone);
+
+		assertEquals(1, conflicts.size());
+		Conflict conflict = conflicts.get(0);
+		assertSame(daily, conflict.getFirst().getComponent());
+		assertSame(weekly, conflict.getSecond().getComponent());
+		assertEquals(date("2016-03-04 09:30:00"), conflict.getStart());
+		assertEquals(date("2016-03-04 10:00:00"), conflict.getEnd());
+	}
+
+	private static VEvent event(String start, String end) {
+		VEvent event = new VEvent();
+		event.setDateStart(date(start));
+		event.setDateEnd(date(end));
+		return event;
+	}
+}
@@ -0,0 +1,138 @@
+package biweekly.util;
+
+import static biweekly.util.TestUtils.date;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import biweekly.util.com.google.ical.iter.DateSet;
+import biweekly.util.com.google.ical.util.PackedDates;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class DateSetCacheTest {
+	@Test
+	public void get() {
+		DateSetCache cache = new DateSetCache();
+		List<ICalDate> dates = dates("2016-03-01 09:00:00", "2016-03-02 09:00:00");
+
+		DateSet set = cache.get(dates);
+		assertTrue(set.contains(pack(dates.get(0))));
+		assertTrue(set.contains(pack(dates.get(1))));
+		assertSame(set, cache.get(dates));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void lists_compared_by_identity() {
+		DateSetCache cache = new DateSetCache();
+		List<ICalDate> dates1 = dates("2016-03-01 09:00:00");
+		List<ICalDate> dates2 = dates("2016-03-01 09:00:00");
+		assertEquals(dates1, dates2);
+
+		assertNotSame(cache.get(dates1), cache.get(dates2));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void list_modified() {
+		DateSetCache cache = new DateSetCache();
+		List<ICalDate> dates = dates("2016-03-01 09:00:00");
+		DateSet set = cache.get(dates);
+
+		ICalDate added = new ICalDate(date("2016-03-05 09:00:00"));
+		dates.add(added);
+		set = cache.get(dates);
+		assertTrue(set.contains(pack(added)));
+
+		ICalDate first = dates.get(0);
+		long before = pack(first);
+		first.setTime(date("2016-03-03 09:00:00").getTime());
+		set = cache.get(dates);
+		assertFalse(set.contains(before));
+		assertTrue(set.contains(pack(first)));
+
+		dates.set(0, new ICalDate(first, null, false));
+		set = cache.get(dates);
+		assertTrue(set.contains(pack(dates.get(0))));
+
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void concurrent() throws Exception {
+		final DateSetCache cache = new DateSetCache();
+		final List<ICalDate> dates = dates("2016-03-01 09:00:00", "2016-03-02 09:00:00");
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<DateSet>> futures = new ArrayList<Future<DateSet>>();
+			for (int i = 0; i < 100; i++) {
+				futures.add(executor.submit(new Callable<DateSet>() {
+					public DateSet call() {
+						return cache.get(dates);
+					}
+				}));
+			}
+
+			for (Future<DateSet> future : futures) {
+				DateSet set = future.get();
+				assertTrue(set.contains(pack(dates.get(0))));
+				assertTrue(set.contains(pack(dates.get(1))));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(1, cache.size());
+	}
+
+	private static long pack(ICalDate date) {
+		return PackedDates.pack(Google2445Utils.convertUtc(date));
+	}
+
+	private static List<ICalDate> dates(String... dates) {
+		List<ICalDate> list = new ArrayList<ICalDate>();
+		for (String date : Arrays.asList(dates)) {
+			list.add(new ICalDate(date(date)));
+		}
+		return list;
+	}
+}
@@ -0,0 +1,241 @@
+package biweekly.util;
+
+import static biweekly.util.TestUtils.date;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import biweekly.component.VFreeBusy;
+import biweekly.parameter.FreeBusyType;
+import biweekly.property.FreeBusy;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class FreeBusyBitmapTest {
+	private final Date from = date("2016-03-01 08:00:00");
+	private final Date to = date("2016-03-01 18:00:00");
+
+	@Test
+	public void constructor() {
+		FreeBusyBitmap bitmap = new FreeBusyBitmap(from, date("2016-03-01 18:10:00"), 15);
+		assertEquals(from, bitmap.getStart());
+		assertEquals(date("2016-03-01 18:10:00"), bitmap.getEnd());
+		assertEquals(15, bitmap.getSlotMinutes());
+		assertEquals(41, bitmap.getSlotCount());
+		for (int i = 0; i < bitmap.getSlotCount(); i++) {
+			assertFalse(bitmap.isBusy(i));
+		}
+
+		try {
+			new FreeBusyBitmap(from, to, 0);
+			fail();
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+
+		try {
+			new FreeBusyBitmap(to, from, 15);
+			fail();
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void addBusy() {
+		FreeBusyBitmap bitmap = new FreeBusyBitmap(from, to, 30);
+
+		//partial slots are busy
+		bitmap.addBusy(date("2016-03-01 09:10:00"), date("2016-03-01 10:05:00"));
+
+		//clipped to the window
+		bitmap.addBusy(date("2016-03-01 06:00:00"), date("2016-03-01 08:30:00"));
+		bitmap.addBusy(date("2016-03-01 17:45:00"), date("2016-03-01 20:00:00"));
+		bitmap.addBusy(date("2016-03-01 20:00:00"), date("2016-03-01 21:00:00"));
+
+		assertBusySlots(bitmap, 0, 2, 3, 4, 19);
+		assertTrue(bitmap.isBusy(date("2016-03-01 10:20:00"), date("2016-03-01 11:00:00")));
+		assertFalse(bitmap.isBusy(date("2016-03-01 10:30:00"), date("2016-03-01 11:00:00")));
+		assertFalse(bitmap.isBusy(date("2016-03-01 20:00:00"), date("2016-03-01 21:00:00")));
+	}
+
+	@Test
+	public void addBusy_across_words() {
+		FreeBusyBitmap bitmap = new FreeBusyBitmap(date("2016-03-01 00:00:00"), date("2016-03-04 00:00:00"), 5);
+		assertEquals(864, bitmap.getSlotCount());
+
+		bitmap.addBusy(date("2016-03-01 04:00:00"), date("2016-03-01 20:00:00"));
+
+		for (int i = 0; i < bitmap.getSlotCount(); i++) {
+			assertEquals(String.valueOf(i), i >= 48 && i < 240, bitmap.isBusy(i));
+		}
+	}
+
+	@Test
+	public void add_VFreeBusy() {
+		VFreeBusy freeBusy = new VFreeBusy();
+		freeBusy.addFreeBusy(FreeBusyType.BUSY, date("2016-03-01 09:00:00"), date("2016-03-01 10:00:00"));
+		freeBusy.addFreeBusy(FreeBusyType.BUSY_TENTATIVE, date("2016-03-01 12:00:00"), Duration.builder().minutes(30).build());
+		freeBusy.addFreeBusy(FreeBusyType.FREE, date("2016-03-01 14:00:00"), date("2016-03-01 15:00:00"));
+
+		FreeBusyBitmap bitmap = new FreeBusyBitmap(from, to, 30);
+		bitmap.add(freeBusy);
+
+		assertBusySlots(bitmap, 2, 3, 8);
+	}
+
+	@Test
+	public void or_and() {
+		FreeBusyBitmap a = new FreeBusyBitmap(from, to, 60);
+		a.addBusy(date("2016-03-01 09:00:00"), date("2016-03-01 11:00:00"));
+		FreeBusyBitmap b = new FreeBusyBitmap(from, to, 60);
+		b.addBusy(date("2016-03-01 10:00:00"), date("2016-03-01 12:00:00"));
+
+		FreeBusyBitmap union = new FreeBusyBitmap(a);
+		union.or(b);
+		assertBusySlots(union, 1, 2, 3);
+
+		FreeBusyBitmap intersection = new FreeBusyBitmap(a);
+		intersection.and(b);
+		assertBusySlots(intersection, 2);
+
+		//the original is not changed
+		assertBusySlots(a, 1, 2);
+
+		try {
+			a.or(new FreeBusyBitmap(from, to, 30));
+			fail();
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void findFree() {
+		FreeBusyBitmap bitmap = new FreeBusyBitmap(from, to, 15);
+		bitmap.addBusy(date("2016-03-01 08:00:00"), date("2016-03-01 09:00:00"));
+		bitmap.addBusy(date("2016-03-01 09:30:00"), date("2016-03-01 10:00:00"));
+		bitmap.addBusy(date("2016-03-01 11:15:00"), date("2016-03-01 17:00:00"));
+
+		Duration hour = Duration.builder().hours(1).build();
+		//@formatter:off
+		assertEquals(Arrays.asList(
+			new Period(date("2016-03-01 10:00:00"), date("2016-03-01 11:00:00")),
+			new Period(date("2016-03-01 17:00:00"), date("2016-03-01 18:00:00"))
+		), bitmap.findFree(hour, 5));
+
+		assertEquals(Arrays.asList(
+			new Period(date("2016-03-01 10:00:00"), date("2016-03-01 11:00:00"))
+		), bitmap.findFree(hour, 1));
+
+		Duration fifty = Duration.builder().minutes(50).build();
+		assertEquals(Arrays.asList(
+			new Period(date("2016-03-01 10:00:00"), date("2016-03-01 10:50:00")),
+			new Period(date("2016-03-01 17:00:00"), date("2016-03-01 17:50:00"))
+		), bitmap.findFree(fifty, 5));
+
+		Duration half = Duration.builder().minutes(30).build();
+		assertEquals(Arrays.asList(
+			new Period(date("2016-03-01 09:00:00"), date("2016-03-01 09:30:00")),
+			new Period(date("2016-03-01 10:00:00"), date("2016-03-01 10:30:00")),
+			new Period(date("2016-03-01 10:30:00"), date("2016-03-01 11:00:00"))
+		), bitmap.findFree(half, 3));
+		//@formatter:on
+
+		assertTrue(bitmap.findFree(Duration.builder().hours(2).build(), 5).isEmpty());
+	}
+
+	@Test
+	public void toFreeBusy() {
+		FreeBusyBitmap bitmap = new FreeBusyBitmap(from, date("2016-03-01 18:10:00"), 15);
+		bitmap.addBusy(date("2016-03-01 08:00:00"), date("2016-03-01 09:00:00"));
+		bitmap.addBusy(date("2016-03-01 09:00:00"), date("2016-03-01 09:20:00"));
+		bitmap.addBusy(date("2016-03-01 18:00:00"), date("2016-03-01 19:00:00"));
+
+		VFreeBusy freeBusy = bitmap.toFreeBusy();
+		assertEquals(from, freeBusy.getDateStart().getValue());
+		assertEquals(date("2016-03-01 18:10:00"), freeBusy.getDateEnd().getValue());
+
+		List<FreeBusy> properties = freeBusy.getFreeBusy();
+		assertEquals(1, properties.size());
+		assertEquals(FreeBusyType.BUSY, properties.get(0).getType());
+		//@formatter:off
+		assertEquals(Arrays.asList(
+			new Period(date("2016-03-01 08:00:00"), date("2016-03-01 09:30:00")),
+			new Period(date("2016-03-01 18:00:00"), date("2016-03-01 18:10:00"))
+		), properties.get(0).getValues());
+		//@formatter:on
+
+		FreeBusyBitmap copy = new FreeBusyBitmap(from, date("2016-03-01 18:10:00"), 15);
+		copy.add(freeBusy);
+		assertEquals(bitmap, copy);
+	}
+
+	@Test
+	public void random() {
+		Random random = new Random(42);
+		Date start = date("2016-03-01 00:00:00");
+		FreeBusyBitmap bitmap = new FreeBusyBitmap(start, date("2016-03-08 00:00:00"), 5);
+		boolean[] expected = new boolean[bitmap.getSlotCount()];
+		for (int i = 0; i < 200; i++) {
+			int first = random.nextInt(expected.length);
+			int last = Math.min(expected.length, first + 1 + random.nextInt(150));
+			Arrays.fill(expected, first, last, true);
+			bitmap.addBusy(new Date(start.getTime() + first * 300000L), new Date(start.getTime() + last * 300000L));
+		}
+
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], bitmap.isBusy(i));
+		}
+	}
+
+	private static void assertBusySlots(FreeBusyBitmap bitmap, int... expected) {
+		List<Integer> busy = new ArrayList<Integer>();
+		for (int i = 0; i < bitmap.getSlotCount(); i++) {
+			if (bitmap.isBusy(i)) {
+				busy.add(i);
+			}
+		}
+
+		List<Integer> expectedList = new ArrayList<Integer>();
+		for (int slot : expected) {
+			expectedList.add(slot);
+		}
+		assertEquals(expectedList, busy);
+	}
+}
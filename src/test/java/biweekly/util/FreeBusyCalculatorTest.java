@@ -0,0 +1,255 @@
+package biweekly.util;
+
+import static biweekly.util.TestUtils.date;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import biweekly.ICalendar;
+import biweekly.component.VEvent;
+import biweekly.component.VFreeBusy;
+import biweekly.parameter.FreeBusyType;
+import biweekly.property.FreeBusy;
+import biweekly.property.RecurrenceId;
+import biweekly.property.Status;
+import biweekly.property.Transparency;
+import biweekly.util.Recurrence.Frequency;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class FreeBusyCalculatorTest {
+	private final Date from = date("2016-03-01 00:00:00");
+	private final Date to = date("2016-03-02 00:00:00");
+	private final TimeZone timezone = TimeZone.getDefault();
+
+	@Test
+	public void merge_overlapping_and_adjacent() {
+		FreeBusyCalculator calculator = new FreeBusyCalculator();
+		calculator.add(event("2016-03-01 09:00:00", "2016-03-01 10:00:00"));
+		calculator.add(event("2016-03-01 09:30:00", "2016-03-01 11:00:00"));
+		calculator.add(event("2016-03-01 11:00:00", "2016-03-01 12:00:00"));
+		calculator.add(event("2016-03-01 14:00:00", "2016-03-01 15:00:00"));
+
+		VFreeBusy freeBusy = calculator.calculate(from, to, timezone);
+
+		assertEquals(from, freeBusy.getDateStart().getValue());
+		assertEquals(to, freeBusy.getDateEnd().getValue());
+		//@formatter:off
+		assertFreeBusy(freeBusy,
+			busy(FreeBusyType.BUSY,
+				"2016-03-01 09:00:00", "2016-03-01 12:00:00",
+				"2016-03-01 14:00:00", "2016-03-01 15:00:00"
+			)
+		);
+		//@formatter:on
+	}
+
+	@Test
+	public void classification() {
+		FreeBusyCalculator calculator = new FreeBusyCalculator();
+
+		VEvent event = event("2016-03-01 08:00:00", "2016-03-01 09:00:00");
+		event.setTransparency(Transparency.transparent());
+		calculator.add(event);
+
+		event = event("2016-03-01 09:00:00", "2016-03-01 10:00:00");
+		event.setStatus(Status.cancelled());
+		calculator.add(event);
+
+		event = event("2016-03-01 13:00:00", "2016-03-01 15:00:00");
+		event.setStatus(Status.tentative());
+		calculator.add(event);
+
+		event = event("2016-03-01 14:00:00", "2016-03-01 16:00:00");
+		event.setStatus(Status.confirmed());
+		calculator.add(event);
+
+		//takes up no time
+		calculator.add(event("2016-03-01 18:00:00", "2016-03-01 18:00:00"));
+
+		VFreeBusy freeBusy = calculator.calculate(from, to, timezone);
+
+		//@formatter:off
+		assertFreeBusy(freeBusy,
+			busy(FreeBusyType.BUSY_TENTATIVE,
+				"2016-03-01 13:00:00", "2016-03-01 14:00:00"
+			),
+			busy(FreeBusyType.BUSY,
+				"2016-03-01 14:00:00", "2016-03-01 16:00:00"
+			)
+		);
+		//@formatter:on
+	}
+
+	@Test
+	public void recurring_with_modified_instances() {
+		ICalendar ical = new ICalendar();
+
+		VEvent master = event("2016-02-29 09:00:00", "2016-02-29 10:00:00");
+		master.setUid("1");
+		master.setRecurrenceRule(new Recurrence.Builder(Frequency.HOURLY).interval(3).count(8).build());
+		ical.addEvent(master);
+
+		VEvent moved = event("2016-03-01 16:30:00", "2016-03-01 17:00:00");
+		moved.setUid("1");
+		moved.setRecurrenceId(new RecurrenceId(date("2016-03-01 00:00:00")));
+		ical.addEvent(moved);
+
+		VEvent cancelled = event("2016-03-01 03:00:00", "2016-03-01 04:00:00");
+		cancelled.setUid("1");
+		cancelled.setRecurrenceId(new RecurrenceId(date("2016-03-01 03:00:00")));
+		cancelled.setStatus(Status.cancelled());
+		ical.addEvent(cancelled);
+
+		FreeBusyCalculator calculator = new FreeBusyCalculator();
+		calculator.add(ical);
+		VFreeBusy freeBusy = calculator.calculate(from, to, timezone);
+
+		//@formatter:off
+		assertFreeBusy(freeBusy,
+			busy(FreeBusyType.BUSY,
+				"2016-03-01 06:00:00", "2016-03-01 07:00:00",
+				"2016-03-01 16:30:00", "2016-03-01 17:00:00"
+			)
+		);
+		//@formatter:on
+	}
+
+	@Test
+	public void same_series_in_two_calendars() {
+		VEvent master = event("2016-02-29 10:00:00", "2016-02-29 11:00:00");
+		master.setUid("1");
+		master.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).count(3).build());
+
+		VEvent moved = event("2016-03-01 14:00:00", "2016-03-01 15:00:00");
+		moved.setUid("1");
+		moved.setRecurrenceId(new RecurrenceId(date("2016-03-01 10:00:00")));
+
+		FreeBusyCalculator calculator = new FreeBusyCalculator();
+		for (int i = 0; i < 2; i++) {
+			ICalendar ical = new ICalendar();
+			ical.addEvent(master);
+			ical.addEvent(moved);
+			calculator.add(ical);
+		}
+		VFreeBusy freeBusy = calculator.calculate(from, to, timezone);
+
+		//@formatter:off
+		assertFreeBusy(freeBusy,
+			busy(FreeBusyType.BUSY,
+				"2016-03-01 14:00:00", "2016-03-01 15:00:00"
+			)
+		);
+		//@formatter:on
+	}
+
+	@Test
+	public void free_busy_components() {
+		VFreeBusy input = new VFreeBusy();
+		input.addFreeBusy(FreeBusyType.BUSY_UNAVAILABLE, date("2016-02-29 20:00:00"), date("2016-03-01 08:00:00"));
+		input.addFreeBusy(FreeBusyType.BUSY_UNAVAILABLE, date("2016-03-01 18:00:00"), Duration.builder().hours(12).build());
+		input.addFreeBusy(FreeBusyType.FREE, date("2016-03-01 12:00:00"), date("2016-03-01 13:00:00"));
+
+		FreeBusyCalculator calculator = new FreeBusyCalculator();
+		calculator.add(input);
+		calculator.add(event("2016-03-01 07:00:00", "2016-03-01 09:00:00"));
+		VFreeBusy freeBusy = calculator.calculate(from, to, timezone);
+
+		//@formatter:off
+		assertFreeBusy(freeBusy,
+			busy(FreeBusyType.BUSY_UNAVAILABLE,
+				"2016-03-01 00:00:00", "2016-03-01 08:00:00",
+				"2016-03-01 18:00:00", "2016-03-02 00:00:00"
+			),
+			busy(FreeBusyType.BUSY,
+				"2016-03-01 08:00:00", "2016-03-01 09:00:00"
+			)
+		);
+		//@formatter:on
+	}
+
+	@Test
+	public void events_added_after_calculating() {
+		FreeBusyCalculator calculator = new FreeBusyCalculator();
+		calculator.add(event("2016-03-01 09:00:00", "2016-03-01 10:00:00"));
+		calculator.calculate(from, to, timezone);
+
+		calculator.add(event("2016-03-01 10:00:00", "2016-03-01 11:00:00"));
+		VFreeBusy freeBusy = calculator.calculate(from, to, timezone);
+
+		//@formatter:off
+		assertFreeBusy(freeBusy,
+			busy(FreeBusyType.BUSY,
+				"2016-03-01 09:00:00", "2016-03-01 11:00:00"
+			)
+		);
+		//@formatter:on
+	}
+
+	@Test
+	public void empty() {
+		VFreeBusy freeBusy = new FreeBusyCalculator().calculate(from, to, timezone);
+		assertTrue(freeBusy.getFreeBusy().isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalid_range() {
+		new FreeBusyCalculator().calculate(to, from, timezone);
+	}
+
+	private static VEvent event(String start, String end) {
+		VEvent event = new VEvent();
+		event.setDateStart(date(start));
+		event.setDateEnd(date(end));
+		return event;
+	}
+
+	private static FreeBusy busy(FreeBusyType type, String... dates) {
+		FreeBusy property = new FreeBusy();
+		property.setType(type);
+		for (int i = 0; i < dates.length; i += 2) {
+			property.getValues().add(new Period(date(dates[i]), date(dates[i + 1])));
+		}
+		return property;
+	}
+
+	private static void assertFreeBusy(VFreeBusy actual, FreeBusy... expected) {
+		List<FreeBusy> properties = actual.getFreeBusy();
+		assertEquals(expected.length, properties.size());
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i].getType(), properties.get(i).getType());
+			assertEquals(expected[i].getValues(), properties.get(i).getValues());
+		}
+	}
+}
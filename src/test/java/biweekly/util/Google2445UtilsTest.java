@@ -3,7 +3,13 @@ package biweekly.util;
 import static biweekly.util.TestUtils.date;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
@@ -16,7 +22,12 @@ import biweekly.component.VEvent;
 import biweekly.property.ExceptionDates;
 import biweekly.property.ExceptionRule;
 import biweekly.property.RecurrenceDates;
+import biweekly.property.RecurrenceRule;
+import biweekly.util.Recurrence.DayOfWeek;
 import biweekly.util.Recurrence.Frequency;
+import biweekly.util.com.google.ical.compat.javautil.DateIterator;
+import biweekly.util.com.google.ical.compat.javautil.DateIteratorFactory;
+import biweekly.util.com.google.ical.values.RRule;
 
 /*
  Copyright (c) 2013-2016, Michael Angstadt
@@ -106,6 +117,248 @@ public class Google2445UtilsTest {
 		assertIteratorEquals(expectedList, Google2445Utils.getDateIterator(event, TimeZone.getTimeZone("UTC")));
 	}
 
+	@Test
+	public void getDateIterator_nextMillis() {
+		VEvent event = new VEvent();
+		event.setDateStart(date("2016-03-01 09:30:00"));
+		event.setRecurrenceRule(new Recurrence.Builder(Frequency.WEEKLY).byDay(DayOfWeek.TUESDAY, DayOfWeek.SATURDAY).count(20).build());
+
+		TimeZone zone = TimeZone.getTimeZone("Europe/London");
+		DateIterator expected = Google2445Utils.getDateIterator(event, zone);
+		DateIterator actual = Google2445Utils.getDateIterator(event, zone);
+		while (expected.hasNext()) {
+			assertEquals(expected.next().getTime(), DateIteratorFactory.nextMillis(actual));
+		}
+		assertFalse(actual.hasNext());
+	}
+
+	@Test
+	public void expand() {
+		VEvent event = new VEvent();
+		event.setDateStart(date("2016-03-25 14:00:00"));
+		event.setDateEnd(date("2016-03-25 16:00:00"));
+		event.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).count(10).build());
+
+		List<Occurrence> occurrences = Google2445Utils.expand(event, date("2016-03-27 15:00:00"), date("2016-03-29 14:00:00"), TimeZone.getTimeZone("UTC"));
+
+		//@formatter:off
+		List<Occurrence> expected = Arrays.asList(
+			new Occurrence(event, new ICalDate(date("2016-03-27 14:00:00")), new ICalDate(date("2016-03-27 16:00:00")), new ICalDate(date("2016-03-27 14:00:00")), false),
+			new Occurrence(event, new ICalDate(date("2016-03-28 14:00:00")), new ICalDate(date("2016-03-28 16:00:00")), new ICalDate(date("2016-03-28 14:00:00")), false)
+		);
+		//@formatter:on
+		assertEquals(expected, occurrences);
+	}
+
+	@Test
+	public void expand_duration() {
+		VEvent event = new VEvent();
+		event.setDateStart(date("2016-03-25 14:00:00"));
+		event.setDuration(Duration.builder().hours(1).minutes(30).build());
+		event.setRecurrenceRule(new Recurrence.Builder(Frequency.WEEKLY).build());
+
+		List<Occurrence> occurrences = event.expand(date("2016-04-01 00:00:00"), date("2016-04-15 00:00:00"), TimeZone.getTimeZone("UTC"));
+
+		//@formatter:off
+		List<Occurrence> expected = Arrays.asList(
+			new Occurrence(event, new ICalDate(date("2016-04-01 14:00:00")), new ICalDate(date("2016-04-01 15:30:00")), new ICalDate(date("2016-04-01 14:00:00")), false),
+			new Occurrence(event, new ICalDate(date("2016-04-08 14:00:00")), new ICalDate(date("2016-04-08 15:30:00")), new ICalDate(date("2016-04-08 14:00:00")), false)
+		);
+		//@formatter:on
+		assertEquals(expected, occurrences);
+	}
+
+	@Test
+	public void expand_all_day() {
+		VEvent event = new VEvent();
+		event.setDateStart(new ICalDate(date("2016-03-25"), false));
+		event.setRecurrenceRule(new Recurrence.Builder(Frequency.MONTHLY).build());
+
+		List<Occurrence> occurrences = event.expand(date("2016-04-25 12:00:00"), date("2016-06-25 00:00:00"), TimeZone.getTimeZone("UTC"));
+
+		//@formatter:off
+		List<Occurrence> expected = Arrays.asList(
+			new Occurrence(event, new ICalDate(date("2016-04-25"), false), new ICalDate(date("2016-04-26"), false), new ICalDate(date("2016-04-25"), false), true),
+			new Occurrence(event, new ICalDate(date("2016-05-25"), false), new ICalDate(date("2016-05-26"), false), new ICalDate(date("2016-05-25"), false), true)
+		);
+		//@formatter:on
+		assertEquals(expected, occurrences);
+	}
+
+	@Test
+	public void expand_instant() {
+		VEvent event = new VEvent();
+		event.setDateStart(date("2016-03-25 14:00:00"));
+
+		assertEquals(1, event.expand(date("2016-03-25 14:00:00"), date("2016-03-26 00:00:00"), TimeZone.getTimeZone("UTC")).size());
+		assertEquals(0, event.expand(date("2016-03-25 14:00:01"), date("2016-03-26 00:00:00"), TimeZone.getTimeZone("UTC")).size());
+		assertEquals(0, event.expand(date("2016-03-25 00:00:00"), date("2016-03-25 14:00:00"), TimeZone.getTimeZone("UTC")).size());
+	}
+
+	@Test
+	public void expand_outside_of_range() {
+		VEvent event = new VEvent();
+		event.setDateStart(date("2016-03-25 14:00:00"));
+		event.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).count(10).build());
+
+		assertEquals(0, event.expand(date("2016-05-01 00:00:00"), date("2016-06-01 00:00:00"), TimeZone.getTimeZone("UTC")).size());
+		assertEquals(0, event.expand(date("2016-01-01 00:00:00"), date("2016-02-01 00:00:00"), TimeZone.getTimeZone("UTC")).size());
+	}
+
+	@Test
+	public void expand_no_start_date() {
+		VEvent event = new VEvent();
+		assertEquals(0, event.expand(date("2016-01-01 00:00:00"), date("2016-02-01 00:00:00"), TimeZone.getTimeZone("UTC")).size());
+	}
+
+	@Test
+	public void isFinite() {
+		VEvent event = new VEvent();
+		event.setDateStart(date("2016-03-25 14:00:00"));
+		assertTrue(Google2445Utils.isFinite(event));
+
+		event.addProperty(new RecurrenceRule(new Recurrence.Builder(Frequency.DAILY).count(10).build()));
+		assertTrue(Google2445Utils.isFinite(event));
+
+		event.addProperty(new RecurrenceRule(new Recurrence.Builder(Frequency.WEEKLY).build()));
+		assertFalse(Google2445Utils.isFinite(event));
+	}
+
+	@Test
+	public void countOccurrences_getLastOccurrence() {
+		TimeZone utc = TimeZone.getTimeZone("UTC");
+		Date farPast = date("2000-01-01 00:00:00");
+		Date farFuture = date("2100-01-01 00:00:00");
+
+		List<VEvent> events = new ArrayList<VEvent>();
+		{
+			VEvent event = new VEvent();
+			event.setDateStart(date("2016-03-25 14:00:00"));
+			event.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).count(30).build());
+			events.add(event);
+		}
+		{
+			VEvent event = new VEvent();
+			event.setDateStart(date("2016-03-25 14:00:00"));
+			event.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).count(30).build());
+			ExceptionDates exdate = new ExceptionDates();
+			exdate.getValues().add(new ICalDate(date("2016-04-23 14:00:00")));
+			exdate.getValues().add(new ICalDate(date("2016-04-22 14:00:00")));
+			event.addExceptionDates(exdate);
+			events.add(event);
+		}
+		{
+			VEvent event = new VEvent();
+			event.setDateStart(new ICalDate(date("2016-03-25"), false));
+			event.setRecurrenceRule(new Recurrence.Builder(Frequency.WEEKLY).until(new ICalDate(date("2017-03-01"), false)).build());
+			events.add(event);
+		}
+		{
+			VEvent event = new VEvent();
+			event.setDateStart(date("2016-03-25 14:00:00"));
+			event.setRecurrenceRule(new Recurrence.Builder(Frequency.MONTHLY).byDay(-1, DayOfWeek.FRIDAY).until(date("2018-01-01 00:00:00")).build());
+			RecurrenceDates rdate = new RecurrenceDates();
+			rdate.getDates().add(new ICalDate(date("2016-01-01 10:00:00")));
+			event.addRecurrenceDates(rdate);
+			events.add(event);
+		}
+		{
+			//counted using checkpoints
+			VEvent event = new VEvent();
+			event.setDateStart(date("2016-03-25 14:00:00"));
+			event.setRecurrenceRule(new Recurrence.Builder(Frequency.MONTHLY).byDay(-1, DayOfWeek.FRIDAY).count(100).build());
+			events.add(event);
+		}
+		{
+			//counted using checkpoints
+			VEvent event = new VEvent();
+			event.setDateStart(new ICalDate(date("2016-03-25"), false));
+			event.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).byDay(DayOfWeek.MONDAY, DayOfWeek.TUESDAY, DayOfWeek.WEDNESDAY, DayOfWeek.THURSDAY, DayOfWeek.FRIDAY).count(300).build());
+			events.add(event);
+		}
+		{
+			VEvent event = new VEvent();
+			event.setDateStart(date("2016-03-25 14:00:00"));
+			RecurrenceDates rdate = new RecurrenceDates();
+			rdate.getDates().add(new ICalDate(date("2016-04-01 10:00:00")));
+			rdate.getDates().add(new ICalDate(date("2016-05-01 10:00:00")));
+			event.addRecurrenceDates(rdate);
+			events.add(event);
+		}
+
+		//@formatter:off
+		Date[][] ranges = {
+			{ null, null },
+			{ date("2016-04-01 00:00:00"), date("2016-04-10 14:00:00") },
+			{ date("2016-04-10 14:00:01"), null }
+		};
+		//@formatter:on
+
+		for (VEvent event : events) {
+			List<Occurrence> all = Google2445Utils.expand(event, farPast, farFuture, utc);
+			assertEquals(all.get(all.size() - 1).getStart(), Google2445Utils.getLastOccurrence(event, utc));
+
+			for (Date[] range : ranges) {
+				long expected = 0;
+				for (Occurrence occurrence : all) {
+					ICalDate start = occurrence.getStart();
+					if ((range[0] == null || !start.before(range[0])) && (range[1] == null || start.before(range[1]))) {
+						expected++;
+					}
+				}
+				assertEquals(expected, Google2445Utils.countOccurrences(event, range[0], range[1], utc));
+			}
+
+			for (Date date : new Date[] { date("2016-01-01 00:00:00"), date("2016-03-25 14:00:00"), date("2016-04-22 14:00:01"), date("2016-11-25 13:00:00"), farFuture }) {
+				ICalDate expected = null;
+				for (Occurrence occurrence : all) {
+					if (occurrence.getStart().before(date)) {
+						expected = occurrence.getStart();
+					}
+				}
+				assertEquals(expected, Google2445Utils.getPreviousOccurrence(event, date, utc));
+			}
+		}
+	}
+
+	@Test
+	public void countOccurrences_infinite() {
+		VEvent event = new VEvent();
+		event.setDateStart(date("2016-03-25 14:00:00"));
+		event.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).build());
+		TimeZone utc = TimeZone.getTimeZone("UTC");
+
+		assertNull(Google2445Utils.getLastOccurrence(event, utc));
+		assertEquals(new ICalDate(date("2116-03-24 14:00:00")), Google2445Utils.getPreviousOccurrence(event, date("2116-03-25 00:00:00"), utc));
+		assertEquals(7, Google2445Utils.countOccurrences(event, date("2116-03-25 00:00:00"), date("2116-04-01 00:00:00"), utc));
+		try {
+			Google2445Utils.countOccurrences(event, null, null, utc);
+			fail();
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void compile() {
+		TimeZone utc = TimeZone.getTimeZone("UTC");
+		TimeZone newYork = TimeZone.getTimeZone("America/New_York");
+
+		Recurrence recurrence = new Recurrence.Builder(Frequency.WEEKLY).byDay(DayOfWeek.MONDAY).build();
+		RRule rrule = Google2445Utils.compile(recurrence, utc);
+		assertSame(rrule, Google2445Utils.compile(recurrence, utc));
+		assertSame(rrule, Google2445Utils.compile(recurrence, newYork));
+		assertEquals(Google2445Utils.convert(recurrence, utc).toIcal(), rrule.toIcal());
+
+		//UNTIL is converted to the timezone
+		recurrence = new Recurrence.Builder(Frequency.WEEKLY).until(date("2016-05-01 10:00:00")).build();
+		rrule = Google2445Utils.compile(recurrence, utc);
+		assertSame(rrule, Google2445Utils.compile(recurrence, utc));
+		RRule newYorkRRule = Google2445Utils.compile(recurrence, newYork);
+		assertNotSame(rrule, newYorkRRule);
+		assertEquals(Google2445Utils.convert(recurrence, newYork).toIcal(), newYorkRRule.toIcal());
+	}
+
 	private static <T> void assertIteratorEquals(List<T> expectedList, Iterator<T> actualIt) {
 		Iterator<T> expectedIt = expectedList.iterator();
 		while (expectedIt.hasNext()) {
@@ -2,9 +2,18 @@ package biweekly.util;
 
 import static biweekly.util.TestUtils.date;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Calendar;
 import java.util.Date;
+import java.util.TimeZone;
 
 import org.junit.Test;
 
@@ -87,4 +96,104 @@ public class ICalDateTest {
 		ICalDate date = new ICalDate(date("2014-10-01 12:00:00"), false);
 		assertEquals(date("2014-10-01 00:00:00"), date);
 	}
+
+	@Test
+	public void rawComponents() {
+		DateTimeComponents components = new DateTimeComponents(2014, 10, 1, 12, 30, 59, true);
+		ICalDate date = new ICalDate(date("2014-10-01 12:30:59"), components, true);
+		assertEquals(components, date.getRawComponents());
+
+		components = new DateTimeComponents(2014, 10, 1);
+		date = new ICalDate(date("2014-10-01 00:00:00"), components, false);
+		assertEquals(components, date.getRawComponents());
+
+		date = new ICalDate(date("2014-10-01 12:00:00"), true);
+		assertNull(date.getRawComponents());
+	}
+
+	@Test
+	public void rawComponents_out_of_range() {
+		DateTimeComponents components = new DateTimeComponents(-50000000, 200, 1, 12, 30, 59, false);
+		ICalDate date = new ICalDate(date("2014-10-01 12:30:59"), components, true);
+		assertEquals(components, date.getRawComponents());
+	}
+
+	@Test
+	public void isRawUtc() {
+		ICalDate date = new ICalDate(date("2014-10-01 12:30:59"), new DateTimeComponents(2014, 10, 1, 12, 30, 59, true), true);
+		assertTrue(date.isRawUtc());
+
+		date = new ICalDate(date("2014-10-01 12:30:59"), new DateTimeComponents(2014, 10, 1, 12, 30, 59, false), true);
+		assertFalse(date.isRawUtc());
+
+		date = new ICalDate(date("2014-10-01 12:30:59"), new DateTimeComponents(-50000000, 200, 1, 12, 30, 59, true), true);
+		assertTrue(date.isRawUtc());
+
+		date = new ICalDate(date("2014-10-01 12:00:00"), true);
+		assertFalse(date.isRawUtc());
+	}
+
+	@Test
+	public void compareRawComponents() {
+		//@formatter:off
+		DateTimeComponents[] components = {
+			new DateTimeComponents(-50000000, 200, 1, 12, 30, 59, false),
+			new DateTimeComponents(-5, 1, 1, 0, 0, 0, false),
+			new DateTimeComponents(2014, 10, 1),
+			new DateTimeComponents(2014, 10, 1, 12, 30, 58, true),
+			new DateTimeComponents(2014, 10, 1, 12, 30, 59, false),
+			new DateTimeComponents(2014, 11, 1, 0, 0, 0, false),
+			new DateTimeComponents(2015, 1, 1, 0, 0, 0, false)
+		};
+		//@formatter:on
+
+		for (DateTimeComponents left : components) {
+			ICalDate leftDate = new ICalDate(date("2014-10-01 12:30:59"), left, true);
+			for (DateTimeComponents right : components) {
+				ICalDate rightDate = new ICalDate(date("2014-10-01 12:30:59"), right, true);
+				assertEquals(Integer.signum(left.compareTo(right)), Integer.signum(leftDate.compareRawComponents(rightDate)));
+			}
+		}
+	}
+
+	@Test
+	public void rawComponentsToDate() {
+		TimeZone timezone = TimeZone.getTimeZone("America/New_York");
+		Calendar c = Calendar.getInstance(timezone);
+
+		DateTimeComponents components = new DateTimeComponents(2014, 10, 1, 12, 30, 59, false);
+		ICalDate date = new ICalDate(date("2014-10-01 12:30:59"), components, true);
+		assertEquals(components.toDate(timezone), date.rawComponentsToDate(c));
+
+		components = new DateTimeComponents(2014, 200, 1, 12, 30, 59, false);
+		date = new ICalDate(date("2014-10-01 12:30:59"), components, true);
+		assertEquals(components.toDate(timezone), date.rawComponentsToDate(c));
+	}
+
+	@Test
+	public void copy() {
+		DateTimeComponents components = new DateTimeComponents(2014, 10, 1, 12, 30, 59, false);
+		ICalDate date = new ICalDate(date("2014-10-01 12:30:59"), components, true);
+		ICalDate copy = new ICalDate(date);
+		assertEquals(date, copy);
+		assertEquals(components, copy.getRawComponents());
+	}
+
+	@Test
+	public void serialize() throws Exception {
+		DateTimeComponents components = new DateTimeComponents(2014, 10, 1, 12, 30, 59, false);
+		ICalDate date = new ICalDate(date("2014-10-01 12:30:59"), components, true);
+
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bout);
+		out.writeObject(date);
+		out.close();
+
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+		ICalDate copy = (ICalDate) in.readObject();
+		in.close();
+
+		assertEquals(date, copy);
+		assertEquals(components, copy.getRawComponents());
+	}
 }
@@ -0,0 +1,227 @@
+package biweekly.util;
+
+import static biweekly.util.TestUtils.date;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import biweekly.component.StandardTime;
+import biweekly.component.VEvent;
+import biweekly.component.VTimezone;
+import biweekly.io.ICalTimeZone;
+import biweekly.util.Recurrence.DayOfWeek;
+import biweekly.util.Recurrence.Frequency;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class RecurrenceCacheTest {
+	private final TimeZone utc = TimeZone.getTimeZone("UTC");
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalid_size() {
+		new RecurrenceCache(0);
+	}
+
+	@Test
+	public void reuse() {
+		RecurrenceCache cache = new RecurrenceCache(10);
+		Date from = date("2016-04-01 00:00:00");
+		Date to = date("2016-05-01 00:00:00");
+
+		VEvent event1 = standup();
+		VEvent event2 = standup();
+
+		List<Occurrence> occurrences1 = Google2445Utils.expand(event1, from, to, utc, cache);
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		List<Occurrence> occurrences2 = Google2445Utils.expand(event2, from, to, utc, cache);
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.size());
+
+		assertEquals(Google2445Utils.expand(event1, from, to, utc), occurrences1);
+		assertEquals(Google2445Utils.expand(event2, from, to, utc), occurrences2);
+		assertEquals(13, occurrences1.size());
+		assertNotSame(occurrences1.get(0).getComponent(), occurrences2.get(0).getComponent());
+	}
+
+	@Test
+	public void different_keys() {
+		RecurrenceCache cache = new RecurrenceCache(10);
+		Date from = date("2016-04-01 00:00:00");
+		Date to = date("2016-05-01 00:00:00");
+
+		VEvent event = standup();
+		Google2445Utils.expand(event, from, to, utc, cache);
+		Google2445Utils.expand(event, from, date("2016-06-01 00:00:00"), utc, cache);
+		Google2445Utils.expand(event, from, to, TimeZone.getTimeZone("America/New_York"), cache);
+
+		VEvent other = standup();
+		other.setDateStart(date("2016-03-21 10:00:00"));
+		Google2445Utils.expand(other, from, to, utc, cache);
+
+		other = standup();
+		other.setRecurrenceRule(new Recurrence.Builder(Frequency.WEEKLY).byDay(DayOfWeek.MONDAY).build());
+		Google2445Utils.expand(other, from, to, utc, cache);
+
+		assertEquals(0, cache.getHits());
+		assertEquals(5, cache.getMisses());
+		assertEquals(4, cache.size()); //the wider range extended the first expansion
+	}
+
+	@Test
+	public void eviction() {
+		RecurrenceCache cache = new RecurrenceCache(2);
+		Date from = date("2016-04-01 00:00:00");
+		Date to = date("2016-07-01 00:00:00");
+		VEvent event1 = standup();
+		VEvent event2 = standup();
+		event2.setDateStart(date("2016-03-21 10:00:00"));
+		VEvent event3 = standup();
+		event3.setDateStart(date("2016-03-21 11:00:00"));
+
+		Google2445Utils.expand(event1, from, to, utc, cache);
+		Google2445Utils.expand(event2, from, to, utc, cache);
+		Google2445Utils.expand(event1, from, to, utc, cache); //hit, so event2 is now the least recently used
+		Google2445Utils.expand(event3, from, to, utc, cache); //evicts event2
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getHits());
+
+		Google2445Utils.expand(event1, from, to, utc, cache);
+		assertEquals(2, cache.getHits());
+		Google2445Utils.expand(event2, from, to, utc, cache);
+		assertEquals(2, cache.getHits());
+		assertEquals(4, cache.getMisses());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void sliding_window() {
+		RecurrenceCache cache = new RecurrenceCache(10);
+		VEvent event = standup();
+
+		//@formatter:off
+		Date[][] ranges = {
+			{ date("2016-04-01 00:00:00"), date("2016-05-01 00:00:00") },
+			{ date("2016-04-15 00:00:00"), date("2016-05-15 00:00:00") }, //extends the end
+			{ date("2016-03-15 00:00:00"), date("2016-04-15 00:00:00") }, //extends the start
+			{ date("2016-04-20 10:00:00"), date("2016-05-10 00:00:00") }, //hit
+			{ date("2016-03-21 09:30:00"), date("2016-03-21 09:30:01") }, //hit
+			{ date("2017-01-01 00:00:00"), date("2017-02-01 00:00:00") } //replaces the expansion
+		};
+		//@formatter:on
+
+		for (Date[] range : ranges) {
+			assertEquals(Google2445Utils.expand(event, range[0], range[1], utc), Google2445Utils.expand(event, range[0], range[1], utc, cache));
+		}
+		assertEquals(2, cache.getHits());
+		assertEquals(4, cache.getMisses());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void equivalent_timezones() {
+		RecurrenceCache cache = new RecurrenceCache(10);
+		Date from = date("2016-04-01 00:00:00");
+		Date to = date("2016-05-01 00:00:00");
+		VEvent event = standup();
+
+		//copies of the same VTIMEZONE, as if they were parsed from different calendars
+		TimeZone timezone1 = new ICalTimeZone(fixedOffset("Custom", 2));
+		TimeZone timezone2 = new ICalTimeZone(fixedOffset("Custom", 2));
+		TimeZone timezone3 = new ICalTimeZone(fixedOffset("Custom", 3));
+
+		Google2445Utils.expand(event, from, to, timezone1, cache);
+		assertEquals(Google2445Utils.expand(event, from, to, timezone2), Google2445Utils.expand(event, from, to, timezone2, cache));
+		assertEquals(1, cache.getHits());
+
+		assertEquals(Google2445Utils.expand(event, from, to, timezone3), Google2445Utils.expand(event, from, to, timezone3, cache));
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void all_day() {
+		RecurrenceCache cache = new RecurrenceCache(10);
+		VEvent event = new VEvent();
+		event.setDateStart(new ICalDate(date("2016-03-25"), false));
+		event.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).build());
+
+		for (String id : new String[] { "UTC", "America/New_York", "Australia/Sydney" }) {
+			TimeZone timezone = TimeZone.getTimeZone(id);
+			Date from = date("2016-04-01 12:00:00");
+			Date to = date("2016-04-05 00:00:00");
+			assertEquals(id, Google2445Utils.expand(event, from, to, timezone), Google2445Utils.expand(event, from, to, timezone, cache));
+			assertEquals(id, Google2445Utils.expand(event, from, to, timezone), Google2445Utils.expand(event, from, to, timezone, cache));
+		}
+		assertEquals(3, cache.getHits());
+	}
+
+	@Test
+	public void calendar_expander() {
+		RecurrenceCache cache = new RecurrenceCache(10);
+		Date from = date("2016-04-01 00:00:00");
+		Date to = date("2016-05-01 00:00:00");
+
+		CalendarExpander expander = new CalendarExpander(Arrays.asList(standup(), standup()));
+		List<Occurrence> expected = expander.expand(from, to, utc);
+
+		expander.setRecurrenceCache(cache);
+		assertEquals(expected, expander.expand(from, to, utc));
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+	}
+
+	private static VTimezone fixedOffset(String id, int hours) {
+		VTimezone component = new VTimezone(id);
+		StandardTime standard = new StandardTime();
+		standard.setDateStart(new DateTimeComponents(1970, 1, 1, 0, 0, 0, false));
+		standard.setTimezoneOffsetFrom(new UtcOffset(true, hours, 0));
+		standard.setTimezoneOffsetTo(new UtcOffset(true, hours, 0));
+		component.addStandardTime(standard);
+		return component;
+	}
+
+	private static VEvent standup() {
+		VEvent event = new VEvent();
+		event.setDateStart(date("2016-03-21 09:30:00"));
+		event.setDateEnd(date("2016-03-21 09:45:00"));
+		event.setRecurrenceRule(new Recurrence.Builder(Frequency.WEEKLY).byDay(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY, DayOfWeek.FRIDAY).build());
+		return event;
+	}
+}
@@ -0,0 +1,241 @@
+package biweekly.util;
+
+import static biweekly.util.TestUtils.date;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import biweekly.component.VEvent;
+import biweekly.property.ExceptionDates;
+import biweekly.property.RecurrenceDates;
+import biweekly.property.RecurrenceRule;
+import biweekly.util.Recurrence.DayOfWeek;
+import biweekly.util.Recurrence.Frequency;
+import biweekly.util.com.google.ical.compat.javautil.DateIterator;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class RecurrenceOptimizerTest {
+	private final TimeZone london = TimeZone.getTimeZone("Europe/London");
+	private final RecurrenceOptimizer optimizer = new RecurrenceOptimizer(london);
+
+	@Test
+	public void daily_dates() {
+		VEvent event = new VEvent();
+		event.setDateStart(date("2016-03-25 09:00:00", london));
+		//@formatter:off
+		event.addRecurrenceDates(rdate(
+			"2016-03-25 09:00:00",
+			"2016-03-26 09:00:00",
+			"2016-03-27 09:00:00", //clocks go forward
+			"2016-03-28 09:00:00",
+			"2016-03-29 09:00:00"
+		));
+		//@formatter:on
+		List<Date> expected = expand(event);
+
+		assertTrue(optimizer.optimize(event));
+
+		assertEquals(Arrays.asList(new RecurrenceRule(new Recurrence.Builder(Frequency.DAILY).count(5).build())), event.getProperties(RecurrenceRule.class));
+		assertTrue(event.getRecurrenceDates().isEmpty());
+		assertEquals(expected, expand(event));
+	}
+
+	@Test
+	public void daily_dates_after_start_date() {
+		VEvent event = new VEvent();
+		event.setDateStart(date("2016-03-25 09:00:00", london));
+		//@formatter:off
+		event.addRecurrenceDates(rdate(
+			"2016-03-26 09:00:00",
+			"2016-03-27 09:00:00",
+			"2016-03-28 09:00:00"
+		));
+		//@formatter:on
+		List<Date> expected = expand(event);
+
+		//an RRULE would add the start date to the occurrences
+		assertFalse(optimizer.optimize(event));
+
+		assertTrue(event.getProperties(RecurrenceRule.class).isEmpty());
+		assertEquals(3, event.getRecurrenceDates().get(0).getDates().size());
+		assertEquals(expected, expand(event));
+	}
+
+	@Test
+	public void weekly_dates() {
+		VEvent event = new VEvent();
+		event.setDateStart(date("2016-03-07 10:00:00", london));
+		//@formatter:off
+		event.addRecurrenceDates(rdate(
+			"2016-03-07 10:00:00",
+			"2016-03-09 10:00:00",
+			"2016-03-11 10:00:00",
+			"2016-03-14 10:00:00",
+			"2016-03-16 10:00:00",
+			"2016-03-18 10:00:00",
+			"2016-04-01 15:00:00"
+		));
+		//@formatter:on
+		List<Date> expected = expand(event);
+
+		assertTrue(optimizer.optimize(event));
+
+		Recurrence rrule = new Recurrence.Builder(Frequency.WEEKLY).byDay(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY, DayOfWeek.FRIDAY).count(6).build();
+		assertEquals(Arrays.asList(new RecurrenceRule(rrule)), event.getProperties(RecurrenceRule.class));
+		assertEquals(Arrays.asList(rdate("2016-04-01 15:00:00")), event.getRecurrenceDates());
+		assertEquals(expected, expand(event));
+	}
+
+	@Test
+	public void dates_do_not_start_at_start_date() {
+		VEvent event = new VEvent();
+		event.setDateStart(date("2016-03-01 09:00:00", london));
+		//@formatter:off
+		event.addRecurrenceDates(rdate(
+			"2016-03-10 09:00:00",
+			"2016-03-11 09:00:00",
+			"2016-03-12 09:00:00"
+		));
+		//@formatter:on
+
+		assertFalse(optimizer.optimize(event));
+		assertTrue(event.getProperties(RecurrenceRule.class).isEmpty());
+		assertEquals(3, event.getRecurrenceDates().get(0).getDates().size());
+	}
+
+	@Test
+	public void unmatched_exception_dates() {
+		VEvent event = new VEvent();
+		event.setDateStart(date("2016-03-01 09:00:00", london));
+		event.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).count(5).build());
+		event.addExceptionDates(exdate("2016-03-02 09:00:00", "2016-03-03 12:00:00"));
+		event.addExceptionDates(exdate("2016-03-20 09:00:00"));
+		List<Date> expected = expand(event);
+
+		assertTrue(optimizer.optimize(event));
+
+		assertEquals(Arrays.asList(exdate("2016-03-02 09:00:00")), event.getExceptionDates());
+		assertEquals(expected, expand(event));
+	}
+
+	@Test
+	public void redundant_rules_and_dates() {
+		VEvent event = new VEvent();
+		event.setDateStart(date("2016-03-01 09:00:00", london));
+		Recurrence daily = new Recurrence.Builder(Frequency.DAILY).count(10).build();
+		event.addProperty(new RecurrenceRule(daily));
+		event.addProperty(new RecurrenceRule(daily));
+		event.addProperty(new RecurrenceRule(new Recurrence.Builder(Frequency.WEEKLY).count(2).build()));
+		event.addRecurrenceDates(rdate("2016-03-04 09:00:00", "2016-03-20 09:00:00", "2016-03-20 09:00:00"));
+		List<Date> expected = expand(event);
+
+		assertTrue(optimizer.optimize(event));
+
+		assertEquals(Arrays.asList(new RecurrenceRule(daily)), event.getProperties(RecurrenceRule.class));
+		assertEquals(Arrays.asList(rdate("2016-03-20 09:00:00")), event.getRecurrenceDates());
+		assertEquals(expected, expand(event));
+	}
+
+	@Test
+	public void dates_after_horizon_are_kept() {
+		RecurrenceOptimizer optimizer = new RecurrenceOptimizer(london);
+		optimizer.setHorizonYears(1);
+
+		VEvent event = new VEvent();
+		event.setDateStart(date("2016-03-01 09:00:00", london));
+		event.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).build());
+		event.addRecurrenceDates(rdate("2016-03-04 09:00:00", "2020-03-04 09:00:00"));
+
+		assertTrue(optimizer.optimize(event));
+
+		assertEquals(Arrays.asList(rdate("2020-03-04 09:00:00")), event.getRecurrenceDates());
+	}
+
+	@Test
+	public void nothing_to_do() {
+		VEvent event = new VEvent();
+		event.setDateStart(date("2016-03-01 09:00:00", london));
+		event.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).count(5).build());
+		assertFalse(optimizer.optimize(event));
+
+		event = new VEvent();
+		event.addRecurrenceDates(rdate("2016-03-04 09:00:00", "2016-03-04 09:00:00"));
+		assertFalse(optimizer.optimize(event));
+	}
+
+	@Test
+	public void setHorizonYears() {
+		RecurrenceOptimizer optimizer = new RecurrenceOptimizer(london);
+		assertEquals(50, optimizer.getHorizonYears());
+		optimizer.setHorizonYears(10);
+		assertEquals(10, optimizer.getHorizonYears());
+
+		try {
+			optimizer.setHorizonYears(0);
+			fail();
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	private RecurrenceDates rdate(String... dates) {
+		RecurrenceDates property = new RecurrenceDates();
+		for (String date : dates) {
+			property.getDates().add(new ICalDate(date(date, london)));
+		}
+		return property;
+	}
+
+	private ExceptionDates exdate(String... dates) {
+		ExceptionDates property = new ExceptionDates();
+		for (String date : dates) {
+			property.getValues().add(new ICalDate(date(date, london)));
+		}
+		return property;
+	}
+
+	private List<Date> expand(VEvent event) {
+		List<Date> dates = new ArrayList<Date>();
+		DateIterator it = Google2445Utils.getDateIterator(event, london);
+		while (it.hasNext()) {
+			dates.add(it.next());
+		}
+		return dates;
+	}
+}
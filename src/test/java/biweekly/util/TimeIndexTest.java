@@ -0,0 +1,191 @@
+package biweekly.util;
+
+import static biweekly.util.TestUtils.date;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import biweekly.ICalendar;
+import biweekly.component.VEvent;
+import biweekly.property.RecurrenceId;
+import biweekly.util.Recurrence.Frequency;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class TimeIndexTest {
+	private static final long HOUR = 1000L * 60 * 60;
+	private final TimeZone utc = TimeZone.getTimeZone("UTC");
+
+	@Test
+	public void query() {
+		ICalendar ical = calendar();
+		TimeIndex index = new TimeIndex(utc);
+		index.add(ical);
+		assertEquals(ical.getEvents().size(), index.size());
+
+		CalendarExpander expander = new CalendarExpander(ical);
+		Random random = new Random(1);
+		long base = date("2016-01-01 00:00:00").getTime();
+		for (int i = 0; i < 200; i++) {
+			Date from = new Date(base + random.nextInt(24 * 365 * 2) * HOUR);
+			Date to = new Date(from.getTime() + random.nextInt(24 * 14) * HOUR);
+			assertSameOccurrences(expander.expand(from, to, utc), index.query(from, to));
+		}
+	}
+
+	@Test
+	public void at() {
+		VEvent event = event("2016-03-01 10:00:00", "2016-03-01 11:00:00");
+		VEvent daily = event("2016-03-01 10:30:00", "2016-03-01 12:00:00");
+		daily.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).build());
+
+		TimeIndex index = new TimeIndex(utc);
+		index.add(event);
+		index.add(daily);
+
+		assertEquals(Arrays.asList(event), components(index.at(date("2016-03-01 10:00:00"))));
+		assertEquals(Arrays.asList(event, daily), components(index.at(date("2016-03-01 10:45:00"))));
+		assertEquals(Arrays.asList(daily), components(index.at(date("2016-03-01 11:00:00"))));
+		assertEquals(Arrays.asList(daily), components(index.at(date("2026-03-01 11:00:00"))));
+		assertTrue(index.at(date("2016-03-01 09:59:59")).isEmpty());
+	}
+
+	@Test
+	public void add_remove_update() {
+		VEvent event1 = event("2016-03-01 10:00:00", "2016-03-01 11:00:00");
+		VEvent event2 = event("2016-03-02 10:00:00", "2016-03-02 11:00:00");
+
+		TimeIndex index = new TimeIndex(utc);
+		index.add(event1);
+		index.add(event2);
+		index.add(event2);
+		assertEquals(2, index.size());
+
+		Date from = date("2016-03-01 00:00:00");
+		Date to = date("2016-03-03 00:00:00");
+		assertEquals(Arrays.asList(event1, event2), components(index.query(from, to)));
+
+		assertTrue(index.remove(event1));
+		assertFalse(index.remove(event1));
+		assertEquals(1, index.size());
+		assertEquals(Arrays.asList(event2), components(index.query(from, to)));
+
+		event2.setDateStart(date("2016-03-05 10:00:00"));
+		event2.setDateEnd(date("2016-03-05 11:00:00"));
+		index.update(event2);
+		assertTrue(index.query(from, to).isEmpty());
+		assertEquals(Arrays.asList(event2), components(index.query(to, date("2016-03-06 00:00:00"))));
+	}
+
+	@Test
+	public void override() {
+		VEvent master = event("2016-03-01 10:00:00", "2016-03-01 11:00:00");
+		master.setUid("uid");
+		master.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).count(5).build());
+
+		VEvent override = event("2016-03-20 10:00:00", "2016-03-20 11:00:00");
+		override.setUid("uid");
+		override.setRecurrenceId(new RecurrenceId(date("2016-03-03 10:00:00")));
+
+		TimeIndex index = new TimeIndex(utc);
+		index.add(master);
+		index.add(override);
+
+		Date from = date("2016-03-01 00:00:00");
+		assertEquals(4, index.query(from, date("2016-03-10 00:00:00")).size());
+		assertEquals(Arrays.asList(override), components(index.query(date("2016-03-20 00:00:00"), date("2016-03-21 00:00:00"))));
+
+		index.remove(override);
+		assertEquals(5, index.query(from, date("2016-03-10 00:00:00")).size());
+		assertTrue(index.query(date("2016-03-20 00:00:00"), date("2016-03-21 00:00:00")).isEmpty());
+	}
+
+	private static ICalendar calendar() {
+		ICalendar ical = new ICalendar();
+		Random random = new Random(2);
+		long base = date("2016-01-01 09:00:00").getTime();
+		for (int i = 0; i < 300; i++) {
+			long start = base + random.nextInt(24 * 365) * HOUR;
+			VEvent event = new VEvent();
+			if (i % 10 == 0) {
+				event.setDateStart(new ICalDate(new Date(start), false));
+			} else {
+				event.setDateStart(new Date(start));
+				event.setDateEnd(new Date(start + (1 + random.nextInt(48)) * HOUR));
+			}
+
+			switch (i % 4) {
+			case 1:
+				event.setRecurrenceRule(new Recurrence.Builder(Frequency.WEEKLY).build());
+				break;
+			case 2:
+				event.setRecurrenceRule(new Recurrence.Builder(Frequency.DAILY).count(1 + random.nextInt(20)).build());
+				break;
+			case 3:
+				event.setRecurrenceRule(new Recurrence.Builder(Frequency.MONTHLY).until(new Date(start + random.nextInt(24 * 365) * HOUR)).build());
+				break;
+			}
+			ical.addEvent(event);
+		}
+		return ical;
+	}
+
+	private static VEvent event(String start, String end) {
+		VEvent event = new VEvent();
+		event.setDateStart(date(start));
+		event.setDateEnd(date(end));
+		return event;
+	}
+
+	private static List<Object> components(List<Occurrence> occurrences) {
+		List<Object> components = new ArrayList<Object>();
+		for (Occurrence occurrence : occurrences) {
+			components.add(occurrence.getComponent());
+		}
+		return components;
+	}
+
+	private static void assertSameOccurrences(List<Occurrence> expected, List<Occurrence> actual) {
+		assertEquals(expected.size(), actual.size());
+		assertEquals(new HashSet<Occurrence>(expected), new HashSet<Occurrence>(actual));
+		for (int i = 1; i < actual.size(); i++) {
+			assertTrue(CalendarExpander.START_ORDER.compare(actual.get(i - 1), actual.get(i)) <= 0);
+		}
+	}
+}
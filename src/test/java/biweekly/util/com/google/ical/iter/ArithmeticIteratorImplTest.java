@@ -0,0 +1,194 @@
+package biweekly.util.com.google.ical.iter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import biweekly.util.com.google.ical.util.PackedDates;
+import biweekly.util.com.google.ical.values.DateTimeValueImpl;
+import biweekly.util.com.google.ical.values.DateValue;
+import biweekly.util.com.google.ical.values.DateValueImpl;
+import biweekly.util.com.google.ical.values.RRule;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class ArithmeticIteratorImplTest {
+	/**
+	 * Each period of a simple daily or weekly rule has one instance,
+	 * so selecting the first instance of each period does not change the rule,
+	 * but it forces the rule to be handled by the generator cascade.
+	 */
+	private static final String FIRST_IN_SET = ";BYSETPOS=1";
+
+	//@formatter:off
+	private static final String[] rules = {
+		"FREQ=DAILY",
+		"FREQ=DAILY;INTERVAL=3",
+		"FREQ=DAILY;INTERVAL=10;BYDAY=SU",
+		"FREQ=DAILY;COUNT=45",
+		"FREQ=DAILY;INTERVAL=2;UNTIL=20161105T063000Z",
+		"FREQ=DAILY;UNTIL=20161106",
+		"FREQ=WEEKLY",
+		"FREQ=WEEKLY;INTERVAL=2;BYDAY=SU",
+		"FREQ=WEEKLY;COUNT=10",
+		"FREQ=WEEKLY;INTERVAL=3;UNTIL=20170312T070000Z",
+		"FREQ=WEEKLY;UNTIL=20150101T000000Z"
+	};
+	private static final DateValue[] starts = {
+		new DateTimeValueImpl(2016, 3, 13, 2, 30, 0), //DST gap in New York
+		new DateTimeValueImpl(2016, 11, 6, 1, 30, 0), //DST overlap in New York
+		new DateTimeValueImpl(2016, 2, 28, 23, 59, 59),
+		new DateValueImpl(2016, 2, 28)
+	};
+	private static final String[] zones = { "UTC", "America/New_York", "Australia/Lord_Howe" };
+	private static final DateValue[] advanceTos = {
+		new DateValueImpl(2015, 1, 1),
+		new DateTimeValueImpl(2016, 3, 13, 7, 30, 0),
+		new DateValueImpl(2016, 11, 6),
+		new DateTimeValueImpl(2016, 11, 6, 5, 30, 0),
+		new DateTimeValueImpl(2016, 11, 6, 6, 30, 0),
+		new DateTimeValueImpl(2017, 3, 12, 7, 0, 0),
+		new DateTimeValueImpl(2025, 6, 1, 12, 0, 0)
+	};
+	//@formatter:on
+
+	@Test
+	public void same_as_generators() throws Exception {
+		for (String zoneId : zones) {
+			TimeZone zone = TimeZone.getTimeZone(zoneId);
+			for (String rule : rules) {
+				for (DateValue start : starts) {
+					String message = zoneId + " " + rule + " " + start;
+					RRule simple = new RRule("RRULE:" + rule);
+					RRule cascade = new RRule("RRULE:" + rule + FIRST_IN_SET);
+
+					RecurrenceIterator expected = RecurrenceIteratorFactory.createRecurrenceIterator(cascade, start, zone);
+					RecurrenceIterator actual = RecurrenceIteratorFactory.createRecurrenceIterator(simple, start, zone);
+					assertTrue(actual instanceof ArithmeticIteratorImpl);
+					assertEquals(message, take(expected, 200), take(actual, 200));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void advanceTo_same_as_generators() throws Exception {
+		for (String zoneId : zones) {
+			TimeZone zone = TimeZone.getTimeZone(zoneId);
+			for (String rule : rules) {
+				for (DateValue start : starts) {
+					for (DateValue advanceTo : advanceTos) {
+						String message = zoneId + " " + rule + " " + start + " " + advanceTo;
+						RecurrenceIterator expected = RecurrenceIteratorFactory.createRecurrenceIterator(new RRule("RRULE:" + rule + FIRST_IN_SET), start, zone);
+						RecurrenceIterator actual = RecurrenceIteratorFactory.createRecurrenceIterator(new RRule("RRULE:" + rule), start, zone);
+						expected.advanceTo(advanceTo);
+						actual.advanceTo(advanceTo);
+						assertEquals(message, take(expected, 3), take(actual, 3));
+
+						//advance again after consuming some instances
+						expected.advanceTo(advanceTo);
+						actual.advanceTo(advanceTo);
+						assertEquals(message, take(expected, 3), take(actual, 3));
+
+						//advance again after peeking at the next instance
+						assertEquals(message, expected.hasNext(), actual.hasNext());
+						expected.advanceTo(advanceTo);
+						actual.advanceTo(advanceTo);
+						assertEquals(message, take(expected, 20), take(actual, 20));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void advanceTo_date_in_timezone() throws Exception {
+		DateValue start = new DateValueImpl(2005, 1, 1);
+		TimeZone newYork = TimeZone.getTimeZone("America/New_York");
+		DateValue advanceTo = new DateTimeValueImpl(2005, 1, 1, 0, 0, 0);
+
+		for (String rule : new String[] { "FREQ=DAILY", "FREQ=WEEKLY", "FREQ=MONTHLY" }) {
+			RecurrenceIterator it = RecurrenceIteratorFactory.createRecurrenceIterator(new RRule("RRULE:" + rule), start, newYork);
+			it.advanceTo(advanceTo);
+			assertEquals(rule, new DateValueImpl(2005, 1, 1), it.next());
+		}
+	}
+
+	@Test
+	public void not_simple() throws Exception {
+		DateValue start = new DateValueImpl(2016, 2, 28); //sunday
+		TimeZone utc = TimeZone.getTimeZone("UTC");
+		assertNull(ArithmeticIteratorImpl.create(new RRule("RRULE:FREQ=MONTHLY"), start, utc));
+		assertNull(ArithmeticIteratorImpl.create(new RRule("RRULE:FREQ=WEEKLY;BYDAY=MO"), start, utc));
+		assertNull(ArithmeticIteratorImpl.create(new RRule("RRULE:FREQ=WEEKLY;BYDAY=SU,MO"), start, utc));
+		assertNull(ArithmeticIteratorImpl.create(new RRule("RRULE:FREQ=DAILY;BYDAY=1SU"), start, utc));
+		assertNull(ArithmeticIteratorImpl.create(new RRule("RRULE:FREQ=DAILY;BYHOUR=1"), start, utc));
+		assertNull(ArithmeticIteratorImpl.create(new RRule("RRULE:FREQ=DAILY;BYSETPOS=1"), start, utc));
+	}
+
+	@Test
+	public void random_access() throws Exception {
+		DateValue start = new DateTimeValueImpl(2005, 1, 3, 9, 0, 0);
+		ArithmeticIteratorImpl it = ArithmeticIteratorImpl.create(new RRule("RRULE:FREQ=WEEKLY;INTERVAL=2;COUNT=1000"), start, TimeZone.getTimeZone("UTC"));
+
+		assertEquals(1000, it.size());
+		assertEquals(PackedDates.pack(2005, 1, 3, 9, 0, 0), it.get(0));
+		assertEquals(PackedDates.pack(2005, 1, 17, 9, 0, 0), it.get(1));
+		assertEquals(PackedDates.pack(2043, 4, 20, 9, 0, 0), it.get(999));
+		assertEquals(Long.MIN_VALUE, it.get(1000));
+
+		it.advanceTo(new DateTimeValueImpl(2043, 4, 20, 9, 0, 0));
+		assertTrue(it.hasNext());
+		assertEquals(new DateTimeValueImpl(2043, 4, 20, 9, 0, 0), it.next());
+		assertFalse(it.hasNext());
+	}
+
+	@Test
+	public void until_before_start() throws Exception {
+		DateValue start = new DateValueImpl(2016, 2, 28);
+		ArithmeticIteratorImpl it = ArithmeticIteratorImpl.create(new RRule("RRULE:FREQ=DAILY;UNTIL=20160227"), start, TimeZone.getTimeZone("UTC"));
+		assertEquals(0, it.size());
+		assertFalse(it.hasNext());
+	}
+
+	private static List<DateValue> take(RecurrenceIterator it, int max) {
+		List<DateValue> list = new ArrayList<DateValue>();
+		for (int i = 0; i < max && it.hasNext(); i++) {
+			list.add(it.next());
+		}
+		return list;
+	}
+}
@@ -0,0 +1,188 @@
+package biweekly.util.com.google.ical.iter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import biweekly.util.com.google.ical.values.DateTimeValueImpl;
+import biweekly.util.com.google.ical.values.DateValue;
+import biweekly.util.com.google.ical.values.DateValueImpl;
+import biweekly.util.com.google.ical.values.RRule;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class CountCheckpointsTest {
+	//@formatter:off
+	private static final String[] rules = {
+		"FREQ=DAILY;BYDAY=MO,TU,WE,TH,FR;COUNT=3650",
+		"FREQ=MONTHLY;INTERVAL=3;BYDAY=MO;BYSETPOS=-1;COUNT=200",
+		"FREQ=WEEKLY;INTERVAL=2;BYDAY=TU,TH;COUNT=1000",
+		"FREQ=YEARLY;BYMONTH=2;BYMONTHDAY=29;COUNT=65",
+		"FREQ=YEARLY;BYHOUR=5;BYMONTHDAY=8,3;BYSETPOS=2;COUNT=70"
+	};
+	private static final DateValue[] starts = {
+		new DateTimeValueImpl(2016, 3, 13, 2, 30, 0), //DST gap in New York
+		new DateValueImpl(2016, 2, 29)
+	};
+	private static final String[] zones = { "UTC", "America/New_York" };
+	//@formatter:on
+
+	@Test
+	public void same_as_count() throws Exception {
+		for (String zoneId : zones) {
+			TimeZone zone = TimeZone.getTimeZone(zoneId);
+			for (String rule : rules) {
+				RRule rrule = new RRule("RRULE:" + rule);
+				for (DateValue start : starts) {
+					String message = zoneId + " " + rule + " " + start;
+					List<DateValue> all = take(RecurrenceIteratorFactory.createRecurrenceIterator(rrule, start, zone));
+					CountCheckpoints checkpoints = CountCheckpoints.create(rrule, start, zone);
+
+					assertEquals(message, all.size(), checkpoints.size());
+					assertEquals(message, all.get(all.size() - 1), checkpoints.last());
+					assertEquals(message, all, take(checkpoints.iterator()));
+					assertEquals(message, all.size(), checkpoints.count(null, null));
+
+					//look up every instance, and the moments just before and after them
+					for (int i = 0; i < all.size(); i += 7) {
+						DateValue instance = all.get(i);
+						assertEquals(message, i, checkpoints.count(null, instance));
+						assertEquals(message, all.size() - i, checkpoints.count(instance, null));
+						assertEquals(message, (i == 0) ? null : all.get(i - 1), checkpoints.previousBefore(instance));
+
+						RecurrenceIterator it = checkpoints.iterator();
+						it.advanceTo(instance);
+						assertEquals(message, instance, it.next());
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void count() throws Exception {
+		RRule rrule = new RRule("RRULE:FREQ=DAILY;BYDAY=MO,TU,WE,TH,FR;COUNT=3650");
+		DateValue start = new DateValueImpl(2016, 1, 4);
+		CountCheckpoints checkpoints = CountCheckpoints.create(rrule, start, TimeZone.getTimeZone("UTC"));
+
+		//the weeks before 2020-01-06 have 5 days each
+		long before = 5 * 209;
+		assertEquals(before, checkpoints.count(null, new DateValueImpl(2020, 1, 6)));
+		assertEquals(3650 - before, checkpoints.count(new DateValueImpl(2020, 1, 6), null));
+		assertEquals(5, checkpoints.count(new DateValueImpl(2020, 1, 6), new DateValueImpl(2020, 1, 13)));
+		assertEquals(0, checkpoints.count(new DateValueImpl(2020, 1, 13), new DateValueImpl(2020, 1, 6)));
+		assertEquals(new DateValueImpl(2019, 12, 31), checkpoints.previousBefore(new DateValueImpl(2020, 1, 1)));
+		assertNull(checkpoints.previousBefore(start));
+		assertEquals(new DateValueImpl(2029, 12, 28), checkpoints.last());
+	}
+
+	@Test
+	public void create() throws Exception {
+		DateValue start = new DateValueImpl(2016, 1, 4); //monday
+		TimeZone utc = TimeZone.getTimeZone("UTC");
+
+		assertNull(CountCheckpoints.create(new RRule("RRULE:FREQ=MONTHLY"), start, utc));
+		assertNull(CountCheckpoints.create(new RRule("RRULE:FREQ=MONTHLY;UNTIL=20500101"), start, utc));
+		assertNull(CountCheckpoints.create(new RRule("RRULE:FREQ=MONTHLY;COUNT=10"), start, utc));
+
+		//already constant time
+		assertNull(CountCheckpoints.create(new RRule("RRULE:FREQ=WEEKLY;BYDAY=MO;COUNT=1000"), start, utc));
+
+		CountCheckpoints checkpoints = CountCheckpoints.create(new RRule("RRULE:FREQ=MONTHLY;COUNT=1000"), start, utc);
+		//can't skip ahead even without the COUNT
+		assertNull(CountCheckpoints.create(new RRule("RRULE:FREQ=MONTHLY;BYHOUR=21,22;BYDAY=MO;BYSETPOS=2;COUNT=1000"), start, utc));
+
+		assertTrue(checkpoints.appliesTo(start, utc));
+		assertFalse(checkpoints.appliesTo(new DateValueImpl(2016, 1, 5), utc));
+		assertFalse(checkpoints.appliesTo(new DateTimeValueImpl(2016, 1, 4, 0, 0, 0), utc));
+		assertFalse(checkpoints.appliesTo(start, TimeZone.getTimeZone("America/New_York")));
+	}
+
+	@Test
+	public void lazy() throws Exception {
+		RRule rrule = new RRule("RRULE:FREQ=MINUTELY;COUNT=3000000");
+		DateValue start = new DateTimeValueImpl(2016, 1, 4, 9, 0, 0);
+		TimeZone zone = TimeZone.getTimeZone("America/New_York");
+		CountCheckpoints checkpoints = CountCheckpoints.create(rrule, start, zone);
+
+		//only the instances up to the date are generated
+		RecurrenceIterator it = checkpoints.iterator();
+		assertEquals(new DateTimeValueImpl(2016, 1, 4, 14, 0, 0), it.next());
+		it.advanceTo(new DateTimeValueImpl(2016, 1, 5, 0, 0, 30));
+		assertEquals(new DateTimeValueImpl(2016, 1, 5, 0, 1, 0), it.next());
+		assertEquals(new DateTimeValueImpl(2016, 1, 5, 0, 2, 0), it.next());
+		assertEquals(new DateTimeValueImpl(2016, 1, 5, 0, 0, 0), checkpoints.previousBefore(new DateTimeValueImpl(2016, 1, 5, 0, 1, 0)));
+		assertEquals(60, checkpoints.count(new DateTimeValueImpl(2016, 1, 5, 0, 0, 0), new DateTimeValueImpl(2016, 1, 5, 1, 0, 0)));
+
+		//advancing backwards does nothing
+		it.advanceTo(new DateTimeValueImpl(2016, 1, 4, 0, 0, 0));
+		assertEquals(new DateTimeValueImpl(2016, 1, 5, 0, 3, 0), it.next());
+	}
+
+	@Test
+	public void iterator_stops_at_count() throws Exception {
+		RRule rrule = new RRule("RRULE:FREQ=MONTHLY;INTERVAL=3;BYDAY=MO;BYSETPOS=-1;COUNT=200");
+		DateValue start = new DateValueImpl(2016, 3, 1);
+		TimeZone zone = TimeZone.getTimeZone("UTC");
+		List<DateValue> all = take(RecurrenceIteratorFactory.createRecurrenceIterator(rrule, start, zone));
+		CountCheckpoints checkpoints = CountCheckpoints.create(rrule, start, zone);
+
+		RecurrenceIterator it = checkpoints.iterator();
+		it.advanceTo(all.get(150));
+		assertEquals(all.subList(150, all.size()), take(it));
+	}
+
+	@Test
+	public void no_instances() throws Exception {
+		RRule rrule = new RRule("RRULE:FREQ=YEARLY;BYMONTH=2;BYMONTHDAY=30;COUNT=100");
+		DateValue start = new DateValueImpl(2016, 1, 4);
+		CountCheckpoints checkpoints = CountCheckpoints.create(rrule, start, TimeZone.getTimeZone("UTC"));
+
+		assertEquals(0, checkpoints.size());
+		assertNull(checkpoints.last());
+		assertEquals(0, checkpoints.count(null, null));
+		assertNull(checkpoints.previousBefore(new DateValueImpl(2020, 1, 1)));
+		assertFalse(checkpoints.iterator().hasNext());
+	}
+
+	private static List<DateValue> take(RecurrenceIterator it) {
+		List<DateValue> list = new ArrayList<DateValue>();
+		while (it.hasNext()) {
+			list.add(it.next());
+		}
+		return list;
+	}
+}
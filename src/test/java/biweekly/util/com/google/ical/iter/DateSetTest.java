@@ -0,0 +1,148 @@
+package biweekly.util.com.google.ical.iter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import biweekly.util.com.google.ical.util.DTBuilder;
+import biweekly.util.com.google.ical.util.PackedDates;
+import biweekly.util.com.google.ical.values.DateTimeValueImpl;
+import biweekly.util.com.google.ical.values.DateValue;
+import biweekly.util.com.google.ical.values.DateValueImpl;
+import biweekly.util.com.google.ical.values.RRule;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class DateSetTest {
+	@Test
+	public void sorted_without_duplicates() {
+		//@formatter:off
+		DateSet set = new DateSet(new long[] {
+			PackedDates.pack(2016, 3, 1),
+			PackedDates.pack(2016, 1, 1, 10, 0, 0),
+			PackedDates.pack(2016, 1, 1),
+			PackedDates.pack(2016, 3, 1)
+		});
+		//@formatter:on
+
+		assertEquals(3, set.size());
+		List<DateValue> expected = new ArrayList<DateValue>();
+		expected.add(new DateValueImpl(2016, 1, 1));
+		expected.add(new DateTimeValueImpl(2016, 1, 1, 10, 0, 0));
+		expected.add(new DateValueImpl(2016, 3, 1));
+		assertEquals(expected, take(set.iterator()));
+	}
+
+	@Test
+	public void contains() {
+		DateSet set = new DateSet(new long[] { PackedDates.pack(2016, 1, 1), PackedDates.pack(2016, 1, 2, 10, 0, 0) });
+		assertTrue(set.contains(new DateValueImpl(2016, 1, 1)));
+		assertTrue(set.contains(new DateTimeValueImpl(2016, 1, 2, 10, 0, 0)));
+
+		//dates and date-times never match
+		assertFalse(set.contains(new DateTimeValueImpl(2016, 1, 1, 0, 0, 0)));
+		assertFalse(set.contains(new DateValueImpl(2016, 1, 2)));
+		assertFalse(set.contains(new DateValueImpl(2016, 1, 3)));
+
+		DateSet empty = new DateSet(new long[0]);
+		assertEquals(0, empty.size());
+		assertFalse(empty.contains(new DateValueImpl(2016, 1, 1)));
+		assertFalse(empty.iterator().hasNext());
+	}
+
+	@Test
+	public void advanceTo() {
+		long[] dates = new long[1000];
+		for (int i = 0; i < dates.length; i++) {
+			dates[i] = new DTBuilder(2016, 1, 1 + i * 2, 12, 0, 0).toPackedDateTime();
+		}
+		DateSet set = new DateSet(dates);
+
+		RecurrenceIterator it = set.iterator();
+		it.advanceTo(new DateTimeValueImpl(2016, 1, 4, 0, 0, 0));
+		assertEquals(new DateTimeValueImpl(2016, 1, 5, 12, 0, 0), it.next());
+
+		//does not go backwards
+		it.advanceTo(new DateValueImpl(2016, 1, 1));
+		assertEquals(new DateTimeValueImpl(2016, 1, 7, 12, 0, 0), it.next());
+
+		it.advanceTo(new DateTimeValueImpl(2016, 3, 3, 12, 0, 0));
+		assertEquals(new DateTimeValueImpl(2016, 3, 3, 12, 0, 0), it.next());
+
+		it.advanceTo(new DateValueImpl(2030, 1, 1));
+		assertFalse(it.hasNext());
+	}
+
+	@Test
+	public void except() throws Exception {
+		RRule rrule = new RRule("RRULE:FREQ=DAILY;BYHOUR=9,17");
+		DateValue start = new DateTimeValueImpl(2016, 3, 1, 9, 0, 0);
+		TimeZone zone = TimeZone.getTimeZone("America/New_York");
+
+		//exclude a random selection of the instances, plus dates that aren't instances
+		Random random = new Random(42);
+		List<DateValue> all = take(RecurrenceIteratorFactory.createRecurrenceIterator(rrule, start, zone), 2000);
+		long[] excluded = new long[800];
+		for (int i = 0; i < excluded.length; i++) {
+			DateValue date = all.get(random.nextInt(all.size()));
+			excluded[i] = (i % 4 == 0) ? PackedDates.pack(date.year(), date.month(), date.day()) : PackedDates.pack(date);
+		}
+		DateSet set = new DateSet(excluded);
+
+		DateValue[] advanceTos = { null, new DateValueImpl(2016, 6, 1), new DateTimeValueImpl(2017, 1, 1, 22, 0, 0) };
+		for (DateValue advanceTo : advanceTos) {
+			RecurrenceIterator expected = RecurrenceIteratorFactory.except(RecurrenceIteratorFactory.createRecurrenceIterator(rrule, start, zone), set.iterator());
+			RecurrenceIterator actual = RecurrenceIteratorFactory.except(RecurrenceIteratorFactory.createRecurrenceIterator(rrule, start, zone), set);
+			if (advanceTo != null) {
+				expected.advanceTo(advanceTo);
+				actual.advanceTo(advanceTo);
+			}
+			assertEquals(String.valueOf(advanceTo), take(expected, 1000), take(actual, 1000));
+		}
+	}
+
+	private static List<DateValue> take(RecurrenceIterator it) {
+		return take(it, Integer.MAX_VALUE);
+	}
+
+	private static List<DateValue> take(RecurrenceIterator it, int max) {
+		List<DateValue> list = new ArrayList<DateValue>();
+		while (list.size() < max && it.hasNext()) {
+			list.add(it.next());
+		}
+		return list;
+	}
+}
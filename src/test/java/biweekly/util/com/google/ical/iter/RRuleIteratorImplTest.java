@@ -0,0 +1,226 @@
+package biweekly.util.com.google.ical.iter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import biweekly.util.com.google.ical.values.DateTimeValueImpl;
+import biweekly.util.com.google.ical.values.DateValue;
+import biweekly.util.com.google.ical.values.DateValueImpl;
+import biweekly.util.com.google.ical.values.RRule;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class RRuleIteratorImplTest {
+	//@formatter:off
+	private static final String[] rules = {
+		"FREQ=YEARLY;INTERVAL=4",
+		"FREQ=YEARLY;INTERVAL=3;BYMONTH=2;BYMONTHDAY=29",
+		"FREQ=YEARLY;BYWEEKNO=20;BYDAY=MO",
+		"FREQ=YEARLY;BYMONTH=3;BYDAY=MO,TU;BYSETPOS=2,-1",
+		"FREQ=YEARLY;BYDAY=MO,TU,WE,TH,FR;BYSETPOS=1",
+		"FREQ=MONTHLY;BYDAY=2TU",
+		"FREQ=MONTHLY;INTERVAL=5;BYMONTHDAY=31",
+		"FREQ=MONTHLY;INTERVAL=3;BYDAY=MO;BYSETPOS=-1",
+		"FREQ=MONTHLY;BYHOUR=9,17;BYDAY=1FR",
+		"FREQ=WEEKLY;INTERVAL=2;BYDAY=TU,TH",
+		"FREQ=WEEKLY;BYDAY=MO,WE;BYSETPOS=1",
+		"FREQ=WEEKLY;INTERVAL=3;BYDAY=MO,FR;BYSETPOS=-1",
+		"FREQ=DAILY;BYHOUR=9,17;BYMINUTE=0,30",
+		"FREQ=HOURLY;INTERVAL=5",
+		"FREQ=MONTHLY;BYDAY=FR;BYMONTHDAY=13;UNTIL=20660101T000000Z"
+	};
+	private static final DateValue[] starts = {
+		new DateTimeValueImpl(2016, 3, 13, 2, 30, 0), //DST gap in New York
+		new DateValueImpl(2016, 2, 29)
+	};
+	private static final String[] zones = { "UTC", "America/New_York" };
+	private static final int[] years = { 2016, 2017, 2036, 2066, 2216 };
+	//@formatter:on
+
+	@Test
+	public void advanceTo() throws Exception {
+		for (String zoneId : zones) {
+			TimeZone zone = TimeZone.getTimeZone(zoneId);
+			for (String rule : rules) {
+				RRule rrule = new RRule("RRULE:" + rule);
+				for (DateValue start : starts) {
+					for (int year : years) {
+						for (int month = 1; month <= 12; month += 4) {
+							DateValue advanceTo = new DateTimeValueImpl(year, month, 6, 12, 0, 0);
+							String message = zoneId + " " + rule + " " + start + " " + advanceTo;
+
+							RecurrenceIterator it = RecurrenceIteratorFactory.createRecurrenceIterator(rrule, start, zone);
+							it.advanceTo(advanceTo);
+							List<DateValue> actual = take(it, 6);
+
+							it = RecurrenceIteratorFactory.createRecurrenceIterator(rrule, start, zone);
+							List<DateValue> expected = takeFrom(it, advanceTo, 6);
+
+							assertEquals(message, expected, actual);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void advanceTo_repeatedly() throws Exception {
+		TimeZone zone = TimeZone.getTimeZone("America/New_York");
+		DateValue start = new DateTimeValueImpl(2016, 3, 13, 2, 30, 0);
+		for (String rule : rules) {
+			RRule rrule = new RRule("RRULE:" + rule);
+			RecurrenceIterator expected = RecurrenceIteratorFactory.createRecurrenceIterator(rrule, start, zone);
+			RecurrenceIterator actual = RecurrenceIteratorFactory.createRecurrenceIterator(rrule, start, zone);
+
+			//take one instance, then skip ahead a few months, within the same set and across sets
+			for (int months = 2; months < 60; months += 7) {
+				DateValue advanceTo = new DateTimeValueImpl(2016 + months / 12, months % 12 + 1, 10, 0, 0, 0);
+				actual.advanceTo(advanceTo);
+				assertEquals(rule + " " + advanceTo, takeFrom(expected, advanceTo, 1), take(actual, 1));
+			}
+		}
+	}
+
+	@Test
+	public void advanceTo_more_than_a_century() throws Exception {
+		RRule rrule = new RRule("RRULE:FREQ=MONTHLY;INTERVAL=3;BYDAY=MO;BYSETPOS=-1");
+		DateValue start = new DateValueImpl(2016, 3, 1);
+		RecurrenceIterator it = RecurrenceIteratorFactory.createRecurrenceIterator(rrule, start, TimeZone.getTimeZone("UTC"));
+
+		it.advanceTo(new DateValueImpl(2316, 5, 1));
+
+		//@formatter:off
+		List<DateValue> expected = new ArrayList<DateValue>();
+		expected.add(new DateValueImpl(2316, 6, 26));
+		expected.add(new DateValueImpl(2316, 9, 25));
+		expected.add(new DateValueImpl(2316, 12, 25));
+		//@formatter:on
+		assertEquals(expected, take(it, 3));
+	}
+
+	@Test
+	public void advanceTo_bysetpos_with_several_times_of_day() throws Exception {
+		TimeZone zone = TimeZone.getTimeZone("UTC");
+		DateValue start = new DateTimeValueImpl(2002, 12, 20, 7, 30, 0);
+		DateValue advanceTo = new DateValueImpl(2005, 5, 12);
+		//@formatter:off
+		String[] rules = {
+			"FREQ=YEARLY;BYHOUR=5,16;BYMONTHDAY=8,3;BYSETPOS=2",
+			"FREQ=YEARLY;BYHOUR=5,16;BYMONTHDAY=8,3;BYSETPOS=2;UNTIL=20200101T000000Z",
+			"FREQ=MONTHLY;BYHOUR=21,22;BYDAY=MO;BYSETPOS=2"
+		};
+		//@formatter:on
+		for (String rule : rules) {
+			RRule rrule = new RRule("RRULE:" + rule);
+
+			RecurrenceIterator it = RecurrenceIteratorFactory.createRecurrenceIterator(rrule, start, zone);
+			it.advanceTo(advanceTo);
+			List<DateValue> actual = take(it, 6);
+
+			it = RecurrenceIteratorFactory.createRecurrenceIterator(rrule, start, zone);
+			List<DateValue> expected = takeFrom(it, advanceTo, 6);
+
+			assertEquals(rule, expected, actual);
+		}
+	}
+
+	@Test
+	public void advanceTo_random() throws Exception {
+		//@formatter:off
+		String[] freqs = { "YEARLY", "MONTHLY", "WEEKLY", "DAILY" };
+		String[][] parts = {
+			{ "", "BYHOUR=5,16", "BYHOUR=21,22", "BYHOUR=9;BYMINUTE=0,30" },
+			{ "", "BYMONTHDAY=8,3", "BYDAY=MO", "BYDAY=TU,FR", "BYMONTH=2,7" },
+			{ "", "BYSETPOS=2", "BYSETPOS=-1", "BYSETPOS=1,-2" },
+			{ "", "COUNT=40", "UNTIL=20300101T000000Z" }
+		};
+		String[] zoneIds = { "UTC", "America/New_York" };
+		//@formatter:on
+
+		Random random = new Random(41);
+		for (int i = 0; i < 1500; i++) {
+			StringBuilder sb = new StringBuilder("RRULE:FREQ=").append(freqs[random.nextInt(freqs.length)]);
+			for (String[] part : parts) {
+				String value = part[random.nextInt(part.length)];
+				if (value.length() > 0) {
+					sb.append(';').append(value);
+				}
+			}
+			String ical = sb.toString();
+			if (ical.contains("WEEKLY") && ical.contains("BYSETPOS") && ical.contains("BYHOUR")) {
+				//the engine never gets past the first week of these rules
+				continue;
+			}
+			RRule rrule = new RRule(ical);
+			DateValue start = new DateTimeValueImpl(2000 + random.nextInt(5), 1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24), 30, 0);
+			DateValue advanceTo = new DateTimeValueImpl(2002 + random.nextInt(8), 1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24), 0, 0);
+			TimeZone zone = TimeZone.getTimeZone(zoneIds[random.nextInt(zoneIds.length)]);
+			String message = zone.getID() + " " + rrule.toIcal() + " " + start + " " + advanceTo;
+
+			RecurrenceIterator it = RecurrenceIteratorFactory.createRecurrenceIterator(rrule, start, zone);
+			it.advanceTo(advanceTo);
+			List<DateValue> actual = take(it, 5);
+
+			it = RecurrenceIteratorFactory.createRecurrenceIterator(rrule, start, zone);
+			List<DateValue> expected = takeFrom(it, advanceTo, 5);
+
+			assertEquals(message, expected, actual);
+		}
+	}
+
+	/**
+	 * Gets the dates that come after {@link RecurrenceIterator#advanceTo} is
+	 * called by consuming the iterator's dates one at a time.
+	 */
+	private static List<DateValue> takeFrom(RecurrenceIterator it, DateValue dateUtc, int max) {
+		List<DateValue> list = new ArrayList<DateValue>();
+		while (list.size() < max && it.hasNext()) {
+			DateValue next = it.next();
+			if (next.compareTo(dateUtc) >= 0) {
+				list.add(next);
+			}
+		}
+		return list;
+	}
+
+	private static List<DateValue> take(RecurrenceIterator it, int max) {
+		List<DateValue> list = new ArrayList<DateValue>();
+		for (int i = 0; i < max && it.hasNext(); i++) {
+			list.add(it.next());
+		}
+		return list;
+	}
+}
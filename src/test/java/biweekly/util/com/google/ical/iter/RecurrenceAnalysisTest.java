@@ -0,0 +1,220 @@
+package biweekly.util.com.google.ical.iter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import biweekly.util.com.google.ical.values.DateTimeValueImpl;
+import biweekly.util.com.google.ical.values.DateValue;
+import biweekly.util.com.google.ical.values.DateValueImpl;
+import biweekly.util.com.google.ical.values.RRule;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class RecurrenceAnalysisTest {
+	//@formatter:off
+	private static final String[] finiteRules = {
+		"FREQ=DAILY;COUNT=45",
+		"FREQ=WEEKLY;INTERVAL=3;UNTIL=20170312T070000Z",
+		"FREQ=DAILY;UNTIL=20160101",
+		"FREQ=MONTHLY;BYDAY=-1FR;COUNT=30",
+		"FREQ=MONTHLY;BYMONTHDAY=31;UNTIL=20200101T000000Z",
+		"FREQ=YEARLY;BYMONTH=2;BYMONTHDAY=29;UNTIL=20990101T000000Z",
+		"FREQ=YEARLY;BYMONTH=2;BYMONTHDAY=30;UNTIL=20990101T000000Z",
+		"FREQ=HOURLY;INTERVAL=5;BYHOUR=9,10,11;UNTIL=20161001T000000Z",
+		"FREQ=WEEKLY;BYDAY=MO,WE,FR;BYSETPOS=-1;COUNT=20"
+	};
+	private static final String[] infiniteRules = {
+		"FREQ=DAILY;INTERVAL=2",
+		"FREQ=MONTHLY;BYDAY=2TU"
+	};
+	private static final DateValue[] starts = {
+		new DateTimeValueImpl(2016, 2, 29, 9, 30, 0),
+		new DateValueImpl(2016, 2, 29)
+	};
+	private static final DateValue[][] ranges = {
+		{ null, null },
+		{ new DateValueImpl(2016, 6, 1), new DateTimeValueImpl(2017, 1, 1, 12, 0, 0) },
+		{ new DateTimeValueImpl(2016, 3, 11, 14, 30, 0), null }
+	};
+	//@formatter:on
+
+	@Test
+	public void isFinite() throws Exception {
+		for (String rule : finiteRules) {
+			assertTrue(rule, RecurrenceAnalysis.isFinite(new RRule("RRULE:" + rule)));
+		}
+		for (String rule : infiniteRules) {
+			assertFalse(rule, RecurrenceAnalysis.isFinite(new RRule("RRULE:" + rule)));
+		}
+	}
+
+	@Test
+	public void count_and_last() throws Exception {
+		for (String zoneId : new String[] { "UTC", "America/New_York" }) {
+			TimeZone zone = TimeZone.getTimeZone(zoneId);
+			for (String rule : finiteRules) {
+				RRule rrule = new RRule("RRULE:" + rule);
+				for (DateValue start : starts) {
+					String message = zoneId + " " + rule + " " + start;
+
+					DateValue expectedLast = null;
+					RecurrenceIterator it = RecurrenceIteratorFactory.createRecurrenceIterator(rrule, start, zone);
+					while (it.hasNext()) {
+						expectedLast = it.next();
+					}
+					assertEquals(message, expectedLast, RecurrenceAnalysis.last(rrule, start, zone));
+
+					for (DateValue[] range : ranges) {
+						long expected = 0;
+						it = RecurrenceIteratorFactory.createRecurrenceIterator(rrule, start, zone);
+						while (it.hasNext()) {
+							DateValue next = it.next();
+							if ((range[0] == null || next.compareTo(range[0]) >= 0) && (range[1] == null || next.compareTo(range[1]) < 0)) {
+								expected++;
+							}
+						}
+						assertEquals(message + " " + range[0] + " " + range[1], expected, RecurrenceAnalysis.count(rrule, start, zone, range[0], range[1]));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void previousBefore() throws Exception {
+		//@formatter:off
+		DateValue[] dates = {
+			new DateValueImpl(2016, 1, 1),
+			new DateTimeValueImpl(2016, 2, 29, 14, 30, 0),
+			new DateTimeValueImpl(2016, 3, 1, 0, 0, 0),
+			new DateValueImpl(2016, 11, 25),
+			new DateTimeValueImpl(2019, 6, 30, 12, 0, 0),
+			new DateValueImpl(2040, 1, 1)
+		};
+		//@formatter:on
+
+		List<String> rules = new ArrayList<String>();
+		rules.addAll(Arrays.asList(finiteRules));
+		rules.addAll(Arrays.asList(infiniteRules));
+		for (String zoneId : new String[] { "UTC", "America/New_York" }) {
+			TimeZone zone = TimeZone.getTimeZone(zoneId);
+			for (String rule : rules) {
+				RRule rrule = new RRule("RRULE:" + rule);
+				for (DateValue start : starts) {
+					for (DateValue date : dates) {
+						DateValue expected = null;
+						RecurrenceIterator it = RecurrenceIteratorFactory.createRecurrenceIterator(rrule, start, zone);
+						while (it.hasNext()) {
+							DateValue next = it.next();
+							if (next.compareTo(date) >= 0) {
+								break;
+							}
+							expected = next;
+						}
+
+						String message = zoneId + " " + rule + " " + start + " " + date;
+						assertEquals(message, expected, RecurrenceAnalysis.previousBefore(rrule, start, zone, date));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void previousBefore_and_last_bysetpos() throws Exception {
+		//@formatter:off
+		String[] rules = {
+			"FREQ=YEARLY;BYHOUR=5,16;BYMONTHDAY=8,3;BYSETPOS=2",
+			"FREQ=YEARLY;BYHOUR=5,16;BYMONTHDAY=8,3;BYSETPOS=2;UNTIL=20150101T000000Z",
+			"FREQ=MONTHLY;BYHOUR=21,22;BYDAY=MO;BYSETPOS=2",
+			"FREQ=MONTHLY;BYHOUR=21,22;BYDAY=MO;BYSETPOS=2;UNTIL=20090101T000000Z",
+			"FREQ=MONTHLY;BYHOUR=9;BYMINUTE=0,30;BYDAY=TU,FR;BYSETPOS=1,-2;COUNT=40",
+			"FREQ=YEARLY;BYMONTH=3;BYDAY=MO,TU;BYSETPOS=2,-1;UNTIL=20120101"
+		};
+		//@formatter:on
+
+		TimeZone zone = TimeZone.getTimeZone("UTC");
+		DateValue start = new DateTimeValueImpl(2002, 12, 20, 7, 30, 0);
+		Random random = new Random(39);
+		for (String rule : rules) {
+			RRule rrule = new RRule("RRULE:" + rule);
+
+			List<DateValue> instances = new ArrayList<DateValue>();
+			RecurrenceIterator it = RecurrenceIteratorFactory.createRecurrenceIterator(rrule, start, zone);
+			while (it.hasNext() && instances.size() < 200) {
+				instances.add(it.next());
+			}
+			if (RecurrenceAnalysis.isFinite(rrule)) {
+				assertEquals(rule, instances.get(instances.size() - 1), RecurrenceAnalysis.last(rrule, start, zone));
+			}
+
+			for (int i = 0; i < 50; i++) {
+				DateValue date = new DateTimeValueImpl(2003 + random.nextInt(12), 1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24), 0, 0);
+				DateValue expected = null;
+				for (DateValue instance : instances) {
+					if (instance.compareTo(date) >= 0) {
+						break;
+					}
+					expected = instance;
+				}
+				assertEquals(rule + " " + date, expected, RecurrenceAnalysis.previousBefore(rrule, start, zone, date));
+			}
+		}
+	}
+
+	@Test
+	public void infinite() throws Exception {
+		TimeZone zone = TimeZone.getTimeZone("UTC");
+		RRule rrule = new RRule("RRULE:FREQ=DAILY;INTERVAL=2");
+		DateValue start = new DateValueImpl(2016, 1, 1);
+
+		assertNull(RecurrenceAnalysis.last(rrule, start, zone));
+		assertEquals(183, RecurrenceAnalysis.count(rrule, start, zone, null, new DateValueImpl(2017, 1, 1)));
+		assertEquals(3, RecurrenceAnalysis.count(rrule, start, zone, new DateValueImpl(2116, 1, 1), new DateValueImpl(2116, 1, 7)));
+
+		rrule = new RRule("RRULE:FREQ=MONTHLY;BYDAY=2TU");
+		assertEquals(12, RecurrenceAnalysis.count(rrule, start, zone, new DateValueImpl(2066, 1, 1), new DateValueImpl(2067, 1, 1)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void count_infinite() throws Exception {
+		RRule rrule = new RRule("RRULE:FREQ=DAILY");
+		RecurrenceAnalysis.count(rrule, new DateValueImpl(2016, 1, 1), TimeZone.getTimeZone("UTC"), null, null);
+	}
+}
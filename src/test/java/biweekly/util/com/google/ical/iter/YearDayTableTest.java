@@ -0,0 +1,206 @@
+package biweekly.util.com.google.ical.iter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import biweekly.util.com.google.ical.util.DTBuilder;
+import biweekly.util.com.google.ical.util.PackedDates;
+import biweekly.util.com.google.ical.util.TimeUtils;
+import biweekly.util.com.google.ical.values.DateValueImpl;
+import biweekly.util.com.google.ical.values.Weekday;
+import biweekly.util.com.google.ical.values.WeekdayNum;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class YearDayTableTest {
+	//@formatter:off
+	private static final int[][] monthDays = {
+		{ 1 }, { -1 }, { 15, 31, -31 }, { 29, 30 }
+	};
+	private static final int[][] yearDays = {
+		{ 1 }, { -1 }, { 60, 100, 366, -366 }
+	};
+	private static final int[][] weekNos = {
+		{ 1 }, { -1 }, { 53 }, { -53 }, { 20, 52 }
+	};
+	private static final WeekdayNum[][] weekdays = {
+		{ new WeekdayNum(0, Weekday.MO) },
+		{ new WeekdayNum(1, Weekday.MO) },
+		{ new WeekdayNum(-1, Weekday.FR) },
+		{ new WeekdayNum(2, Weekday.TU), new WeekdayNum(-2, Weekday.TU), new WeekdayNum(0, Weekday.SU) },
+		{ new WeekdayNum(5, Weekday.WE), new WeekdayNum(-5, Weekday.TH) },
+		{ new WeekdayNum(53, Weekday.MO), new WeekdayNum(-53, Weekday.SU) }
+	};
+	private static final Weekday[] weekStarts = { Weekday.MO, Weekday.SU, Weekday.WE };
+	//@formatter:on
+
+	@Test
+	public void byMonthDay() {
+		for (int[] days : monthDays) {
+			assertSameAsGenerator(YearDayTable.byMonthDay(days), Generators.byMonthDayGenerator(days, new DateValueImpl(2000, 1, 1)));
+			assertSameAsFilter(YearDayTable.byMonthDay(days), Filters.byMonthDayFilter(days));
+		}
+	}
+
+	@Test
+	public void byYearDay() {
+		for (int[] days : yearDays) {
+			assertSameAsGenerator(YearDayTable.byYearDay(days), Generators.byYearDayGenerator(days, new DateValueImpl(2000, 1, 1)));
+		}
+	}
+
+	@Test
+	public void byWeekNo() {
+		for (int[] weeks : weekNos) {
+			for (Weekday wkst : weekStarts) {
+				assertSameAsGenerator(YearDayTable.byWeekNo(weeks, wkst), Generators.byWeekNoGenerator(weeks, wkst, new DateValueImpl(2000, 1, 1)));
+			}
+		}
+	}
+
+	@Test
+	public void byDay() {
+		for (WeekdayNum[] days : weekdays) {
+			for (boolean weeksInYear : new boolean[] { true, false }) {
+				assertSameAsGenerator(YearDayTable.byDay(days, weeksInYear), Generators.byDayGenerator(days, weeksInYear, new DateValueImpl(2000, 1, 1)));
+			}
+		}
+	}
+
+	@Test
+	public void byDayFilter() {
+		for (WeekdayNum[] days : weekdays) {
+			for (boolean weeksInYear : new boolean[] { true, false }) {
+				for (Weekday wkst : weekStarts) {
+					assertSameAsFilter(YearDayTable.byDayFilter(days, weeksInYear, wkst), Filters.byDayFilter(days, weeksInYear, wkst));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void intersection() {
+		List<YearDayTable.Part> parts = new ArrayList<YearDayTable.Part>();
+		parts.add(YearDayTable.byMonthDay(new int[] { 13 }));
+		parts.add(YearDayTable.byDayFilter(new WeekdayNum[] { new WeekdayNum(0, Weekday.FR) }, false, Weekday.MO));
+		YearDayTable table = new YearDayTable(parts);
+
+		//every friday the 13th in 2015
+		List<Integer> actual = new ArrayList<Integer>();
+		for (int doy = table.next(2015, 0, 365); doy >= 0; doy = table.next(2015, doy + 1, 365)) {
+			actual.add(doy);
+		}
+		assertEquals(Arrays.asList(TimeUtils.dayOfYear(2015, 2, 13), TimeUtils.dayOfYear(2015, 3, 13), TimeUtils.dayOfYear(2015, 11, 13)), actual);
+
+		//the end of the range is exclusive
+		assertEquals(-1, table.next(2015, 0, TimeUtils.dayOfYear(2015, 2, 13)));
+
+		//the table of another year
+		assertEquals(TimeUtils.dayOfYear(2016, 5, 13), table.next(2016, 0, 366));
+	}
+
+	@Test
+	public void byYearDayTableGenerator() {
+		List<YearDayTable.Part> parts = new ArrayList<YearDayTable.Part>();
+		parts.add(YearDayTable.byDay(new WeekdayNum[] { new WeekdayNum(0, Weekday.MO) }, false));
+		Generator generator = Generators.byYearDayTableGenerator(new YearDayTable(parts), new DateValueImpl(2016, 2, 10));
+
+		//days before dtStart are skipped
+		DTBuilder builder = new DTBuilder(2016, 2, 10, 0, 0, 0);
+		assertEquals(Arrays.asList(15, 22, 29), days(generator, builder));
+
+		builder.month = 3;
+		assertEquals(Arrays.asList(7, 14, 21, 28), days(generator, builder));
+	}
+
+	/**
+	 * Checks that a part marks the days that a generator generates, over a
+	 * range of years that starts on every day of the week, in leap years and
+	 * in common years.
+	 */
+	private static void assertSameAsGenerator(YearDayTable.Part part, Generator generator) {
+		for (int year = 1990; year <= 2030; year++) {
+			List<Integer> expected = new ArrayList<Integer>();
+			DTBuilder builder = new DTBuilder(year, 1, 1, 0, 0, 0);
+			for (int month = 1; month <= 12; month++) {
+				builder.month = month;
+				for (int day : days(generator, builder)) {
+					expected.add(TimeUtils.dayOfYear(year, month, day));
+				}
+			}
+
+			assertEquals(part + " " + year, expected, marked(part, year));
+		}
+	}
+
+	/**
+	 * Checks that a part marks the days that a filter accepts.
+	 */
+	private static void assertSameAsFilter(YearDayTable.Part part, PackedDatePredicate filter) {
+		for (int year = 1990; year <= 2030; year++) {
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int month = 1; month <= 12; month++) {
+				for (int day = 1; day <= TimeUtils.monthLength(year, month); day++) {
+					if (filter.apply(PackedDates.pack(year, month, day))) {
+						expected.add(TimeUtils.dayOfYear(year, month, day));
+					}
+				}
+			}
+
+			assertEquals(part + " " + year, expected, marked(part, year));
+		}
+	}
+
+	private static List<Integer> days(Generator generator, DTBuilder builder) {
+		List<Integer> days = new ArrayList<Integer>();
+		try {
+			while (generator.generate(builder)) {
+				days.add(builder.day);
+			}
+		} catch (Generator.IteratorShortCircuitingException e) {
+			throw new AssertionError(e);
+		}
+		return days;
+	}
+
+	private static List<Integer> marked(YearDayTable.Part part, int year) {
+		YearDayTable table = new YearDayTable(Arrays.asList(part));
+		int nDays = TimeUtils.yearLength(year);
+		List<Integer> marked = new ArrayList<Integer>();
+		for (int doy = table.next(year, 0, nDays); doy >= 0; doy = table.next(year, doy + 1, nDays)) {
+			marked.add(doy);
+		}
+		return marked;
+	}
+}
@@ -0,0 +1,201 @@
+package biweekly.util.com.google.ical.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import biweekly.util.com.google.ical.values.DateTimeValueImpl;
+import biweekly.util.com.google.ical.values.DateValue;
+import biweekly.util.com.google.ical.values.DateValueImpl;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class PackedDatesTest {
+	//@formatter:off
+	private static final String[] zones = {
+		"America/New_York",
+		"America/St_Johns",
+		"Europe/London",
+		"Europe/Moscow",
+		"Asia/Kolkata",
+		"Australia/Lord_Howe",
+		"Australia/Sydney",
+		"Pacific/Apia",
+		"Pacific/Chatham"
+	};
+	//@formatter:on
+
+	@Test
+	public void pack_date() {
+		long packed = PackedDates.pack(2016, 3, 25);
+		assertFalse(PackedDates.hasTime(packed));
+		assertEquals(2016, PackedDates.year(packed));
+		assertEquals(3, PackedDates.month(packed));
+		assertEquals(25, PackedDates.day(packed));
+		assertEquals(0, PackedDates.hour(packed));
+		assertEquals(0, PackedDates.minute(packed));
+		assertEquals(0, PackedDates.second(packed));
+		assertEquals(new DateValueImpl(2016, 3, 25), PackedDates.toDateValue(packed));
+	}
+
+	@Test
+	public void pack_date_time() {
+		long packed = PackedDates.pack(2016, 12, 31, 23, 59, 58);
+		assertTrue(PackedDates.hasTime(packed));
+		assertEquals(2016, PackedDates.year(packed));
+		assertEquals(12, PackedDates.month(packed));
+		assertEquals(31, PackedDates.day(packed));
+		assertEquals(23, PackedDates.hour(packed));
+		assertEquals(59, PackedDates.minute(packed));
+		assertEquals(58, PackedDates.second(packed));
+		assertEquals(new DateTimeValueImpl(2016, 12, 31, 23, 59, 58), PackedDates.toDateValue(packed));
+
+		assertEquals(PackedDates.pack(2016, 12, 31), PackedDates.toDate(packed));
+		assertEquals(PackedDates.pack(2016, 12, 31, 0, 0, 0), PackedDates.dayStart(packed));
+	}
+
+	@Test
+	public void pack_negative_year() {
+		long packed = PackedDates.pack(-5, 2, 3, 4, 5, 6);
+		assertEquals(-5, PackedDates.year(packed));
+		assertEquals(2, PackedDates.month(packed));
+		assertEquals(3, PackedDates.day(packed));
+		assertEquals(4, PackedDates.hour(packed));
+		assertEquals(5, PackedDates.minute(packed));
+		assertEquals(6, PackedDates.second(packed));
+	}
+
+	@Test
+	public void ordering() {
+		//@formatter:off
+		DateValue[] values = {
+			new DateValueImpl(2015, 12, 31),
+			new DateTimeValueImpl(2015, 12, 31, 23, 59, 59),
+			new DateValueImpl(2016, 1, 1),
+			new DateTimeValueImpl(2016, 1, 1, 0, 0, 0),
+			new DateTimeValueImpl(2016, 1, 1, 0, 0, 1),
+			new DateTimeValueImpl(2016, 1, 1, 1, 0, 0),
+			new DateValueImpl(2016, 1, 2)
+		};
+		//@formatter:on
+
+		for (int i = 0; i < values.length; i++) {
+			for (int j = 0; j < values.length; j++) {
+				long a = PackedDates.pack(values[i]);
+				long b = PackedDates.pack(values[j]);
+				assertEquals(Integer.signum(values[i].compareTo(values[j])), Long.signum(a - b));
+			}
+		}
+	}
+
+	@Test
+	public void toUtc_same_as_calendar() {
+		for (String id : zones) {
+			TimeZone zone = TimeZone.getTimeZone(id);
+			GregorianCalendar local = new GregorianCalendar(zone);
+			GregorianCalendar utc = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+
+			//step through every 15 minutes, so that all transitions are covered
+			DTBuilder builder = new DTBuilder(2010, 1, 1, 0, 0, 0);
+			while (builder.year < 2013) {
+				long packed = builder.toPackedDateTime();
+
+				local.clear();
+				local.set(builder.year, builder.month - 1, builder.day, builder.hour, builder.minute, builder.second);
+				utc.setTimeInMillis(local.getTimeInMillis());
+				long expected = pack(utc);
+
+				assertEquals(id + " " + builder, PackedDates.toDateValue(expected), PackedDates.toDateValue(TimeUtils.toUtc(packed, zone)));
+
+				builder.minute += 15;
+			}
+		}
+	}
+
+	@Test
+	public void fromUtc_same_as_calendar() {
+		for (String id : zones) {
+			TimeZone zone = TimeZone.getTimeZone(id);
+			GregorianCalendar local = new GregorianCalendar(zone);
+			GregorianCalendar utc = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+
+			DTBuilder builder = new DTBuilder(2010, 1, 1, 0, 0, 0);
+			while (builder.year < 2013) {
+				long packed = builder.toPackedDateTime();
+
+				utc.clear();
+				utc.set(builder.year, builder.month - 1, builder.day, builder.hour, builder.minute, builder.second);
+				local.setTimeInMillis(utc.getTimeInMillis());
+				long expected = pack(local);
+
+				assertEquals(id + " " + builder, PackedDates.toDateValue(expected), PackedDates.toDateValue(TimeUtils.fromUtc(packed, zone)));
+
+				builder.minute += 15;
+			}
+		}
+	}
+
+	@Test
+	public void fromUtc() {
+		TimeZone zone = TimeZone.getTimeZone("America/New_York");
+		assertEquals(new DateTimeValueImpl(2016, 3, 25, 12, 0, 0), TimeUtils.fromUtc(new DateTimeValueImpl(2016, 3, 25, 16, 0, 0), zone));
+		assertEquals(new DateTimeValueImpl(2016, 1, 25, 11, 0, 0), TimeUtils.fromUtc(new DateTimeValueImpl(2016, 1, 25, 16, 0, 0), zone));
+		assertEquals(new DateValueImpl(2016, 1, 25), TimeUtils.fromUtc(new DateValueImpl(2016, 1, 25), zone));
+	}
+
+	@Test
+	public void toUtc_and_fromUtc_dates_and_utc() {
+		TimeZone zone = TimeZone.getTimeZone("America/New_York");
+		long date = PackedDates.pack(2016, 3, 25);
+		assertEquals(date, TimeUtils.toUtc(date, zone));
+		assertEquals(date, TimeUtils.fromUtc(date, zone));
+
+		long dateTime = PackedDates.pack(2016, 3, 25, 1, 2, 3);
+		assertEquals(dateTime, TimeUtils.toUtc(dateTime, null));
+		assertEquals(dateTime, TimeUtils.fromUtc(dateTime, TimeUtils.utcTimezone()));
+	}
+
+	@Test
+	public void timeFromSecsSinceEpoch() {
+		long packed = PackedDates.pack(2016, 2, 29, 13, 14, 15);
+		long secs = TimeUtils.secsSinceEpoch(packed);
+		assertEquals(TimeUtils.secsSinceEpoch(new DateTimeValueImpl(2016, 2, 29, 13, 14, 15)), secs);
+		assertEquals(packed, TimeUtils.packedTimeFromSecsSinceEpoch(secs));
+	}
+
+	private static long pack(Calendar c) {
+		return PackedDates.pack(c.get(Calendar.YEAR), c.get(Calendar.MONTH) + 1, c.get(Calendar.DAY_OF_MONTH), c.get(Calendar.HOUR_OF_DAY), c.get(Calendar.MINUTE), c.get(Calendar.SECOND));
+	}
+}
@@ -0,0 +1,114 @@
+package biweekly.util.com.google.ical.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/*
+ Copyright (c) 2013-2016, Michael Angstadt
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met: 
+
+ 1. Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer. 
+ 2. Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution. 
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * @author Michael Angstadt
+ */
+public class ZoneOffsetsTest {
+	//@formatter:off
+	private static final String[] zones = {
+		"America/New_York",
+		"America/St_Johns",
+		"Europe/London",
+		"Europe/Moscow",
+		"Asia/Kolkata",
+		"Australia/Lord_Howe",
+		"Australia/Sydney",
+		"Pacific/Apia",
+		"Pacific/Chatham"
+	};
+	//@formatter:on
+
+	@Test
+	public void toUtc_same_as_TimeUtils() {
+		for (String id : zones) {
+			TimeZone zone = TimeZone.getTimeZone(id);
+			ZoneOffsets offsets = ZoneOffsets.forZone(zone);
+
+			//step through every 15 minutes, so that all transitions are covered
+			DTBuilder builder = new DTBuilder(2010, 1, 1, 0, 0, 0);
+			while (builder.year < 2013) {
+				long packed = builder.toPackedDateTime();
+				assertEquals(id + " " + builder, PackedDates.toDateValue(TimeUtils.toUtc(packed, zone)), PackedDates.toDateValue(offsets.toUtc(packed)));
+				builder.minute += 15;
+			}
+		}
+	}
+
+	@Test
+	public void fromUtc_same_as_TimeUtils() {
+		for (String id : zones) {
+			TimeZone zone = TimeZone.getTimeZone(id);
+			ZoneOffsets offsets = ZoneOffsets.forZone(zone);
+
+			DTBuilder builder = new DTBuilder(2010, 1, 1, 0, 0, 0);
+			while (builder.year < 2013) {
+				long packed = builder.toPackedDateTime();
+				assertEquals(id + " " + builder, PackedDates.toDateValue(TimeUtils.fromUtc(packed, zone)), PackedDates.toDateValue(offsets.fromUtc(packed)));
+				builder.minute += 15;
+			}
+		}
+	}
+
+	@Test
+	public void remembered_days_are_replaced() {
+		TimeZone zone = TimeZone.getTimeZone("America/New_York");
+		ZoneOffsets offsets = ZoneOffsets.forZone(zone);
+
+		//days that are 64 days apart share a slot
+		for (int i = 0; i < 3; i++) {
+			for (int month = 1; month <= 12; month += 2) {
+				long packed = PackedDates.pack(2016, month, 15, 12, 0, 0);
+				assertEquals(TimeUtils.toUtc(packed, zone), offsets.toUtc(packed));
+				assertEquals(TimeUtils.fromUtc(packed, zone), offsets.fromUtc(packed));
+			}
+		}
+	}
+
+	@Test
+	public void dates_and_utc() {
+		long date = PackedDates.pack(2016, 3, 25);
+		ZoneOffsets offsets = ZoneOffsets.forZone(TimeZone.getTimeZone("America/New_York"));
+		assertEquals(date, offsets.toUtc(date));
+		assertEquals(date, offsets.fromUtc(date));
+
+		long dateTime = PackedDates.pack(2016, 3, 25, 1, 2, 3);
+		ZoneOffsets utc = ZoneOffsets.forZone(TimeUtils.utcTimezone());
+		assertNull(utc.getZone());
+		assertSame(utc, ZoneOffsets.forZone(null));
+		assertEquals(dateTime, utc.toUtc(dateTime));
+		assertEquals(dateTime, utc.fromUtc(dateTime));
+	}
+}